@@ -30,4 +30,6 @@ public @interface Command {
 	public String className() default "";
 
 	public String[] helpCommand() default {};
+
+	public boolean allowAbbreviations() default false;
 }
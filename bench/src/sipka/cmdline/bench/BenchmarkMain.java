@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for running the benchmarks.
+ * <p>
+ * The arguments are interpreted the same way as the standard JMH command line. The GC profiler is always added to
+ * report the allocation rate of the benchmarks.
+ * <p>
+ * E.g. <code>java -cp &lt;classpath&gt; sipka.cmdline.bench.BenchmarkMain ParseBenchmark -p subCommandDepth=4</code>
+ */
+public class BenchmarkMain {
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmdoptions = new CommandLineOptions(args);
+		Options options = new OptionsBuilder().parent(cmdoptions).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import sipka.cmdline.runtime.ClassDataSharing;
+
+/**
+ * Compares the startup time of a generated parser with and without a class data sharing archive.
+ * <p>
+ * The harness compiles a synthetic model with the training method enabled, and packages it with the runtime classes
+ * in a JAR. The archive is created with {@link ClassDataSharing}, then a new JVM is launched repeatedly to parse the
+ * arguments of the model, alternating between the runs with and without the archive. The wall clock time of the
+ * processes is recorded.
+ * <p>
+ * Dynamic archives require JDK 13 or later.
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * java -cp &lt;classpath&gt; sipka.cmdline.bench.ClassDataSharingStartupHarness [-launches &lt;n&gt;] [-depth &lt;n&gt;] [-output &lt;file&gt;]
+ * </pre>
+ */
+public class ClassDataSharingStartupHarness {
+	private static final int PARAMETERS_PER_COMMAND = 10;
+	private static final int SUBCOMMAND_WIDTH = 10;
+
+	/**
+	 * Parses the arguments with the generated class in the launched processes.
+	 * <p>
+	 * The synthetic models don't have a main method, so the <code>parse</code> method is called reflectively. The
+	 * first argument is the name of the generated class.
+	 */
+	public static class Launcher {
+		public static void main(String[] args) throws Exception {
+			Class<?> c = Class.forName(args[0]);
+			Method parse = c.getMethod("parse", java.util.Iterator.class);
+			parse.invoke(null, Arrays.asList(args).subList(1, args.length).iterator());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int launches = 10;
+		int depth = 2;
+		Path output = null;
+		for (int i = 0; i < args.length; i++) {
+			String a = args[i];
+			switch (a) {
+				case "-launches": {
+					launches = Integer.parseInt(args[++i]);
+					break;
+				}
+				case "-depth": {
+					depth = Integer.parseInt(args[++i]);
+					break;
+				}
+				case "-output": {
+					output = Paths.get(args[++i]);
+					break;
+				}
+				default: {
+					throw new IllegalArgumentException("Unrecognized argument: " + a);
+				}
+			}
+		}
+		SyntheticCommandModel model = new SyntheticCommandModel("Startup", PARAMETERS_PER_COMMAND, 1, depth,
+				SUBCOMMAND_WIDTH, 1, 1);
+		Map<String, String> options = Collections.singletonMap(CommandLineProcessor.OPTION_GENERATE_TRAINING, "true");
+		Path workdir = Files.createTempDirectory("sipka.cmdline.bench-cds-");
+		try (GeneratedParserCompiler.Result compiled = GeneratedParserCompiler.compile(model.generateSources(),
+				options)) {
+			Path jar = workdir.resolve("app.jar");
+			createApplicationJar(jar, compiled.getClassDirectory());
+			String classpath = jar.toString();
+			String generatedclass = model.getGeneratedClassQualifiedName();
+
+			Path archive = workdir.resolve("app.jsa");
+			long trainstart = System.nanoTime();
+			int exitcode = ClassDataSharing.run(ClassDataSharing.getArchiveCommand(archive, classpath, generatedclass));
+			if (exitcode != 0 || !Files.isRegularFile(archive)) {
+				throw new IllegalStateException("Failed to create archive, exit code: " + exitcode);
+			}
+			System.out.println("Created archive of " + Files.size(archive) + " bytes in "
+					+ (System.nanoTime() - trainstart) / 1_000_000 + " ms for " + model.getCommandCount()
+					+ " commands");
+
+			List<String> launchargs = new ArrayList<>();
+			launchargs.add(generatedclass);
+			launchargs.addAll(model.generateArguments());
+
+			List<String> records = new ArrayList<>();
+			records.add("archive,launch,startup_ms");
+			long[] totals = new long[2];
+			//warm up the file system caches
+			launch(classpath, null, launchargs);
+			launch(classpath, archive, launchargs);
+			for (int i = 0; i < launches; i++) {
+				for (int witharchive = 0; witharchive < 2; witharchive++) {
+					long millis = launch(classpath, witharchive == 0 ? null : archive, launchargs);
+					totals[witharchive] += millis;
+					records.add((witharchive != 0) + "," + i + "," + millis);
+				}
+			}
+			if (launches > 0) {
+				System.out.println("Average startup without archive: " + totals[0] / launches + " ms");
+				System.out.println("Average startup with archive: " + totals[1] / launches + " ms");
+			}
+			if (output != null) {
+				Files.write(output, records, StandardCharsets.UTF_8);
+			} else {
+				PrintStream out = System.out;
+				records.forEach(out::println);
+			}
+		} finally {
+			GeneratedParserCompiler.deleteRecursively(workdir);
+		}
+	}
+
+	private static long launch(String classpath, Path archive, List<String> launchargs)
+			throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		if (archive != null) {
+			command.add("-XX:SharedArchiveFile=" + archive);
+		}
+		command.add("-cp");
+		command.add(classpath);
+		command.add(Launcher.class.getName());
+		command.addAll(launchargs);
+		long start = System.nanoTime();
+		int exitcode = new ProcessBuilder(command).inheritIO().start().waitFor();
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		if (exitcode != 0) {
+			throw new IllegalStateException("Launch failed with exit code: " + exitcode);
+		}
+		return millis;
+	}
+
+	/**
+	 * Creates a JAR with the compiled model, the runtime classes, and the {@link Launcher}.
+	 * <p>
+	 * The JVM only archives classes loaded from JAR files, so the classes can't be used from directories.
+	 */
+	private static void createApplicationJar(Path jar, Path classdirectory) throws IOException, URISyntaxException {
+		Set<String> entries = new HashSet<>();
+		try (JarOutputStream jaros = new JarOutputStream(Files.newOutputStream(jar))) {
+			addDirectory(jaros, classdirectory, entries);
+			Path runtimelocation = Paths
+					.get(ClassDataSharing.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (Files.isDirectory(runtimelocation)) {
+				addDirectory(jaros, runtimelocation, entries);
+			} else {
+				try (JarFile runtimejar = new JarFile(runtimelocation.toFile())) {
+					for (Enumeration<JarEntry> it = runtimejar.entries(); it.hasMoreElements();) {
+						JarEntry entry = it.nextElement();
+						if (entry.isDirectory() || entry.getName().startsWith("META-INF/")) {
+							continue;
+						}
+						try (InputStream is = runtimejar.getInputStream(entry)) {
+							addEntry(jaros, entry.getName(), is, entries);
+						}
+					}
+				}
+			}
+			String launcherentry = Launcher.class.getName().replace('.', '/') + ".class";
+			try (InputStream is = Launcher.class.getClassLoader().getResourceAsStream(launcherentry)) {
+				addEntry(jaros, launcherentry, is, entries);
+			}
+		}
+	}
+
+	private static void addDirectory(JarOutputStream jaros, Path dir, Set<String> entries) throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				String name = dir.relativize(file).toString().replace('\\', '/');
+				try (InputStream is = Files.newInputStream(file)) {
+					addEntry(jaros, name, is, entries);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private static void addEntry(JarOutputStream jaros, String name, InputStream is, Set<String> entries)
+			throws IOException {
+		if (!entries.add(name)) {
+			return;
+		}
+		jaros.putNextEntry(new JarEntry(name));
+		copy(is, jaros);
+		jaros.closeEntry();
+	}
+
+	private static void copy(InputStream is, OutputStream os) throws IOException {
+		byte[] buf = new byte[8192];
+		for (int read; (read = is.read(buf)) > 0;) {
+			os.write(buf, 0, read);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import sipka.cmdline.runtime.ParseUtil;
+import sipka.cmdline.runtime.ParsingIterator;
+
+/**
+ * Measures how fast the command file argument iterator expands large command files.
+ * <p>
+ * The score is the number of command files expanded per time unit. Divide by the line count to get the per argument
+ * throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandFileBenchmark {
+	@Param({ "1000", "100000" })
+	public int lineCount;
+
+	/**
+	 * The number of distinct lines in the command file. The lines are repeated to fill the line count.
+	 */
+	@Param({ "64" })
+	public int distinctLineCount;
+
+	private Path commandFile;
+	private List<String> lines;
+	private List<String> arguments;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		commandFile = Files.createTempFile("sipka.cmdline.bench-", ".txt");
+		lines = new ArrayList<>(lineCount);
+		for (int i = 0; i < lineCount; i++) {
+			lines.add("-argument-value/with/some/path/segments/" + (i % distinctLineCount));
+		}
+		Files.write(commandFile, lines, StandardCharsets.UTF_8);
+		arguments = Collections.singletonList("@" + commandFile);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(commandFile);
+	}
+
+	@Benchmark
+	public void expand(Blackhole bh) throws IOException {
+		try (ParsingIterator it = ParseUtil.createCommandFileArgumentIterator(arguments.iterator())) {
+			while (it.hasNext()) {
+				bh.consume(it.next());
+			}
+		}
+	}
+
+	@Benchmark
+	public void direct(Blackhole bh) throws IOException {
+		//baseline for the iterator overhead, arguments passed directly without command file
+		try (ParsingIterator it = ParseUtil.createSimpleArgumentIterator(lines.iterator())) {
+			while (it.hasNext()) {
+				bh.consume(it.next());
+			}
+		}
+	}
+
+}
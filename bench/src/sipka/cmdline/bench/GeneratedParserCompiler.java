@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+
+/**
+ * Compiles command sources in-process with the {@link CommandLineProcessor} and the system Java compiler.
+ * <p>
+ * The classes of the API, runtime, and processor are expected to be on the class path of the current JVM.
+ */
+public class GeneratedParserCompiler {
+	private GeneratedParserCompiler() {
+		throw new UnsupportedOperationException();
+	}
+
+	public static class Result implements AutoCloseable {
+		private final Path directory;
+		private final Path classDirectory;
+		private final Path generatedSourceDirectory;
+		private final Path helpReferenceDirectory;
+		private URLClassLoader classLoader;
+		private List<Diagnostic<? extends JavaFileObject>> diagnostics = Collections.emptyList();
+
+		Result(Path directory) {
+			this.directory = directory;
+			this.classDirectory = directory.resolve("classes");
+			this.generatedSourceDirectory = directory.resolve("generated");
+			this.helpReferenceDirectory = directory.resolve("helpreference");
+		}
+
+		public Path getClassDirectory() {
+			return classDirectory;
+		}
+
+		public Path getGeneratedSourceDirectory() {
+			return generatedSourceDirectory;
+		}
+
+		/**
+		 * Gets the directory where the help reference files are written if
+		 * {@link CommandLineProcessor#OPTION_GENERATE_HELP_REFERENCE} is enabled.
+		 * 
+		 * @return The directory.
+		 */
+		public Path getHelpReferenceDirectory() {
+			return helpReferenceDirectory;
+		}
+
+		/**
+		 * Gets the diagnostics reported during the compilation. Includes the notes reported by the annotation
+		 * processor.
+		 * 
+		 * @return The diagnostics.
+		 */
+		public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+			return diagnostics;
+		}
+
+		public synchronized ClassLoader getClassLoader() {
+			if (classLoader == null) {
+				try {
+					classLoader = new URLClassLoader(new URL[] { classDirectory.toUri().toURL() },
+							GeneratedParserCompiler.class.getClassLoader());
+				} catch (MalformedURLException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return classLoader;
+		}
+
+		public Class<?> loadClass(String name) throws ClassNotFoundException {
+			return Class.forName(name, true, getClassLoader());
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (classLoader != null) {
+				classLoader.close();
+				classLoader = null;
+			}
+			deleteRecursively(directory);
+		}
+	}
+
+	public static Result compile(Map<String, String> sources) throws IOException {
+		return compile(sources, Collections.emptyMap());
+	}
+
+	/**
+	 * Compiles the sources with the command line processor.
+	 * 
+	 * @param sources
+	 *            The source codes mapped to their qualified class names.
+	 * @param processoroptions
+	 *            The annotation processor options to pass to the compiler.
+	 * @return The compilation result. The caller should close it to delete the output.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 * @throws IllegalStateException
+	 *             If the compilation fails.
+	 */
+	public static Result compile(Map<String, String> sources, Map<String, String> processoroptions)
+			throws IOException, IllegalStateException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("No system Java compiler available. Run the benchmarks on a JDK.");
+		}
+		Result result = new Result(Files.createTempDirectory("sipka.cmdline.bench-"));
+		try {
+			Path srcdir = result.directory.resolve("src");
+			List<File> srcfiles = new ArrayList<>();
+			for (Entry<String, String> entry : sources.entrySet()) {
+				Path srcfile = srcdir.resolve(entry.getKey().replace('.', '/') + ".java");
+				Files.createDirectories(srcfile.getParent());
+				Files.write(srcfile, entry.getValue().getBytes(StandardCharsets.UTF_8));
+				srcfiles.add(srcfile.toFile());
+			}
+			Files.createDirectories(result.classDirectory);
+			Files.createDirectories(result.generatedSourceDirectory);
+			Files.createDirectories(result.helpReferenceDirectory);
+
+			List<String> options = new ArrayList<>();
+			options.add("-classpath");
+			options.add(System.getProperty("java.class.path"));
+			options.add("-d");
+			options.add(result.classDirectory.toString());
+			options.add("-s");
+			options.add(result.generatedSourceDirectory.toString());
+			for (Entry<String, String> entry : processoroptions.entrySet()) {
+				options.add("-A" + entry.getKey() + "=" + entry.getValue());
+			}
+
+			DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+			try (StandardJavaFileManager filemanager = compiler.getStandardFileManager(diagnostics, null, null)) {
+				filemanager.setLocation(StandardLocation.locationFor("HELP_REFERENCE_OUTPUT"),
+						Collections.singleton(result.helpReferenceDirectory.toFile()));
+				JavaCompiler.CompilationTask task = compiler.getTask(null, filemanager, diagnostics, options, null,
+						filemanager.getJavaFileObjectsFromFiles(srcfiles));
+				task.setProcessors(Collections.singletonList(new CommandLineProcessor()));
+				if (!task.call()) {
+					StringBuilder sb = new StringBuilder("Failed to compile sources:");
+					for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+						sb.append('\n');
+						sb.append(d);
+					}
+					throw new IllegalStateException(sb.toString());
+				}
+				result.diagnostics = diagnostics.getDiagnostics();
+			}
+		} catch (Throwable e) {
+			try {
+				result.close();
+			} catch (Throwable e2) {
+				e.addSuppressed(e2);
+			}
+			throw e;
+		}
+		return result;
+	}
+
+	static void deleteRecursively(Path dir) throws IOException {
+		if (!Files.exists(dir)) {
+			return;
+		}
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+				if (exc != null) {
+					throw exc;
+				}
+				Files.delete(d);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+}
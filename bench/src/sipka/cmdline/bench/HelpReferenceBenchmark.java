@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import sipka.cmdline.runtime.HelpReference;
+
+/**
+ * Measures the command and parameter lookup in version 2 help reference files generated for synthetic command trees.
+ * <p>
+ * The lookups cycle through all commands of the tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelpReferenceBenchmark {
+	@Param({ "20" })
+	public int parameterCount;
+
+	@Param({ "2", "3" })
+	public int subCommandDepth;
+
+	@Param({ "10" })
+	public int subCommandWidth;
+
+	private GeneratedParserCompiler.Result compiled;
+	private HelpReference reference;
+	private List<List<String>> paths;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		SyntheticCommandModel model = new SyntheticCommandModel("HelpRef", parameterCount, 0, subCommandDepth,
+				subCommandWidth, 0, 0);
+		Map<String, String> options = new HashMap<>();
+		options.put(CommandLineProcessor.OPTION_GENERATE_HELP_REFERENCE, "true");
+		options.put(CommandLineProcessor.OPTION_HELP_REFERENCE_VERSION, "2");
+		compiled = GeneratedParserCompiler.compile(model.generateSources(), options);
+		Path reffile = compiled.getHelpReferenceDirectory().resolve(model.getGeneratedClassQualifiedName());
+		reference = HelpReference.open(reffile);
+		paths = new ArrayList<>();
+		for (int i = 0; i < reference.getCommandCount(); i++) {
+			paths.add(new ArrayList<>(reference.getCommand(i).getPath()));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reference = null;
+		if (compiled != null) {
+			compiled.close();
+		}
+	}
+
+	private List<String> nextPath() {
+		List<String> result = paths.get(next);
+		if (++next == paths.size()) {
+			next = 0;
+		}
+		return result;
+	}
+
+	@Benchmark
+	public Object findCommand() {
+		return reference.findCommand(nextPath());
+	}
+
+	@Benchmark
+	public Object findParameterDoc() {
+		List<String> path = nextPath();
+		return reference.findCommand(path).findParameter("-l" + path.size() + "p" + (parameterCount - 1))
+				.getDocComment();
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import sipka.cmdline.runtime.ParseUtil;
+
+/**
+ * Measures the time from launching the generated <code>main</code> method in a new JVM until the called command
+ * returns.
+ * <p>
+ * The harness compiles synthetic models of increasing size with {@link sipka.cmdline.api.Command#main() main = true},
+ * and launches the generated class directly with the arguments that invoke the deepest subcommand. The arguments are
+ * either passed on the command line, or in a command file. The launches with and without the command file are
+ * alternated, and the median and 95th percentile of the wall clock times are reported for each model.
+ * <p>
+ * The number of loaded classes is determined by an additional launch with <code>-verbose:class</code>, as the class
+ * loading log would affect the measured times.
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * java -cp &lt;classpath&gt; sipka.cmdline.bench.MainStartupHarness [-launches &lt;n&gt;] [-maxdepth &lt;n&gt;] [-output &lt;file&gt;]
+ * </pre>
+ */
+public class MainStartupHarness {
+	private static final int PARAMETERS_PER_COMMAND = 10;
+	private static final int SUBCOMMAND_WIDTH = 10;
+
+	public static void main(String[] args) throws Exception {
+		int launches = 20;
+		int maxdepth = 2;
+		Path output = null;
+		for (int i = 0; i < args.length; i++) {
+			String a = args[i];
+			switch (a) {
+				case "-launches": {
+					launches = Integer.parseInt(args[++i]);
+					break;
+				}
+				case "-maxdepth": {
+					maxdepth = Integer.parseInt(args[++i]);
+					break;
+				}
+				case "-output": {
+					output = Paths.get(args[++i]);
+					break;
+				}
+				default: {
+					throw new IllegalArgumentException("Unrecognized argument: " + a);
+				}
+			}
+		}
+		String runtimelocation = getRuntimeLocation();
+		List<String> records = new ArrayList<>();
+		records.add("commands,commandfile,launch,startup_ms");
+		for (int depth = 0; depth <= maxdepth; depth++) {
+			SyntheticCommandModel model = new SyntheticCommandModel("Main" + depth, PARAMETERS_PER_COMMAND, 1, depth,
+					SUBCOMMAND_WIDTH, 1, 1, true);
+			int commandcount = model.getCommandCount();
+			try (GeneratedParserCompiler.Result compiled = GeneratedParserCompiler.compile(model.generateSources())) {
+				String classpath = compiled.getClassDirectory() + File.pathSeparator + runtimelocation;
+				String generatedclass = model.getGeneratedClassQualifiedName();
+				List<String> arguments = model.generateArguments();
+
+				Path commandfile = compiled.getClassDirectory().resolveSibling("arguments.txt");
+				List<String> lines = new ArrayList<>(arguments.size());
+				for (String arg : arguments) {
+					lines.add(ParseUtil.escapeCommandFileArgument(arg));
+				}
+				Files.write(commandfile, lines, StandardCharsets.UTF_8);
+				List<String> commandfileargs = Collections.singletonList("@" + commandfile);
+
+				//also warms up the file system caches
+				int[] loaded = countLoadedClasses(classpath, generatedclass, arguments);
+				countLoadedClasses(classpath, generatedclass, commandfileargs);
+
+				long[][] millis = new long[2][launches];
+				for (int i = 0; i < launches; i++) {
+					for (int withfile = 0; withfile < 2; withfile++) {
+						long ms = launch(classpath, Collections.emptyList(), generatedclass,
+								withfile == 0 ? arguments : commandfileargs);
+						millis[withfile][i] = ms;
+						records.add(commandcount + "," + (withfile != 0) + "," + i + "," + ms);
+					}
+				}
+				System.out.println("Model with " + commandcount + " commands, " + arguments.size() + " arguments: "
+						+ loaded[0] + " classes loaded, " + loaded[1] + " from the class path");
+				if (launches > 0) {
+					for (int withfile = 0; withfile < 2; withfile++) {
+						long[] times = millis[withfile];
+						Arrays.sort(times);
+						System.out.println("    " + (withfile == 0 ? "arguments:    " : "command file: ") + "p50 "
+								+ percentile(times, 50) + " ms, p95 " + percentile(times, 95) + " ms");
+					}
+				}
+			}
+		}
+		if (output != null) {
+			Files.write(output, records, StandardCharsets.UTF_8);
+		} else {
+			PrintStream out = System.out;
+			records.forEach(out::println);
+		}
+	}
+
+	/**
+	 * Gets the value at the given percentile of the sorted array using the nearest rank method.
+	 */
+	private static long percentile(long[] sorted, int percent) {
+		int rank = (sorted.length * percent + 99) / 100;
+		return sorted[Math.max(rank, 1) - 1];
+	}
+
+	private static long launch(String classpath, List<String> jvmargs, String mainclass, List<String> launchargs)
+			throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		int exitcode = new ProcessBuilder(getCommand(classpath, jvmargs, mainclass, launchargs)).inheritIO().start()
+				.waitFor();
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		if (exitcode != 0) {
+			throw new IllegalStateException("Launch failed with exit code: " + exitcode);
+		}
+		return millis;
+	}
+
+	/**
+	 * Launches the main class with <code>-verbose:class</code>, and counts the loaded classes in its output.
+	 * 
+	 * @return The total number of loaded classes, and the number of classes loaded from the class path.
+	 */
+	private static int[] countLoadedClasses(String classpath, String mainclass, List<String> launchargs)
+			throws IOException, InterruptedException {
+		ProcessBuilder pb = new ProcessBuilder(
+				getCommand(classpath, Collections.singletonList("-verbose:class"), mainclass, launchargs));
+		pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process proc = pb.start();
+		int[] result = { 0, 0 };
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(proc.getInputStream(), StandardCharsets.UTF_8))) {
+			for (String line; (line = reader.readLine()) != null;) {
+				//JDK 8 prints [Loaded <class> from <source>], later versions use the unified logging format
+				if (line.startsWith("[Loaded ") || line.contains("[class,load]")) {
+					++result[0];
+					if (line.contains(" from file:") || line.contains(" source: file:")) {
+						++result[1];
+					}
+				}
+			}
+		}
+		int exitcode = proc.waitFor();
+		if (exitcode != 0) {
+			throw new IllegalStateException("Launch failed with exit code: " + exitcode);
+		}
+		return result;
+	}
+
+	private static List<String> getCommand(String classpath, List<String> jvmargs, String mainclass,
+			List<String> launchargs) {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmargs);
+		command.add("-cp");
+		command.add(classpath);
+		command.add(mainclass);
+		command.addAll(launchargs);
+		return command;
+	}
+
+	private static String getRuntimeLocation() throws URISyntaxException {
+		return Paths.get(ParseUtil.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+
+/**
+ * Measures how the generated <code>parseAll</code> method scales with the number of threads.
+ * <p>
+ * The score is the number of batches parsed per time unit. The batch consists of the same argument list repeated. The
+ * parallelism of the pool is the <code>threads</code> parameter, compare the scores against the single threaded run
+ * to get the speedup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseAllBenchmark {
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	@Param({ "10000" })
+	public int batchSize;
+
+	@Param({ "100" })
+	public int parameterCount;
+
+	private GeneratedParserCompiler.Result compiled;
+	private MethodHandle parseAllMethod;
+	private List<List<String>> arguments;
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		SyntheticCommandModel model = new SyntheticCommandModel("Bench", parameterCount, 0, 0, 1, 2, 2);
+		compiled = GeneratedParserCompiler.compile(model.generateSources(),
+				Collections.singletonMap(CommandLineProcessor.OPTION_GENERATE_PARSE_ALL, "true"));
+		Class<?> generatedclass = compiled.loadClass(model.getGeneratedClassQualifiedName());
+		parseAllMethod = MethodHandles.publicLookup().findStatic(generatedclass, "parseAll",
+				MethodType.methodType(List.class, List.class, Executor.class));
+		List<String> args = model.generateArguments();
+		arguments = new ArrayList<>(batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			arguments.add(args);
+		}
+		pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+		if (compiled != null) {
+			compiled.close();
+		}
+	}
+
+	@Benchmark
+	public Object parseAll() throws Throwable {
+		return parseAllMethod.invoke(arguments, (Executor) pool);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the generated <code>parse</code> method for synthetic command models of different
+ * sizes.
+ * <p>
+ * The model is generated and compiled with the annotation processor during the trial setup, so changes in the
+ * generated parser code are directly reflected in the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+	@Param({ "10", "100" })
+	public int parameterCount;
+
+	@Param({ "0", "10" })
+	public int mapPrefixCount;
+
+	@Param({ "0", "4" })
+	public int subCommandDepth;
+
+	@Param({ "1" })
+	public int subCommandWidth;
+
+	@Param({ "2" })
+	public int positionalCount;
+
+	@Param({ "2" })
+	public int multiParameterCount;
+
+	private GeneratedParserCompiler.Result compiled;
+	private MethodHandle parseMethod;
+	private List<String> arguments;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		SyntheticCommandModel model = new SyntheticCommandModel("Bench", parameterCount, mapPrefixCount,
+				subCommandDepth, subCommandWidth, positionalCount, multiParameterCount);
+		compiled = GeneratedParserCompiler.compile(model.generateSources());
+		Class<?> generatedclass = compiled.loadClass(model.getGeneratedClassQualifiedName());
+		parseMethod = MethodHandles.publicLookup().findStatic(generatedclass, "parse",
+				MethodType.methodType(generatedclass, Iterator.class));
+		arguments = model.generateArguments();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		if (compiled != null) {
+			compiled.close();
+		}
+	}
+
+	@Benchmark
+	public Object parse() throws Throwable {
+		return parseMethod.invoke(arguments.iterator());
+	}
+}
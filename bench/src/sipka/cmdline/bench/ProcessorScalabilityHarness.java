@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+
+/**
+ * Measures how the compilation time scales with the number of commands in a model.
+ * <p>
+ * The harness generates synthetic models with at least the specified number of commands, and compiles them in-process
+ * with the annotation processor. The processing statistics reported by the processor are recorded along with the
+ * total compilation time.
+ * <p>
+ * Each command in the generated models has {@value #SUBCOMMAND_WIDTH} subcommands, until the model reaches the
+ * requested size. (A single command with hundreds of direct subcommands would exceed the constant string size limit
+ * for its help text.)
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * java -cp &lt;classpath&gt; sipka.cmdline.bench.ProcessorScalabilityHarness [-repeat &lt;n&gt;] [-output &lt;file&gt;] [command-counts...]
+ * </pre>
+ * 
+ * The command counts default to 10, 100 and 1000. The first compilation is not recorded to warm up the compiler.
+ */
+public class ProcessorScalabilityHarness {
+	private static final int PARAMETERS_PER_COMMAND = 5;
+	private static final int SUBCOMMAND_WIDTH = 10;
+
+	public static void main(String[] args) throws Exception {
+		int repeat = 3;
+		Path output = null;
+		List<Integer> commandcounts = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			String a = args[i];
+			switch (a) {
+				case "-repeat": {
+					repeat = Integer.parseInt(args[++i]);
+					break;
+				}
+				case "-output": {
+					output = Paths.get(args[++i]);
+					break;
+				}
+				default: {
+					commandcounts.add(Integer.parseInt(a));
+					break;
+				}
+			}
+		}
+		if (commandcounts.isEmpty()) {
+			commandcounts.addAll(Arrays.asList(10, 100, 1000));
+		}
+
+		//warm up the compiler and the processor
+		compileModel(createModel(10));
+
+		List<String> records = new ArrayList<>();
+		records.add("commands,run,compile_ms,processor_statistics");
+		for (int count : commandcounts) {
+			SyntheticCommandModel model = createModel(count);
+			for (int run = 0; run < repeat; run++) {
+				long start = System.nanoTime();
+				String stats = compileModel(model);
+				long millis = (System.nanoTime() - start) / 1_000_000;
+				System.out.println("Compiled " + model.getCommandCount() + " commands in " + millis + " ms");
+				System.out.println(stats);
+				records.add(model.getCommandCount() + "," + run + "," + millis + ",\""
+						+ stats.replace("\"", "\"\"").replace('\n', ' ') + "\"");
+			}
+		}
+		if (output != null) {
+			Files.write(output, records, StandardCharsets.UTF_8);
+		} else {
+			PrintStream out = System.out;
+			records.forEach(out::println);
+		}
+	}
+
+	private static SyntheticCommandModel createModel(int commandcount) {
+		int depth = 0;
+		while (true) {
+			SyntheticCommandModel model = new SyntheticCommandModel("Scale" + commandcount, PARAMETERS_PER_COMMAND,
+					1, depth, SUBCOMMAND_WIDTH, 1, 1);
+			if (model.getCommandCount() >= commandcount) {
+				return model;
+			}
+			++depth;
+		}
+	}
+
+	private static String compileModel(SyntheticCommandModel model) throws IOException {
+		Map<String, String> options = Collections.singletonMap(CommandLineProcessor.OPTION_REPORT_STATISTICS,
+				"true");
+		try (GeneratedParserCompiler.Result result = GeneratedParserCompiler.compile(model.generateSources(),
+				options)) {
+			StringBuilder sb = new StringBuilder();
+			for (Diagnostic<? extends JavaFileObject> d : result.getDiagnostics()) {
+				if (d.getKind() == Diagnostic.Kind.NOTE) {
+					String msg = d.getMessage(Locale.ENGLISH);
+					if (msg.startsWith("Processing statistics")) {
+						sb.append(msg);
+					}
+				}
+			}
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the sources of a synthetic {@link sipka.cmdline.api.Command @Command} tree with configurable size.
+ * <p>
+ * Every command declares the configured number of parameters, map parameter prefixes and multi-parameters. The
+ * commands form a tree using {@link sipka.cmdline.api.SubCommand @SubCommand} with the configured width and depth, and
+ * the leaf commands also declare the positional parameters. Each command in the tree has its own class.
+ * <p>
+ * The parameter types are cycled between flags, <code>int</code>, <code>long</code>, {@link String} and an enum, so
+ * every built-in parsing path of the generated parser is exercised.
+ * <p>
+ * The root command can be declared with {@link sipka.cmdline.api.Command#main() main = true} to generate a
+ * <code>main</code> method that can be launched directly.
+ */
+public class SyntheticCommandModel {
+	public static final String PACKAGE_NAME = "sipka.cmdline.bench.synthetic";
+
+	private static final int PARAMETER_KIND_COUNT = 5;
+
+	private final String name;
+	private final int parameterCount;
+	private final int mapPrefixCount;
+	private final int subCommandDepth;
+	private final int subCommandWidth;
+	private final int positionalCount;
+	private final int multiParameterCount;
+	private final boolean main;
+
+	public SyntheticCommandModel(String name, int parameterCount, int mapPrefixCount, int subCommandDepth,
+			int subCommandWidth, int positionalCount, int multiParameterCount) {
+		this(name, parameterCount, mapPrefixCount, subCommandDepth, subCommandWidth, positionalCount,
+				multiParameterCount, false);
+	}
+
+	public SyntheticCommandModel(String name, int parameterCount, int mapPrefixCount, int subCommandDepth,
+			int subCommandWidth, int positionalCount, int multiParameterCount, boolean main) {
+		if (parameterCount < 0 || mapPrefixCount < 0 || subCommandDepth < 0 || positionalCount < 0
+				|| multiParameterCount < 0) {
+			throw new IllegalArgumentException("Negative model size.");
+		}
+		if (subCommandWidth < 1) {
+			throw new IllegalArgumentException("Invalid subcommand width: " + subCommandWidth);
+		}
+		this.name = name;
+		this.parameterCount = parameterCount;
+		this.mapPrefixCount = mapPrefixCount;
+		this.subCommandDepth = subCommandDepth;
+		this.subCommandWidth = subCommandWidth;
+		this.positionalCount = positionalCount;
+		this.multiParameterCount = multiParameterCount;
+		this.main = main;
+	}
+
+	public String getRootClassQualifiedName() {
+		return PACKAGE_NAME + "." + getCommandClassName("");
+	}
+
+	/**
+	 * Gets the number of commands in the tree, including the root command.
+	 * 
+	 * @return The command count.
+	 */
+	public int getCommandCount() {
+		int result = 1;
+		int levelcount = 1;
+		for (int i = 0; i < subCommandDepth; i++) {
+			levelcount *= subCommandWidth;
+			result += levelcount;
+		}
+		return result;
+	}
+
+	public String getGeneratedClassQualifiedName() {
+		return getRootClassQualifiedName() + "ModelImpl";
+	}
+
+	/**
+	 * Generates the sources of the command classes.
+	 * 
+	 * @return The source codes mapped to their qualified class names.
+	 */
+	public Map<String, String> generateSources() {
+		Map<String, String> result = new LinkedHashMap<>();
+		result.put(PACKAGE_NAME + "." + getEnumClassName(), generateEnumSource());
+		addCommandSources(result, "", 0);
+		return result;
+	}
+
+	/**
+	 * Generates an argument list that assigns every parameter on every command level, and invokes the first deepest
+	 * subcommand.
+	 * 
+	 * @return The arguments.
+	 */
+	public List<String> generateArguments() {
+		List<String> result = new ArrayList<>();
+		for (int level = 0; level <= subCommandDepth; level++) {
+			if (level > 0) {
+				result.add(getSubCommandName(0));
+			}
+			if (level == subCommandDepth) {
+				for (int i = 0; i < positionalCount; i++) {
+					result.add("positional-value-" + i);
+				}
+			}
+			for (int i = 0; i < parameterCount; i++) {
+				result.add(getParameterName(level, i));
+				switch (i % PARAMETER_KIND_COUNT) {
+					case 0: {
+						//flag, no value
+						break;
+					}
+					case 1: {
+						result.add(Integer.toString(i * 31));
+						break;
+					}
+					case 2: {
+						result.add(Long.toString(i * 1000003L));
+						break;
+					}
+					case 3: {
+						result.add("string-value-" + i);
+						break;
+					}
+					default: {
+						result.add(i % 2 == 0 ? "first" : "SECOND");
+						break;
+					}
+				}
+			}
+			for (int i = 0; i < mapPrefixCount; i++) {
+				result.add(getMapPrefix(level, i) + "key" + i + "=value" + i);
+			}
+			for (int i = 0; i < multiParameterCount; i++) {
+				for (int j = 0; j < 3; j++) {
+					result.add(getMultiParameterName(level, i));
+					result.add("multi-value-" + j);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[name=" + name + ", parameterCount=" + parameterCount
+				+ ", mapPrefixCount=" + mapPrefixCount + ", subCommandDepth=" + subCommandDepth + ", subCommandWidth="
+				+ subCommandWidth + ", positionalCount="
+				+ positionalCount + ", multiParameterCount=" + multiParameterCount + ", main=" + main + "]";
+	}
+
+	private String getCommandClassName(String path) {
+		return name + "Command" + path;
+	}
+
+	private String getEnumClassName() {
+		return name + "Choice";
+	}
+
+	private static String getSubCommandName(int index) {
+		return "sub" + index;
+	}
+
+	private static String getParameterName(int level, int index) {
+		return "-l" + level + "p" + index;
+	}
+
+	private static String getMultiParameterName(int level, int index) {
+		return "-l" + level + "multi" + index;
+	}
+
+	private static String getMapPrefix(int level, int index) {
+		return "-L" + level + "M" + index + ":";
+	}
+
+	private String generateEnumSource() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("package " + PACKAGE_NAME + ";\n\n");
+		sb.append("public enum " + getEnumClassName() + " {\n");
+		sb.append("\tFIRST,\n");
+		sb.append("\tSECOND;\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private void addCommandSources(Map<String, String> result, String path, int level) {
+		result.put(PACKAGE_NAME + "." + getCommandClassName(path), generateCommandSource(path, level));
+		if (level < subCommandDepth) {
+			for (int i = 0; i < subCommandWidth; i++) {
+				addCommandSources(result, path + "_" + i, level + 1);
+			}
+		}
+	}
+
+	private String generateCommandSource(String path, int level) {
+		String cname = getCommandClassName(path);
+		StringBuilder sb = new StringBuilder();
+		sb.append("package " + PACKAGE_NAME + ";\n\n");
+		sb.append("import sipka.cmdline.api.*;\n\n");
+		sb.append("/**\n");
+		sb.append(" * Synthetic command " + cname + " on level " + level + ".\n");
+		sb.append(" */\n");
+		if (level == 0) {
+			sb.append("@Command(helpCommand = \"help\"" + (main ? ", main = true" : "") + ")\n");
+		}
+		if (level < subCommandDepth) {
+			for (int i = 0; i < subCommandWidth; i++) {
+				sb.append("@SubCommand(name = \"" + getSubCommandName(i) + "\", type = "
+						+ getCommandClassName(path + "_" + i) + ".class)\n");
+			}
+		}
+		sb.append("public class " + cname + " {\n");
+		for (int i = 0; i < parameterCount; i++) {
+			sb.append("\t/**\n");
+			sb.append("\t * Parameter " + i + " of level " + level + ".\n");
+			sb.append("\t */\n");
+			sb.append("\t@Parameter(\"" + getParameterName(level, i) + "\")\n");
+			switch (i % PARAMETER_KIND_COUNT) {
+				case 0: {
+					sb.append("\t@Flag\n");
+					sb.append("\tpublic boolean p" + i + ";\n");
+					break;
+				}
+				case 1: {
+					sb.append("\tpublic int p" + i + ";\n");
+					break;
+				}
+				case 2: {
+					sb.append("\tpublic long p" + i + ";\n");
+					break;
+				}
+				case 3: {
+					sb.append("\tpublic String p" + i + ";\n");
+					break;
+				}
+				default: {
+					sb.append("\tpublic " + getEnumClassName() + " p" + i + ";\n");
+					break;
+				}
+			}
+		}
+		for (int i = 0; i < mapPrefixCount; i++) {
+			sb.append("\t@Parameter(\"" + getMapPrefix(level, i) + "\")\n");
+			sb.append("\tpublic java.util.Map<String, String> map" + i + " = new java.util.HashMap<>();\n");
+		}
+		for (int i = 0; i < multiParameterCount; i++) {
+			sb.append("\t@Parameter(\"" + getMultiParameterName(level, i) + "\")\n");
+			sb.append("\t@MultiParameter(String.class)\n");
+			sb.append("\tpublic java.util.List<String> multi" + i + " = new java.util.ArrayList<>();\n");
+		}
+		if (level == subCommandDepth) {
+			for (int i = 0; i < positionalCount; i++) {
+				sb.append("\t@Parameter\n");
+				sb.append("\t@PositionalParameter(" + i + ")\n");
+				sb.append("\tpublic String positional" + i + ";\n");
+			}
+			sb.append("\tpublic void call() {\n");
+			sb.append("\t}\n");
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+}
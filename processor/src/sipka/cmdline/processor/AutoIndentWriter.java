@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.processor;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer that indents the written Java source code based on the curly braces in it.
+ * <p>
+ * The indentation is inserted at the start of each line. Braces inside string and character literals, and comments
+ * don't modify the indentation. The characters are forwarded to the underlying writer in bulk, in segments between
+ * the inserted indentations.
+ */
+public final class AutoIndentWriter extends FilterWriter {
+	private static final int STATE_CODE = 0;
+	private static final int STATE_STRING_LITERAL = 1;
+	private static final int STATE_CHAR_LITERAL = 2;
+	private static final int STATE_LINE_COMMENT = 3;
+	private static final int STATE_BLOCK_COMMENT = 4;
+
+	private int indentCount = 0;
+	private boolean addIndent = false;
+	//the indentation of the line being started, as the indent count may already be modified by its first character
+	private int lineIndentCount = 0;
+	private String indentation = "\t";
+
+	private int state = STATE_CODE;
+	private boolean escaped = false;
+	private char lastChar;
+
+	private long charCount;
+
+	public AutoIndentWriter(Writer out) {
+		super(out);
+	}
+
+	public void setIndentation(String indentation) {
+		this.indentation = indentation;
+	}
+
+	/**
+	 * Gets the number of characters written to the underlying writer, including the indentation.
+	 */
+	public long getCharCount() {
+		return charCount;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		char ch = (char) c;
+		if (handleChar(ch)) {
+			writeIndentation();
+		}
+		out.write(c);
+		++charCount;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		int start = off;
+		int end = off + len;
+		for (int i = off; i < end; i++) {
+			if (handleChar(cbuf[i])) {
+				if (i > start) {
+					out.write(cbuf, start, i - start);
+					charCount += i - start;
+				}
+				writeIndentation();
+				start = i;
+			}
+		}
+		if (end > start) {
+			out.write(cbuf, start, end - start);
+			charCount += end - start;
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		int start = off;
+		int end = off + len;
+		for (int i = off; i < end; i++) {
+			if (handleChar(str.charAt(i))) {
+				if (i > start) {
+					out.write(str, start, i - start);
+					charCount += i - start;
+				}
+				writeIndentation();
+				start = i;
+			}
+		}
+		if (end > start) {
+			out.write(str, start, end - start);
+			charCount += end - start;
+		}
+	}
+
+	private void writeIndentation() throws IOException {
+		for (int i = 0; i < lineIndentCount; i++) {
+			out.write(indentation);
+		}
+		charCount += (long) lineIndentCount * indentation.length();
+	}
+
+	/**
+	 * Updates the state for the next character.
+	 * 
+	 * @return <code>true</code> if the indentation should be written before the character.
+	 */
+	private boolean handleChar(char c) {
+		char prev = lastChar;
+		lastChar = c;
+		if (c == '\r' || c == '\n') {
+			if (state != STATE_BLOCK_COMMENT) {
+				//literals and line comments can't span multiple lines
+				state = STATE_CODE;
+				escaped = false;
+			}
+			addIndent = true;
+			return false;
+		}
+		switch (state) {
+			case STATE_CODE: {
+				switch (c) {
+					case '{': {
+						boolean result = startLine();
+						++indentCount;
+						return result;
+					}
+					case '}': {
+						if (indentCount > 0) {
+							--indentCount;
+						}
+						break;
+					}
+					case '"': {
+						state = STATE_STRING_LITERAL;
+						break;
+					}
+					case '\'': {
+						state = STATE_CHAR_LITERAL;
+						break;
+					}
+					case '/': {
+						if (prev == '/') {
+							state = STATE_LINE_COMMENT;
+						}
+						break;
+					}
+					case '*': {
+						if (prev == '/') {
+							state = STATE_BLOCK_COMMENT;
+							//don't treat the * as the end of the comment in /*/
+							lastChar = 0;
+						}
+						break;
+					}
+					default: {
+						break;
+					}
+				}
+				break;
+			}
+			case STATE_STRING_LITERAL:
+			case STATE_CHAR_LITERAL: {
+				if (escaped) {
+					escaped = false;
+				} else if (c == '\\') {
+					escaped = true;
+				} else if (c == (state == STATE_STRING_LITERAL ? '"' : '\'')) {
+					state = STATE_CODE;
+				}
+				break;
+			}
+			case STATE_BLOCK_COMMENT: {
+				if (c == '/' && prev == '*') {
+					state = STATE_CODE;
+					//the / shouldn't start a new comment
+					lastChar = 0;
+				}
+				break;
+			}
+			default: {
+				break;
+			}
+		}
+		return startLine();
+	}
+
+	private boolean startLine() {
+		if (addIndent) {
+			addIndent = false;
+			lineIndentCount = indentCount;
+			return true;
+		}
+		return false;
+	}
+}
@@ -15,17 +15,25 @@
  */
 package sipka.cmdline.processor;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -38,8 +46,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -64,6 +74,8 @@ import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 
 import sipka.cmdline.api.Command;
@@ -78,9 +90,19 @@ import sipka.cmdline.processor.model.ModelMultiParameter;
 import sipka.cmdline.processor.model.ModelParameter;
 import sipka.cmdline.processor.model.ModelSubCommand;
 import sipka.cmdline.runtime.ArgumentException;
+import sipka.cmdline.runtime.ClassDataSharing;
+import sipka.cmdline.runtime.CompletionTable;
+import sipka.cmdline.runtime.HelpResource;
 import sipka.cmdline.runtime.MissingArgumentException;
+import sipka.cmdline.runtime.NameSuggestionTree;
 import sipka.cmdline.runtime.ParseUtil;
 import sipka.cmdline.runtime.ParsingIterator;
+import sipka.cmdline.runtime.PipelinedParser;
+import sipka.cmdline.runtime.PushParser;
+import sipka.cmdline.runtime.ScriptExecutionException;
+import sipka.cmdline.runtime.ScriptRunner;
+import sipka.cmdline.runtime.SpillingStringCollection;
+import sipka.cmdline.runtime.StreamedArguments;
 import sipka.cmdline.runtime.UnrecognizedArgumentException;
 
 public class CommandLineProcessor implements Processor {
@@ -100,7 +122,25 @@ public class CommandLineProcessor implements Processor {
 
 	public static final String OPTION_GENERATE_HELP_INFO = "sipka.cmdline.help.generate";
 	public static final String OPTION_HELP_LINE_LENGTH_ERROR_LIMIT = "sipka.cmdline.help.line.errorlimit";
+	public static final String OPTION_HELP_RESOURCE = "sipka.cmdline.help.resource";
 	public static final String OPTION_GENERATE_HELP_REFERENCE = "sipka.cmdline.help.generate.reference";
+	public static final String OPTION_HELP_REFERENCE_VERSION = "sipka.cmdline.help.generate.reference.version";
+	public static final String OPTION_REPORT_STATISTICS = "sipka.cmdline.report.statistics";
+	public static final String OPTION_GENERATE_COMPLETION = "sipka.cmdline.completion.generate";
+	public static final String OPTION_GENERATE_VALIDATION = "sipka.cmdline.validation.generate";
+	public static final String OPTION_GENERATE_COMPLETION_SCRIPTS = "sipka.cmdline.completion.scripts";
+	public static final String OPTION_COMPLETION_SCRIPTS_COMMAND = "sipka.cmdline.completion.scripts.command";
+	public static final String OPTION_GENERATE_TRAINING = "sipka.cmdline.training.generate";
+	public static final String OPTION_GENERATE_PARSE_ALL = "sipka.cmdline.parseall.generate";
+	public static final String OPTION_GENERATE_SCRIPT_RUNNER = "sipka.cmdline.script.generate";
+	public static final String OPTION_GENERATE_PUSH_PARSER = "sipka.cmdline.pushparser.generate";
+	public static final String OPTION_GENERATE_TO_ARGUMENTS = "sipka.cmdline.toarguments.generate";
+	public static final String OPTION_INCREMENTAL = "sipka.cmdline.incremental";
+	public static final String OPTION_COMMAND_FILE_INTERN_CAPACITY = "sipka.cmdline.commandfile.intern.capacity";
+	public static final String OPTION_DIAGNOSTICS_METHOD_SIZE_LIMIT = "sipka.cmdline.diagnostics.methodsize.limit";
+	public static final String OPTION_DIAGNOSTICS_CASE_LABEL_LIMIT = "sipka.cmdline.diagnostics.caselabels.limit";
+	public static final String OPTION_DIAGNOSTICS_PREFIX_CHECK_LIMIT = "sipka.cmdline.diagnostics.prefixchecks.limit";
+	public static final String OPTION_DIAGNOSTICS_KIND = "sipka.cmdline.diagnostics.kind";
 
 	private static final String KEY_VALUE_HELP_APPENDIX = "<key>=<value>";
 
@@ -115,6 +155,12 @@ public class CommandLineProcessor implements Processor {
 	private static final int COLUMN_SPACE_WIDTH = 4;
 
 	private static final String INDENTATION = "\t";
+	/**
+	 * The maximum length of a data string constant in the generated source.
+	 * <p>
+	 * A character takes at most 3 bytes in the class file, so the constants stay below the 65535 byte limit.
+	 */
+	private static final int STRING_CONSTANT_CHUNK_LENGTH = 16 * 1024;
 
 	private Elements elements;
 	private Filer filer;
@@ -140,17 +186,49 @@ public class CommandLineProcessor implements Processor {
 	private TypeElement parsingIteratorType;
 
 	private TypeMirror collectionType;
+	private TypeMirror closeableType;
 	private TypeMirror mapType;
 
 	private boolean generateHelpInfo = true;
+	private boolean helpResource = false;
 	private boolean generateHelpReference = false;
+	private int helpReferenceVersion = 1;
+	private boolean reportStatistics = false;
+	private boolean generateCompletion = false;
+	private boolean generateValidation = false;
+	private Set<ShellCompletionScripts.Shell> completionScriptShells = Collections.emptySet();
+	private String completionScriptsCommand;
+	private boolean generateTraining = false;
+	private boolean generateParseAll = false;
+	private boolean generateScriptRunner = false;
+	private boolean generatePushParser = false;
+	private boolean generateToArguments = false;
+	private boolean incremental = true;
+	/**
+	 * The number of errors reported while generating the sources.
+	 * <p>
+	 * The fingerprint is not written to sources that were generated with errors, so they are not reused.
+	 */
+	private int generationErrorCount;
 	//TODO make command files configureable
 	private boolean commandFileEnabled = true;
+	private int commandFileInternCapacity = 0;
+	//the limits of the generated method diagnostics, 0 if not checked
+	private int diagnosticsMethodSizeLimit = MethodSizeEstimator.HUGE_METHOD_LIMIT;
+	private int diagnosticsCaseLabelLimit = 0;
+	private int diagnosticsPrefixCheckLimit = 0;
+	private Diagnostic.Kind diagnosticsKind = Diagnostic.Kind.WARNING;
 	private int helpLineErrorLimit = -1;
 	private String parameterSeparatorLines = "\n";
 
 	private Set<TypeElement> commandElements = new LinkedHashSet<>();
 
+	//caches for the current processing round, as the elements may change between rounds
+	//the common converters of the commands and their parents, keyed by the erased target types
+	private Map<ModelCommand, Map<String, List<ModelCommonConverter>>> commonConverterIndexes = new HashMap<>();
+	private Map<TypeElement, Map<String, List<ExecutableElement>>> methodsWithNameCache = new HashMap<>();
+	private Map<List<Object>, Optional<ModelMethodCall>> bestMethodMatchCache = new HashMap<>();
+
 	public Elements getElements() {
 		return elements;
 	}
@@ -212,7 +290,25 @@ public class CommandLineProcessor implements Processor {
 		Set<String> supportedoptions = new TreeSet<>();
 		supportedoptions.add(OPTION_GENERATE_HELP_INFO);
 		supportedoptions.add(OPTION_HELP_LINE_LENGTH_ERROR_LIMIT);
+		supportedoptions.add(OPTION_HELP_RESOURCE);
 		supportedoptions.add(OPTION_GENERATE_HELP_REFERENCE);
+		supportedoptions.add(OPTION_HELP_REFERENCE_VERSION);
+		supportedoptions.add(OPTION_REPORT_STATISTICS);
+		supportedoptions.add(OPTION_GENERATE_COMPLETION);
+		supportedoptions.add(OPTION_GENERATE_VALIDATION);
+		supportedoptions.add(OPTION_GENERATE_COMPLETION_SCRIPTS);
+		supportedoptions.add(OPTION_COMPLETION_SCRIPTS_COMMAND);
+		supportedoptions.add(OPTION_GENERATE_TRAINING);
+		supportedoptions.add(OPTION_GENERATE_PARSE_ALL);
+		supportedoptions.add(OPTION_GENERATE_SCRIPT_RUNNER);
+		supportedoptions.add(OPTION_GENERATE_PUSH_PARSER);
+		supportedoptions.add(OPTION_GENERATE_TO_ARGUMENTS);
+		supportedoptions.add(OPTION_INCREMENTAL);
+		supportedoptions.add(OPTION_COMMAND_FILE_INTERN_CAPACITY);
+		supportedoptions.add(OPTION_DIAGNOSTICS_METHOD_SIZE_LIMIT);
+		supportedoptions.add(OPTION_DIAGNOSTICS_CASE_LABEL_LIMIT);
+		supportedoptions.add(OPTION_DIAGNOSTICS_PREFIX_CHECK_LIMIT);
+		supportedoptions.add(OPTION_DIAGNOSTICS_KIND);
 		return supportedoptions;
 	}
 
@@ -267,14 +363,214 @@ public class CommandLineProcessor implements Processor {
 		if (helpinfoarg != null) {
 			generateHelpInfo = Boolean.parseBoolean(helpinfoarg);
 		}
+		String helpresourcearg = procoptions.get(OPTION_HELP_RESOURCE);
+		if (helpresourcearg != null) {
+			helpResource = Boolean.parseBoolean(helpresourcearg);
+		}
 		String helpreferencearg = procoptions.get(OPTION_GENERATE_HELP_REFERENCE);
 		if (helpreferencearg != null) {
 			generateHelpReference = Boolean.parseBoolean(helpreferencearg);
 		}
+		String helpreferenceversionarg = procoptions.get(OPTION_HELP_REFERENCE_VERSION);
+		if (helpreferenceversionarg != null) {
+			helpReferenceVersion = Integer.parseInt(helpreferenceversionarg);
+			if (helpReferenceVersion != 1 && helpReferenceVersion != 2) {
+				throw new IllegalArgumentException("Unsupported help reference version: " + helpReferenceVersion);
+			}
+		}
+		String reportstatisticsarg = procoptions.get(OPTION_REPORT_STATISTICS);
+		if (reportstatisticsarg != null) {
+			reportStatistics = Boolean.parseBoolean(reportstatisticsarg);
+		}
+		String completionarg = procoptions.get(OPTION_GENERATE_COMPLETION);
+		if (completionarg != null) {
+			generateCompletion = Boolean.parseBoolean(completionarg);
+		}
+		String validationarg = procoptions.get(OPTION_GENERATE_VALIDATION);
+		if (validationarg != null) {
+			generateValidation = Boolean.parseBoolean(validationarg);
+		}
+		String completionscriptsarg = procoptions.get(OPTION_GENERATE_COMPLETION_SCRIPTS);
+		if (completionscriptsarg != null) {
+			completionScriptShells = ShellCompletionScripts.parseShells(completionscriptsarg);
+		}
+		completionScriptsCommand = procoptions.get(OPTION_COMPLETION_SCRIPTS_COMMAND);
+		String trainingarg = procoptions.get(OPTION_GENERATE_TRAINING);
+		if (trainingarg != null) {
+			generateTraining = Boolean.parseBoolean(trainingarg);
+		}
+		String parseallarg = procoptions.get(OPTION_GENERATE_PARSE_ALL);
+		if (parseallarg != null) {
+			generateParseAll = Boolean.parseBoolean(parseallarg);
+		}
+		String scriptrunnerarg = procoptions.get(OPTION_GENERATE_SCRIPT_RUNNER);
+		if (scriptrunnerarg != null) {
+			generateScriptRunner = Boolean.parseBoolean(scriptrunnerarg);
+		}
+		String pushparserarg = procoptions.get(OPTION_GENERATE_PUSH_PARSER);
+		if (pushparserarg != null) {
+			generatePushParser = Boolean.parseBoolean(pushparserarg);
+		}
+		String toargumentsarg = procoptions.get(OPTION_GENERATE_TO_ARGUMENTS);
+		if (toargumentsarg != null) {
+			generateToArguments = Boolean.parseBoolean(toargumentsarg);
+		}
+		String incrementalarg = procoptions.get(OPTION_INCREMENTAL);
+		if (incrementalarg != null) {
+			incremental = Boolean.parseBoolean(incrementalarg);
+		}
 		String linerrorlimitarg = procoptions.get(OPTION_HELP_LINE_LENGTH_ERROR_LIMIT);
 		if (linerrorlimitarg != null) {
 			helpLineErrorLimit = Integer.parseUnsignedInt(linerrorlimitarg);
 		}
+		String interncapacityarg = procoptions.get(OPTION_COMMAND_FILE_INTERN_CAPACITY);
+		if (interncapacityarg != null) {
+			commandFileInternCapacity = Integer.parseUnsignedInt(interncapacityarg);
+		}
+		String methodsizelimitarg = procoptions.get(OPTION_DIAGNOSTICS_METHOD_SIZE_LIMIT);
+		if (methodsizelimitarg != null) {
+			diagnosticsMethodSizeLimit = Integer.parseUnsignedInt(methodsizelimitarg);
+		}
+		String caselabellimitarg = procoptions.get(OPTION_DIAGNOSTICS_CASE_LABEL_LIMIT);
+		if (caselabellimitarg != null) {
+			diagnosticsCaseLabelLimit = Integer.parseUnsignedInt(caselabellimitarg);
+		}
+		String prefixchecklimitarg = procoptions.get(OPTION_DIAGNOSTICS_PREFIX_CHECK_LIMIT);
+		if (prefixchecklimitarg != null) {
+			diagnosticsPrefixCheckLimit = Integer.parseUnsignedInt(prefixchecklimitarg);
+		}
+		String diagnosticskindarg = procoptions.get(OPTION_DIAGNOSTICS_KIND);
+		if (diagnosticskindarg != null) {
+			switch (diagnosticskindarg.toLowerCase(Locale.ENGLISH)) {
+				case "note": {
+					diagnosticsKind = Diagnostic.Kind.NOTE;
+					break;
+				}
+				case "warning": {
+					diagnosticsKind = Diagnostic.Kind.WARNING;
+					break;
+				}
+				case "error": {
+					diagnosticsKind = Diagnostic.Kind.ERROR;
+					break;
+				}
+				default: {
+					throw new IllegalArgumentException("Unknown diagnostics kind: " + diagnosticskindarg
+							+ " expected note, warning, or error.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports the generated methods that exceed the configured limits.
+	 * <p>
+	 * HotSpot doesn't JIT compile methods larger than {@link MethodSizeEstimator#HUGE_METHOD_LIMIT} bytes, so a
+	 * parser method above it runs in the interpreter. A large number of <code>case</code> labels or map prefixes means
+	 * more comparisons for each argument.
+	 */
+	private void reportMethodSizeDiagnostics(ModelBaseCommand mc, TypeElement cmdelem,
+			List<MethodSizeEstimator.MethodSize> sizes) {
+		String classname = mc.getGeneratedClassQualifiedName();
+		for (MethodSizeEstimator.MethodSize ms : sizes) {
+			String method = classname + "." + ms.getName() + "() at line " + ms.getLine();
+			if (diagnosticsMethodSizeLimit > 0 && ms.getEstimatedSize() > diagnosticsMethodSizeLimit) {
+				messager.printMessage(diagnosticsKind,
+						"Generated method " + method + " has an estimated bytecode size of " + ms.getEstimatedSize()
+								+ " bytes, which is above the limit of " + diagnosticsMethodSizeLimit
+								+ ". Methods larger than " + MethodSizeEstimator.HUGE_METHOD_LIMIT
+								+ " bytes are not JIT compiled by HotSpot by default. ("
+								+ OPTION_DIAGNOSTICS_METHOD_SIZE_LIMIT + ")",
+						cmdelem);
+			}
+			if (diagnosticsCaseLabelLimit > 0 && ms.getCaseLabelCount() > diagnosticsCaseLabelLimit) {
+				messager.printMessage(diagnosticsKind,
+						"Generated method " + method + " has " + ms.getCaseLabelCount()
+								+ " case labels, which is above the limit of " + diagnosticsCaseLabelLimit + ". ("
+								+ OPTION_DIAGNOSTICS_CASE_LABEL_LIMIT + ")",
+						cmdelem);
+			}
+			if (diagnosticsPrefixCheckLimit > 0 && ms.getPrefixCheckCount() > diagnosticsPrefixCheckLimit) {
+				messager.printMessage(diagnosticsKind,
+						"Generated method " + method + " checks " + ms.getPrefixCheckCount()
+								+ " prefixes, which is above the limit of " + diagnosticsPrefixCheckLimit + ". ("
+								+ OPTION_DIAGNOSTICS_PREFIX_CHECK_LIMIT + ")",
+						cmdelem);
+			}
+		}
+	}
+
+	private static Element[] getOriginatingElements(Set<Element> dependentelements) {
+		return dependentelements.toArray(new Element[dependentelements.size()]);
+	}
+
+	private void addOptionFingerprints(ModelFingerprint fp) {
+		fp.addOption(OPTION_GENERATE_HELP_INFO, generateHelpInfo);
+		fp.addOption(OPTION_HELP_LINE_LENGTH_ERROR_LIMIT, helpLineErrorLimit);
+		fp.addOption(OPTION_HELP_RESOURCE, helpResource);
+		fp.addOption(OPTION_GENERATE_COMPLETION, generateCompletion);
+		fp.addOption(OPTION_GENERATE_VALIDATION, generateValidation);
+		fp.addOption(OPTION_GENERATE_TRAINING, generateTraining);
+		fp.addOption(OPTION_GENERATE_PARSE_ALL, generateParseAll);
+		fp.addOption(OPTION_GENERATE_SCRIPT_RUNNER, generateScriptRunner);
+		fp.addOption(OPTION_GENERATE_PUSH_PARSER, generatePushParser);
+		fp.addOption(OPTION_GENERATE_TO_ARGUMENTS, generateToArguments);
+		fp.addOption("commandFileEnabled", commandFileEnabled);
+		fp.addOption(OPTION_COMMAND_FILE_INTERN_CAPACITY, commandFileInternCapacity);
+		fp.addOption("supportsLambda", supportsLambda);
+		fp.addOption("parameterSeparatorLines", parameterSeparatorLines);
+	}
+
+	/**
+	 * Reads the previously generated source of the command if it was generated for the same fingerprint.
+	 * <p>
+	 * The fingerprint is on the last line of the source, as it is only written if the generation completed without
+	 * errors.
+	 * 
+	 * @return The previous contents or <code>null</code> if not available or it has a different fingerprint.
+	 */
+	private CharSequence readPreviousGeneratedSource(ModelBaseCommand mc, String fingerprint) {
+		String packname = mc.getGeneratedPackageName();
+		CharSequence contents;
+		try {
+			FileObject fo = filer.getResource(StandardLocation.SOURCE_OUTPUT, packname == null ? "" : packname,
+					mc.getGeneratedSimpleClassName() + ".java");
+			contents = fo.getCharContent(false);
+		} catch (IOException | IllegalArgumentException | UnsupportedOperationException e) {
+			//not found, or the build environment doesn't support reading the generated sources
+			return null;
+		}
+		if (contents == null) {
+			return null;
+		}
+		int lineend = contents.length();
+		while (lineend > 0 && (contents.charAt(lineend - 1) == '\n' || contents.charAt(lineend - 1) == '\r')) {
+			--lineend;
+		}
+		int linestart = lineend;
+		while (linestart > 0 && contents.charAt(linestart - 1) != '\n' && contents.charAt(linestart - 1) != '\r') {
+			--linestart;
+		}
+		String lastline = contents.subSequence(linestart, lineend).toString();
+		if (!ModelFingerprint.isFingerprintLine(lastline, fingerprint)) {
+			return null;
+		}
+		return contents;
+	}
+
+	private static void deleteGeneratedFile(FileObject file, Throwable cause) {
+		try {
+			if (file.delete()) {
+				return;
+			}
+			//javac doesn't support deleting the files created by the Filer, delete the file directly if possible
+			URI uri = file.toUri();
+			if ("file".equals(uri.getScheme())) {
+				Files.deleteIfExists(Paths.get(uri));
+			}
+		} catch (IOException | RuntimeException e) {
+			cause.addSuppressed(e);
+		}
 	}
 
 	public static String getSimpleClassNameFromQualified(String qname) {
@@ -318,41 +614,114 @@ public class CommandLineProcessor implements Processor {
 			Collection<TypeElement> cmdelements = new ArrayList<>(commandElements);
 			commandElements.clear();
 			for (TypeElement cmdelem : cmdelements) {
+				ProcessingStatistics stats = new ProcessingStatistics();
+				long phasestart = System.nanoTime();
 				ModelBaseCommand mc = new ModelBaseCommand(this, cmdelem.getAnnotation(Command.class), cmdelem);
+				stats.addPhaseTime(ProcessingStatistics.Phase.MODEL_CONSTRUCTION, phasestart);
+
+				phasestart = System.nanoTime();
 				mc.resolve(this);
+				stats.addPhaseTime(ProcessingStatistics.Phase.RESOLVE, phasestart);
+
 				Set<Element> dependentelements = new HashSet<>();
 				addDependentElement(dependentelements, cmdelem);
 
-				try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-					try (PrintStream ps = new PrintStream(new AutoIndentOutputStream(baos))) {
-						generateForModel(mc, ps, dependentelements);
-					}
-					try (OutputStream os = filer
-							.createSourceFile(mc.getGeneratedClassQualifiedName(),
-									dependentelements.toArray(new Element[dependentelements.size()]))
-							.openOutputStream()) {
-						baos.writeTo(os);
+				//the fingerprinting visits all elements that the generated source depends on
+				//so they are known before the source file is created
+				phasestart = System.nanoTime();
+				ModelFingerprint fp = new ModelFingerprint(this);
+				addOptionFingerprints(fp);
+				fp.addCommand(mc);
+				String fingerprint = fp.finish();
+				dependentelements.addAll(fp.getVisitedElements());
+				CharSequence previousoutput = null;
+				if (incremental) {
+					previousoutput = readPreviousGeneratedSource(mc, fingerprint);
+				}
+				stats.addPhaseTime(ProcessingStatistics.Phase.FINGERPRINT, phasestart);
+
+				List<String> helpresourcetexts = generateHelpInfo && helpResource ? new ArrayList<>() : null;
+				try {
+					JavaFileObject sourcefile = filer.createSourceFile(mc.getGeneratedClassQualifiedName(),
+							getOriginatingElements(dependentelements));
+					MethodSizeEstimator sizeestimator;
+					try {
+						//the sizes are measured for the reused output as well, so the diagnostics are reported again
+						sizeestimator = new MethodSizeEstimator(sourcefile.openWriter());
+						if (previousoutput != null) {
+							//the model didn't change since the last generation, emit the same source
+							try (Writer writer = sizeestimator) {
+								writer.append(previousoutput);
+							}
+							stats.setReusedPreviousOutput(true);
+							stats.setGeneratedSourceLength(previousoutput.length());
+							if (helpresourcetexts != null) {
+								//the resource is written again, as the previous one may have been removed
+								phasestart = System.nanoTime();
+								LinkedList<ModelCommand> commandstack = new LinkedList<>();
+								commandstack.add(mc);
+								collectHelpResourceTexts(mc, commandstack, helpresourcetexts);
+								stats.addPhaseTime(ProcessingStatistics.Phase.HELP_GENERATION, phasestart);
+							}
+						} else {
+							AutoIndentWriter indentwriter = new AutoIndentWriter(new BufferedWriter(sizeestimator));
+							try (PrintWriter ps = new PrintWriter(indentwriter)) {
+								int errorcount = generationErrorCount;
+								generateForModel(mc, ps, dependentelements, stats, helpresourcetexts);
+								if (incremental && errorcount == generationErrorCount) {
+									ps.println(ModelFingerprint.getFingerprintLine(fingerprint));
+								}
+								ps.flush();
+								if (ps.checkError()) {
+									throw new IOException(
+											"Failed to write generated source: " + sourcefile.getName());
+								}
+							}
+							stats.setGeneratedSourceLength(indentwriter.getCharCount());
+						}
+					} catch (Throwable e) {
+						//don't leave a partially written source behind for the build system
+						deleteGeneratedFile(sourcefile, e);
+						throw e;
 					}
+					stats.setMethodSizes(sizeestimator.getMethodSizes());
+					reportMethodSizeDiagnostics(mc, cmdelem, sizeestimator.getMethodSizes());
 				} catch (IOException e) {
 					throw new UncheckedIOException(e);
 				}
+				if (helpresourcetexts != null) {
+					phasestart = System.nanoTime();
+					writeHelpResource(mc, helpresourcetexts, getOriginatingElements(dependentelements));
+					stats.addPhaseTime(ProcessingStatistics.Phase.HELP_RESOURCE, phasestart);
+				}
 				if (generateHelpReference) {
+					phasestart = System.nanoTime();
 					try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
 						try (DataOutputStream dos = new DataOutputStream(baos)) {
-							//version
-							dos.writeInt(1);
 							generateHelpReference(mc, dos);
 						}
 						try (OutputStream os = filer
 								.createResource(StandardLocation.locationFor("HELP_REFERENCE_OUTPUT"), "",
 										mc.getGeneratedClassQualifiedName(),
-										dependentelements.toArray(new Element[dependentelements.size()]))
+										getOriginatingElements(dependentelements))
 								.openOutputStream()) {
 							baos.writeTo(os);
 						}
 					} catch (IOException e) {
 						throw new UncheckedIOException(e);
 					}
+					stats.addPhaseTime(ProcessingStatistics.Phase.HELP_REFERENCE, phasestart);
+				}
+				if (!completionScriptShells.isEmpty()) {
+					phasestart = System.nanoTime();
+					generateCompletionScripts(mc, getOriginatingElements(dependentelements));
+					stats.addPhaseTime(ProcessingStatistics.Phase.COMPLETION_SCRIPTS, phasestart);
+				}
+				if (reportStatistics) {
+					stats.countModel(mc);
+					stats.setDependentElementCount(dependentelements.size());
+					messager.printMessage(Diagnostic.Kind.NOTE, stats.format(mc.getGeneratedClassQualifiedName()),
+							cmdelem);
 				}
 			}
 //			Set<TypeElement> allgenerated = new LinkedHashSet<>();
@@ -467,38 +836,56 @@ public class CommandLineProcessor implements Processor {
 //				commandElements.clear();
 //			}
 		}
+		commonConverterIndexes.clear();
+		methodsWithNameCache.clear();
+		bestMethodMatchCache.clear();
 		return false;
 	}
 
+	private void generateCompletionScripts(ModelBaseCommand mc, Element[] originatingelements) {
+		String commandname = completionScriptsCommand;
+		if (commandname == null || commandname.isEmpty()) {
+			commandname = ShellCompletionScripts.getDefaultCommandName(mc);
+		}
+		ShellCompletionScripts scripts = new ShellCompletionScripts(this, mc, commandname, generateHelpInfo);
+		for (ShellCompletionScripts.Shell shell : completionScriptShells) {
+			//written next to the help reference
+			try {
+				FileObject resource = filer.createResource(StandardLocation.locationFor("HELP_REFERENCE_OUTPUT"), "",
+						mc.getGeneratedClassQualifiedName() + "." + shell.extension, originatingelements);
+				try (PrintWriter out = new PrintWriter(new BufferedWriter(resource.openWriter()))) {
+					scripts.write(shell, out);
+					out.flush();
+					if (out.checkError()) {
+						throw new IOException("Failed to write completion script: " + resource.getName());
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
 	private void generateHelpReference(ModelBaseCommand mc, DataOutput dos) throws IOException {
 		LinkedList<ModelCommand> commandsstack = new LinkedList<>();
 		commandsstack.addLast(mc);
-		generateHelpReference(dos, mc, commandsstack);
+		HelpReferenceTable table = new HelpReferenceTable();
+		generateHelpReference(table, mc, commandsstack);
+		table.write(dos, helpReferenceVersion);
 	}
 
-	private void generateHelpReference(DataOutput dos, ModelCommand cmd, LinkedList<ModelCommand> commandstack)
-			throws IOException {
-		generateCommandHelpReference(dos, commandstack);
+	private void generateHelpReference(HelpReferenceTable table, ModelCommand cmd,
+			LinkedList<ModelCommand> commandstack) {
+		generateCommandHelpReference(table, commandstack);
 		for (ModelSubCommand sub : cmd.getSubCommands()) {
 			commandstack.addLast(sub);
-			generateHelpReference(dos, sub, commandstack);
+			generateHelpReference(table, sub, commandstack);
 			commandstack.removeLast();
 		}
 	}
 
-	private static void writeDataStringCollection(DataOutput os, Collection<String> coll) throws IOException {
-		if (coll == null) {
-			os.writeInt(0);
-			return;
-		}
-		os.writeInt(coll.size());
-		for (String s : coll) {
-			os.writeUTF(s);
-		}
-	}
-
-	private static void writeParameterReference(DataOutput dos, ModelParameter p, boolean positional)
-			throws IOException {
+	private static void addParameterReference(HelpReferenceTable.CommandEntry cmdentry, ModelParameter p,
+			boolean positional) {
 		Set<String> flags = new TreeSet<>();
 		if (positional) {
 			flags.add("positional");
@@ -520,28 +907,17 @@ public class CommandLineProcessor implements Processor {
 		String paramdoccomment = removeDocCommentTags(emptyIfNull(p.getDocComment()));
 		String formatstr = emptyIfNull(p.getDocCommentFormat());
 
-		writeDataStringCollection(dos, names);
-		writeDataStringCollection(dos, flags);
-		writeDataStringCollection(dos, metanames);
-		dos.writeUTF(paramdoccomment);
-		dos.writeUTF(formatstr);
+		cmdentry.addParameter(names, flags, metanames, paramdoccomment, formatstr);
 	}
 
-	private static void writeCommandFileParameterReference(DataOutput dos) throws IOException {
-		writeDataStringCollection(dos, Collections.singleton(COMMAND_FILE_PARAMETER_NAME));
-		writeDataStringCollection(dos, null); //flags
-		writeDataStringCollection(dos, null); //metanames
-		dos.writeUTF(String.join("\n", COMMAND_FILE_PARAMETER_DESCRIPTION_LINES));
-		dos.writeUTF("");
-
-		writeDataStringCollection(dos, Collections.singleton(COMMAND_FILE_DELETE_PARAMETER_NAME));
-		writeDataStringCollection(dos, null); //flags
-		writeDataStringCollection(dos, null); //metanames
-		dos.writeUTF(String.join("\n", COMMAND_FILE_DELETE_PARAMETER_DESCRIPTION_LINES));
-		dos.writeUTF("");
+	private static void addCommandFileParameterReference(HelpReferenceTable.CommandEntry cmdentry) {
+		cmdentry.addParameter(Collections.singleton(COMMAND_FILE_PARAMETER_NAME), null, null,
+				String.join("\n", COMMAND_FILE_PARAMETER_DESCRIPTION_LINES), "");
+		cmdentry.addParameter(Collections.singleton(COMMAND_FILE_DELETE_PARAMETER_NAME), null, null,
+				String.join("\n", COMMAND_FILE_DELETE_PARAMETER_DESCRIPTION_LINES), "");
 	}
 
-	private void generateCommandHelpReference(DataOutput dos, List<ModelCommand> cmdlist) throws IOException {
+	private void generateCommandHelpReference(HelpReferenceTable table, List<ModelCommand> cmdlist) {
 		ModelCommand lastcmd = cmdlist.get(cmdlist.size() - 1);
 
 		List<String> cmdpath = getCommandNamePath(cmdlist);
@@ -554,42 +930,27 @@ public class CommandLineProcessor implements Processor {
 
 		String doccomment = removeDocCommentTags(emptyIfNull(lastcmd.getDocComment()));
 
-		int paramcount = posparams.size();
-		if (commandFileEnabled) {
-			//two kinds of command file parameters
-			paramcount += 2;
-		}
-		for (ModelParameter p : parameters) {
-			if (p.getPositional() != null) {
-				continue;
-			}
-			paramcount++;
-		}
-
-		writeDataStringCollection(dos, cmdpath);
-		dos.writeUTF(usagesb.toString());
-		dos.writeUTF(doccomment);
-		dos.writeInt(paramcount);
+		HelpReferenceTable.CommandEntry cmdentry = table.addCommand(cmdpath, usagesb.toString(), doccomment);
 		for (ModelParameter p : posparams) {
 			if (p.getPositional().value() < 0) {
 				continue;
 			}
-			writeParameterReference(dos, p, true);
+			addParameterReference(cmdentry, p, true);
 		}
 		for (ModelParameter p : parameters) {
 			if (p.getPositional() != null) {
 				continue;
 			}
-			writeParameterReference(dos, p, false);
+			addParameterReference(cmdentry, p, false);
 		}
 		for (ModelParameter p : posparams) {
 			if (p.getPositional().value() >= 0) {
 				continue;
 			}
-			writeParameterReference(dos, p, true);
+			addParameterReference(cmdentry, p, true);
 		}
 		if (commandFileEnabled) {
-			writeCommandFileParameterReference(dos);
+			addCommandFileParameterReference(cmdentry);
 		}
 	}
 
@@ -852,9 +1213,8 @@ public class CommandLineProcessor implements Processor {
 		return cs.indexOf('\n') < 0;
 	}
 
-	private void generatePrintHelpMethodNewImpl(PrintStream ps, List<ModelCommand> cmdlist,
-			Set<Element> dependentelements) {
-		ModelCommand lastcmd = cmdlist.get(cmdlist.size() - 1);
+	private void generatePrintHelpMethodNewImpl(PrintWriter ps, List<ModelCommand> cmdlist,
+			Set<Element> dependentelements, List<String> helpresourcetexts) {
 		ps.println("public static String getHelpString(");
 		{
 			int i = 1;
@@ -873,180 +1233,190 @@ public class CommandLineProcessor implements Processor {
 		}
 		ps.println(") {");
 
+		List<String> lines = getHelpStringLines(buildHelpString(cmdlist, dependentelements));
+		if (helpresourcetexts != null) {
+			ps.println("return HelpData.RESOURCE.getHelpString(" + helpresourcetexts.size() + ");");
+			helpresourcetexts.add(String.join("", lines));
+		} else {
+			ps.println("return");
+			if (lines.isEmpty()) {
+				ps.println("\t  \"\"");
+			} else {
+				boolean first = true;
+				for (String line : lines) {
+					ps.print(first ? INDENTATION + "  " : INDENTATION + "+ ");
+					first = false;
+					ps.println(elements.getConstantExpression(line));
+				}
+			}
+			ps.println(";");
+		}
+
+		ps.println("}");
+		ps.println("");
+	}
+
+	private StringBuilder buildHelpString(List<ModelCommand> cmdlist, Set<Element> dependentelements) {
+		ModelCommand lastcmd = cmdlist.get(cmdlist.size() - 1);
+		Collection<ModelSubCommand> subcommands = lastcmd.getSubCommands();
+		//TODO sort non positional parameters by name?
+		List<ModelParameter> parameters = lastcmd.getParameters();
+		List<ModelParameter> posparams = lastcmd.getPositionalParameters();
+
+		String doccomment = emptyIfNull(lastcmd.getDocComment());
+		StringBuilder helpsb = new StringBuilder();
 		{
-			Collection<ModelSubCommand> subcommands = lastcmd.getSubCommands();
-			//TODO sort non positional parameters by name?
-			List<ModelParameter> parameters = lastcmd.getParameters();
-			List<ModelParameter> posparams = lastcmd.getPositionalParameters();
+			helpsb.append("Usage:\n");
+			helpsb.append(HELP_BLOCK_INDENT);
+			appendUsageString(cmdlist, helpsb, dependentelements);
+			helpsb.append('\n');
+			helpsb.append('\n');
+		}
+		if (!doccomment.isEmpty()) {
+			helpsb.append("Description:\n");
+			appendLinesBlock(helpsb, splitToLines(removeDocCommentTags(doccomment)));
+		}
 
-			String doccomment = emptyIfNull(lastcmd.getDocComment());
-			StringBuilder helpsb = new StringBuilder();
-			{
-				helpsb.append("Usage:\n");
-				helpsb.append(HELP_BLOCK_INDENT);
-				appendUsageString(cmdlist, helpsb, dependentelements);
-				helpsb.append('\n');
-				helpsb.append('\n');
+		if (!subcommands.isEmpty()) {
+			ModelSubCommand defaultsubcommand = lastcmd.getDefaultSubCommand();
+			helpsb.append("\nSubcommands:\n");
+			int nameswidth = getMaxSubCommandNameWidth(subcommands);
+			if (cmdlist.size() == 1) {
+				ModelBaseCommand basecmd = (ModelBaseCommand) lastcmd;
+				nameswidth = Math.max(getMaxStringWidth(basecmd.getHelpCommandName()), nameswidth);
 			}
-			if (!doccomment.isEmpty()) {
-				helpsb.append("Description:\n");
-				appendLinesBlock(helpsb, splitToLines(removeDocCommentTags(doccomment)));
-			}
-
-			if (!subcommands.isEmpty()) {
-				ModelSubCommand defaultsubcommand = lastcmd.getDefaultSubCommand();
-				helpsb.append("\nSubcommands:\n");
-				int nameswidth = getMaxSubCommandNameWidth(subcommands);
-				if (cmdlist.size() == 1) {
-					ModelBaseCommand basecmd = (ModelBaseCommand) lastcmd;
-					nameswidth = Math.max(getMaxStringWidth(basecmd.getHelpCommandName()), nameswidth);
+			for (ModelSubCommand sc : subcommands) {
+				dependentelements.add(sc.getTypeElement());
+				String subdoccomment = emptyIfNull(sc.getDocComment());
+				Collection<String> names = new ArrayList<>(sc.getNames());
+				if (sc.isDeprecated()) {
+					names.add(HELP_FLAG_INDENT + DEPRECATED_HELP_FLAG);
 				}
-				for (ModelSubCommand sc : subcommands) {
-					dependentelements.add(sc.getTypeElement());
-					String subdoccomment = emptyIfNull(sc.getDocComment());
-					Collection<String> names = new ArrayList<>(sc.getNames());
-					if (sc.isDeprecated()) {
-						names.add(HELP_FLAG_INDENT + DEPRECATED_HELP_FLAG);
-					}
-					if (sc == defaultsubcommand) {
-						names.add(HELP_FLAG_INDENT + DEFAULT_COMMAND_HELP_FLAG);
-					}
-					appendHelpBlockParagraphed(helpsb, names,
-							splitToLines(getFirstSentence(removeDocCommentTags(subdoccomment))));
+				if (sc == defaultsubcommand) {
+					names.add(HELP_FLAG_INDENT + DEFAULT_COMMAND_HELP_FLAG);
 				}
+				appendHelpBlockParagraphed(helpsb, names,
+						splitToLines(getFirstSentence(removeDocCommentTags(subdoccomment))));
+			}
 
-				if (cmdlist.size() == 1) {
-					ModelBaseCommand basecmd = (ModelBaseCommand) lastcmd;
-					Set<String> helpcommandname = basecmd.getHelpCommandName();
+			if (cmdlist.size() == 1) {
+				ModelBaseCommand basecmd = (ModelBaseCommand) lastcmd;
+				Set<String> helpcommandname = basecmd.getHelpCommandName();
+				if (!helpcommandname.isEmpty()) {
+					helpcommandname = new LinkedHashSet<>(helpcommandname);
+					removeSubCommandNamesFromCollection(helpcommandname, basecmd.getSubCommands());
 					if (!helpcommandname.isEmpty()) {
-						helpcommandname = new LinkedHashSet<>(helpcommandname);
-						removeSubCommandNamesFromCollection(helpcommandname, basecmd.getSubCommands());
-						if (!helpcommandname.isEmpty()) {
-							appendHelpBlockParagraphed(helpsb, helpcommandname,
-									splitToLines("Prints help for the specified commands."));
-						}
+						appendHelpBlockParagraphed(helpsb, helpcommandname,
+								splitToLines("Prints help for the specified commands."));
 					}
 				}
 			}
+		}
 
-			if (!parameters.isEmpty() || commandFileEnabled) {
-				helpsb.append("\nParameters:\n");
-				for (ModelParameter p : posparams) {
-					if (p.getPositional().value() < 0) {
-						continue;
-					}
-					dependentelements.add(p.getElement());
-					String paramdoccomment = emptyIfNull(p.getDocComment());
-					List<String> names = new ArrayList<>(p.getNames());
-					names.add(HELP_FLAG_INDENT + POSITIONAL_HELP_FLAG);
-					if (p.isRequired()) {
-						names.add(HELP_FLAG_INDENT + REQUIRED_HELP_FLAG);
-					}
-					appendHelpBlockParagraphed(helpsb, names, splitToLines(removeDocCommentTags(paramdoccomment)));
+		if (!parameters.isEmpty() || commandFileEnabled) {
+			helpsb.append("\nParameters:\n");
+			for (ModelParameter p : posparams) {
+				if (p.getPositional().value() < 0) {
+					continue;
 				}
-				for (ModelParameter p : parameters) {
-					if (p.getPositional() != null) {
-						continue;
-					}
-					dependentelements.add(p.getElement());
-					String paramdoccomment = emptyIfNull(p.getDocComment());
-					List<String> names = new ArrayList<>(p.getNames());
-					if (p.isMapParameter()) {
-						Entry<String, String> formatnames = p.getMapParameterFormatNames();
-						ListIterator<String> it = names.listIterator();
-						while (it.hasNext()) {
-							it.set(it.next() + "<" + formatnames.getKey() + ">=<" + formatnames.getValue() + ">");
-						}
-					}
-					String formatstr = p.getDocCommentFormat();
-					if (formatstr != null && !formatstr.isEmpty()) {
-						ListIterator<String> it = names.listIterator();
-						while (it.hasNext()) {
-							it.set(it.next() + " " + formatstr);
-						}
-					}
-					if (p.isRequired()) {
-						names.add(HELP_FLAG_INDENT + REQUIRED_HELP_FLAG);
-					}
-					if (p.isDeprecated()) {
-						names.add(HELP_FLAG_INDENT + DEPRECATED_HELP_FLAG);
-					}
-					if (p.isMultiParameter()) {
-						names.add(HELP_FLAG_INDENT + MULTI_HELP_FLAG);
-					}
-					for (String hmeta : p.getHelpMetaNames()) {
-						names.add(HELP_FLAG_INDENT + hmeta);
-					}
-					appendHelpBlockParagraphed(helpsb, names, splitToLines(removeDocCommentTags(paramdoccomment)));
+				dependentelements.add(p.getElement());
+				String paramdoccomment = emptyIfNull(p.getDocComment());
+				List<String> names = new ArrayList<>(p.getNames());
+				names.add(HELP_FLAG_INDENT + POSITIONAL_HELP_FLAG);
+				if (p.isRequired()) {
+					names.add(HELP_FLAG_INDENT + REQUIRED_HELP_FLAG);
 				}
-				//TODO move positional parameters up so they're together before all other parameters
-				for (ModelParameter p : posparams) {
-					if (p.getPositional().value() >= 0) {
-						continue;
-					}
-					dependentelements.add(p.getElement());
-					String paramdoccomment = emptyIfNull(p.getDocComment());
-					List<String> names = new ArrayList<>(p.getNames());
-					names.add(HELP_FLAG_INDENT + POSITIONAL_HELP_FLAG);
-					if (p.isRequired()) {
-						names.add(HELP_FLAG_INDENT + REQUIRED_HELP_FLAG);
+				appendHelpBlockParagraphed(helpsb, names, splitToLines(removeDocCommentTags(paramdoccomment)));
+			}
+			for (ModelParameter p : parameters) {
+				if (p.getPositional() != null) {
+					continue;
+				}
+				dependentelements.add(p.getElement());
+				String paramdoccomment = emptyIfNull(p.getDocComment());
+				List<String> names = new ArrayList<>(p.getNames());
+				if (p.isMapParameter()) {
+					Entry<String, String> formatnames = p.getMapParameterFormatNames();
+					ListIterator<String> it = names.listIterator();
+					while (it.hasNext()) {
+						it.set(it.next() + "<" + formatnames.getKey() + ">=<" + formatnames.getValue() + ">");
 					}
-					for (String hmeta : p.getHelpMetaNames()) {
-						names.add(HELP_FLAG_INDENT + hmeta);
+				}
+				String formatstr = p.getDocCommentFormat();
+				if (formatstr != null && !formatstr.isEmpty()) {
+					ListIterator<String> it = names.listIterator();
+					while (it.hasNext()) {
+						it.set(it.next() + " " + formatstr);
 					}
-					appendHelpBlockParagraphed(helpsb, names, splitToLines(removeDocCommentTags(paramdoccomment)));
 				}
-				if (commandFileEnabled) {
-					appendHelpBlockParagraphed(helpsb, Collections.singleton(COMMAND_FILE_PARAMETER_NAME),
-							COMMAND_FILE_PARAMETER_DESCRIPTION_LINES);
-					appendHelpBlockParagraphed(helpsb, Collections.singleton(COMMAND_FILE_DELETE_PARAMETER_NAME),
-							COMMAND_FILE_DELETE_PARAMETER_DESCRIPTION_LINES);
+				if (p.isRequired()) {
+					names.add(HELP_FLAG_INDENT + REQUIRED_HELP_FLAG);
 				}
+				if (p.isDeprecated()) {
+					names.add(HELP_FLAG_INDENT + DEPRECATED_HELP_FLAG);
+				}
+				if (p.isMultiParameter()) {
+					names.add(HELP_FLAG_INDENT + MULTI_HELP_FLAG);
+				}
+				for (String hmeta : p.getHelpMetaNames()) {
+					names.add(HELP_FLAG_INDENT + hmeta);
+				}
+				appendHelpBlockParagraphed(helpsb, names, splitToLines(removeDocCommentTags(paramdoccomment)));
 			}
-
-			int helplen = helpsb.length();
-			ps.println("return");
-			if (helplen == 0) {
-				ps.println("\t  \"\"");
-			} else {
-				int lastlineend = 0;
-				for (int i = 0; i < helplen; i++) {
-					char c = helpsb.charAt(i);
-					if (c == '\n') {
-						if (lastlineend == 0) {
-							ps.print(INDENTATION + "  ");
-						} else {
-							ps.print(INDENTATION + "+ ");
-						}
-						String substr = unescapeDocComment(helpsb.substring(lastlineend, i + 1));
-						if (helpLineErrorLimit > 0 && substr.length() > helpLineErrorLimit) {
-							messager.printMessage(Diagnostic.Kind.ERROR,
-									"Help line limit exceeded with length: " + substr.length() + " with " + substr);
-						}
-						ps.println(elements.getConstantExpression(substr));
-						lastlineend = i + 1;
-					}
+			//TODO move positional parameters up so they're together before all other parameters
+			for (ModelParameter p : posparams) {
+				if (p.getPositional().value() >= 0) {
+					continue;
 				}
-				if (lastlineend < helplen) {
-					if (lastlineend == 0) {
-						ps.print(INDENTATION + "  ");
-					} else {
-						ps.print(INDENTATION + "+ ");
-					}
-					String substr = unescapeDocComment(helpsb.substring(lastlineend));
-					if (helpLineErrorLimit > 0 && substr.length() > helpLineErrorLimit) {
-						messager.printMessage(Diagnostic.Kind.ERROR,
-								"Help line limit exceeded with length: " + substr.length() + " with " + substr);
-					}
-					ps.println(elements.getConstantExpression(substr + "\n"));
+				dependentelements.add(p.getElement());
+				String paramdoccomment = emptyIfNull(p.getDocComment());
+				List<String> names = new ArrayList<>(p.getNames());
+				names.add(HELP_FLAG_INDENT + POSITIONAL_HELP_FLAG);
+				if (p.isRequired()) {
+					names.add(HELP_FLAG_INDENT + REQUIRED_HELP_FLAG);
+				}
+				for (String hmeta : p.getHelpMetaNames()) {
+					names.add(HELP_FLAG_INDENT + hmeta);
 				}
+				appendHelpBlockParagraphed(helpsb, names, splitToLines(removeDocCommentTags(paramdoccomment)));
 			}
-			ps.println(";");
+			if (commandFileEnabled) {
+				appendHelpBlockParagraphed(helpsb, Collections.singleton(COMMAND_FILE_PARAMETER_NAME),
+						COMMAND_FILE_PARAMETER_DESCRIPTION_LINES);
+				appendHelpBlockParagraphed(helpsb, Collections.singleton(COMMAND_FILE_DELETE_PARAMETER_NAME),
+						COMMAND_FILE_DELETE_PARAMETER_DESCRIPTION_LINES);
+			}
+		}
+		return helpsb;
+	}
 
+	/**
+	 * Splits the help string to lines that end with a new line, and checks the line length limit.
+	 */
+	private List<String> getHelpStringLines(StringBuilder helpsb) {
+		List<String> result = new ArrayList<>();
+		int helplen = helpsb.length();
+		int lastlineend = 0;
+		for (int i = 0; i < helplen; i++) {
+			char c = helpsb.charAt(i);
+			if (c == '\n') {
+				addHelpStringLine(result, unescapeDocComment(helpsb.substring(lastlineend, i + 1)));
+				lastlineend = i + 1;
+			}
 		}
+		if (lastlineend < helplen) {
+			addHelpStringLine(result, unescapeDocComment(helpsb.substring(lastlineend)) + "\n");
+		}
+		return result;
+	}
 
-		ps.println("}");
-		ps.println("");
+	private void addHelpStringLine(List<String> result, String line) {
+		if (helpLineErrorLimit > 0 && line.length() > helpLineErrorLimit) {
+			++generationErrorCount;
+			messager.printMessage(Diagnostic.Kind.ERROR,
+					"Help line limit exceeded with length: " + line.length() + " with " + line);
+		}
+		result.add(line);
 	}
 
 	private void appendUsageString(List<ModelCommand> cmdlist, StringBuilder helpsb, Set<Element> dependentelements) {
@@ -1141,95 +1511,309 @@ public class CommandLineProcessor implements Processor {
 		return s.replace("&nbsp;", " ").replace("&gt;", ">").replace("&lt;", "<").replace("&#064;", "@");
 	}
 
-	private void generatePrintHelpMethod(PrintStream ps, ModelCommand cmd, Set<Element> dependentelements) {
+	private void generatePrintHelpMethod(PrintWriter ps, ModelCommand cmd, Set<Element> dependentelements,
+			List<String> helpresourcetexts) {
 		LinkedList<ModelCommand> commandsstack = new LinkedList<>();
 		commandsstack.addLast(cmd);
-		generatePrintHelpMethod(ps, cmd, commandsstack, dependentelements);
+		generatePrintHelpMethod(ps, cmd, commandsstack, dependentelements, helpresourcetexts);
 	}
 
-	private void generatePrintHelpMethod(PrintStream ps, ModelCommand cmd, LinkedList<ModelCommand> commandstack,
-			Set<Element> dependentelements) {
-		generatePrintHelpMethodNewImpl(ps, commandstack, dependentelements);
+	private void generatePrintHelpMethod(PrintWriter ps, ModelCommand cmd, LinkedList<ModelCommand> commandstack,
+			Set<Element> dependentelements, List<String> helpresourcetexts) {
+		generatePrintHelpMethodNewImpl(ps, commandstack, dependentelements, helpresourcetexts);
 		for (ModelSubCommand sub : cmd.getSubCommands()) {
 			commandstack.addLast(sub);
-			generatePrintHelpMethod(ps, sub, commandstack, dependentelements);
+			generatePrintHelpMethod(ps, sub, commandstack, dependentelements, helpresourcetexts);
 			commandstack.removeLast();
 		}
 	}
 
-	private void generateParserMethod(PrintStream ps, ModelBaseCommand cmd, Collection<TypeElement> throwntypes,
-			Set<Element> dependentelements) {
-		LinkedList<ModelCommand> commandsstack = new LinkedList<>();
-		commandsstack.addLast(cmd);
-		generateParserMethod(ps, cmd, commandsstack, throwntypes, dependentelements);
+	/**
+	 * Collects the help texts in the same order as {@link #generatePrintHelpMethod}, without generating the methods.
+	 */
+	private void collectHelpResourceTexts(ModelCommand cmd, LinkedList<ModelCommand> commandstack,
+			List<String> helpresourcetexts) {
+		helpresourcetexts.add(String.join("", getHelpStringLines(buildHelpString(commandstack, new HashSet<>()))));
+		for (ModelSubCommand sub : cmd.getSubCommands()) {
+			commandstack.addLast(sub);
+			collectHelpResourceTexts(sub, commandstack, helpresourcetexts);
+			commandstack.removeLast();
+		}
 	}
 
-	private void writeParameterParsing(PrintStream ps, ModelParameter parameter, String thisvarname, ModelCommand cmd,
-			Set<Element> dependentelements) {
-		dependentelements.add(parameter.getElement());
-		ModelConverter converter = parameter.getConverter();
+	private void writeHelpResource(ModelBaseCommand mc, List<String> helpresourcetexts,
+			Element[] originatingelements) {
+		String packname = mc.getGeneratedPackageName();
+		try {
+			FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT,
+					packname == null ? "" : packname, getHelpResourceName(mc), originatingelements);
+			try (OutputStream os = resource.openOutputStream()) {
+				HelpResource.write(os, helpresourcetexts);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
-		TypeMirror targettype;
-		ModelMultiParameter multiparameter = parameter.getMultiParameter();
-		Consumer<String> callwriter;
-		if (multiparameter == null) {
-			targettype = parameter.getParameterType();
-			callwriter = call -> {
-				ps.print(thisvarname);
-				parameter.getLocation().printAccess(ps);
+	private static String getHelpResourceName(ModelBaseCommand mc) {
+		return mc.getGeneratedSimpleClassName() + ".help";
+	}
 
-				ElementKind parameterelementkind = parameter.getElement().getKind();
-				switch (parameterelementkind) {
-					case FIELD: {
-						ps.print(" = ");
-						ps.print(call);
-						ps.println(";");
-						break;
-					}
-					case METHOD: {
-						ps.print("(");
-						ps.print(call);
-						ps.println(");");
-						break;
-					}
-					default: {
-						throw new AssertionError("Unknown parameter element type: " + parameterelementkind);
-					}
-				}
-			};
-		} else {
-			targettype = multiparameter.getElementType();
-			callwriter = call -> {
-				ps.print(thisvarname);
-				parameter.getLocation().printAccess(ps);
-				ps.print(".");
-				ps.print(multiparameter.getMethodName());
-				ps.print("(");
-				ps.print(call);
-				ps.println(");");
-			};
+	private void generateParserMethod(PrintWriter ps, ModelBaseCommand cmd, Collection<TypeElement> throwntypes,
+			Set<Element> dependentelements, boolean pushparser) {
+		LinkedList<ModelCommand> commandsstack = new LinkedList<>();
+		commandsstack.addLast(cmd);
+		Map<ModelCommand, Integer> commandids = getCommandIds(cmd);
+		Map<String, Integer> suggestiontrees = new LinkedHashMap<>();
+		generateParserMethod(ps, cmd, commandsstack, throwntypes, dependentelements, commandids, suggestiontrees);
+		if (pushparser) {
+			generatePushParser(ps, cmd, throwntypes, dependentelements, commandids, suggestiontrees);
 		}
-		if (converter != null) {
-			//use the converter to convert the value
-			dependentelements.add(converter.getMethodDeclaringType());
-			callwriter.accept(getConverterParameterParseCall(converter));
-			return;
+		if (cmd.isAllowAbbreviations()) {
+			generateAbbreviationData(ps, commandids);
 		}
-		String commonconvertercall = getParameterParsingCallWithCommonConverters(ps, cmd, targettype,
-				dependentelements);
-		if (commonconvertercall != null) {
-			callwriter.accept(commonconvertercall);
+		if (suggestiontrees.isEmpty()) {
 			return;
 		}
-		TypeKind typekind = targettype.getKind();
-		switch (typekind) {
-			case BYTE: {
-				callwriter.accept(getByteParseCall());
-				break;
+
+		//lazily initialized, so the trees are only created when an unrecognized argument is encountered
+		ps.println("private static final class SuggestionData {");
+		ps.print("static final " + NameSuggestionTree.class.getCanonicalName() + "[] TREES = "
+				+ NameSuggestionTree.class.getCanonicalName() + ".decodeTrees(");
+		StringBuilder sb = new StringBuilder();
+		for (String tree : suggestiontrees.keySet()) {
+			sb.append(tree);
+			sb.append(NameSuggestionTree.TREE_TERMINATOR);
+		}
+		printChunkedStringArguments(ps, sb.toString());
+		ps.println(");");
+		ps.println("}");
+		ps.println("");
+	}
+
+	/**
+	 * Gets the expression that creates the exception for an unrecognized argument, suggesting the closest of the
+	 * given names.
+	 * 
+	 * @param suggestiontrees
+	 *            The encoded suggestion trees mapped to their indices in the generated <code>SuggestionData</code>
+	 *            class. Equal trees are shared between the commands.
+	 */
+	private static String getUnrecognizedArgumentExceptionCreation(String message, String argvar,
+			Collection<String> names, Map<String, Integer> suggestiontrees) {
+		String tree = NameSuggestionTree.encodeTree(names);
+		Integer index = suggestiontrees.get(tree);
+		if (index == null) {
+			index = suggestiontrees.size();
+			suggestiontrees.put(tree, index);
+		}
+		return "new " + UnrecognizedArgumentException.class.getCanonicalName() + "(\"" + message + "\", " + argvar
+				+ ", SuggestionData.TREES[" + index + "].suggest(" + argvar + "))";
+	}
+
+	/**
+	 * Generates the sorted name arrays that the abbreviated arguments are resolved against.
+	 * <p>
+	 * The arrays are indexed by the command identifiers.
+	 */
+	private void generateAbbreviationData(PrintWriter ps, Map<ModelCommand, Integer> commandids) {
+		//lazily initialized, so the arrays are only created when an argument is not an exact name
+		ps.println("private static final class AbbreviationData {");
+		ps.println("static final String[][] NAMES = {");
+		for (ModelCommand c : commandids.keySet()) {
+			Set<String> names = getAbbreviationResolutionNames(c);
+			if (names.isEmpty()) {
+				ps.println("{},");
+				continue;
 			}
-			case SHORT: {
-				callwriter.accept(getShortParseCall());
-				break;
+			ps.print("{ ");
+			for (Iterator<String> it = names.iterator(); it.hasNext();) {
+				ps.print(elements.getConstantExpression(it.next()));
+				if (it.hasNext()) {
+					ps.print(", ");
+				}
+			}
+			ps.println(" },");
+		}
+		ps.println("};");
+		ps.println("}");
+		ps.println("");
+	}
+
+	/**
+	 * Collects the names that can be abbreviated in the arguments of the command.
+	 * <p>
+	 * These are the names of the non-positional parameters and the subcommands.
+	 */
+	private static Set<String> getAbbreviationNames(ModelCommand cmd) {
+		Set<String> result = new TreeSet<>();
+		for (ModelParameter param : cmd.getParameters()) {
+			if (param.isMapParameter() || param.getPositional() != null) {
+				continue;
+			}
+			result.addAll(param.getNames());
+		}
+		for (ModelSubCommand sc : cmd.getSubCommands()) {
+			result.addAll(sc.getNames());
+		}
+		return result;
+	}
+
+	/**
+	 * Collects the names that the abbreviated arguments of the command are resolved against.
+	 * <p>
+	 * These are the names of the command and of its default subcommands, as the command hands the arguments it doesn't
+	 * recognize to them. An exact name of a default subcommand is not resolved to a longer name of the command, and an
+	 * abbreviation that matches names of both is ambiguous.
+	 */
+	private static Set<String> getAbbreviationResolutionNames(ModelCommand cmd) {
+		Set<String> result = new TreeSet<>();
+		for (ModelCommand c = cmd; c != null; c = c.getDefaultSubCommand()) {
+			result.addAll(getAbbreviationNames(c));
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if the parser of the command resolves the abbreviated names.
+	 * <p>
+	 * The arguments are not resolved if the command has end positional parameters, as the arguments that are not names
+	 * are their values.
+	 */
+	private static boolean isResolvingAbbreviations(ModelBaseCommand mc, ModelCommand cmd) {
+		if (!mc.isAllowAbbreviations() || getAbbreviationNames(cmd).isEmpty()) {
+			return false;
+		}
+		if (cmd.getDefaultSubCommand() == null) {
+			for (ModelParameter param : cmd.getPositionalParameters()) {
+				if (param.getPositional().value() < 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Prints the start of the <code>default</code> case of the parameter name switch that resolves the abbreviated
+	 * names.
+	 * <p>
+	 * The switch is enclosed in an <code>abbreviation_loop</code>, and is reentered with the resolved name. The names
+	 * are resolved against all names of the command and its default subcommands, so a name may not be accepted by the
+	 * switch after pipelined values. The names of the default subcommands reach the <code>default</code> case again,
+	 * and the argument is handed to the default subcommand, which resolves it the same way. The switch is only
+	 * reentered if the name changed to avoid looping.
+	 */
+	private static void printAbbreviationResolution(PrintWriter ps, int commandid) {
+		printAbbreviationResolution(ps, commandid, "abbreviation_loop");
+	}
+
+	private static void printAbbreviationResolution(PrintWriter ps, int commandid, String looplabel) {
+		ps.println("String abbreviated = ParseUtil.resolveAbbreviation(AbbreviationData.NAMES[" + commandid + "], a);");
+		ps.println("if (abbreviated != null && !abbreviated.equals(a)) {");
+		ps.println("a = abbreviated;");
+		ps.println("continue " + looplabel + ";");
+		ps.println("}");
+	}
+
+	/**
+	 * Collects the names that an unrecognized argument of the command may have been meant as.
+	 * <p>
+	 * These are the names of the non-positional parameters, the prefixes of the map parameters, and the names of the
+	 * subcommands. The names of the parent command are included for default subcommands, as the parent hands the
+	 * arguments it doesn't recognize to them.
+	 */
+	private static Set<String> getSuggestionNames(ModelCommand cmd) {
+		Set<String> result = new TreeSet<>();
+		for (ModelCommand c = cmd; c != null;) {
+			for (ModelParameter param : c.getParameters()) {
+				if (param.isMapParameter() || param.getPositional() != null) {
+					continue;
+				}
+				result.addAll(param.getNames());
+			}
+			result.addAll(c.getMapParameters().keySet());
+			for (ModelSubCommand sc : c.getSubCommands()) {
+				result.addAll(sc.getNames());
+			}
+			ModelCommand parent = c.getParentCommand();
+			if (parent == null || parent.getDefaultSubCommand() != c) {
+				break;
+			}
+			c = parent;
+		}
+		return result;
+	}
+
+	private static void printParameterAssignment(PrintWriter ps, ModelParameter parameter, String thisvarname,
+			String value) {
+		ps.print(thisvarname);
+		parameter.getLocation().printAccess(ps);
+
+		ElementKind parameterelementkind = parameter.getElement().getKind();
+		switch (parameterelementkind) {
+			case FIELD: {
+				ps.print(" = ");
+				ps.print(value);
+				ps.println(";");
+				break;
+			}
+			case METHOD: {
+				ps.print("(");
+				ps.print(value);
+				ps.println(");");
+				break;
+			}
+			default: {
+				throw new AssertionError("Unknown parameter element type: " + parameterelementkind);
+			}
+		}
+	}
+
+	private void writeParameterParsing(PrintWriter ps, ModelParameter parameter, String thisvarname, ModelCommand cmd,
+			Set<Element> dependentelements) {
+		dependentelements.add(parameter.getElement());
+		ModelConverter converter = parameter.getConverter();
+
+		TypeMirror targettype;
+		ModelMultiParameter multiparameter = parameter.getMultiParameter();
+		Consumer<String> callwriter;
+		if (multiparameter == null) {
+			targettype = parameter.getParameterType();
+			callwriter = call -> printParameterAssignment(ps, parameter, thisvarname, call);
+		} else {
+			targettype = multiparameter.getElementType();
+			callwriter = call -> {
+				ps.print(thisvarname);
+				parameter.getLocation().printAccess(ps);
+				ps.print(".");
+				ps.print(multiparameter.getMethodName());
+				ps.print("(");
+				ps.print(call);
+				ps.println(");");
+			};
+		}
+		if (converter != null) {
+			//use the converter to convert the value
+			dependentelements.add(converter.getMethodDeclaringType());
+			callwriter.accept(getConverterParameterParseCall(converter));
+			return;
+		}
+		String commonconvertercall = getParameterParsingCallWithCommonConverters(ps, cmd, targettype,
+				dependentelements);
+		if (commonconvertercall != null) {
+			callwriter.accept(commonconvertercall);
+			return;
+		}
+		TypeKind typekind = targettype.getKind();
+		switch (typekind) {
+			case BYTE: {
+				callwriter.accept(getByteParseCall());
+				break;
+			}
+			case SHORT: {
+				callwriter.accept(getShortParseCall());
+				break;
 			}
 			case INT: {
 				callwriter.accept(getIntParseCall());
@@ -1311,19 +1895,42 @@ public class CommandLineProcessor implements Processor {
 		if (targettype == null) {
 			return null;
 		}
-		for (ModelCommonConverter cc : cmd.getCommonConverters()) {
-			if (types.isSameType(cc.getTargetType(), targettype)) {
-				return cc;
+		List<ModelCommonConverter> candidates = getCommonConverterIndex(cmd).get(getErasedTypeKey(targettype));
+		if (candidates != null) {
+			for (ModelCommonConverter cc : candidates) {
+				if (types.isSameType(cc.getTargetType(), targettype)) {
+					return cc;
+				}
 			}
 		}
+		return null;
+	}
+
+	private Map<String, List<ModelCommonConverter>> getCommonConverterIndex(ModelCommand cmd) {
+		Map<String, List<ModelCommonConverter>> result = commonConverterIndexes.get(cmd);
+		if (result != null) {
+			return result;
+		}
+		result = new HashMap<>();
+		for (ModelCommonConverter cc : cmd.getCommonConverters()) {
+			result.computeIfAbsent(getErasedTypeKey(cc.getTargetType()), x -> new ArrayList<>()).add(cc);
+		}
 		ModelCommand parent = cmd.getParentCommand();
 		if (parent != null) {
-			return getCommonConverterForType(parent, targettype);
+			//the converters of the command take precedence, so add the parent converters after them
+			for (Entry<String, List<ModelCommonConverter>> entry : getCommonConverterIndex(parent).entrySet()) {
+				result.computeIfAbsent(entry.getKey(), x -> new ArrayList<>()).addAll(entry.getValue());
+			}
 		}
-		return null;
+		commonConverterIndexes.put(cmd, result);
+		return result;
+	}
+
+	private String getErasedTypeKey(TypeMirror type) {
+		return types.erasure(type).toString();
 	}
 
-	public String getParameterParsingCallWithCommonConverters(PrintStream ps, ModelCommand cmd, TypeMirror targettype,
+	public String getParameterParsingCallWithCommonConverters(PrintWriter ps, ModelCommand cmd, TypeMirror targettype,
 			Set<Element> dependentelements) {
 		ModelCommonConverter cc = getCommonConverterForType(cmd, targettype);
 		if (cc != null) {
@@ -1337,14 +1944,14 @@ public class CommandLineProcessor implements Processor {
 		return converter.getMethodDeclaringType().getQualifiedName() + "." + converter.getMethodName() + "(a, args)";
 	}
 
-	private static void removeSubCommandNamesFromCollection(Collection<String> coll,
+	static void removeSubCommandNamesFromCollection(Collection<String> coll,
 			Iterable<? extends ModelSubCommand> subcommands) {
 		for (ModelSubCommand sc : subcommands) {
 			coll.removeAll(sc.getNames());
 		}
 	}
 
-	private void writeFindHelpStringCode(PrintStream ps, ModelCommand currentcmd,
+	private void writeFindHelpStringCode(PrintWriter ps, ModelCommand currentcmd,
 			LinkedList<ModelCommand> commandstack) {
 		Collection<ModelSubCommand> subcommands = currentcmd.getSubCommands();
 		if (subcommands.isEmpty()) {
@@ -1379,13 +1986,13 @@ public class CommandLineProcessor implements Processor {
 
 	}
 
-	private static void writeReturnGetHelpString(PrintStream ps, LinkedList<ModelCommand> commandstack) {
+	private static void writeReturnGetHelpString(PrintWriter ps, LinkedList<ModelCommand> commandstack) {
 		ps.print("return ");
 		writeGetHelpStringCall(ps, commandstack);
 		ps.println(";");
 	}
 
-	private static void writeGetHelpStringCall(PrintStream ps, LinkedList<ModelCommand> commandstack) {
+	private static void writeGetHelpStringCall(PrintWriter ps, LinkedList<ModelCommand> commandstack) {
 		ps.println("getHelpString(");
 		for (Iterator<ModelCommand> it = commandstack.iterator(); it.hasNext();) {
 			ModelCommand argcmd = it.next();
@@ -1400,8 +2007,17 @@ public class CommandLineProcessor implements Processor {
 		ps.print(")");
 	}
 
-	private void generateParserMethod(PrintStream ps, ModelCommand cmd, LinkedList<ModelCommand> commandstack,
-			Collection<TypeElement> throwntypes, Set<Element> dependentelements) {
+	/**
+	 * Generates the parser method for the command.
+	 * 
+	 * @param commandids
+	 *            The identifiers of the commands.
+	 * @param suggestiontrees
+	 *            The suggestion trees used by the generated methods.
+	 */
+	private void generateParserMethod(PrintWriter ps, ModelCommand cmd, LinkedList<ModelCommand> commandstack,
+			Collection<TypeElement> throwntypes, Set<Element> dependentelements, Map<ModelCommand, Integer> commandids,
+			Map<String, Integer> suggestiontrees) {
 		ModelBaseCommand first = (ModelBaseCommand) commandstack.getFirst();
 		if (generateHelpInfo && commandstack.size() == 1) {
 			ps.println("private static String findHelpString(java.util.Iterator<String> args) {");
@@ -1434,8 +2050,11 @@ public class CommandLineProcessor implements Processor {
 		if (thisvarname == null) {
 			throw new AssertionError("Failed to determine command var name.");
 		}
-		final String fthisvarname = thisvarname;
 		ps.println(") {");
+		List<ModelParameter> closeableparams = getCloseableMultiParameters(cmd);
+		if (!closeableparams.isEmpty()) {
+			ps.println("try {");
+		}
 		ps.println("String a;");
 		Collection<ModelSubCommand> cmdsubcommands = cmd.getSubCommands();
 		if (generateHelpInfo && commandstack.size() == 1) {
@@ -1557,7 +2176,14 @@ public class CommandLineProcessor implements Processor {
 				}
 
 				{
+					boolean abbreviations = isResolvingAbbreviations(first, cmd);
+					//true if the switch can complete normally, with a break statement
+					boolean switchbreaks = false;
 					ps.println("try {");
+					if (abbreviations) {
+						ps.println("abbreviation_loop:");
+						ps.println("while (true) {");
+					}
 					ps.println("switch (a) {");
 
 					for (ModelParameter param : cmdparameters) {
@@ -1570,6 +2196,17 @@ public class CommandLineProcessor implements Processor {
 						ps.println("args.next();");
 						printRequiredAssign(ps, reqparams, param);
 						writeParameterParsing(ps, param, thisvarname, cmd, dependentelements);
+						switchbreaks = true;
+						if (param.isPipelined()) {
+							//the remaining arguments are parsed on a separate thread while the command is called
+							ps.println("result.streamedArguments = ParseUtil.streamRemainingArguments(args);");
+							ps.print("result.pipelinedParser = new " + PipelinedParser.class.getCanonicalName() + "(");
+							printPipelinedParserRunnable(ps, commandstack);
+							ps.print(", ");
+							ps.print(thisvarname);
+							param.getLocation().printAccess(ps);
+							ps.println(");");
+						}
 						ps.println("break;");
 						ps.println("}");
 					}
@@ -1602,11 +2239,22 @@ public class CommandLineProcessor implements Processor {
 
 					if (defaultcommand != null) {
 						writeCaseLabels(ps, defaultcommand.getNames());
-						ps.println();
-						ps.println(INDENTATION + "args.next();");
-						ps.println(INDENTATION + "//fall-through");
+						if (abbreviations) {
+							//the name would be resolved to itself in the default case
+							ps.println(" {");
+							ps.println("args.next();");
+							ps.println("break param_loop;");
+							ps.println("}");
+						} else {
+							ps.println();
+							ps.println(INDENTATION + "args.next();");
+							ps.println(INDENTATION + "//fall-through");
+						}
 					}
 					ps.println("default: {");
+					if (abbreviations) {
+						printAbbreviationResolution(ps, commandids.get(cmd));
+					}
 					if (defaultcommand != null) {
 						ps.println("break param_loop;");
 					} else {
@@ -1614,13 +2262,19 @@ public class CommandLineProcessor implements Processor {
 							//has more positional parameters, do not throw the exception
 							ps.println("break param_loop;");
 						} else {
-							ps.println("throw new " + UnrecognizedArgumentException.class.getCanonicalName()
-									+ "(\"Unrecognized argument\", a);");
+							ps.println("throw " + getUnrecognizedArgumentExceptionCreation("Unrecognized argument", "a",
+									getSuggestionNames(cmd), suggestiontrees) + ";");
 						}
 					}
 					ps.println("}"); // default:
 
 					ps.println("}"); // switch
+					if (abbreviations) {
+						if (switchbreaks) {
+							ps.println("break;");
+						}
+						ps.println("}"); // abbreviation_loop
+					}
 
 					ps.println("} catch (" + ArgumentException.class.getCanonicalName() + " e) {");
 					//rethrow
@@ -1632,6 +2286,14 @@ public class CommandLineProcessor implements Processor {
 
 				}
 				ps.println("}");
+				ModelParameter pipelinedparam = getPipelinedParameter(cmd);
+				if (pipelinedparam != null) {
+					ps.println("if (result.pipelinedParser == null) {");
+					ps.print(thisvarname);
+					pipelinedparam.getLocation().printAccess(ps);
+					ps.println(".finish();");
+					ps.println("}");
+				}
 				if (defaultcommand != null) {
 					ps.print("parse(args");
 					String currentvarname = "result";
@@ -1645,217 +2307,2214 @@ public class CommandLineProcessor implements Processor {
 					ps.println(");");
 				} else {
 					if (positionalindex < posparams.size()) {
-						ps.println("end_positional_block:");
-						ps.println("{");
-						for (int n = posparams.size(); positionalindex < n; positionalindex++) {
-							ModelParameter posparam = posparams.get(positionalindex);
-							ps.println("if (!args.hasNext()) { ");
-							ps.println("break end_positional_block;");
+						ModelParameter streamedparam = posparams.get(posparams.size() - 1);
+						int endposcount = posparams.size();
+						if (streamedparam.getStreamedArguments() != null) {
+							--endposcount;
+						} else {
+							streamedparam = null;
+						}
+						if (positionalindex < endposcount) {
+							ps.println("end_positional_block:");
+							ps.println("{");
+							for (; positionalindex < endposcount; positionalindex++) {
+								ModelParameter posparam = posparams.get(positionalindex);
+								ps.println("if (!args.hasNext()) { ");
+								ps.println("break end_positional_block;");
+								ps.println("}");
+								ps.print("a = ");
+								ps.print(elements.getConstantExpression(posparam.getNames().iterator().next()));
+								ps.println(";");
+								printRequiredAssign(ps, reqparams, posparam);
+								writeParameterParsing(ps, posparam, thisvarname, cmd, dependentelements);
+							}
+							//end_positional_block end:
 							ps.println("}");
-							ps.print("a = ");
-							ps.print(elements.getConstantExpression(posparam.getNames().iterator().next()));
-							ps.println(";");
-							printRequiredAssign(ps, reqparams, posparam);
-							writeParameterParsing(ps, posparam, thisvarname, cmd, dependentelements);
 						}
-						//end_positional_block end:
-						ps.println("}");
-						ps.println("if (args.hasNext()) {");
-						ps.println("throw new " + UnrecognizedArgumentException.class.getCanonicalName()
-								+ "(\"Unrecognized argument\", args.peek());");
-						ps.println("}");
-					}
-
-					TypeElement cmdtypeelem = cmd.getTypeElement();
-					List<ExecutableElement> callmethods = getMethodsWithName(cmdtypeelem, "call");
-					List<ModelCommand> querycommands = commandstack.subList(0, commandstack.size() - 1);
-					ModelMethodCall callmethodcall = getBestMethodMatch(callmethods, querycommands);
-					if (callmethodcall == null) {
-						ps.print("result.subCommandCaller = ");
-						printRunnableLambda(ps, () -> {
-							ps.println("throw new UnsupportedOperationException(\"no call method in "
-									+ cmdtypeelem.getQualifiedName() + "\");");
-						});
-						ps.println(";");
-					} else {
-						ps.print("result.subCommandCaller = ");
-						printRunnableLambda(ps, () -> {
-							int initi = 0;
-							String initvarname = "result";
-							while (initi < commandstack.size()) {
-								List<ModelCommand> initquerycommands = commandstack.subList(0, initi);
-								ModelMethodCall call = getBestMethodMatch(
-										getMethodsWithName(commandstack.get(initi).getTypeElement(), "init"),
-										initquerycommands);
-								if (call != null) {
-									dependentelements.add(call.executable);
-									printMethodCallWithCommandResultArguments(ps, initvarname, call);
-									addThrownTypes(call.executable, throwntypes);
-								}
-								initvarname = "sub" + initvarname;
-								++initi;
+						if (streamedparam != null) {
+							//the remaining arguments are handed to the command lazily, the streamed view is closed
+							//in callCommand()
+							//compact lists are collected eagerly instead
+							dependentelements.add(streamedparam.getElement());
+							if (streamedparam.isRequired()) {
+								ps.println("if (args.hasNext()) {");
+								printRequiredAssign(ps, reqparams, streamedparam);
+								ps.println("}");
 							}
-							dependentelements.add(callmethodcall.executable);
-							printMethodCallWithCommandResultArguments(ps, fthisvarname, callmethodcall);
-							addThrownTypes(callmethodcall.executable, throwntypes);
-							int closei = commandstack.size();
-							String closevarname = fthisvarname;
-							while (closei-- > 0) {
-								List<ModelCommand> closequerycommands = commandstack.subList(0, closei);
-								ModelMethodCall call = getBestMethodMatch(
-										getMethodsWithName(commandstack.get(closei).getTypeElement(), "close"),
-										closequerycommands);
-								if (call != null) {
-									dependentelements.add(call.executable);
-									printMethodCallWithCommandResultArguments(ps, closevarname, call);
-									addThrownTypes(call.executable, throwntypes);
+							if (streamedparam.getStreamedArguments().isLazy()) {
+								ps.println("result.streamedArguments = ParseUtil.streamRemainingArguments(args);");
+							}
+							switch (streamedparam.getStreamedArguments()) {
+								case ITERATOR: {
+									printParameterAssignment(ps, streamedparam, thisvarname,
+											"result.streamedArguments");
+									break;
+								}
+								case STREAM: {
+									printParameterAssignment(ps, streamedparam, thisvarname,
+											"result.streamedArguments.stream()");
+									break;
+								}
+								case COMPACT_LIST: {
+									printParameterAssignment(ps, streamedparam, thisvarname,
+											"ParseUtil.collectRemainingArguments(args)");
+									break;
+								}
+								default: {
+									throw new AssertionError(
+											"Unknown streamed arguments type: " + streamedparam.getStreamedArguments());
 								}
-								closevarname = closevarname.substring(3);
 							}
-						});
-						ps.println(";");
+						} else {
+							ps.println("if (args.hasNext()) {");
+							ps.println("a = args.peek();");
+							ps.println("throw " + getUnrecognizedArgumentExceptionCreation("Unrecognized argument", "a",
+									getSuggestionNames(cmd), suggestiontrees) + ";");
+							ps.println("}");
+						}
 					}
+
+					printSubCommandCallerAssignment(ps, cmd, commandstack, thisvarname, throwntypes, dependentelements,
+							commandids);
 				}
 
 				//parse_block end:
 				ps.println("}");
 			}
-			if (!reqparams.isEmpty()) {
-				int i = 0;
-				while (i < reqcount) {
-					long checkflag;
-					int diff = reqcount - i;
-					if (diff >= 64) {
-						checkflag = 0xFFFFFFFFFFFFFFFFL;
-					} else {
-						checkflag = (1 << diff) - 1;
-					}
-					String cfconst = toHexLongConstantString(checkflag);
-					ps.println("if ((requires" + (i / 64) + " & " + cfconst + ") != " + cfconst + ") {");
-					//TODO print info about which parameters are missing
-					ps.println("throw new " + MissingArgumentException.class.getCanonicalName()
-							+ "(\"Required parameters missing.\");");
-					ps.println("}");
-					i += 64;
-				}
+			printRequiredCheck(ps, reqcount, "requires");
+		}
+		if (!closeableparams.isEmpty()) {
+			//the command won't be called, so it can't close the collections that may hold resources
+			ps.println("} catch (RuntimeException | Error e) {");
+			for (ModelParameter param : closeableparams) {
+				ps.print("if (" + thisvarname);
+				param.getLocation().printAccess(ps);
+				ps.println(" != null) {");
+				ps.println("try {");
+				//the implementation may not declare the IOException
+				ps.print("((java.io.Closeable) " + thisvarname);
+				param.getLocation().printAccess(ps);
+				ps.println(").close();");
+				ps.println("} catch (java.io.IOException | RuntimeException ce) {");
+				ps.println("e.addSuppressed(ce);");
+				ps.println("}");
+				ps.println("}");
 			}
+			ps.println("throw e;");
+			ps.println("}");
 		}
 		ps.println("}");
 		ps.println("");
+		ModelParameter pipelinedparam = getPipelinedParameter(cmd);
+		if (pipelinedparam != null) {
+			int abbreviationid = isResolvingAbbreviations(first, cmd) ? commandids.get(cmd) : -1;
+			generatePipelinedParserMethod(ps, cmd, commandstack, pipelinedparam, thisvarname, dependentelements,
+					suggestiontrees, abbreviationid);
+		}
 		for (ModelSubCommand sub : cmdsubcommands) {
 			commandstack.addLast(sub);
-			generateParserMethod(ps, sub, commandstack, throwntypes, dependentelements);
+			generateParserMethod(ps, sub, commandstack, throwntypes, dependentelements, commandids, suggestiontrees);
 			commandstack.removeLast();
 		}
 	}
 
-	private static void printMethodCallWithCommandResultArguments(PrintStream ps, String thisvarname,
-			ModelMethodCall cmethod) {
-		ps.print(thisvarname);
-		ps.print(".");
-		ps.print(cmethod.executable.getSimpleName());
-		ps.print("(");
-		for (Iterator<Integer> it = cmethod.argumentQueryIndices.iterator(); it.hasNext();) {
-			Integer argidx = it.next();
-			int subc = argidx;
-			while (subc-- > 0) {
-				ps.print("sub");
+	/**
+	 * Gets the multi-parameter fields of the command that implement {@link Closeable}, e.g.
+	 * {@link SpillingStringCollection}.
+	 */
+	private List<ModelParameter> getCloseableMultiParameters(ModelCommand cmd) {
+		List<ModelParameter> result = new ArrayList<>();
+		for (ModelParameter param : cmd.getParameters()) {
+			if (param.getMultiParameter() == null || param.getElement().getKind() != ElementKind.FIELD) {
+				continue;
 			}
-			ps.print("result");
-			if (it.hasNext()) {
-				ps.print(", ");
+			if (types.isAssignable(param.getParameterType(), getCloseableType())) {
+				result.add(param);
 			}
 		}
-		ps.println(");");
+		return result;
 	}
 
-	private static void printRequiredAssign(PrintStream ps, List<ModelParameter> reqparams, ModelParameter param) {
-		if (param.isRequired()) {
-			int bitidx = reqparams.indexOf(param);
-			String cfconst = toHexLongConstantString(1L << (bitidx % 64));
-			ps.println("requires" + (bitidx / 64) + " |= " + cfconst + ";");
+	/**
+	 * Prints the assignment of the runnable that calls the parsed command, and records the parsed commands for
+	 * <code>toArguments()</code>.
+	 * <p>
+	 * The command objects are in the variables named after their position in the command stack: <code>result</code>,
+	 * <code>subresult</code>, and so on.
+	 */
+	private void printSubCommandCallerAssignment(PrintWriter ps, ModelCommand cmd,
+			LinkedList<ModelCommand> commandstack, String thisvarname, Collection<TypeElement> throwntypes,
+			Set<Element> dependentelements, Map<ModelCommand, Integer> commandids) {
+		TypeElement cmdtypeelem = cmd.getTypeElement();
+		List<ModelCommand> querycommands = commandstack.subList(0, commandstack.size() - 1);
+		ModelMethodCall callmethodcall = getBestMethodMatch(cmdtypeelem, "call", querycommands);
+		if (callmethodcall == null) {
+			ps.print("result.subCommandCaller = ");
+			printRunnableLambda(ps, () -> {
+				ps.println("throw new UnsupportedOperationException(\"no call method in "
+						+ cmdtypeelem.getQualifiedName() + "\");");
+			});
+			ps.println(";");
+		} else {
+			ps.print("result.subCommandCaller = ");
+			printRunnableLambda(ps, () -> {
+				int initi = 0;
+				String initvarname = "result";
+				while (initi < commandstack.size()) {
+					List<ModelCommand> initquerycommands = commandstack.subList(0, initi);
+					ModelMethodCall call = getBestMethodMatch(commandstack.get(initi).getTypeElement(),
+							"init", initquerycommands);
+					if (call != null) {
+						dependentelements.add(call.executable);
+						printMethodCallWithCommandResultArguments(ps, initvarname, call);
+						addThrownTypes(call.executable, throwntypes);
+					}
+					initvarname = "sub" + initvarname;
+					++initi;
+				}
+				dependentelements.add(callmethodcall.executable);
+				printMethodCallWithCommandResultArguments(ps, thisvarname, callmethodcall);
+				addThrownTypes(callmethodcall.executable, throwntypes);
+				int closei = commandstack.size();
+				String closevarname = thisvarname;
+				while (closei-- > 0) {
+					List<ModelCommand> closequerycommands = commandstack.subList(0, closei);
+					ModelMethodCall call = getBestMethodMatch(commandstack.get(closei).getTypeElement(),
+							"close", closequerycommands);
+					if (call != null) {
+						dependentelements.add(call.executable);
+						printMethodCallWithCommandResultArguments(ps, closevarname, call);
+						addThrownTypes(call.executable, throwntypes);
+					}
+					closevarname = closevarname.substring(3);
+				}
+			});
+			ps.println(";");
+		}
+		if (generateToArguments && supportsLambda) {
+			//the parsed commands are recorded for toArguments() without allocating
+			ps.println("result.commandId = " + commandids.get(cmd) + ";");
+			String subvarname = "subresult";
+			for (int i = 1; i < commandstack.size(); i++) {
+				ps.println("result.subCommand" + i + " = " + subvarname + ";");
+				subvarname = "sub" + subvarname;
+			}
 		}
 	}
 
-	private static String toHexLongConstantString(long checkflag) {
-		String cfconst = "0x" + Long.toUnsignedString(checkflag, 16) + "L";
-		return cfconst;
-	}
-
-	private void generateForModel(ModelBaseCommand mc, PrintStream ps, Set<Element> dependentelements) {
-		String packname = mc.getGeneratedPackageName();
-		if (packname != null) {
-			ps.println("package " + packname + ";");
-			ps.println();
+	/**
+	 * Generates the <code>pushParser()</code> method and the {@link PushParser} implementation that it returns.
+	 * <p>
+	 * The parser processes the arguments the same way as the <code>parse</code> methods, but it is driven by the
+	 * caller. Instead of the nested <code>parse</code> calls, the current command level, the positional index and the
+	 * required parameter bitmasks of the commands are kept in fields between the calls.
+	 * <p>
+	 * The values are parsed by the same code as in the <code>parse</code> methods, over the arguments received after
+	 * the parameter name. If the value parser reaches the end of them, it is interrupted, and run again when the next
+	 * argument arrives, so the converters may be called multiple times for a value. The arguments that the value
+	 * parser doesn't consume are processed again as parameter names.
+	 */
+	private void generatePushParser(PrintWriter ps, ModelBaseCommand mc, Collection<TypeElement> throwntypes,
+			Set<Element> dependentelements, Map<ModelCommand, Integer> commandids,
+			Map<String, Integer> suggestiontrees) {
+		String cname = mc.getCommandClassQualifiedName();
+		String parsertype = PushParser.class.getCanonicalName();
+		String itertype = ParsingIterator.class.getCanonicalName();
+
+		Set<String> helpcommandname = Collections.emptySet();
+		if (generateHelpInfo) {
+			helpcommandname = new LinkedHashSet<>(mc.getHelpCommandName());
+			removeSubCommandNamesFromCollection(helpcommandname, mc.getSubCommands());
 		}
-		ps.println("import " + ParseUtil.class.getCanonicalName() + ";");
-		ps.println();
-		String cname = mc.getGeneratedSimpleClassName();
-		ps.println("@SuppressWarnings({ \"fallthrough\" })");
-		ps.println("public class " + cname + " extends " + mc.getTypeElement().getQualifiedName() + " {");
-		{
-			Collection<TypeElement> throwntypes = new LinkedHashSet<>();
-
-			ps.println("public static " + cname + " parse(java.util.Iterator<? extends String> arguments) {");
-			{
-				String iteratorcreatorfunctionname;
-				if (commandFileEnabled) {
-					iteratorcreatorfunctionname = "createCommandFileArgumentIterator";
-				} else {
-					iteratorcreatorfunctionname = "createSimpleArgumentIterator";
-				}
-				ps.println("try (" + ParsingIterator.class.getCanonicalName() + " args = ParseUtil."
-						+ iteratorcreatorfunctionname + "(arguments)) {");
-				ps.println(cname + " result = new " + cname + "();");
-				ps.println("parse(args, result);");
-				ps.println("return result;");
-				ps.println("} catch (java.io.IOException e) {");
-				ps.println("throw new " + UncheckedIOException.class.getCanonicalName()
-						+ "(\"Failed to close argument iterator.\", e);");
-				ps.println("}");
+		Map<ModelCommand, List<ModelParameter>> closeableparams = new LinkedHashMap<>();
+		for (ModelCommand c : commandids.keySet()) {
+			List<ModelParameter> params = getCloseableMultiParameters(c);
+			if (!params.isEmpty()) {
+				closeableparams.put(c, params);
 			}
-			ps.println("}");
-			ps.println("");
+		}
 
-			if (generateHelpInfo) {
-				generatePrintHelpMethod(ps, mc, dependentelements);
-			}
-			generateParserMethod(ps, mc, throwntypes, dependentelements);
+		ps.println("public static " + parsertype + "<" + cname + "> pushParser() {");
+		ps.println("return new PushParserImpl();");
+		ps.println("}");
+		ps.println("");
 
-			if (mc.createMainMethod()) {
-				ps.print("public static void main(String... args)");
-				printThrowsTypes(ps, throwntypes);
-				ps.println(" {");
-				ps.println("parse(java.util.Arrays.asList(args).iterator()).callCommand();");
-				ps.println("}");
-				ps.println("");
+		ps.println("private static final class PushParserImpl implements " + parsertype + "<" + cname + "> {");
+		ps.println("private static final ArgumentsPending PENDING = new ArgumentsPending();");
+		ps.println("");
+		ps.println("private final " + cname + " result = new " + cname + "();");
+		for (ModelCommand c : commandids.keySet()) {
+			if (c == mc) {
+				continue;
 			}
-
-			if (!throwntypes.isEmpty()) {
-				if (supportsLambda) {
-					ps.println("@FunctionalInterface");
-				}
-				ps.println("private interface Runnable {");
-				ps.print("public void run()");
-				printThrowsTypes(ps, throwntypes);
-				ps.println(";");
-				ps.println("}");
-				ps.println("");
+			dependentelements.add(c.getTypeElement());
+			ps.println("private " + c.getCommandClassQualifiedName() + " " + getPushParserCommandVarName(c, commandids)
+					+ ";");
+		}
+		for (ModelCommand c : commandids.keySet()) {
+			int reqcount = c.getRequiredParameters().size();
+			for (int i = 0; i < reqcount; i += 64) {
+				ps.println("private long requires" + commandids.get(c) + "_" + (i / 64) + ";");
 			}
-			ps.println("private Runnable subCommandCaller;");
-			ps.println("");
+		}
+		ps.println("private int level;");
+		ps.println("private int positional;");
+		ps.println("private boolean endPositional;");
+		//the parameter of the current command that the value is parsed for, and the arguments received for it
+		ps.println("private int value = -1;");
+		ps.println("private String name;");
+		ps.println("private final java.util.ArrayList<String> values = new java.util.ArrayList<>();");
+		ps.println("private int index;");
+		ps.println("private boolean ending;");
+		ps.println("private final ValueIterator args = new ValueIterator();");
+		if (!helpcommandname.isEmpty()) {
+			ps.println("private boolean started;");
+			ps.println("private java.util.List<String> help;");
+		}
+		ps.println("");
 
-			ps.println("private " + cname + "() {");
+		ps.println("@Override");
+		ps.println("public void feed(String argument) {");
+		ps.println("java.util.Objects.requireNonNull(argument, \"argument\");");
+		ps.println("checkState();");
+		ps.println("try {");
+		if (commandFileEnabled) {
+			ps.println("try (" + itertype + " it = "
+					+ getArgumentIteratorCreation("java.util.Collections.singletonList(argument).iterator()") + ") {");
+			ps.println("while (it.hasNext()) {");
+			ps.println("push(it.next());");
 			ps.println("}");
-			ps.println("");
+			ps.println("} catch (java.io.IOException e) {");
+			ps.println("throw new " + UncheckedIOException.class.getCanonicalName()
+					+ "(\"Failed to close argument iterator.\", e);");
+			ps.println("}");
+		} else {
+			ps.println("push(argument);");
+		}
+		ps.println("} catch (RuntimeException | Error e) {");
+		ps.println("fail(e);");
+		ps.println("throw e;");
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+
+		ps.println("@Override");
+		ps.println("public " + cname + " finish() {");
+		ps.println("checkState();");
+		ps.println("try {");
+		if (!helpcommandname.isEmpty()) {
+			ps.println("if (help != null) {");
+			ps.println("String helpstr = findHelpString(help.iterator());");
+			ps.print("result.subCommandCaller = ");
+			printRunnableLambda(ps, () -> {
+				ps.println("System.out.println(helpstr);");
+			});
+			ps.println(";");
+			ps.println("level = -1;");
+			ps.println("return result;");
+			ps.println("}");
+		}
+		ps.println("while (value >= 0) {");
+		ps.println("ending = true;");
+		ps.println("parseValue();");
+		ps.println("}");
+		ps.println("switch (level) {");
+		for (ModelCommand c : commandids.keySet()) {
+			int id = commandids.get(c);
+			ps.println("case " + id + ": {");
+			ps.println("finish" + id + "();");
+			//the parent commands are checked after the subcommands, the same way as in parse()
+			for (ModelCommand parent = c.getParentCommand(); parent != null; parent = parent.getParentCommand()) {
+				printRequiredCheck(ps, parent.getRequiredParameters().size(),
+						"requires" + commandids.get(parent) + "_");
+			}
+			ps.println("break;");
+			ps.println("}");
+		}
+		ps.println("}");
+		ps.println("level = -1;");
+		ps.println("return result;");
+		ps.println("} catch (RuntimeException | Error e) {");
+		ps.println("fail(e);");
+		ps.println("throw e;");
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+
+		ps.println("@Override");
+		ps.println("public void close() throws java.io.IOException {");
+		ps.println("if (level < 0) {");
+		ps.println("return;");
+		ps.println("}");
+		ps.println("level = -1;");
+		if (!closeableparams.isEmpty()) {
+			ps.println("java.io.IOException exc = null;");
+			for (Entry<ModelCommand, List<ModelParameter>> entry : closeableparams.entrySet()) {
+				for (ModelParameter param : entry.getValue()) {
+					printPushParserCloseableCheck(ps, entry.getKey(), param, commandids);
+					ps.println("try {");
+					printPushParserCloseCall(ps, entry.getKey(), param, commandids);
+					ps.println("} catch (java.io.IOException e) {");
+					ps.println("if (exc == null) {");
+					ps.println("exc = e;");
+					ps.println("} else {");
+					ps.println("exc.addSuppressed(e);");
+					ps.println("}");
+					ps.println("}");
+					ps.println("}");
+				}
+			}
+			ps.println("if (exc != null) {");
+			ps.println("throw exc;");
+			ps.println("}");
+		}
+		ps.println("}");
+		ps.println("");
+
+		ps.println("private void checkState() {");
+		ps.println("if (level < 0) {");
+		ps.println("throw new IllegalStateException(\"The parser is finished, failed, or closed.\");");
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+
+		//the commands won't be called, so they can't close the collections that may hold resources
+		ps.println("private void fail(Throwable e) {");
+		ps.println("level = -1;");
+		for (Entry<ModelCommand, List<ModelParameter>> entry : closeableparams.entrySet()) {
+			for (ModelParameter param : entry.getValue()) {
+				printPushParserCloseableCheck(ps, entry.getKey(), param, commandids);
+				ps.println("try {");
+				printPushParserCloseCall(ps, entry.getKey(), param, commandids);
+				ps.println("} catch (java.io.IOException | RuntimeException ce) {");
+				ps.println("e.addSuppressed(ce);");
+				ps.println("}");
+				ps.println("}");
+			}
+		}
+		ps.println("}");
+		ps.println("");
+
+		ps.println("private void push(String arg) {");
+		ps.println("if (value >= 0) {");
+		ps.println("values.add(arg);");
+		ps.println("parseValue();");
+		ps.println("return;");
+		ps.println("}");
+		if (!helpcommandname.isEmpty()) {
+			ps.println("if (help != null) {");
+			ps.println("help.add(arg);");
+			ps.println("return;");
+			ps.println("}");
+		}
+		ps.println("switch (level) {");
+		for (ModelCommand c : commandids.keySet()) {
+			int id = commandids.get(c);
+			ps.println("case " + id + ": {");
+			ps.println("push" + id + "(arg);");
+			ps.println("break;");
+			ps.println("}");
+		}
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+
+		ps.println("private void parseValue() {");
+		ps.println("index = 0;");
+		ps.println("try {");
+		ps.println("switch (level) {");
+		for (ModelCommand c : commandids.keySet()) {
+			if (getPushParserValueParameters(c).isEmpty()) {
+				continue;
+			}
+			int id = commandids.get(c);
+			ps.println("case " + id + ": {");
+			ps.println("value" + id + "();");
+			ps.println("break;");
+			ps.println("}");
+		}
+		ps.println("}");
+		ps.println("} catch (ArgumentsPending e) {");
+		//wait for the next argument
+		ps.println("return;");
+		ps.println("}");
+		ps.println("value = -1;");
+		ps.println("if (index == values.size()) {");
+		ps.println("values.clear();");
+		ps.println("return;");
+		ps.println("}");
+		//the arguments that the value parser didn't consume are processed as if they arrived after the value
+		ps.println("String[] rest = values.subList(index, values.size()).toArray(new String[0]);");
+		ps.println("values.clear();");
+		ps.println("ending = false;");
+		ps.println("for (String r : rest) {");
+		ps.println("push(r);");
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+
+		for (ModelCommand c : commandids.keySet()) {
+			generatePushParserCommandMethods(ps, mc, c, throwntypes, dependentelements, commandids, suggestiontrees,
+					helpcommandname);
+		}
+
+		//reads the arguments received for the value, and interrupts the value parser if it needs more
+		ps.println("private final class ValueIterator implements " + itertype + " {");
+		ps.println("@Override");
+		ps.println("public boolean hasNext() {");
+		ps.println("if (index < values.size()) {");
+		ps.println("return true;");
+		ps.println("}");
+		ps.println("if (ending) {");
+		ps.println("return false;");
+		ps.println("}");
+		ps.println("throw PENDING;");
+		ps.println("}");
+		ps.println("");
+		ps.println("@Override");
+		ps.println("public String next() {");
+		ps.println("String result = peek();");
+		ps.println("++index;");
+		ps.println("return result;");
+		ps.println("}");
+		ps.println("");
+		ps.println("@Override");
+		ps.println("public String peek() {");
+		ps.println("if (index < values.size()) {");
+		ps.println("return values.get(index);");
+		ps.println("}");
+		ps.println("if (ending) {");
+		ps.println("throw new java.util.NoSuchElementException();");
+		ps.println("}");
+		ps.println("throw PENDING;");
+		ps.println("}");
+		ps.println("");
+		ps.println("@Override");
+		ps.println("public void close() {");
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+
+		ps.println("private static final class ArgumentsPending extends RuntimeException {");
+		ps.println("private static final long serialVersionUID = 1L;");
+		ps.println("");
+		ps.println("ArgumentsPending() {");
+		ps.println("super(null, null, false, false);");
+		ps.println("}");
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+	}
+
+	/**
+	 * Generates the methods of the push parser that process the arguments and finish the parsing on the level of the
+	 * command.
+	 */
+	private void generatePushParserCommandMethods(PrintWriter ps, ModelBaseCommand mc, ModelCommand cmd,
+			Collection<TypeElement> throwntypes, Set<Element> dependentelements, Map<ModelCommand, Integer> commandids,
+			Map<String, Integer> suggestiontrees, Set<String> helpcommandname) {
+		int id = commandids.get(cmd);
+		String thisvarname = getPushParserCommandVarName(cmd, commandids);
+		String reqvarprefix = "requires" + id + "_";
+		List<ModelParameter> reqparams = cmd.getRequiredParameters();
+		List<ModelParameter> posparams = cmd.getPositionalParameters();
+		List<ModelParameter> valueparams = getPushParserValueParameters(cmd);
+		ModelSubCommand defaultcommand = cmd.getDefaultSubCommand();
+		int leadingcount = 0;
+		while (leadingcount < posparams.size() && posparams.get(leadingcount).getPositional().value() >= 0) {
+			++leadingcount;
+		}
+		//the end positionals are only parsed if there's no default subcommand to hand the arguments to
+		boolean endpositionals = defaultcommand == null && leadingcount < posparams.size();
+		boolean abbreviations = isResolvingAbbreviations(mc, cmd);
+
+		ps.println("private void push" + id + "(String arg) {");
+		ps.println("String a = arg;");
+		if (cmd == mc && !helpcommandname.isEmpty()) {
+			ps.println("if (!started) {");
+			ps.println("started = true;");
+			ps.print("if (");
+			for (Iterator<String> it = helpcommandname.iterator(); it.hasNext();) {
+				ps.print(elements.getConstantExpression(it.next()));
+				ps.print(".equals(a)");
+				if (it.hasNext()) {
+					ps.print(" || ");
+				}
+			}
+			ps.println(") {");
+			ps.println("help = new java.util.ArrayList<>();");
+			ps.println("return;");
+			ps.println("}");
+			ps.println("}");
+		}
+		if (leadingcount > 0) {
+			ps.println("if (positional < " + leadingcount + ") {");
+			ps.println("switch (positional++) {");
+			for (int i = 0; i < leadingcount; i++) {
+				ps.println("case " + i + ": {");
+				printPushParserPositionalStart(ps, posparams.get(i), reqparams, valueparams, reqvarprefix);
+				ps.println("break;");
+				ps.println("}");
+			}
+			ps.println("}");
+			ps.println("values.add(a);");
+			ps.println("parseValue();");
+			ps.println("return;");
+			ps.println("}");
+		}
+		if (endpositionals) {
+			ps.println("if (!endPositional) {");
+		}
+		for (Entry<String, ModelParameter> entry : cmd.getMapParameters().entrySet()) {
+			ModelParameter param = entry.getValue();
+			String prefix = entry.getKey();
+			ps.println("if (a.startsWith(" + elements.getConstantExpression(prefix) + ")) {");
+			printRequiredAssign(ps, reqparams, param, reqvarprefix);
+			ps.println("String[] mapkeyvalue = { null, null };");
+			ps.println("ParseUtil.parseEqualsFormatArgument(" + prefix.length() + ", a, mapkeyvalue);");
+			ps.print(thisvarname);
+			param.getLocation().printAccess(ps);
+			ElementKind parameterelementkind = param.getElement().getKind();
+			switch (parameterelementkind) {
+				case FIELD: {
+					ps.println(".put(mapkeyvalue[0], mapkeyvalue[1]);");
+					break;
+				}
+				case METHOD: {
+					ps.println("(mapkeyvalue[0], mapkeyvalue[1]);");
+					break;
+				}
+				default: {
+					throw new AssertionError("Unknown parameter element type: " + parameterelementkind);
+				}
+			}
+			ps.println("return;");
+			ps.println("}");
+		}
+		if (abbreviations) {
+			ps.println("abbreviation_loop:");
+			ps.println("while (true) {");
+		}
+		ps.println("switch (a) {");
+		for (ModelParameter param : cmd.getParameters()) {
+			if (param.isMapParameter() || param.getPositional() != null) {
+				continue;
+			}
+			writeCaseLabels(ps, param.getNames());
+			ps.println(" {");
+			printRequiredAssign(ps, reqparams, param, reqvarprefix);
+			ps.println("name = a;");
+			ps.println("value = " + valueparams.indexOf(param) + ";");
+			ps.println("parseValue();");
+			ps.println("return;");
+			ps.println("}");
+		}
+		for (ModelSubCommand sc : cmd.getSubCommands()) {
+			dependentelements.add(sc.getTypeElement());
+			if (sc == defaultcommand) {
+				continue;
+			}
+			writeCaseLabels(ps, sc.getNames());
+			ps.println(" {");
+			printPushParserCommandEnter(ps, sc, commandids);
+			ps.println("return;");
+			ps.println("}");
+		}
+		if (defaultcommand != null) {
+			writeCaseLabels(ps, defaultcommand.getNames());
+			ps.println(" {");
+			printPushParserCommandEnter(ps, defaultcommand, commandids);
+			ps.println("return;");
+			ps.println("}");
+		}
+		ps.println("default: {");
+		if (abbreviations) {
+			printAbbreviationResolution(ps, id);
+		}
+		if (defaultcommand != null) {
+			//the default subcommand receives the argument as it is, and resolves the abbreviations itself
+			printPushParserCommandEnter(ps, defaultcommand, commandids);
+			ps.println("push" + commandids.get(defaultcommand) + "(arg);");
+			ps.println("return;");
+		} else if (endpositionals) {
+			ps.println("endPositional = true;");
+			ps.println("break;");
+		} else {
+			ps.println("throw " + getUnrecognizedArgumentExceptionCreation("Unrecognized argument", "a",
+					getSuggestionNames(cmd), suggestiontrees) + ";");
+		}
+		ps.println("}"); // default:
+		ps.println("}"); // switch
+		if (abbreviations) {
+			ps.println("}"); // abbreviation_loop
+		}
+		if (endpositionals) {
+			ps.println("}");
+			ps.println("switch (positional++) {");
+			for (int i = leadingcount; i < posparams.size(); i++) {
+				ps.println("case " + i + ": {");
+				printPushParserPositionalStart(ps, posparams.get(i), reqparams, valueparams, reqvarprefix);
+				ps.println("values.add(a);");
+				ps.println("parseValue();");
+				ps.println("return;");
+				ps.println("}");
+			}
+			ps.println("}");
+			ps.println("throw " + getUnrecognizedArgumentExceptionCreation("Unrecognized argument", "a",
+					getSuggestionNames(cmd), suggestiontrees) + ";");
+		}
+		ps.println("}");
+		ps.println("");
+
+		if (!valueparams.isEmpty()) {
+			ps.println("private void value" + id + "() {");
+			ps.println("String a = name;");
+			ps.println("switch (value) {");
+			for (int i = 0; i < valueparams.size(); i++) {
+				ModelParameter param = valueparams.get(i);
+				//the positional values are not wrapped, the same way as in parse()
+				boolean wrapexceptions = param.getPositional() == null;
+				ps.println("case " + i + ": {");
+				if (wrapexceptions) {
+					ps.println("try {");
+				}
+				writeParameterParsing(ps, param, thisvarname, cmd, dependentelements);
+				if (wrapexceptions) {
+					ps.println("} catch (" + ArgumentException.class.getCanonicalName() + " | ArgumentsPending e) {");
+					ps.println("throw e;");
+					ps.println("} catch (" + RuntimeException.class.getCanonicalName() + " e) {");
+					ps.println("throw new " + ArgumentException.class.getCanonicalName()
+							+ "(\"Failed to interpret the argument(s)\", e, a);");
+					ps.println("}");
+				}
+				ps.println("break;");
+				ps.println("}");
+			}
+			ps.println("}");
+			ps.println("}");
+			ps.println("");
+		}
+
+		ps.println("private void finish" + id + "() {");
+		if (defaultcommand != null) {
+			ps.println(getPushParserCommandVarName(defaultcommand, commandids) + " = new "
+					+ defaultcommand.getCommandClassQualifiedName() + "();");
+			ps.println("finish" + commandids.get(defaultcommand) + "();");
+		} else {
+			//the same variable names as in the parse() methods
+			LinkedList<ModelCommand> commandstack = new LinkedList<>();
+			for (ModelCommand c = cmd; c != null; c = c.getParentCommand()) {
+				commandstack.addFirst(c);
+			}
+			String currentvarname = "result";
+			String stackthisvarname = null;
+			for (ModelCommand c : commandstack) {
+				ps.println(c.getCommandClassQualifiedName() + " " + currentvarname + " = this."
+						+ getPushParserCommandVarName(c, commandids) + ";");
+				stackthisvarname = currentvarname;
+				currentvarname = "sub" + currentvarname;
+			}
+			printSubCommandCallerAssignment(ps, cmd, commandstack, stackthisvarname, throwntypes, dependentelements,
+					commandids);
+		}
+		printRequiredCheck(ps, reqparams.size(), reqvarprefix);
+		ps.println("}");
+		ps.println("");
+	}
+
+	/**
+	 * Gets the parameters of the command that the push parser parses the values of.
+	 * <p>
+	 * The positional parameters are followed by the named ones, the index in the list is the value identifier.
+	 */
+	private static List<ModelParameter> getPushParserValueParameters(ModelCommand cmd) {
+		List<ModelParameter> result = new ArrayList<>(cmd.getPositionalParameters());
+		for (ModelParameter param : cmd.getParameters()) {
+			if (param.isMapParameter() || param.getPositional() != null) {
+				continue;
+			}
+			result.add(param);
+		}
+		return result;
+	}
+
+	private static String getPushParserCommandVarName(ModelCommand cmd, Map<ModelCommand, Integer> commandids) {
+		if (cmd.getParentCommand() == null) {
+			return "result";
+		}
+		return "command" + commandids.get(cmd);
+	}
+
+	private static void printPushParserCommandEnter(PrintWriter ps, ModelCommand cmd,
+			Map<ModelCommand, Integer> commandids) {
+		ps.println(getPushParserCommandVarName(cmd, commandids) + " = new " + cmd.getCommandClassQualifiedName()
+				+ "();");
+		ps.println("level = " + commandids.get(cmd) + ";");
+		ps.println("positional = 0;");
+		ps.println("endPositional = false;");
+	}
+
+	private void printPushParserPositionalStart(PrintWriter ps, ModelParameter posparam,
+			List<ModelParameter> reqparams, List<ModelParameter> valueparams, String reqvarprefix) {
+		ps.println("name = " + elements.getConstantExpression(posparam.getNames().iterator().next()) + ";");
+		printRequiredAssign(ps, reqparams, posparam, reqvarprefix);
+		ps.println("value = " + valueparams.indexOf(posparam) + ";");
+	}
+
+	private static void printPushParserCloseCall(PrintWriter ps, ModelCommand cmd, ModelParameter param,
+			Map<ModelCommand, Integer> commandids) {
+		//the implementation may not declare the IOException
+		ps.print("((java.io.Closeable) " + getPushParserCommandVarName(cmd, commandids));
+		param.getLocation().printAccess(ps);
+		ps.println(").close();");
+	}
+
+	private static void printPushParserCloseableCheck(PrintWriter ps, ModelCommand cmd, ModelParameter param,
+			Map<ModelCommand, Integer> commandids) {
+		String varname = getPushParserCommandVarName(cmd, commandids);
+		ps.print("if (");
+		if (cmd.getParentCommand() != null) {
+			//the subcommand may not have been entered
+			ps.print(varname + " != null && ");
+		}
+		ps.print(varname);
+		param.getLocation().printAccess(ps);
+		ps.println(" != null) {");
+	}
+
+	private static ModelParameter getPipelinedParameter(ModelCommand cmd) {
+		for (ModelParameter param : cmd.getParameters()) {
+			if (param.isPipelined()) {
+				return param;
+			}
+		}
+		return null;
+	}
+
+	private static void printCommandStackParameters(PrintWriter ps, LinkedList<ModelCommand> commandstack) {
+		String currentvarname = "result";
+		for (Iterator<ModelCommand> it = commandstack.iterator(); it.hasNext();) {
+			ModelCommand argcmd = it.next();
+			ps.print(INDENTATION + INDENTATION);
+			ps.print(argcmd.getCommandClassQualifiedName());
+			ps.print(" ");
+			ps.print(currentvarname);
+			if (it.hasNext()) {
+				ps.println(", ");
+			}
+			currentvarname = "sub" + currentvarname;
+		}
+	}
+
+	private void printPipelinedParserRunnable(PrintWriter ps, LinkedList<ModelCommand> commandstack) {
+		StringBuilder call = new StringBuilder("parsePipelined(result.streamedArguments");
+		String currentvarname = "result";
+		for (int i = 0; i < commandstack.size(); i++) {
+			call.append(", ");
+			call.append(currentvarname);
+			currentvarname = "sub" + currentvarname;
+		}
+		call.append(")");
+		if (supportsLambda) {
+			ps.print("() -> ");
+			ps.print(call);
+		} else {
+			//qualified, as the generated class may declare its own Runnable
+			ps.println("new java.lang.Runnable() {");
+			ps.println("@Override");
+			ps.println("public void run() {");
+			ps.println(call + ";");
+			ps.println("}");
+			ps.print("}");
+		}
+	}
+
+	/**
+	 * Generates the method that parses the arguments after the first value of the pipelined parameter.
+	 * <p>
+	 * It runs on the parser thread of {@link PipelinedParser}, and only accepts the values of the pipelined parameter.
+	 * 
+	 * @param abbreviationid
+	 *            The identifier of the command to resolve the abbreviated names with, or <code>-1</code> if
+	 *            abbreviations are not allowed.
+	 */
+	private void generatePipelinedParserMethod(PrintWriter ps, ModelCommand cmd, LinkedList<ModelCommand> commandstack,
+			ModelParameter pipelinedparam, String thisvarname, Set<Element> dependentelements,
+			Map<String, Integer> suggestiontrees, int abbreviationid) {
+		ps.println("private static void parsePipelined(" + ParsingIterator.class.getCanonicalName() + " args, ");
+		printCommandStackParameters(ps, commandstack);
+		ps.println(") {");
+		ps.println("String a;");
+		ps.println("while (args.hasNext()) {");
+		ps.println("a = args.next();");
+		ps.println("try {");
+		if (abbreviationid >= 0) {
+			ps.println("abbreviation_loop:");
+			ps.println("while (true) {");
+		}
+		ps.println("switch (a) {");
+		writeCaseLabels(ps, pipelinedparam.getNames());
+		ps.println(" {");
+		writeParameterParsing(ps, pipelinedparam, thisvarname, cmd, dependentelements);
+		ps.println("break;");
+		ps.println("}");
+		ps.println("default: {");
+		if (abbreviationid >= 0) {
+			printAbbreviationResolution(ps, abbreviationid);
+		}
+		ps.println("throw " + getUnrecognizedArgumentExceptionCreation("Unrecognized argument after pipelined values",
+				"a", pipelinedparam.getNames(), suggestiontrees) + ";");
+		ps.println("}");
+		ps.println("}"); // switch
+		if (abbreviationid >= 0) {
+			ps.println("break;");
+			ps.println("}"); // abbreviation_loop
+		}
+		ps.println("} catch (" + ArgumentException.class.getCanonicalName() + " e) {");
+		ps.println("throw e;");
+		ps.println("} catch (" + CancellationException.class.getCanonicalName() + " e) {");
+		//the command returned, and the sink was closed
+		ps.println("throw e;");
+		ps.println("} catch (" + RuntimeException.class.getCanonicalName() + " e) {");
+		ps.println("throw new " + ArgumentException.class.getCanonicalName()
+				+ "(\"Failed to interpret the argument(s)\", e, a);");
+		ps.println("}"); // catch
+		ps.println("}"); // while
+		ps.println("}");
+		ps.println("");
+	}
+
+	private static void printMethodCallWithCommandResultArguments(PrintWriter ps, String thisvarname,
+			ModelMethodCall cmethod) {
+		ps.print(thisvarname);
+		ps.print(".");
+		ps.print(cmethod.executable.getSimpleName());
+		ps.print("(");
+		for (Iterator<Integer> it = cmethod.argumentQueryIndices.iterator(); it.hasNext();) {
+			Integer argidx = it.next();
+			int subc = argidx;
+			while (subc-- > 0) {
+				ps.print("sub");
+			}
+			ps.print("result");
+			if (it.hasNext()) {
+				ps.print(", ");
+			}
+		}
+		ps.println(");");
+	}
+
+	private static void printRequiredAssign(PrintWriter ps, List<ModelParameter> reqparams, ModelParameter param) {
+		printRequiredAssign(ps, reqparams, param, "requires");
+	}
+
+	private static void printRequiredAssign(PrintWriter ps, List<ModelParameter> reqparams, ModelParameter param,
+			String requiresvarprefix) {
+		if (param.isRequired()) {
+			int bitidx = reqparams.indexOf(param);
+			String cfconst = toHexLongConstantString(1L << (bitidx % 64));
+			ps.println(requiresvarprefix + (bitidx / 64) + " |= " + cfconst + ";");
+		}
+	}
+
+	/**
+	 * Prints the check that throws if any of the required parameters weren't seen.
+	 * 
+	 * @param requiresvarprefix
+	 *            The prefix of the names of the bitmask variables.
+	 */
+	private static void printRequiredCheck(PrintWriter ps, int reqcount, String requiresvarprefix) {
+		int i = 0;
+		while (i < reqcount) {
+			long checkflag;
+			int diff = reqcount - i;
+			if (diff >= 64) {
+				checkflag = 0xFFFFFFFFFFFFFFFFL;
+			} else {
+				checkflag = (1 << diff) - 1;
+			}
+			String cfconst = toHexLongConstantString(checkflag);
+			ps.println("if ((" + requiresvarprefix + (i / 64) + " & " + cfconst + ") != " + cfconst + ") {");
+			//TODO print info about which parameters are missing
+			ps.println("throw new " + MissingArgumentException.class.getCanonicalName()
+					+ "(\"Required parameters missing.\");");
+			ps.println("}");
+			i += 64;
+		}
+	}
+
+	private static String toHexLongConstantString(long checkflag) {
+		String cfconst = "0x" + Long.toUnsignedString(checkflag, 16) + "L";
+		return cfconst;
+	}
+
+	private void generateForModel(ModelBaseCommand mc, PrintWriter ps, Set<Element> dependentelements,
+			ProcessingStatistics stats, List<String> helpresourcetexts) {
+		String packname = mc.getGeneratedPackageName();
+		if (packname != null) {
+			ps.println("package " + packname + ";");
+			ps.println();
+		}
+		ps.println("import " + ParseUtil.class.getCanonicalName() + ";");
+		ps.println();
+		String cname = mc.getGeneratedSimpleClassName();
+		ps.println("@SuppressWarnings({ \"fallthrough\" })");
+		ps.println("public class " + cname + " extends " + mc.getTypeElement().getQualifiedName() + " {");
+		{
+			Collection<TypeElement> throwntypes = new LinkedHashSet<>();
+			boolean streamedarguments = hasStreamedArguments(mc);
+			boolean pipelined = hasPipelinedParameter(mc);
+			//the pipelined parser reads the arguments through a streamed view as well
+			streamedarguments |= pipelined;
+
+			ps.println("public static " + cname + " parse(java.util.Iterator<? extends String> arguments) {");
+			{
+				ps.println("try (" + ParsingIterator.class.getCanonicalName() + " args = "
+						+ getArgumentIteratorCreation("arguments") + ") {");
+				ps.println(cname + " result = new " + cname + "();");
+				if (streamedarguments) {
+					//close the streamed arguments if the parsing fails after they've been detached
+					ps.println("try {");
+					ps.println("parse(args, result);");
+					ps.println("} catch (RuntimeException | Error e) {");
+					ps.println("if (result.streamedArguments != null) {");
+					ps.println("try {");
+					ps.println("result.streamedArguments.close();");
+					ps.println("} catch (RuntimeException ce) {");
+					ps.println("e.addSuppressed(ce);");
+					ps.println("}");
+					ps.println("}");
+					ps.println("throw e;");
+					ps.println("}");
+				} else {
+					ps.println("parse(args, result);");
+				}
+				ps.println("return result;");
+				ps.println("} catch (java.io.IOException e) {");
+				ps.println("throw new " + UncheckedIOException.class.getCanonicalName()
+						+ "(\"Failed to close argument iterator.\", e);");
+				ps.println("}");
+			}
+			ps.println("}");
+			ps.println("");
+			if (generateParseAll && supportsLambda) {
+				if (streamedarguments) {
+					//the results would hold the open streamed arguments, which parseAll can't hand over safely
+					++generationErrorCount;
+					messager.printMessage(Diagnostic.Kind.ERROR,
+							"parseAll cannot be generated for commands with streamed or pipelined parameters. ("
+									+ OPTION_GENERATE_PARSE_ALL + ")",
+							mc.getTypeElement());
+				} else {
+					generateParseAllMethods(ps, cname);
+				}
+			}
+			boolean pushparser = false;
+			if (generatePushParser && supportsLambda) {
+				if (streamedarguments) {
+					//the remaining arguments would need to be handed to the command before they are received
+					++generationErrorCount;
+					messager.printMessage(Diagnostic.Kind.ERROR,
+							"pushParser cannot be generated for commands with streamed or pipelined parameters. ("
+									+ OPTION_GENERATE_PUSH_PARSER + ")",
+							mc.getTypeElement());
+				} else {
+					pushparser = true;
+				}
+			}
+
+			long phasestart = System.nanoTime();
+			if (generateHelpInfo) {
+				generatePrintHelpMethod(ps, mc, dependentelements, helpresourcetexts);
+				if (helpresourcetexts != null) {
+					//lazily initialized, so the help resource is only loaded when help is requested
+					ps.println("private static final class HelpData {");
+					ps.println("static final " + HelpResource.class.getCanonicalName() + " RESOURCE = "
+							+ HelpResource.class.getCanonicalName() + ".load(" + cname + ".class, "
+							+ elements.getConstantExpression(getHelpResourceName(mc)) + ");");
+					ps.println("}");
+					ps.println("");
+				}
+			}
+			stats.addPhaseTime(ProcessingStatistics.Phase.HELP_GENERATION, phasestart);
+
+			phasestart = System.nanoTime();
+			generateParserMethod(ps, mc, throwntypes, dependentelements, pushparser);
+			stats.addPhaseTime(ProcessingStatistics.Phase.PARSER_GENERATION, phasestart);
+
+			if (generateValidation) {
+				phasestart = System.nanoTime();
+				generateValidationMethods(ps, mc);
+				stats.addPhaseTime(ProcessingStatistics.Phase.PARSER_GENERATION, phasestart);
+			}
+
+			if (generateCompletion) {
+				phasestart = System.nanoTime();
+				generateCompletionMethods(ps, mc);
+				stats.addPhaseTime(ProcessingStatistics.Phase.COMPLETION_GENERATION, phasestart);
+			}
+
+			if (generateTraining) {
+				phasestart = System.nanoTime();
+				generateTrainingMethod(ps, mc, cname, streamedarguments);
+				stats.addPhaseTime(ProcessingStatistics.Phase.TRAINING_GENERATION, phasestart);
+			}
+
+			if (generateScriptRunner && supportsLambda) {
+				generateRunScriptMethods(ps);
+			}
+			if (generateToArguments && supportsLambda) {
+				generateArgumentWriterMethods(ps, mc, cname, getCommandIds(mc), dependentelements);
+			}
+
+			if (mc.createMainMethod()) {
+				ps.print("public static void main(String... args)");
+				printThrowsTypes(ps, throwntypes);
+				ps.println(" {");
+				ps.println("parse(java.util.Arrays.asList(args).iterator()).callCommand();");
+				ps.println("}");
+				ps.println("");
+			}
+
+			if (!throwntypes.isEmpty()) {
+				if (supportsLambda) {
+					ps.println("@FunctionalInterface");
+				}
+				ps.println("private interface Runnable {");
+				ps.print("public void run()");
+				printThrowsTypes(ps, throwntypes);
+				ps.println(";");
+				ps.println("}");
+				ps.println("");
+			}
+			ps.println("private Runnable subCommandCaller;");
+			if (streamedarguments) {
+				ps.println("private " + StreamedArguments.class.getCanonicalName() + " streamedArguments;");
+			}
+			if (pipelined) {
+				ps.println("private " + PipelinedParser.class.getCanonicalName() + " pipelinedParser;");
+			}
+			ps.println("");
+
+			ps.println("private " + cname + "() {");
+			ps.println("}");
+			ps.println("");
+
+			ps.print("public void callCommand()");
+			printThrowsTypes(ps, throwntypes);
+			ps.println(" {");
+			if (pipelined) {
+				//the pipeline is closed first, so the parser thread no longer reads the streamed arguments
+				ps.println("try (" + StreamedArguments.class.getCanonicalName() + " streamed = this.streamedArguments;");
+				ps.println(INDENTATION + INDENTATION + PipelinedParser.class.getCanonicalName()
+						+ " pipeline = this.pipelinedParser) {");
+				ps.println("if (pipeline != null) {");
+				ps.println("pipeline.start();");
+				ps.println("}");
+				ps.println("this.subCommandCaller.run();");
+				ps.println("}");
+			} else if (streamedarguments) {
+				ps.println("try (" + StreamedArguments.class.getCanonicalName()
+						+ " streamed = this.streamedArguments) {");
+				ps.println("this.subCommandCaller.run();");
+				ps.println("}");
+			} else {
+				ps.println("this.subCommandCaller.run();");
+			}
+			ps.println("}");
+		}
+		ps.println("}");
+	}
+
+	/**
+	 * Assigns the pre-order index of the commands to them.
+	 */
+	private static Map<ModelCommand, Integer> getCommandIds(ModelBaseCommand mc) {
+		List<ModelCommand> commands = new ArrayList<>();
+		collectCommandsPreOrder(mc, commands);
+		Map<ModelCommand, Integer> commandids = new LinkedHashMap<>();
+		for (ModelCommand c : commands) {
+			commandids.put(c, commandids.size());
+		}
+		return commandids;
+	}
+
+	/**
+	 * Prints the calls that write the arguments of the commands in the stack to the <code>argconsumer</code>.
+	 * 
+	 * @param commandexpressions
+	 *            The expressions that evaluate to the command objects in the stack.
+	 */
+	private void printArgumentWriterChain(PrintWriter ps, List<ModelCommand> commandstack,
+			Map<ModelCommand, Integer> commandids, List<String> commandexpressions) {
+		String lastexpression = null;
+		ModelCommand last = null;
+		Iterator<String> exprit = commandexpressions.iterator();
+		for (ModelCommand c : commandstack) {
+			if (last != null) {
+				ps.println("argconsumer.accept("
+						+ elements.getConstantExpression(((ModelSubCommand) c).getNames().iterator().next()) + ");");
+			}
+			lastexpression = exprit.next();
+			ps.println("writeArguments" + commandids.get(c) + "(" + lastexpression + ", argconsumer);");
+			last = c;
+		}
+		if (hasEndPositionalParameters(last)) {
+			ps.println("writeEndArguments" + commandids.get(last) + "(" + lastexpression + ", argconsumer);");
+		}
+	}
+
+	private static int getMaxCommandDepth(ModelCommand cmd) {
+		int result = 0;
+		for (ModelSubCommand sc : cmd.getSubCommands()) {
+			result = Math.max(result, getMaxCommandDepth(sc));
+		}
+		return result + 1;
+	}
+
+	private static boolean hasEndPositionalParameters(ModelCommand cmd) {
+		List<ModelParameter> posparams = cmd.getPositionalParameters();
+		return !posparams.isEmpty() && posparams.get(posparams.size() - 1).getPositional().value() < 0;
+	}
+
+	private void generateArgumentWriterMethods(PrintWriter ps, ModelBaseCommand mc, String cname,
+			Map<ModelCommand, Integer> commandids, Set<Element> dependentelements) {
+		//the id of the parsed command, and the subcommand objects on the path to it
+		ps.println("private int commandId = -1;");
+		int depth = getMaxCommandDepth(mc);
+		for (int i = 1; i < depth; i++) {
+			ps.println("private Object subCommand" + i + ";");
+		}
+		ps.println("");
+
+		ps.println("public void toArguments(java.util.function.Consumer<? super String> consumer) {");
+		ps.println("writeParsedArguments(escapeArguments(consumer));");
+		ps.println("}");
+		ps.println("");
+
+		ps.println("public void toCommandFile(java.nio.file.Path path) throws java.io.IOException {");
+		//the lines of command files are not interpreted, so they are not escaped
+		ps.println("ParseUtil.writeCommandFile(path, this::writeParsedArguments);");
+		ps.println("}");
+		ps.println("");
+
+		ps.println("private void writeParsedArguments(java.util.function.Consumer<String> argconsumer) {");
+		ps.println("switch (this.commandId) {");
+		LinkedList<ModelCommand> dispatchstack = new LinkedList<>();
+		dispatchstack.add(mc);
+		printParsedArgumentsDispatch(ps, dispatchstack, commandids);
+		ps.println("default: {");
+		ps.println("throw new IllegalStateException(\"Help command cannot be converted to arguments.\");");
+		ps.println("}");
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+
+		ps.println("private static java.util.function.Consumer<String> escapeArguments("
+				+ "java.util.function.Consumer<? super String> consumer) {");
+		if (commandFileEnabled) {
+			ps.println("return a -> consumer.accept(ParseUtil.escapeCommandFileArgument(a));");
+		} else {
+			ps.println("return consumer::accept;");
+		}
+		ps.println("}");
+		ps.println("");
+
+		LinkedList<ModelCommand> commandstack = new LinkedList<>();
+		commandstack.add(mc);
+		generateToArgumentsMethods(ps, commandstack, commandids);
+
+		for (Entry<ModelCommand, Integer> entry : commandids.entrySet()) {
+			ModelCommand cmd = entry.getKey();
+			int id = entry.getValue();
+			String cmdtype = cmd == mc ? cname : cmd.getCommandClassQualifiedName();
+			List<ModelParameter> posparams = cmd.getPositionalParameters();
+
+			ps.println("private static void writeArguments" + id + "(" + cmdtype
+					+ " cmd, java.util.function.Consumer<String> argconsumer) {");
+			String unsupported = getArgumentWriterUnsupportedParameter(cmd);
+			String unsupportedthrow = null;
+			if (unsupported != null) {
+				unsupportedthrow = "throw new UnsupportedOperationException("
+						+ elements.getConstantExpression("Parameter cannot be converted to arguments: " + unsupported)
+						+ ");";
+				ps.println(unsupportedthrow);
+			} else {
+				for (ModelParameter param : posparams) {
+					if (param.getPositional().value() < 0) {
+						break;
+					}
+					writeArgumentWriterParameter(ps, param, dependentelements);
+				}
+				for (ModelParameter param : cmd.getParameters()) {
+					if (param.getPositional() == null && !param.isMapParameter()) {
+						writeArgumentWriterParameter(ps, param, dependentelements);
+					}
+				}
+				for (ModelParameter param : cmd.getParameters()) {
+					if (param.isMapParameter()) {
+						writeArgumentWriterParameter(ps, param, dependentelements);
+					}
+				}
+			}
+			ps.println("}");
+			ps.println("");
+			if (hasEndPositionalParameters(cmd)) {
+				ps.println("private static void writeEndArguments" + id + "(" + cmdtype
+						+ " cmd, java.util.function.Consumer<String> argconsumer) {");
+				if (unsupportedthrow != null) {
+					ps.println(unsupportedthrow);
+				} else {
+					for (ModelParameter param : posparams) {
+						if (param.getPositional().value() < 0) {
+							writeArgumentWriterParameter(ps, param, dependentelements);
+						}
+					}
+				}
+				ps.println("}");
+				ps.println("");
+			}
+		}
+	}
+
+	private void printParsedArgumentsDispatch(PrintWriter ps, LinkedList<ModelCommand> commandstack,
+			Map<ModelCommand, Integer> commandids) {
+		List<String> expressions = new ArrayList<>();
+		expressions.add("this");
+		int i = 0;
+		for (ModelCommand c : commandstack) {
+			if (i > 0) {
+				expressions.add("((" + c.getCommandClassQualifiedName() + ") this.subCommand" + i + ")");
+			}
+			++i;
+		}
+		ps.println("case " + commandids.get(commandstack.getLast()) + ": {");
+		printArgumentWriterChain(ps, commandstack, commandids, expressions);
+		ps.println("break;");
+		ps.println("}");
+		for (ModelSubCommand sc : commandstack.getLast().getSubCommands()) {
+			commandstack.addLast(sc);
+			printParsedArgumentsDispatch(ps, commandstack, commandids);
+			commandstack.removeLast();
+		}
+	}
+
+	private void generateToArgumentsMethods(PrintWriter ps, LinkedList<ModelCommand> commandstack,
+			Map<ModelCommand, Integer> commandids) {
+		ps.println("public static void toArguments(");
+		printCommandStackParameters(ps, commandstack);
+		ps.println(", ");
+		ps.println(INDENTATION + INDENTATION + "java.util.function.Consumer<? super String> consumer) {");
+		ps.println("java.util.function.Consumer<String> argconsumer = escapeArguments(consumer);");
+		List<String> parameternames = new ArrayList<>();
+		String varname = "result";
+		for (int i = 0; i < commandstack.size(); i++) {
+			parameternames.add(varname);
+			varname = "sub" + varname;
+		}
+		printArgumentWriterChain(ps, commandstack, commandids, parameternames);
+		ps.println("}");
+		ps.println("");
+		for (ModelSubCommand sc : commandstack.getLast().getSubCommands()) {
+			commandstack.addLast(sc);
+			generateToArgumentsMethods(ps, commandstack, commandids);
+			commandstack.removeLast();
+		}
+	}
+
+	/**
+	 * Gets the first parameter of the command whose value cannot be read back, or <code>null</code> if there's none.
+	 */
+	private String getArgumentWriterUnsupportedParameter(ModelCommand cmd) {
+		for (ModelParameter param : cmd.getParameters()) {
+			Element elem = param.getElement();
+			if (elem.getKind() != ElementKind.FIELD
+					|| (param.getStreamedArguments() != null && param.getStreamedArguments().isLazy())
+					|| param.isPipelined()) {
+				return elem.toString();
+			}
+			ModelMultiParameter multi = param.getMultiParameter();
+			if (multi != null && (!"add".equals(multi.getMethodName())
+					|| !types.isAssignable(param.getParameterType(), getErasedCollectionType()))) {
+				return elem.toString();
+			}
+		}
+		return null;
+	}
+
+	private void writeArgumentWriterParameter(PrintWriter ps, ModelParameter param, Set<Element> dependentelements) {
+		dependentelements.add(param.getElement());
+		StringWriter accesssw = new StringWriter();
+		try (PrintWriter accessps = new PrintWriter(accesssw)) {
+			accessps.print("cmd");
+			param.getLocation().printAccess(accessps);
+		}
+		String access = accesssw.toString();
+		String name = elements.getConstantExpression(param.getNames().iterator().next());
+		if (param.isMapParameter()) {
+			ps.println("if (" + access + " != null) {");
+			ps.println("for (java.util.Map.Entry<?, ?> e : ((java.util.Map<?, ?>) " + access + ").entrySet()) {");
+			ps.println("Object v = e.getValue();");
+			ps.println("argconsumer.accept(ParseUtil.toKeyValueArgument(" + name
+					+ ", String.valueOf(e.getKey()), v == null ? null : String.valueOf(v)));");
+			ps.println("}");
+			ps.println("}");
+			return;
+		}
+		ModelMultiParameter multi = param.getMultiParameter();
+		if (multi != null) {
+			ps.println("if (" + access + " != null) {");
+			ps.println("for (Object v : " + access + ") {");
+			ps.println("argconsumer.accept(" + name + ");");
+			ps.println("argconsumer.accept(" + getArgumentStringExpression(param, multi.getElementType(), "v") + ");");
+			ps.println("}");
+			ps.println("}");
+			return;
+		}
+		if (param.getStreamedArguments() == ModelParameter.StreamedArguments.COMPACT_LIST) {
+			ps.println("if (" + access + " != null) {");
+			ps.println("for (String v : " + access + ") {");
+			ps.println("argconsumer.accept(v);");
+			ps.println("}");
+			ps.println("}");
+			return;
+		}
+		TypeMirror type = param.getParameterType();
+		if (param.getFlag() != null) {
+			if (type.getKind() == TypeKind.BOOLEAN) {
+				ps.println("if (" + access + ") {");
+			} else {
+				ps.println("if (Boolean.TRUE.equals(" + access + ")) {");
+			}
+			ps.println("argconsumer.accept(" + name + ");");
+			ps.println("}");
+			return;
+		}
+		boolean primitive = type.getKind().isPrimitive();
+		if (!primitive) {
+			ps.println("if (" + access + " != null) {");
+		}
+		if (param.getPositional() == null) {
+			ps.println("argconsumer.accept(" + name + ");");
+		}
+		ps.println("argconsumer.accept(" + getArgumentStringExpression(param, type, access) + ");");
+		if (!primitive) {
+			ps.println("}");
+		}
+	}
+
+	private static String getArgumentStringExpression(ModelParameter param, TypeMirror type, String value) {
+		if (param.getConverter() == null && type.getKind() == TypeKind.DECLARED
+				&& ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM) {
+			//enums are parsed by name, toString() may be overridden
+			return "((Enum<?>) " + value + ").name()";
+		}
+		return "String.valueOf(" + value + ")";
+	}
+
+	private String getArgumentIteratorCreation(String argumentsvar) {
+		if (!commandFileEnabled) {
+			return "ParseUtil.createSimpleArgumentIterator(" + argumentsvar + ")";
+		}
+		if (commandFileInternCapacity > 0) {
+			return "ParseUtil.createCommandFileArgumentIterator(" + argumentsvar + ", " + commandFileInternCapacity
+					+ ")";
+		}
+		return "ParseUtil.createCommandFileArgumentIterator(" + argumentsvar + ")";
+	}
+
+	/**
+	 * Generates the <code>validate</code> method that checks the arguments the same way as the parser does, but
+	 * without instantiating the commands and converting the values.
+	 * <p>
+	 * The names, the number of arguments, the required parameters, the enum values and the formats of the built-in
+	 * number, character and boolean types are checked. The values of the parameters that have converters are expected
+	 * to be a single argument.
+	 */
+	private void generateValidationMethods(PrintWriter ps, ModelBaseCommand mc) {
+		Map<ModelCommand, Integer> commandids = getCommandIds(mc);
+		String itertype = ParsingIterator.class.getCanonicalName();
+
+		ps.println("public static boolean validate(java.util.Iterator<? extends String> arguments) {");
+		ps.println("try (" + itertype + " args = " + getArgumentIteratorCreation("arguments") + ") {");
+		ps.println("return validate0(args);");
+		//failure to read a command file
+		ps.println("} catch (" + ArgumentException.class.getCanonicalName() + " | java.io.IOException e) {");
+		ps.println("return false;");
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+
+		for (ModelCommand cmd : commandids.keySet()) {
+			int id = commandids.get(cmd);
+			Collection<ModelSubCommand> subcommands = cmd.getSubCommands();
+			ModelSubCommand defaultcommand = cmd.getDefaultSubCommand();
+			List<ModelParameter> reqparams = cmd.getRequiredParameters();
+			List<ModelParameter> posparams = cmd.getPositionalParameters();
+
+			ps.println("private static boolean validate" + id + "(" + itertype + " args) {");
+			ps.println("String a;");
+			if (cmd == mc && generateHelpInfo) {
+				Set<String> helpcommandname = new LinkedHashSet<>(mc.getHelpCommandName());
+				removeSubCommandNamesFromCollection(helpcommandname, subcommands);
+				if (!helpcommandname.isEmpty()) {
+					//the help command accepts any arguments
+					ps.println("if (args.hasNext()) {");
+					ps.println("switch (args.peek()) {");
+					writeCaseLabels(ps, helpcommandname);
+					ps.println(" {");
+					ps.println("return true;");
+					ps.println("}");
+					ps.println("default: {");
+					ps.println("break;");
+					ps.println("}");
+					ps.println("}");
+					ps.println("}");
+				}
+			}
+			for (int i = 0; i < reqparams.size(); i += 64) {
+				ps.println("long requires" + (i / 64) + " = 0;");
+			}
+			ps.println("validate_block:");
+			ps.println("{");
+
+			int positionalindex = 0;
+			if (!posparams.isEmpty() && posparams.get(0).getPositional().value() >= 0) {
+				ps.println("positional_block:");
+				ps.println("{");
+				for (ModelParameter posparam : posparams) {
+					if (posparam.getPositional().value() < 0) {
+						break;
+					}
+					ps.println("if (!args.hasNext()) {");
+					ps.println("break positional_block;");
+					ps.println("}");
+					printRequiredAssign(ps, reqparams, posparam);
+					writeParameterValueValidation(ps, cmd, posparam, false);
+					positionalindex++;
+				}
+				ps.println("}");
+			}
+
+			ps.println("param_loop:");
+			ps.println("while (args.hasNext()) {");
+			ps.println("a = args.peek();");
+			for (Entry<String, ModelParameter> entry : cmd.getMapParameters().entrySet()) {
+				ps.println("if (a.startsWith(" + elements.getConstantExpression(entry.getKey()) + ")) {");
+				printRequiredAssign(ps, reqparams, entry.getValue());
+				//same format as the parser, the key and value are not used
+				ps.println("ParseUtil.parseEqualsFormatArgument(" + entry.getKey().length()
+						+ ", a, new String[] { null, null });");
+				ps.println("args.next();");
+				ps.println("continue param_loop;");
+				ps.println("}");
+			}
+			boolean abbreviations = isResolvingAbbreviations(mc, cmd);
+			if (abbreviations) {
+				ps.println("abbreviation_loop:");
+				ps.println("while (true) {");
+			}
+			ps.println("switch (a) {");
+			for (ModelParameter param : cmd.getParameters()) {
+				if (param.isMapParameter() || param.getPositional() != null) {
+					continue;
+				}
+				writeCaseLabels(ps, param.getNames());
+				ps.println(" {");
+				ps.println("args.next();");
+				printRequiredAssign(ps, reqparams, param);
+				writeParameterValueValidation(ps, cmd, param, true);
+				if (param.isPipelined()) {
+					//only the values of the pipelined parameter may follow
+					ps.println("while (args.hasNext()) {");
+					ps.println("a = args.next();");
+					if (abbreviations) {
+						ps.println("pipelined_abbreviation_loop:");
+						ps.println("while (true) {");
+					}
+					ps.println("switch (a) {");
+					writeCaseLabels(ps, param.getNames());
+					ps.println(" {");
+					writeParameterValueValidation(ps, cmd, param, true);
+					ps.println("break;");
+					ps.println("}");
+					ps.println("default: {");
+					if (abbreviations) {
+						printAbbreviationResolution(ps, id, "pipelined_abbreviation_loop");
+					}
+					ps.println("return false;");
+					ps.println("}");
+					ps.println("}");
+					if (abbreviations) {
+						ps.println("break;");
+						ps.println("}"); // pipelined_abbreviation_loop
+					}
+					ps.println("}");
+				}
+				ps.println("continue param_loop;");
+				ps.println("}");
+			}
+			for (ModelSubCommand sc : subcommands) {
+				if (sc == defaultcommand) {
+					continue;
+				}
+				writeCaseLabels(ps, sc.getNames());
+				ps.println(" {");
+				ps.println("args.next();");
+				ps.println("if (!validate" + commandids.get(sc) + "(args)) {");
+				ps.println("return false;");
+				ps.println("}");
+				ps.println("break validate_block;");
+				ps.println("}");
+			}
+			if (defaultcommand != null) {
+				writeCaseLabels(ps, defaultcommand.getNames());
+				if (abbreviations) {
+					ps.println(" {");
+					ps.println("args.next();");
+					ps.println("break param_loop;");
+					ps.println("}");
+				} else {
+					ps.println();
+					ps.println(INDENTATION + "args.next();");
+					ps.println(INDENTATION + "//fall-through");
+				}
+			}
+			ps.println("default: {");
+			if (abbreviations) {
+				printAbbreviationResolution(ps, id);
+			}
+			if (defaultcommand != null || positionalindex < posparams.size()) {
+				ps.println("break param_loop;");
+			} else {
+				ps.println("return false;");
+			}
+			ps.println("}"); // default:
+			ps.println("}"); // switch
+			if (abbreviations) {
+				//the switch never completes normally, no break is necessary
+				ps.println("}"); // abbreviation_loop
+			}
+			ps.println("}"); // while
 
-			ps.print("public void callCommand()");
-			printThrowsTypes(ps, throwntypes);
+			if (defaultcommand != null) {
+				ps.println("if (!validate" + commandids.get(defaultcommand) + "(args)) {");
+				ps.println("return false;");
+				ps.println("}");
+			} else {
+				for (; positionalindex < posparams.size(); positionalindex++) {
+					ModelParameter posparam = posparams.get(positionalindex);
+					ps.println("if (args.hasNext()) {");
+					printRequiredAssign(ps, reqparams, posparam);
+					if (posparam.getStreamedArguments() != null) {
+						//takes all remaining arguments
+						ps.println("do {");
+						ps.println("args.next();");
+						ps.println("} while (args.hasNext());");
+					} else {
+						writeParameterValueValidation(ps, cmd, posparam, false);
+					}
+					ps.println("}");
+				}
+				ps.println("if (args.hasNext()) {");
+				ps.println("return false;");
+				ps.println("}");
+			}
+			ps.println("}"); // validate_block
+			for (int i = 0; i < reqparams.size(); i += 64) {
+				int diff = reqparams.size() - i;
+				String cfconst = toHexLongConstantString(diff >= 64 ? 0xFFFFFFFFFFFFFFFFL : (1L << diff) - 1);
+				ps.println("if ((requires" + (i / 64) + " & " + cfconst + ") != " + cfconst + ") {");
+				ps.println("return false;");
+				ps.println("}");
+			}
+			ps.println("return true;");
+			ps.println("}");
+			ps.println("");
+		}
+	}
+
+	/**
+	 * Writes the statements that consume the value of the parameter, and return <code>false</code> if it's invalid.
+	 */
+	private void writeParameterValueValidation(PrintWriter ps, ModelCommand cmd, ModelParameter param,
+			boolean checkpresent) {
+		if (param.getFlag() != null) {
+			//flags take no value
+			return;
+		}
+		if (checkpresent) {
+			ps.println("if (!args.hasNext()) {");
+			ps.println("return false;");
+			ps.println("}");
+		}
+		TypeElement enumtype = getCompletionValuesEnum(cmd, param);
+		if (enumtype == null) {
+			String parsecall = getValidatedValueParseCall(cmd, param);
+			if (parsecall == null) {
+				ps.println("args.next();");
+				return;
+			}
+			if (param.getPositional() != null) {
+				//the name of the positional parameter is reported by the parser
+				ps.println("a = " + elements.getConstantExpression(param.getNames().iterator().next()) + ";");
+			}
+			//throws the same exception as the parser, the value is discarded
+			ps.println(parsecall + ";");
+			return;
+		}
+		if (isUpperCaseEnum(enumtype)) {
+			//same as ParseUtil.parseEnumUpperCaseArgument
+			ps.println("switch (args.next().toUpperCase(java.util.Locale.ENGLISH)) {");
+		} else {
+			ps.println("switch (args.next()) {");
+		}
+		Set<String> constants = getEnumConstantNames(enumtype);
+		if (!constants.isEmpty()) {
+			writeCaseLabels(ps, constants);
 			ps.println(" {");
-			ps.println("this.subCommandCaller.run();");
+			ps.println("break;");
+			ps.println("}");
+		}
+		ps.println("default: {");
+		ps.println("return false;");
+		ps.println("}");
+		ps.println("}");
+	}
+
+	/**
+	 * Gets the parse call of the built-in value formats that are checked by the validation.
+	 * <p>
+	 * Returns <code>null</code> if the value is converted by a converter, or its type is not a number, character or
+	 * non-flag boolean.
+	 */
+	private String getValidatedValueParseCall(ModelCommand cmd, ModelParameter param) {
+		if (param.getConverter() != null) {
+			return null;
+		}
+		ModelMultiParameter multiparameter = param.getMultiParameter();
+		TypeMirror targettype = multiparameter == null ? param.getParameterType() : multiparameter.getElementType();
+		if (getCommonConverterForType(cmd, targettype) != null) {
+			return null;
+		}
+		switch (targettype.getKind()) {
+			case BYTE: {
+				return getByteParseCall();
+			}
+			case SHORT: {
+				return getShortParseCall();
+			}
+			case INT: {
+				return getIntParseCall();
+			}
+			case LONG: {
+				return getLongParseCall();
+			}
+			case CHAR: {
+				return getCharacterParseCall();
+			}
+			case BOOLEAN: {
+				return getBooleanParseCall(null);
+			}
+			case FLOAT: {
+				return getFloatParseCall();
+			}
+			case DOUBLE: {
+				return getDoubleParseCall();
+			}
+			case DECLARED: {
+				Element elem = ((DeclaredType) targettype).asElement();
+				if (javaLangBoolean.equals(elem)) {
+					return getBooleanParseCall(null);
+				}
+				if (javaLangByte.equals(elem)) {
+					return getByteParseCall();
+				}
+				if (javaLangShort.equals(elem)) {
+					return getShortParseCall();
+				}
+				if (javaLangInteger.equals(elem)) {
+					return getIntParseCall();
+				}
+				if (javaLangLong.equals(elem)) {
+					return getLongParseCall();
+				}
+				if (javaLangFloat.equals(elem)) {
+					return getFloatParseCall();
+				}
+				if (javaLangDouble.equals(elem)) {
+					return getDoubleParseCall();
+				}
+				if (javaLangCharacter.equals(elem)) {
+					return getCharacterParseCall();
+				}
+				return null;
+			}
+			default: {
+				return null;
+			}
+		}
+	}
+
+	private void generateCompletionMethods(PrintWriter ps, ModelBaseCommand mc) {
+		Map<ModelCommand, Integer> commandids = getCommandIds(mc);
+		//the encoded tables, see CompletionTable.decodeTables
+		List<String> tables = new ArrayList<>();
+		Map<TypeElement, Integer> enumtables = new HashMap<>();
+
+		ps.println("public static java.util.List<String> complete(String[] words, int cursor) {");
+		ps.println("if (cursor < 0 || cursor > words.length) {");
+		ps.println("throw new IndexOutOfBoundsException(\"Cursor: \" + cursor + \" word count: \" + words.length);");
+		ps.println("}");
+		ps.println("String prefix = cursor < words.length ? words[cursor] : \"\";");
+		ps.println("java.util.TreeSet<String> result = new java.util.TreeSet<>();");
+		ps.println("complete0(words, 0, cursor, prefix, result);");
+		ps.println("return new java.util.ArrayList<>(result);");
+		ps.println("}");
+		ps.println("");
+
+		for (ModelCommand cmd : commandids.keySet()) {
+			int id = commandids.get(cmd);
+			Collection<ModelSubCommand> subcommands = cmd.getSubCommands();
+			ModelSubCommand defaultcommand = cmd.getDefaultSubCommand();
+			Set<String> names = new TreeSet<>();
+
+			ps.println("private static void complete" + id
+					+ "(String[] words, int i, int cursor, String prefix, java.util.Collection<String> result) {");
+			if (cmd == mc && generateHelpInfo) {
+				Set<String> helpcommandname = new LinkedHashSet<>(mc.getHelpCommandName());
+				removeSubCommandNamesFromCollection(helpcommandname, subcommands);
+				if (!helpcommandname.isEmpty()) {
+					//the help command is only recognized as the first argument
+					int table = addCompletionTable(tables, false, new TreeSet<>(helpcommandname));
+					ps.println("if (i == cursor) {");
+					writeCompletionValues(ps, table);
+					ps.println("} else {");
+					ps.println("switch (words[i]) {");
+					writeCaseLabels(ps, helpcommandname);
+					ps.println(" {");
+					if (!subcommands.isEmpty()) {
+						ps.println("completeHelp" + id + "(words, i + 1, cursor, prefix, result);");
+					}
+					ps.println("return;");
+					ps.println("}");
+					ps.println("default: {");
+					ps.println("break;");
+					ps.println("}");
+					ps.println("}");
+					ps.println("}");
+				}
+			}
+
+			List<ModelParameter> posparams = cmd.getPositionalParameters();
+			int positionalindex = 0;
+			for (ModelParameter posparam : posparams) {
+				if (posparam.getPositional().value() < 0) {
+					break;
+				}
+				ps.println("if (i == cursor) {");
+				writeCompletionValues(ps, getCompletionValuesTable(cmd, posparam, tables, enumtables));
+				ps.println("return;");
+				ps.println("}");
+				ps.println("++i;");
+				positionalindex++;
+			}
+
+			ps.println("param_loop:");
+			ps.println("while (i < cursor) {");
+			ps.println("String a = words[i];");
+			for (String prefix : cmd.getMapParameters().keySet()) {
+				names.add(prefix);
+				ps.println("if (a.startsWith(" + elements.getConstantExpression(prefix) + ")) {");
+				ps.println("++i;");
+				ps.println("continue param_loop;");
+				ps.println("}");
+			}
+			ps.println("switch (a) {");
+			for (ModelParameter param : cmd.getParameters()) {
+				if (param.isMapParameter() || param.getPositional() != null) {
+					continue;
+				}
+				names.addAll(param.getNames());
+				writeCaseLabels(ps, param.getNames());
+				ps.println(" {");
+				if (param.getFlag() == null) {
+					//the parameter takes a value
+					ps.println("if (++i == cursor) {");
+					writeCompletionValues(ps, getCompletionValuesTable(cmd, param, tables, enumtables));
+					ps.println("return;");
+					ps.println("}");
+				}
+				ps.println("++i;");
+				ps.println("continue param_loop;");
+				ps.println("}");
+			}
+			for (ModelSubCommand sc : subcommands) {
+				names.addAll(sc.getNames());
+				writeCaseLabels(ps, sc.getNames());
+				ps.println(" {");
+				ps.println("complete" + commandids.get(sc) + "(words, i + 1, cursor, prefix, result);");
+				ps.println("return;");
+				ps.println("}");
+			}
+			ps.println("default: {");
+			ps.println("break param_loop;");
+			ps.println("}");
+			ps.println("}"); // switch
+			ps.println("}"); // while
+
+			if (!names.isEmpty()) {
+				int table = addCompletionTable(tables, false, names);
+				ps.println("if (i == cursor) {");
+				writeCompletionValues(ps, table);
+				ps.println("}");
+			}
+			if (defaultcommand != null) {
+				ps.println("complete" + commandids.get(defaultcommand) + "(words, i, cursor, prefix, result);");
+			} else {
+				for (int n = posparams.size(); positionalindex < n; positionalindex++) {
+					ModelParameter posparam = posparams.get(positionalindex);
+					int valuestable = getCompletionValuesTable(cmd, posparam, tables, enumtables);
+					if (positionalindex + 1 < n) {
+						ps.println("if (i == cursor) {");
+						writeCompletionValues(ps, valuestable);
+						ps.println("return;");
+						ps.println("}");
+						ps.println("++i;");
+					} else if (valuestable >= 0) {
+						ps.println("if (i == cursor) {");
+						writeCompletionValues(ps, valuestable);
+						ps.println("}");
+					}
+				}
+			}
+			ps.println("}");
+			ps.println("");
+
+			if (generateHelpInfo && !subcommands.isEmpty()) {
+				Set<String> subcommandnames = new TreeSet<>();
+				for (ModelSubCommand sc : subcommands) {
+					subcommandnames.addAll(sc.getNames());
+				}
+				int table = addCompletionTable(tables, false, subcommandnames);
+
+				ps.println("private static void completeHelp" + id
+						+ "(String[] words, int i, int cursor, String prefix, java.util.Collection<String> result) {");
+				ps.println("if (i == cursor) {");
+				writeCompletionValues(ps, table);
+				ps.println("return;");
+				ps.println("}");
+				boolean hadswitch = false;
+				for (ModelSubCommand sc : subcommands) {
+					if (sc.getSubCommands().isEmpty()) {
+						continue;
+					}
+					if (!hadswitch) {
+						hadswitch = true;
+						ps.println("switch (words[i]) {");
+					}
+					writeCaseLabels(ps, sc.getNames());
+					ps.println(" {");
+					ps.println("completeHelp" + commandids.get(sc) + "(words, i + 1, cursor, prefix, result);");
+					ps.println("return;");
+					ps.println("}");
+				}
+				if (hadswitch) {
+					ps.println("default: {");
+					ps.println("return;");
+					ps.println("}");
+					ps.println("}");
+				}
+				ps.println("}");
+				ps.println("");
+			}
+		}
+
+		//lazily initialized, so the tables are only created when completion is requested
+		//the tables are decoded from string constants to keep the static initializer small for large models
+		ps.println("private static final class CompletionData {");
+		ps.print("static final " + CompletionTable.class.getCanonicalName() + "[] TABLES = "
+				+ CompletionTable.class.getCanonicalName() + ".decodeTables(");
+		printChunkedStringArguments(ps, String.join("", tables));
+		ps.println(");");
+		ps.println("}");
+		ps.println("");
+	}
+
+	private void generateTrainingMethod(PrintWriter ps, ModelBaseCommand mc, String cname,
+			boolean streamedarguments) {
+		List<List<String>> invocations = new ArrayList<>();
+		collectTrainingArguments(mc, new ArrayList<>(), invocations);
+		if (generateHelpInfo) {
+			Set<String> helpcommandname = new TreeSet<>(mc.getHelpCommandName());
+			removeSubCommandNamesFromCollection(helpcommandname, mc.getSubCommands());
+			if (!helpcommandname.isEmpty()) {
+				collectTrainingHelpArguments(mc, Collections.singletonList(helpcommandname.iterator().next()),
+						invocations);
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (List<String> args : invocations) {
+			for (String a : args) {
+				if (a.indexOf(ClassDataSharing.ARGUMENT_SEPARATOR) >= 0
+						|| a.indexOf(ClassDataSharing.INVOCATION_TERMINATOR) >= 0) {
+					throw new IllegalArgumentException("Training argument contains invalid character: " + a);
+				}
+				sb.append(ClassDataSharing.ARGUMENT_SEPARATOR);
+				sb.append(a);
+			}
+			sb.append(ClassDataSharing.INVOCATION_TERMINATOR);
+		}
+
+		//the arguments are decoded from string constants, as the invocations of large models wouldn't fit in a method
+		ps.println("public static void train() {");
+		ps.print("for (String[] args : " + ClassDataSharing.class.getCanonicalName() + ".decodeTrainingArguments(");
+		printChunkedStringArguments(ps, sb.toString());
+		ps.println(")) {");
+		ps.println("try {");
+		if (streamedarguments) {
+			ps.println(cname + " result = parse(java.util.Arrays.asList(args).iterator());");
+			//the command is not called, release the arguments that would be handed to it
+			ps.println("if (result.streamedArguments != null) {");
+			ps.println("result.streamedArguments.close();");
 			ps.println("}");
+		} else {
+			ps.println("parse(java.util.Arrays.asList(args).iterator());");
+		}
+		ps.println("} catch (RuntimeException e) {");
+		ps.println("//the training arguments are not necessarily valid, the failure paths are exercised as well");
+		ps.println("}");
+		if (generateCompletion) {
+			ps.println("complete(args, args.length);");
+		}
+		ps.println("}");
+		ps.println("}");
+		ps.println("");
+	}
+
+	/**
+	 * Collects argument lists that exercise the parsing of every parameter of the command and its subcommands.
+	 * <p>
+	 * The values of the parameters are examples that are valid for the common types. The invocations may fail for
+	 * other types and for missing required parameters, which is expected.
+	 */
+	private void collectTrainingArguments(ModelCommand cmd, List<String> path, List<List<String>> invocations) {
+		List<String> base = new ArrayList<>(path);
+		List<ModelParameter> posparams = cmd.getPositionalParameters();
+		int positionalindex = 0;
+		for (ModelParameter posparam : posparams) {
+			if (posparam.getPositional().value() < 0) {
+				break;
+			}
+			base.add(getTrainingValue(cmd, posparam));
+			positionalindex++;
+		}
+		invocations.add(base);
+		for (String prefix : cmd.getMapParameters().keySet()) {
+			List<String> args = new ArrayList<>(base);
+			args.add(prefix + "0=0");
+			invocations.add(args);
+		}
+		for (ModelParameter param : cmd.getParameters()) {
+			if (param.isMapParameter() || param.getPositional() != null) {
+				continue;
+			}
+			List<String> args = new ArrayList<>(base);
+			args.add(param.getNames().iterator().next());
+			if (param.getFlag() == null) {
+				args.add(getTrainingValue(cmd, param));
+			}
+			invocations.add(args);
+		}
+		if (positionalindex < posparams.size()) {
+			List<String> args = new ArrayList<>(base);
+			for (int n = posparams.size(); positionalindex < n; positionalindex++) {
+				args.add(getTrainingValue(cmd, posparams.get(positionalindex)));
+			}
+			invocations.add(args);
+		}
+		for (ModelSubCommand sc : cmd.getSubCommands()) {
+			List<String> subpath = new ArrayList<>(base);
+			subpath.add(sc.getNames().iterator().next());
+			collectTrainingArguments(sc, subpath, invocations);
+		}
+	}
+
+	private static void collectTrainingHelpArguments(ModelCommand cmd, List<String> path,
+			List<List<String>> invocations) {
+		invocations.add(path);
+		for (ModelSubCommand sc : cmd.getSubCommands()) {
+			List<String> subpath = new ArrayList<>(path);
+			subpath.add(sc.getNames().iterator().next());
+			collectTrainingHelpArguments(sc, subpath, invocations);
+		}
+	}
+
+	private String getTrainingValue(ModelCommand cmd, ModelParameter param) {
+		TypeElement enumtype = getCompletionValuesEnum(cmd, param);
+		if (enumtype != null) {
+			Set<String> constants = getEnumConstantNames(enumtype);
+			if (!constants.isEmpty()) {
+				return constants.iterator().next();
+			}
+		}
+		ModelMultiParameter multiparameter = param.getMultiParameter();
+		TypeMirror targettype = multiparameter == null ? param.getParameterType() : multiparameter.getElementType();
+		if (targettype.getKind() == TypeKind.BOOLEAN || (targettype.getKind() == TypeKind.DECLARED
+				&& ((DeclaredType) targettype).asElement().equals(javaLangBoolean))) {
+			return "true";
+		}
+		//valid for numbers, characters and strings
+		return "0";
+	}
+
+	/**
+	 * Prints the data as comma separated string constants that are short enough to fit in the constant pool.
+	 */
+	private void printChunkedStringArguments(PrintWriter ps, String data) {
+		for (int i = 0, len = data.length(); i < len; i += STRING_CONSTANT_CHUNK_LENGTH) {
+			if (i > 0) {
+				ps.print(", ");
+			}
+			ps.print(elements
+					.getConstantExpression(data.substring(i, Math.min(len, i + STRING_CONSTANT_CHUNK_LENGTH))));
+		}
+	}
+
+	private static void writeCompletionValues(PrintWriter ps, int table) {
+		if (table >= 0) {
+			ps.println("CompletionData.TABLES[" + table + "].addCompletions(prefix, result);");
+		}
+	}
+
+	/**
+	 * Gets the index of the completion table with the possible values of the parameter.
+	 * 
+	 * @return The table index or -1 if the values are not known.
+	 */
+	private int getCompletionValuesTable(ModelCommand cmd, ModelParameter param, List<String> tables,
+			Map<TypeElement, Integer> enumtables) {
+		TypeElement elem = getCompletionValuesEnum(cmd, param);
+		if (elem == null) {
+			return -1;
+		}
+		Integer table = enumtables.get(elem);
+		if (table == null) {
+			//upper case enums are parsed case insensitively, see getEnumParseCall
+			table = addCompletionTable(tables, isUpperCaseEnum(elem), getEnumConstantNames(elem));
+			enumtables.put(elem, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Gets the enum type which determines the possible values of the parameter.
+	 * 
+	 * @return The enum type or <code>null</code> if the values are not known.
+	 */
+	TypeElement getCompletionValuesEnum(ModelCommand cmd, ModelParameter param) {
+		if (param.getConverter() != null) {
+			return null;
+		}
+		ModelMultiParameter multiparameter = param.getMultiParameter();
+		TypeMirror targettype = multiparameter == null ? param.getParameterType() : multiparameter.getElementType();
+		if (targettype.getKind() != TypeKind.DECLARED || getCommonConverterForType(cmd, targettype) != null) {
+			return null;
+		}
+		TypeElement elem = (TypeElement) ((DeclaredType) targettype).asElement();
+		if (elem.getKind() != ElementKind.ENUM) {
+			return null;
+		}
+		return elem;
+	}
+
+	static Set<String> getEnumConstantNames(TypeElement enumtype) {
+		Set<String> constants = new TreeSet<>();
+		for (Element e : enumtype.getEnclosedElements()) {
+			if (e.getKind() == ElementKind.ENUM_CONSTANT) {
+				constants.add(e.getSimpleName().toString());
+			}
+		}
+		return constants;
+	}
+
+	/**
+	 * Encodes the table in the format of {@link CompletionTable#decodeTables(String...)} and adds it to the list.
+	 * 
+	 * @return The index of the added table.
+	 */
+	private static int addCompletionTable(List<String> tables, boolean caseinsensitive,
+			Collection<String> candidates) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(caseinsensitive ? '1' : '0');
+		for (String c : candidates) {
+			if (c.indexOf(CompletionTable.CANDIDATE_SEPARATOR) >= 0
+					|| c.indexOf(CompletionTable.TABLE_TERMINATOR) >= 0) {
+				throw new IllegalArgumentException("Completion candidate contains invalid character: " + c);
+			}
+			sb.append(CompletionTable.CANDIDATE_SEPARATOR);
+			sb.append(c);
 		}
+		sb.append(CompletionTable.TABLE_TERMINATOR);
+		tables.add(sb.toString());
+		return tables.size() - 1;
+	}
+
+	private static void generateParseAllMethods(PrintWriter ps, String cname) {
+		String argumentstype = "java.util.List<? extends Iterable<? extends String>>";
+		ps.println("public static java.util.List<" + cname + "> parseAll(" + argumentstype + " arguments) {");
+		ps.println("return parseAll(arguments, java.util.concurrent.ForkJoinPool.commonPool());");
+		ps.println("}");
+		ps.println("");
+		ps.println("public static java.util.List<" + cname + "> parseAll(" + argumentstype
+				+ " arguments, java.util.concurrent.Executor executor) {");
+		ps.println("return ParseUtil.parseAll(arguments, a -> parse(a.iterator()), executor);");
+		ps.println("}");
+		ps.println("");
+	}
+
+	private static void generateRunScriptMethods(PrintWriter ps) {
+		String throwsdecl = " throws java.io.IOException, " + ScriptExecutionException.class.getCanonicalName();
+		ps.println("public static void runScript(java.nio.file.Path script)" + throwsdecl + " {");
+		ps.println("runScript(script, Runtime.getRuntime().availableProcessors());");
+		ps.println("}");
+		ps.println("");
+		ps.println("public static void runScript(java.nio.file.Path script, int parallelism)" + throwsdecl + " {");
+		ps.println(ScriptRunner.class.getCanonicalName()
+				+ ".run(script, parallelism, args -> parse(args.iterator()).callCommand());");
 		ps.println("}");
+		ps.println("");
+	}
+
+	private static boolean hasPipelinedParameter(ModelBaseCommand mc) {
+		List<ModelCommand> commands = new ArrayList<>();
+		collectCommandsPreOrder(mc, commands);
+		for (ModelCommand c : commands) {
+			if (getPipelinedParameter(c) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasStreamedArguments(ModelBaseCommand mc) {
+		List<ModelCommand> commands = new ArrayList<>();
+		collectCommandsPreOrder(mc, commands);
+		for (ModelCommand c : commands) {
+			for (ModelParameter p : c.getPositionalParameters()) {
+				if (p.getStreamedArguments() != null && p.getStreamedArguments().isLazy()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	static void collectCommandsPreOrder(ModelCommand cmd, List<ModelCommand> result) {
+		result.add(cmd);
+		for (ModelSubCommand sc : cmd.getSubCommands()) {
+			collectCommandsPreOrder(sc, result);
+		}
 	}
 
 	public TypeElement getCommandAnnot() {
@@ -1870,7 +4529,7 @@ public class CommandLineProcessor implements Processor {
 		return commonConverterAnnot;
 	}
 
-	private static void printThrowsTypes(PrintStream ps, Iterable<? extends TypeElement> types) {
+	private static void printThrowsTypes(PrintWriter ps, Iterable<? extends TypeElement> types) {
 		Iterator<? extends TypeElement> it = types.iterator();
 		if (!it.hasNext()) {
 			return;
@@ -1921,6 +4580,13 @@ public class CommandLineProcessor implements Processor {
 		return collectionType;
 	}
 
+	private TypeMirror getCloseableType() {
+		if (closeableType == null) {
+			closeableType = elements.getTypeElement(Closeable.class.getCanonicalName()).asType();
+		}
+		return closeableType;
+	}
+
 	private String getEnumParseCall(TypeElement enumtype) {
 		String call;
 		if (isUpperCaseEnum(enumtype)) {
@@ -1975,7 +4641,7 @@ public class CommandLineProcessor implements Processor {
 
 	private Map<TypeElement, Boolean> uppercaseEnums = new LinkedHashMap<>();
 
-	private boolean isUpperCaseEnum(TypeElement te) {
+	boolean isUpperCaseEnum(TypeElement te) {
 		return uppercaseEnums.computeIfAbsent(te, CommandLineProcessor::isUpperCaseEnumImpl);
 	}
 
@@ -1991,7 +4657,7 @@ public class CommandLineProcessor implements Processor {
 		return true;
 	}
 
-	private void writeCaseLabels(PrintStream ps, Iterable<? extends String> name) {
+	private void writeCaseLabels(PrintWriter ps, Iterable<? extends String> name) {
 		for (Iterator<? extends String> it = name.iterator(); it.hasNext();) {
 			String n = it.next();
 			ps.print("case ");
@@ -2014,6 +4680,21 @@ public class CommandLineProcessor implements Processor {
 
 	}
 
+	private ModelMethodCall getBestMethodMatch(TypeElement te, String methodname, List<ModelCommand> queryparams) {
+		List<Object> key = new ArrayList<>(queryparams.size() + 2);
+		key.add(te);
+		key.add(methodname);
+		for (ModelCommand qc : queryparams) {
+			key.add(qc.getTypeElement());
+		}
+		Optional<ModelMethodCall> result = bestMethodMatchCache.get(key);
+		if (result == null) {
+			result = Optional.ofNullable(getBestMethodMatch(getMethodsWithName(te, methodname), queryparams));
+			bestMethodMatchCache.put(key, result);
+		}
+		return result.orElse(null);
+	}
+
 	private ModelMethodCall getBestMethodMatch(List<ExecutableElement> methods, List<ModelCommand> queryparams) {
 		if (methods.isEmpty()) {
 			return null;
@@ -2075,7 +4756,7 @@ public class CommandLineProcessor implements Processor {
 		return result;
 	}
 
-	private void printRunnableLambda(PrintStream ps, Runnable content) {
+	private void printRunnableLambda(PrintWriter ps, Runnable content) {
 		if (supportsLambda) {
 			ps.println("() -> {");
 			content.run();
@@ -2093,8 +4774,15 @@ public class CommandLineProcessor implements Processor {
 	}
 
 	public List<ExecutableElement> getMethodsWithName(TypeElement te, String name) {
-		List<ExecutableElement> result = new ArrayList<>();
-		addMethodsWithName(te, name, result, te);
+		Map<String, List<ExecutableElement>> typemethods = methodsWithNameCache.computeIfAbsent(te,
+				x -> new HashMap<>());
+		List<ExecutableElement> result = typemethods.get(name);
+		if (result == null) {
+			result = new ArrayList<>();
+			addMethodsWithName(te, name, result, te);
+			result = Collections.unmodifiableList(result);
+			typemethods.put(name, result);
+		}
 		return result;
 	}
 
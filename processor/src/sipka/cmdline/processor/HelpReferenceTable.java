@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the help information of the commands and writes them in the help reference formats.
+ * <p>
+ * Version 1 is a sequential stream of {@link DataOutput#writeUTF(String)} records for each command.
+ * <p>
+ * Version 2 is a random access format that is read by {@link sipka.cmdline.runtime.HelpReference HelpReference}. All
+ * numbers are big-endian <code>int</code>s. The layout is the following:
+ * 
+ * <pre>
+ * header:
+ *     version (2)
+ *     command count
+ *     command index offset
+ *     string table offset
+ *     command records offset
+ * command index:
+ *     offset of the command record relative to the command records, for each command, sorted by the command paths
+ * string table:
+ *     UTF-8 byte length, bytes
+ * command records:
+ *     path: count, string references
+ *     usage string reference
+ *     doc comment string reference
+ *     parameter count
+ *     parameter name index: count, (name string reference, parameter offset) sorted by name
+ *     parameters:
+ *         names: count, string references
+ *         flags: count, string references
+ *         meta names: count, string references
+ *         doc comment string reference
+ *         format string reference
+ * </pre>
+ * 
+ * The string references are offsets relative to the start of the string table. The parameter offsets are relative to
+ * the start of the command records.
+ */
+final class HelpReferenceTable {
+	static final int HEADER_SIZE = 5 * 4;
+
+	private static final Comparator<List<String>> PATH_COMPARATOR = (l, r) -> {
+		int size = Math.min(l.size(), r.size());
+		for (int i = 0; i < size; i++) {
+			int cmp = l.get(i).compareTo(r.get(i));
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(l.size(), r.size());
+	};
+
+	static final class CommandEntry {
+		final List<String> path;
+		final String usage;
+		final String docComment;
+		final List<ParameterEntry> parameters = new ArrayList<>();
+
+		CommandEntry(List<String> path, String usage, String docComment) {
+			this.path = path;
+			this.usage = usage;
+			this.docComment = docComment;
+		}
+
+		public void addParameter(Collection<String> names, Collection<String> flags, Collection<String> metanames,
+				String doccomment, String format) {
+			parameters.add(new ParameterEntry(names, flags, metanames, doccomment, format));
+		}
+	}
+
+	private static final class ParameterEntry {
+		final Collection<String> names;
+		final Collection<String> flags;
+		final Collection<String> metaNames;
+		final String docComment;
+		final String format;
+
+		ParameterEntry(Collection<String> names, Collection<String> flags, Collection<String> metaNames,
+				String docComment, String format) {
+			this.names = names == null ? Collections.emptyList() : names;
+			this.flags = flags == null ? Collections.emptyList() : flags;
+			this.metaNames = metaNames == null ? Collections.emptyList() : metaNames;
+			this.docComment = docComment;
+			this.format = format;
+		}
+	}
+
+	private final List<CommandEntry> commands = new ArrayList<>();
+
+	public CommandEntry addCommand(List<String> path, String usage, String doccomment) {
+		CommandEntry result = new CommandEntry(path, usage, doccomment);
+		commands.add(result);
+		return result;
+	}
+
+	public void write(DataOutput out, int version) throws IOException {
+		switch (version) {
+			case 1: {
+				writeVersion1(out);
+				break;
+			}
+			case 2: {
+				writeVersion2(out);
+				break;
+			}
+			default: {
+				throw new IllegalArgumentException("Unsupported help reference version: " + version);
+			}
+		}
+	}
+
+	private void writeVersion1(DataOutput out) throws IOException {
+		out.writeInt(1);
+		for (CommandEntry cmd : commands) {
+			writeUTFCollection(out, cmd.path);
+			out.writeUTF(cmd.usage);
+			out.writeUTF(cmd.docComment);
+			out.writeInt(cmd.parameters.size());
+			for (ParameterEntry p : cmd.parameters) {
+				writeUTFCollection(out, p.names);
+				writeUTFCollection(out, p.flags);
+				writeUTFCollection(out, p.metaNames);
+				out.writeUTF(p.docComment);
+				out.writeUTF(p.format);
+			}
+		}
+	}
+
+	private void writeVersion2(DataOutput out) throws IOException {
+		StringTable strings = new StringTable();
+		ByteArrayOutputStream recordsbaos = new ByteArrayOutputStream();
+		DataOutputStream records = new DataOutputStream(recordsbaos);
+
+		List<CommandEntry> sorted = new ArrayList<>(commands);
+		sorted.sort((l, r) -> PATH_COMPARATOR.compare(l.path, r.path));
+		int[] recordoffsets = new int[sorted.size()];
+		for (int i = 0; i < recordoffsets.length; i++) {
+			CommandEntry cmd = sorted.get(i);
+			if (i > 0 && PATH_COMPARATOR.compare(sorted.get(i - 1).path, cmd.path) == 0) {
+				throw new IllegalArgumentException("Duplicate command path in help reference: " + cmd.path);
+			}
+			recordoffsets[i] = records.size();
+			writeRecord(records, strings, cmd);
+		}
+		records.flush();
+
+		int indexoffset = HEADER_SIZE;
+		int stringtableoffset = indexoffset + recordoffsets.length * 4;
+		int recordsoffset = stringtableoffset + strings.size();
+
+		out.writeInt(2);
+		out.writeInt(recordoffsets.length);
+		out.writeInt(indexoffset);
+		out.writeInt(stringtableoffset);
+		out.writeInt(recordsoffset);
+		for (int offset : recordoffsets) {
+			out.writeInt(offset);
+		}
+		strings.writeTo(out);
+		out.write(recordsbaos.toByteArray());
+	}
+
+	private static void writeRecord(DataOutputStream records, StringTable strings, CommandEntry cmd)
+			throws IOException {
+		ByteArrayOutputStream paramsbaos = new ByteArrayOutputStream();
+		DataOutputStream params = new DataOutputStream(paramsbaos);
+		List<Map.Entry<String, Integer>> nameindex = new ArrayList<>();
+		for (ParameterEntry p : cmd.parameters) {
+			int paramoffset = params.size();
+			for (String n : p.names) {
+				nameindex.add(new AbstractMap.SimpleEntry<>(n, paramoffset));
+			}
+			writeReferenceCollection(params, strings, p.names);
+			writeReferenceCollection(params, strings, p.flags);
+			writeReferenceCollection(params, strings, p.metaNames);
+			params.writeInt(strings.add(p.docComment));
+			params.writeInt(strings.add(p.format));
+		}
+		params.flush();
+		nameindex.sort(Map.Entry.comparingByKey());
+
+		int recordstart = records.size();
+		//path, usage, doc comment, parameter count, name index count, name index entries
+		int paramsstart = recordstart + (4 + cmd.path.size() * 4) + 4 + 4 + 4 + 4 + nameindex.size() * 8;
+
+		writeReferenceCollection(records, strings, cmd.path);
+		records.writeInt(strings.add(cmd.usage));
+		records.writeInt(strings.add(cmd.docComment));
+		records.writeInt(cmd.parameters.size());
+		records.writeInt(nameindex.size());
+		for (Map.Entry<String, Integer> entry : nameindex) {
+			records.writeInt(strings.add(entry.getKey()));
+			records.writeInt(paramsstart + entry.getValue());
+		}
+		paramsbaos.writeTo(records);
+	}
+
+	private static void writeReferenceCollection(DataOutput out, StringTable strings, Collection<String> coll)
+			throws IOException {
+		out.writeInt(coll.size());
+		for (String s : coll) {
+			out.writeInt(strings.add(s));
+		}
+	}
+
+	private static void writeUTFCollection(DataOutput out, Collection<String> coll) throws IOException {
+		out.writeInt(coll.size());
+		for (String s : coll) {
+			out.writeUTF(s);
+		}
+	}
+
+	private static final class StringTable {
+		private final Map<String, Integer> offsets = new HashMap<>();
+		private final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(baos);
+
+		public int add(String s) throws IOException {
+			Integer present = offsets.get(s);
+			if (present != null) {
+				return present;
+			}
+			int offset = out.size();
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			offsets.put(s, offset);
+			return offset;
+		}
+
+		public int size() {
+			return out.size();
+		}
+
+		public void writeTo(DataOutput output) throws IOException {
+			output.write(baos.toByteArray());
+		}
+	}
+}
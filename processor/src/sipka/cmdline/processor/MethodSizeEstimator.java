@@ -0,0 +1,448 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.processor;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writer that estimates the bytecode size of the methods in the Java source code written through it.
+ * <p>
+ * The generated source is not compiled by the processor, so the sizes are estimated by counting the tokens of the
+ * methods declared directly in the top level class. Each kind of token is weighted by the number of bytecode bytes it
+ * typically compiles to. The weights are calibrated for the code generated by {@link CommandLineProcessor}. For
+ * methods larger than a few kilobytes the estimates are usually within 10%, and at most 25% less than the compiled
+ * sizes. Lambda and anonymous class bodies are counted in the enclosing method.
+ * <p>
+ * The number of <code>case</code> labels and <code>startsWith</code> calls is counted as well, as these determine how
+ * many comparisons are performed for a single argument by the parser methods.
+ */
+public final class MethodSizeEstimator extends FilterWriter {
+	/**
+	 * The size above which HotSpot doesn't compile the method.
+	 * <p>
+	 * It is the default value of the <code>-XX:HugeMethodLimit</code> option, which is used if
+	 * <code>-XX:+DontCompileHugeMethods</code> is set. That is the default.
+	 */
+	public static final int HUGE_METHOD_LIMIT = 8000;
+
+	private static final int STATE_CODE = 0;
+	private static final int STATE_STRING_LITERAL = 1;
+	private static final int STATE_CHAR_LITERAL = 2;
+	private static final int STATE_LINE_COMMENT = 3;
+	private static final int STATE_BLOCK_COMMENT = 4;
+
+	private static final Set<String> CONTROL_KEYWORDS = new HashSet<>(Arrays.asList("if", "else", "while", "for",
+			"do", "switch", "return", "throw", "break", "continue", "try", "catch", "finally", "new"));
+	private static final Set<String> NON_CODE_KEYWORDS = new HashSet<>(Arrays.asList("final", "default", "this",
+			"String", "int", "long", "boolean", "char", "byte", "short", "float", "double", "void"));
+
+	private static final int WEIGHT_NAME = 1;
+	private static final int WEIGHT_CALL = 4;
+	private static final int WEIGHT_LITERAL = 1;
+	private static final int WEIGHT_CONTROL = 3;
+	private static final int WEIGHT_OPERATOR = 1;
+	/**
+	 * A string switch compiles to a lookup switch on the hash codes, an <code>equals</code> call, and a table switch on
+	 * the resulting index for each label.
+	 */
+	private static final int WEIGHT_CASE = 30;
+
+	/**
+	 * Size information about a method.
+	 */
+	public static final class MethodSize {
+		private final String name;
+		private final int line;
+		private final int estimatedSize;
+		private final int caseLabelCount;
+		private final int prefixCheckCount;
+
+		MethodSize(String name, int line, int estimatedSize, int caseLabelCount, int prefixCheckCount) {
+			this.name = name;
+			this.line = line;
+			this.estimatedSize = estimatedSize;
+			this.caseLabelCount = caseLabelCount;
+			this.prefixCheckCount = prefixCheckCount;
+		}
+
+		/**
+		 * Gets the name of the method.
+		 * <p>
+		 * Overloaded methods have the same name, and are reported in declaration order.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Gets the line number of the method body start in the source code, starting from 1.
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		/**
+		 * Gets the estimated bytecode size of the method in bytes.
+		 */
+		public int getEstimatedSize() {
+			return estimatedSize;
+		}
+
+		/**
+		 * Gets the number of <code>case</code> labels in the method.
+		 */
+		public int getCaseLabelCount() {
+			return caseLabelCount;
+		}
+
+		/**
+		 * Gets the number of <code>startsWith</code> calls in the method.
+		 * <p>
+		 * For the parser methods this is the number of map parameter prefixes checked for each argument.
+		 */
+		public int getPrefixCheckCount() {
+			return prefixCheckCount;
+		}
+
+		@Override
+		public String toString() {
+			return name + " at line " + line + ": " + estimatedSize + " bytes, " + caseLabelCount + " case labels, "
+					+ prefixCheckCount + " prefix checks";
+		}
+	}
+
+	private final List<MethodSize> methods = new ArrayList<>();
+
+	private int state = STATE_CODE;
+	private boolean escaped = false;
+	private char lastChar;
+	private int depth = 0;
+
+	/**
+	 * The declaration text at class member level since the last member.
+	 */
+	private final StringBuilder memberHeader = new StringBuilder();
+	/**
+	 * The identifier or number being read.
+	 */
+	private final StringBuilder word = new StringBuilder();
+	/**
+	 * The last completed word in the method body, if it's an identifier.
+	 */
+	private String lastIdentifier;
+	/**
+	 * <code>true</code> if the last token was a string literal.
+	 */
+	private boolean afterStringLiteral;
+	/**
+	 * <code>true</code> if the last tokens were a string literal and a <code>+</code>. The concatenation of string
+	 * literals is evaluated by the compiler.
+	 */
+	private boolean concatenatingLiterals;
+
+	private int line = 1;
+
+	private String methodName;
+	private int methodLine;
+	private int names;
+	private int calls;
+	private int literals;
+	private int controls;
+	private int operators;
+	private int caseLabels;
+	private int prefixChecks;
+
+	public MethodSizeEstimator(Writer out) {
+		super(out);
+	}
+
+	/**
+	 * Estimates the sizes of the methods in the given source code.
+	 * 
+	 * @param source
+	 *            The source code of a class.
+	 * @return The method sizes in declaration order.
+	 */
+	public static List<MethodSize> estimate(CharSequence source) {
+		//the characters are not written to the writer
+		MethodSizeEstimator estimator = new MethodSizeEstimator(new StringWriter(0));
+		for (int i = 0, len = source.length(); i < len; i++) {
+			estimator.handleChar(source.charAt(i));
+		}
+		return estimator.getMethodSizes();
+	}
+
+	/**
+	 * Gets the sizes of the methods that were completely written.
+	 * 
+	 * @return An unmodifiable list of the method sizes in declaration order.
+	 */
+	public List<MethodSize> getMethodSizes() {
+		return Collections.unmodifiableList(methods);
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		handleChar((char) c);
+		out.write(c);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		for (int i = off, end = off + len; i < end; i++) {
+			handleChar(cbuf[i]);
+		}
+		out.write(cbuf, off, len);
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		for (int i = off, end = off + len; i < end; i++) {
+			handleChar(str.charAt(i));
+		}
+		out.write(str, off, len);
+	}
+
+	private void handleChar(char c) {
+		char prev = lastChar;
+		lastChar = c;
+		if (c == '\n') {
+			++line;
+		}
+		if (c == '\r' || c == '\n') {
+			if (state != STATE_BLOCK_COMMENT) {
+				//literals and line comments can't span multiple lines
+				if (state == STATE_CODE) {
+					endWord();
+				}
+				state = STATE_CODE;
+				escaped = false;
+			}
+			return;
+		}
+		switch (state) {
+			case STATE_CODE: {
+				handleCodeChar(c, prev);
+				break;
+			}
+			case STATE_STRING_LITERAL:
+			case STATE_CHAR_LITERAL: {
+				if (escaped) {
+					escaped = false;
+				} else if (c == '\\') {
+					escaped = true;
+				} else if (c == (state == STATE_STRING_LITERAL ? '"' : '\'')) {
+					afterStringLiteral = state == STATE_STRING_LITERAL;
+					state = STATE_CODE;
+				}
+				break;
+			}
+			case STATE_BLOCK_COMMENT: {
+				if (c == '/' && prev == '*') {
+					state = STATE_CODE;
+					//the / shouldn't start a new comment
+					lastChar = 0;
+				}
+				break;
+			}
+			default: {
+				break;
+			}
+		}
+	}
+
+	private void handleCodeChar(char c, char prev) {
+		if (Character.isJavaIdentifierPart(c) || (c == '.' && word.length() > 0 && isDigit(word.charAt(0)))) {
+			word.append(c);
+			return;
+		}
+		endWord();
+		if (depth == 1) {
+			memberHeader.append(c);
+		}
+		switch (c) {
+			case '{': {
+				if (depth == 1) {
+					startMember();
+				}
+				++depth;
+				break;
+			}
+			case '}': {
+				if (depth > 0) {
+					--depth;
+				}
+				if (depth == 1) {
+					endMember();
+				}
+				break;
+			}
+			case ';': {
+				if (depth == 1) {
+					memberHeader.setLength(0);
+				}
+				break;
+			}
+			case '"': {
+				state = STATE_STRING_LITERAL;
+				if (concatenatingLiterals) {
+					//the + was counted as an operator
+					--operators;
+				} else {
+					++literals;
+				}
+				break;
+			}
+			case '\'': {
+				state = STATE_CHAR_LITERAL;
+				++literals;
+				break;
+			}
+			case '/': {
+				if (prev == '/') {
+					state = STATE_LINE_COMMENT;
+					//the first / was counted as an operator
+					--operators;
+				}
+				break;
+			}
+			case '*': {
+				if (prev == '/') {
+					state = STATE_BLOCK_COMMENT;
+					--operators;
+					//don't treat the * as the end of the comment in /*/
+					lastChar = 0;
+				}
+				break;
+			}
+			case '(': {
+				if (lastIdentifier != null && !CONTROL_KEYWORDS.contains(lastIdentifier)
+						&& !NON_CODE_KEYWORDS.contains(lastIdentifier)) {
+					++calls;
+					if ("startsWith".equals(lastIdentifier)) {
+						++prefixChecks;
+					}
+				}
+				break;
+			}
+			case '=':
+			case '+':
+			case '-':
+			case '<':
+			case '>':
+			case '!':
+			case '&':
+			case '|':
+			case '?':
+			case '%': {
+				++operators;
+				break;
+			}
+			default: {
+				break;
+			}
+		}
+		if (!Character.isWhitespace(c)) {
+			lastIdentifier = null;
+			concatenatingLiterals = c == '+' && afterStringLiteral;
+			afterStringLiteral = false;
+		}
+		if (c == '/' && state == STATE_CODE) {
+			++operators;
+		}
+	}
+
+	private void endWord() {
+		if (word.length() == 0) {
+			return;
+		}
+		String w = word.toString();
+		word.setLength(0);
+		afterStringLiteral = false;
+		concatenatingLiterals = false;
+		if (depth == 1) {
+			memberHeader.append(w);
+		}
+		if (methodName == null) {
+			return;
+		}
+		if (isDigit(w.charAt(0))) {
+			++literals;
+			lastIdentifier = null;
+			return;
+		}
+		lastIdentifier = w;
+		if ("case".equals(w)) {
+			++caseLabels;
+		} else if (CONTROL_KEYWORDS.contains(w)) {
+			++controls;
+		} else if (!NON_CODE_KEYWORDS.contains(w)) {
+			++names;
+		}
+	}
+
+	private void startMember() {
+		String header = memberHeader.toString();
+		memberHeader.setLength(0);
+		int paren = header.indexOf('(');
+		if (paren < 0 || header.indexOf('=') >= 0 || header.contains(" class ") || header.contains(" interface ")
+				|| header.contains(" enum ")) {
+			//field initializer or nested class
+			return;
+		}
+		int nameend = paren;
+		while (nameend > 0 && Character.isWhitespace(header.charAt(nameend - 1))) {
+			--nameend;
+		}
+		int namestart = nameend;
+		while (namestart > 0 && Character.isJavaIdentifierPart(header.charAt(namestart - 1))) {
+			--namestart;
+		}
+		methodName = header.substring(namestart, nameend);
+		methodLine = line;
+		names = 0;
+		calls = 0;
+		literals = 0;
+		controls = 0;
+		operators = 0;
+		caseLabels = 0;
+		prefixChecks = 0;
+	}
+
+	private void endMember() {
+		memberHeader.setLength(0);
+		if (methodName == null) {
+			return;
+		}
+		int size = names * WEIGHT_NAME + calls * WEIGHT_CALL + literals * WEIGHT_LITERAL
+				+ controls * WEIGHT_CONTROL + operators * WEIGHT_OPERATOR + caseLabels * WEIGHT_CASE;
+		methods.add(new MethodSize(methodName, methodLine, size, caseLabels, prefixChecks));
+		methodName = null;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.processor.model.ModelBaseCommand;
+import sipka.cmdline.processor.model.ModelCommand;
+import sipka.cmdline.processor.model.ModelCommonConverter;
+import sipka.cmdline.processor.model.ModelConverter;
+import sipka.cmdline.processor.model.ModelMultiParameter;
+import sipka.cmdline.processor.model.ModelParameter;
+import sipka.cmdline.processor.model.ModelSubCommand;
+import sipka.cmdline.runtime.ParseUtil;
+
+/**
+ * Computes a fingerprint of a resolved {@link ModelBaseCommand} that changes whenever the generated source could
+ * change.
+ * <p>
+ * The fingerprint covers the structure of the model, the annotations and doc comments of the elements it was
+ * constructed from, the signatures of the lifecycle and converter methods, the processor options and the class files
+ * of the processor, runtime and API packages. The elements which were visited during the computation are collected, as they are the
+ * originating elements of the generated source.
+ */
+final class ModelFingerprint {
+	private static final String FINGERPRINT_LINE_PREFIX = "// sipka.cmdline fingerprint: ";
+
+	private static volatile byte[] processorImplementationHash;
+
+	private final CommandLineProcessor processor;
+	private final MessageDigest digest;
+	private final Set<Element> visitedElements = new LinkedHashSet<>();
+
+	public ModelFingerprint(CommandLineProcessor processor) {
+		this.processor = processor;
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
+		digest.update(getProcessorImplementationHash());
+	}
+
+	public static boolean isFingerprintLine(String line, String fingerprint) {
+		return line.equals(FINGERPRINT_LINE_PREFIX + fingerprint);
+	}
+
+	public static String getFingerprintLine(String fingerprint) {
+		return FINGERPRINT_LINE_PREFIX + fingerprint;
+	}
+
+	public void addOption(String name, Object value) {
+		put(name);
+		put(String.valueOf(value));
+	}
+
+	public void addCommand(ModelBaseCommand cmd) {
+		put(cmd.getGeneratedClassQualifiedName());
+		put(cmd.getHelpCommandName());
+		put(cmd.createMainMethod());
+		addCommandImpl(cmd);
+	}
+
+	public Set<Element> getVisitedElements() {
+		return visitedElements;
+	}
+
+	public String finish() {
+		byte[] hash = digest.digest();
+		StringBuilder sb = new StringBuilder(hash.length * 2);
+		for (byte b : hash) {
+			sb.append(Character.forDigit((b >>> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	private void addCommandImpl(ModelCommand cmd) {
+		TypeElement te = cmd.getTypeElement();
+		put("command");
+		addElement(te);
+		put(cmd.isDeprecated());
+		put(cmd.getDocComment());
+		addMethods(te, "init");
+		addMethods(te, "call");
+		addMethods(te, "close");
+		for (ModelCommonConverter cc : cmd.getCommonConverters()) {
+			put("common-converter");
+			put(cc.getTargetType());
+			addConverterMethods(cc.getMethodDeclaringType(), cc.getMethodName());
+		}
+		for (ModelParameter p : cmd.getParameters()) {
+			addParameter(p);
+		}
+		for (ModelSubCommand sc : cmd.getSubCommands()) {
+			put("subcommand");
+			put(sc.getNames());
+			put(sc.isDefaultCommand());
+			addCommandImpl(sc);
+		}
+		put("end-command");
+	}
+
+	private void addParameter(ModelParameter p) {
+		put("parameter");
+		Element elem = p.getElement();
+		put(elem.getKind().name());
+		put(elem.getEnclosingElement().toString());
+		addElement(elem);
+		for (Element pathelem : p.getLocation().getElementPath()) {
+			addElement(pathelem);
+		}
+		put(p.getNames());
+		put(p.getHelpMetaNames());
+		put(p.getDocComment());
+		put(p.getDocCommentFormat());
+		put(p.isRequired());
+		put(p.isDeprecated());
+		put(p.getPositional() != null);
+		if (p.getPositional() != null) {
+			put(p.getPositional().value());
+		}
+		put(p.getFlag() != null);
+		if (p.getFlag() != null) {
+			put(p.getFlag().negate());
+		}
+		Entry<String, String> mapformat = p.getMapParameterFormatNames();
+		if (mapformat != null) {
+			put(mapformat.getKey());
+			put(mapformat.getValue());
+		}
+		addType(p.getParameterType());
+		ModelMultiParameter multi = p.getMultiParameter();
+		if (multi != null) {
+			put(multi.getMethodName());
+			addType(multi.getElementType());
+		}
+		ModelConverter converter = p.getConverter();
+		if (converter != null) {
+			addConverterMethods(converter.getMethodDeclaringType(), converter.getMethodName());
+		}
+	}
+
+	private void addConverterMethods(TypeElement declaringtype, String methodname) {
+		put("converter");
+		visitedElements.add(declaringtype);
+		put(declaringtype.getQualifiedName().toString());
+		put(methodname);
+		addMethods(declaringtype, methodname);
+	}
+
+	private void addType(TypeMirror type) {
+		put(type);
+		if (type == null || type.getKind() != TypeKind.DECLARED) {
+			return;
+		}
+		Element elem = processor.getTypes().asElement(type);
+		if (elem == null) {
+			return;
+		}
+		visitedElements.add(elem);
+		if (elem.getKind() == ElementKind.ENUM) {
+			//the generated parsing depends on the enum constants
+			for (Element e : elem.getEnclosedElements()) {
+				if (e.getKind() == ElementKind.ENUM_CONSTANT) {
+					put(e.getSimpleName().toString());
+				}
+			}
+		}
+	}
+
+	private void addMethods(TypeElement te, String name) {
+		List<ExecutableElement> methods = processor.getMethodsWithName(te, name);
+		put(methods.size());
+		for (ExecutableElement ee : methods) {
+			visitedElements.add(ee);
+			put(ee.getEnclosingElement().toString());
+			put(ee.toString());
+			put(ee.getModifiers().toString());
+			put(ee.getReturnType());
+			put(ee.getThrownTypes().toString());
+			put(processor.getElements().getDocComment(ee));
+		}
+	}
+
+	private void addElement(Element elem) {
+		visitedElements.add(elem);
+		put(elem.toString());
+		List<? extends AnnotationMirror> annotations = elem.getAnnotationMirrors();
+		put(annotations.size());
+		for (AnnotationMirror am : annotations) {
+			put(am.toString());
+		}
+	}
+
+	private void put(Collection<String> values) {
+		put(values.size());
+		for (String v : values) {
+			put(v);
+		}
+	}
+
+	private void put(TypeMirror type) {
+		put(type == null ? null : type.toString());
+	}
+
+	private void put(boolean value) {
+		digest.update(value ? (byte) 1 : (byte) 0);
+	}
+
+	private void put(int value) {
+		digest.update((byte) (value >>> 24));
+		digest.update((byte) (value >>> 16));
+		digest.update((byte) (value >>> 8));
+		digest.update((byte) value);
+	}
+
+	private void put(String s) {
+		if (s == null) {
+			put(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		put(bytes.length);
+		digest.update(bytes);
+	}
+
+	/**
+	 * Hashes the class files that the generated code depends on.
+	 * <p>
+	 * The generated code changes with the implementation of the processor and the model classes, and the encoded data
+	 * depends on the runtime classes. All classes in their packages are hashed. If the class files can't be read, the
+	 * hash is random, so the previously generated sources are never reused.
+	 */
+	private static byte[] getProcessorImplementationHash() {
+		byte[] result = processorImplementationHash;
+		if (result != null) {
+			return result;
+		}
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			for (Class<?> c : new Class<?>[] { CommandLineProcessor.class, ParseUtil.class, Command.class }) {
+				hashPackageClassFiles(md, c);
+			}
+			result = md.digest();
+		} catch (NoSuchAlgorithmException | IOException | RuntimeException e) {
+			UUID uuid = UUID.randomUUID();
+			result = (uuid.getMostSignificantBits() + ":" + uuid.getLeastSignificantBits())
+					.getBytes(StandardCharsets.UTF_8);
+		}
+		processorImplementationHash = result;
+		return result;
+	}
+
+	/**
+	 * Hashes the class files in the package of the argument class, including its subpackages, in a deterministic
+	 * order.
+	 */
+	private static void hashPackageClassFiles(MessageDigest md, Class<?> c) throws IOException {
+		CodeSource cs = c.getProtectionDomain().getCodeSource();
+		URL location = cs == null ? null : cs.getLocation();
+		if (location == null || !"file".equals(location.getProtocol())) {
+			throw new IOException("Class location unavailable for: " + c.getName());
+		}
+		Path locationpath;
+		try {
+			locationpath = Paths.get(location.toURI());
+		} catch (Exception e) {
+			throw new IOException("Invalid class location: " + location, e);
+		}
+		String packagedir = c.getPackage().getName().replace('.', '/') + "/";
+		TreeMap<String, byte[]> classfiles = new TreeMap<>();
+		if (Files.isDirectory(locationpath)) {
+			Path dir = locationpath.resolve(packagedir);
+			try (Stream<Path> files = Files.walk(dir)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					String name = dir.relativize(file).toString().replace('\\', '/');
+					if (name.endsWith(".class")) {
+						classfiles.put(name, Files.readAllBytes(file));
+					}
+				}
+			}
+		} else {
+			try (JarFile jar = new JarFile(locationpath.toFile())) {
+				for (Enumeration<JarEntry> it = jar.entries(); it.hasMoreElements();) {
+					JarEntry entry = it.nextElement();
+					String name = entry.getName();
+					if (name.startsWith(packagedir) && name.endsWith(".class")) {
+						try (InputStream is = jar.getInputStream(entry)) {
+							classfiles.put(name.substring(packagedir.length()), readFully(is));
+						}
+					}
+				}
+			}
+		}
+		if (classfiles.isEmpty()) {
+			throw new IOException("No class files found for: " + c.getName());
+		}
+		md.update(packagedir.getBytes(StandardCharsets.UTF_8));
+		for (Entry<String, byte[]> entry : classfiles.entrySet()) {
+			md.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+			md.update(entry.getValue());
+		}
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		for (int read; (read = is.read(buf)) > 0;) {
+			baos.write(buf, 0, read);
+		}
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import sipka.cmdline.processor.model.ModelCommand;
+import sipka.cmdline.processor.model.ModelSubCommand;
+
+/**
+ * Collects the time spent in the different phases of processing a single {@link sipka.cmdline.api.Command Command}
+ * root, and the sizes of the processed model.
+ */
+final class ProcessingStatistics {
+	enum Phase {
+		MODEL_CONSTRUCTION("model construction"),
+		RESOLVE("resolve"),
+		FINGERPRINT("fingerprint"),
+		HELP_GENERATION("help generation"),
+		HELP_RESOURCE("help resource"),
+		PARSER_GENERATION("parser generation"),
+		COMPLETION_GENERATION("completion generation"),
+		TRAINING_GENERATION("training generation"),
+		HELP_REFERENCE("help reference"),
+		COMPLETION_SCRIPTS("completion scripts");
+
+		final String displayName;
+
+		private Phase(String displayName) {
+			this.displayName = displayName;
+		}
+	}
+
+	/**
+	 * The number of methods listed in the report.
+	 */
+	private static final int LARGEST_METHOD_COUNT = 5;
+
+	private final long[] phaseNanos = new long[Phase.values().length];
+
+	private int commandCount;
+	private int parameterCount;
+	private int dependentElementCount;
+	private long generatedSourceLength;
+	private boolean reusedPreviousOutput;
+	private List<MethodSizeEstimator.MethodSize> methodSizes = Collections.emptyList();
+
+	public void addPhaseTime(Phase phase, long startnanos) {
+		phaseNanos[phase.ordinal()] += System.nanoTime() - startnanos;
+	}
+
+	public void countModel(ModelCommand cmd) {
+		++commandCount;
+		parameterCount += cmd.getParameters().size();
+		for (ModelSubCommand sc : cmd.getSubCommands()) {
+			countModel(sc);
+		}
+	}
+
+	public void setDependentElementCount(int dependentElementCount) {
+		this.dependentElementCount = dependentElementCount;
+	}
+
+	public void setGeneratedSourceLength(long generatedSourceLength) {
+		this.generatedSourceLength = generatedSourceLength;
+	}
+
+	public void setReusedPreviousOutput(boolean reusedPreviousOutput) {
+		this.reusedPreviousOutput = reusedPreviousOutput;
+	}
+
+	public void setMethodSizes(List<MethodSizeEstimator.MethodSize> methodSizes) {
+		this.methodSizes = methodSizes;
+	}
+
+	public String format(String generatedclassname) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Processing statistics for ");
+		sb.append(generatedclassname);
+		sb.append(':');
+		long total = 0;
+		for (Phase p : Phase.values()) {
+			long nanos = phaseNanos[p.ordinal()];
+			total += nanos;
+			appendTime(sb, p.displayName, nanos);
+		}
+		appendTime(sb, "total", total);
+		sb.append("\n    commands: ");
+		sb.append(commandCount);
+		sb.append("\n    parameters: ");
+		sb.append(parameterCount);
+		sb.append("\n    dependent elements: ");
+		sb.append(dependentElementCount);
+		sb.append("\n    generated source characters: ");
+		sb.append(generatedSourceLength);
+		if (reusedPreviousOutput) {
+			sb.append("\n    reused previously generated source (fingerprint unchanged)");
+		}
+		if (!methodSizes.isEmpty()) {
+			List<MethodSizeEstimator.MethodSize> largest = new ArrayList<>(methodSizes);
+			largest.sort(Comparator.comparingInt(MethodSizeEstimator.MethodSize::getEstimatedSize).reversed());
+			sb.append("\n    generated methods: ");
+			sb.append(methodSizes.size());
+			sb.append(", largest estimated sizes:");
+			for (MethodSizeEstimator.MethodSize ms : largest.subList(0, Math.min(LARGEST_METHOD_COUNT, largest.size()))) {
+				sb.append("\n        ");
+				sb.append(ms);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendTime(StringBuilder sb, String name, long nanos) {
+		sb.append("\n    ");
+		sb.append(name);
+		sb.append(": ");
+		sb.append(TimeUnit.NANOSECONDS.toMicros(nanos) / 1000d);
+		sb.append(" ms");
+	}
+}
@@ -0,0 +1,665 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package sipka.cmdline.processor;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.lang.model.element.TypeElement;
+
+import sipka.cmdline.processor.model.ModelBaseCommand;
+import sipka.cmdline.processor.model.ModelCommand;
+import sipka.cmdline.processor.model.ModelParameter;
+import sipka.cmdline.processor.model.ModelSubCommand;
+
+/**
+ * Writes standalone shell completion scripts for a command model.
+ * <p>
+ * The scripts walk the words before the cursor the same way as the generated <code>complete</code> method, but are
+ * executed by the shell itself, so no JVM is started when completing. Each command is compiled to a shell function
+ * that handles the leading positional parameters, the named parameters, the subcommands and the trailing positional
+ * parameters, and appends the candidates for the word at the cursor to the reply.
+ * <p>
+ * The bash and zsh scripts share the function bodies, the zsh script enables <code>ksharrays</code> so the word
+ * indexes are the same.
+ * <p>
+ * The values of upper case enums are collected separately, and are matched case insensitively, the same way as they
+ * are parsed. All shells fall back to file name completion if no candidate matches the word at the cursor.
+ */
+final class ShellCompletionScripts {
+	enum Shell {
+		BASH("bash"),
+		ZSH("zsh"),
+		FISH("fish");
+
+		final String extension;
+
+		private Shell(String extension) {
+			this.extension = extension;
+		}
+	}
+
+	private final CommandLineProcessor processor;
+	private final ModelBaseCommand model;
+	private final String commandName;
+	private final boolean helpInfo;
+	private final List<ModelCommand> commands = new ArrayList<>();
+	private final Map<ModelCommand, Integer> commandIds = new HashMap<>();
+
+	private String prefix;
+
+	public ShellCompletionScripts(CommandLineProcessor processor, ModelBaseCommand model, String commandName,
+			boolean helpInfo) {
+		this.processor = processor;
+		this.model = model;
+		this.commandName = commandName;
+		this.helpInfo = helpInfo;
+		CommandLineProcessor.collectCommandsPreOrder(model, commands);
+		for (ModelCommand c : commands) {
+			commandIds.put(c, commandIds.size());
+		}
+	}
+
+	/**
+	 * Parses the comma separated shell names of the processor option.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If a shell is not supported.
+	 */
+	public static Set<Shell> parseShells(String arg) throws IllegalArgumentException {
+		Set<Shell> result = EnumSet.noneOf(Shell.class);
+		for (String s : arg.split(",")) {
+			s = s.trim();
+			if (s.isEmpty()) {
+				continue;
+			}
+			try {
+				result.add(Shell.valueOf(s.toUpperCase(Locale.ENGLISH)));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unsupported completion script shell: " + s, e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the default name of the command the scripts are registered for.
+	 */
+	public static String getDefaultCommandName(ModelBaseCommand model) {
+		return model.getTypeElement().getSimpleName().toString().toLowerCase(Locale.ENGLISH);
+	}
+
+	public void write(Shell shell, PrintWriter out) {
+		String fnname = toIdentifier(commandName);
+		switch (shell) {
+			case BASH: {
+				prefix = "_" + fnname + "_complete";
+				writeHeaderComment(out, shell);
+				writeShFunctions(out);
+				writeBashEntry(out);
+				break;
+			}
+			case ZSH: {
+				prefix = "_" + fnname + "_complete";
+				out.println("#compdef " + commandName);
+				writeHeaderComment(out, shell);
+				writeShFunctions(out);
+				writeZshEntry(out);
+				break;
+			}
+			case FISH: {
+				prefix = "__" + fnname + "_complete";
+				writeHeaderComment(out, shell);
+				writeFishFunctions(out);
+				writeFishEntry(out);
+				break;
+			}
+			default: {
+				throw new IllegalArgumentException("Unsupported completion script shell: " + shell);
+			}
+		}
+	}
+
+	private void writeHeaderComment(PrintWriter out, Shell shell) {
+		out.println("# " + shell.extension + " completion for " + commandName);
+		out.println("# Generated by sipka.cmdline for " + model.getCommandClassQualifiedName() + ", do not edit.");
+		out.println();
+	}
+
+	private Set<String> getRootHelpNames() {
+		if (!helpInfo) {
+			return new TreeSet<>();
+		}
+		Set<String> result = new TreeSet<>(model.getHelpCommandName());
+		CommandLineProcessor.removeSubCommandNamesFromCollection(result, model.getSubCommands());
+		return result;
+	}
+
+	private Collection<String> getValues(ModelCommand cmd, ModelParameter param) {
+		TypeElement enumtype = processor.getCompletionValuesEnum(cmd, param);
+		if (enumtype == null) {
+			return null;
+		}
+		return CommandLineProcessor.getEnumConstantNames(enumtype);
+	}
+
+	private boolean isIgnoreCaseValues(ModelCommand cmd, ModelParameter param) {
+		TypeElement enumtype = processor.getCompletionValuesEnum(cmd, param);
+		//upper case enums are parsed case insensitively
+		return enumtype != null && processor.isUpperCaseEnum(enumtype);
+	}
+
+	private static Set<String> getSubCommandNames(ModelCommand cmd) {
+		Set<String> result = new TreeSet<>();
+		for (ModelSubCommand sc : cmd.getSubCommands()) {
+			result.addAll(sc.getNames());
+		}
+		return result;
+	}
+
+	private static Set<String> getParameterNames(ModelCommand cmd) {
+		Set<String> result = new TreeSet<>(cmd.getMapParameters().keySet());
+		for (ModelParameter param : cmd.getParameters()) {
+			if (param.isMapParameter() || param.getPositional() != null) {
+				continue;
+			}
+			result.addAll(param.getNames());
+		}
+		result.addAll(getSubCommandNames(cmd));
+		return result;
+	}
+
+	private String fn(ModelCommand cmd) {
+		return prefix + "_" + commandIds.get(cmd);
+	}
+
+	private String helpFn(ModelCommand cmd) {
+		return prefix + "_help_" + commandIds.get(cmd);
+	}
+
+	//bash and zsh
+
+	private void writeShFunctions(PrintWriter out) {
+		String words = prefix + "_words";
+		String cword = "$" + prefix + "_cword";
+		for (ModelCommand cmd : commands) {
+			Collection<ModelSubCommand> subcommands = cmd.getSubCommands();
+			ModelSubCommand defaultcommand = cmd.getDefaultSubCommand();
+
+			out.println(fn(cmd) + "() {");
+			out.println("\tlocal i=$1 a");
+			if (cmd == model) {
+				Set<String> helpnames = getRootHelpNames();
+				if (!helpnames.isEmpty()) {
+					//the help command is only recognized as the first argument
+					out.println("\tif [ \"$i\" -eq " + cword + " ]; then");
+					writeShReply(out, "\t\t", helpnames);
+					out.println("\telse");
+					out.println("\t\tcase \"${" + words + "[i]}\" in");
+					out.println("\t\t" + toShPatterns(helpnames, false) + ")");
+					if (!subcommands.isEmpty()) {
+						out.println("\t\t\t" + helpFn(cmd) + " $((i + 1))");
+					}
+					out.println("\t\t\treturn");
+					out.println("\t\t\t;;");
+					out.println("\t\tesac");
+					out.println("\tfi");
+				}
+			}
+			List<ModelParameter> posparams = cmd.getPositionalParameters();
+			int positionalindex = 0;
+			for (ModelParameter posparam : posparams) {
+				if (posparam.getPositional().value() < 0) {
+					break;
+				}
+				out.println("\tif [ \"$i\" -eq " + cword + " ]; then");
+				writeShValuesReply(out, "\t\t", cmd, posparam);
+				out.println("\t\treturn");
+				out.println("\tfi");
+				out.println("\ti=$((i + 1))");
+				positionalindex++;
+			}
+
+			out.println("\twhile [ \"$i\" -lt " + cword + " ]; do");
+			out.println("\t\ta=${" + words + "[i]}");
+			out.println("\t\tcase \"$a\" in");
+			for (String mapprefix : cmd.getMapParameters().keySet()) {
+				out.println("\t\t" + toShPatterns(Collections.singleton(mapprefix), true) + ")");
+				out.println("\t\t\ti=$((i + 1))");
+				out.println("\t\t\t;;");
+			}
+			for (ModelParameter param : cmd.getParameters()) {
+				if (param.isMapParameter() || param.getPositional() != null) {
+					continue;
+				}
+				out.println("\t\t" + toShPatterns(param.getNames(), false) + ")");
+				out.println("\t\t\ti=$((i + 1))");
+				if (param.getFlag() == null) {
+					//the parameter takes a value
+					out.println("\t\t\tif [ \"$i\" -eq " + cword + " ]; then");
+					writeShValuesReply(out, "\t\t\t\t", cmd, param);
+					out.println("\t\t\t\treturn");
+					out.println("\t\t\tfi");
+					out.println("\t\t\ti=$((i + 1))");
+				}
+				out.println("\t\t\t;;");
+			}
+			for (ModelSubCommand sc : subcommands) {
+				out.println("\t\t" + toShPatterns(sc.getNames(), false) + ")");
+				out.println("\t\t\t" + fn(sc) + " $((i + 1))");
+				out.println("\t\t\treturn");
+				out.println("\t\t\t;;");
+			}
+			out.println("\t\t*)");
+			out.println("\t\t\tbreak");
+			out.println("\t\t\t;;");
+			out.println("\t\tesac");
+			out.println("\tdone");
+
+			Set<String> names = getParameterNames(cmd);
+			if (!names.isEmpty()) {
+				out.println("\tif [ \"$i\" -eq " + cword + " ]; then");
+				writeShReply(out, "\t\t", names);
+				out.println("\tfi");
+			}
+			if (defaultcommand != null) {
+				out.println("\t" + fn(defaultcommand) + " \"$i\"");
+			} else {
+				for (int n = posparams.size(); positionalindex < n; positionalindex++) {
+					ModelParameter posparam = posparams.get(positionalindex);
+					if (positionalindex + 1 < n) {
+						out.println("\tif [ \"$i\" -eq " + cword + " ]; then");
+						writeShValuesReply(out, "\t\t", cmd, posparam);
+						out.println("\t\treturn");
+						out.println("\tfi");
+						out.println("\ti=$((i + 1))");
+					} else if (getValues(cmd, posparam) != null) {
+						out.println("\tif [ \"$i\" -eq " + cword + " ]; then");
+						writeShValuesReply(out, "\t\t", cmd, posparam);
+						out.println("\tfi");
+					}
+				}
+			}
+			out.println("}");
+			out.println();
+
+			if (helpInfo && !subcommands.isEmpty()) {
+				out.println(helpFn(cmd) + "() {");
+				out.println("\tlocal i=$1");
+				out.println("\tif [ \"$i\" -eq " + cword + " ]; then");
+				writeShReply(out, "\t\t", getSubCommandNames(cmd));
+				out.println("\t\treturn");
+				out.println("\tfi");
+				boolean hadcase = false;
+				for (ModelSubCommand sc : subcommands) {
+					if (sc.getSubCommands().isEmpty()) {
+						continue;
+					}
+					if (!hadcase) {
+						hadcase = true;
+						out.println("\tcase \"${" + words + "[i]}\" in");
+					}
+					out.println("\t" + toShPatterns(sc.getNames(), false) + ")");
+					out.println("\t\t" + helpFn(sc) + " $((i + 1))");
+					out.println("\t\t;;");
+				}
+				if (hadcase) {
+					out.println("\tesac");
+				}
+				out.println("}");
+				out.println();
+			}
+		}
+	}
+
+	private void writeShValuesReply(PrintWriter out, String indent, ModelCommand cmd, ModelParameter param) {
+		writeShReply(out, indent, getValues(cmd, param), isIgnoreCaseValues(cmd, param));
+	}
+
+	private void writeShReply(PrintWriter out, String indent, Collection<String> candidates) {
+		writeShReply(out, indent, candidates, false);
+	}
+
+	private void writeShReply(PrintWriter out, String indent, Collection<String> candidates, boolean ignorecase) {
+		if (candidates == null || candidates.isEmpty()) {
+			out.println(indent + ":");
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(indent);
+		sb.append(prefix);
+		sb.append(ignorecase ? "_ireply+=(" : "_reply+=(");
+		boolean first = true;
+		for (String c : candidates) {
+			if (!first) {
+				sb.append(' ');
+			}
+			first = false;
+			sb.append(toShString(c));
+		}
+		sb.append(')');
+		out.println(sb);
+	}
+
+	private void writeBashEntry(PrintWriter out) {
+		out.println(prefix + "() {");
+		out.println("\tlocal -a " + prefix + "_words " + prefix + "_reply=() " + prefix + "_ireply=()");
+		out.println("\tlocal " + prefix + "_cword cur c");
+		out.println("\tif declare -F _get_comp_words_by_ref >/dev/null; then");
+		//the bash-completion package doesn't split the words at = and : characters
+		out.println("\t\tlocal -a words");
+		out.println("\t\tlocal cword");
+		out.println("\t\t_get_comp_words_by_ref -n =: -w words -i cword");
+		out.println("\t\t" + prefix + "_words=(\"${words[@]:1}\")");
+		out.println("\t\t" + prefix + "_cword=$((cword - 1))");
+		out.println("\telse");
+		out.println("\t\t" + prefix + "_words=(\"${COMP_WORDS[@]:1}\")");
+		out.println("\t\t" + prefix + "_cword=$((COMP_CWORD - 1))");
+		out.println("\tfi");
+		out.println("\tcur=${" + prefix + "_words[" + prefix + "_cword]}");
+		out.println("\t" + fn(model) + " 0");
+		out.println("\tCOMPREPLY=()");
+		out.println("\tfor c in \"${" + prefix + "_reply[@]}\"; do");
+		out.println("\t\tif [[ \"$c\" == \"$cur\"* ]]; then");
+		out.println("\t\t\tCOMPREPLY+=(\"$c\")");
+		out.println("\t\tfi");
+		out.println("\tdone");
+		out.println("\tif [ ${#" + prefix + "_ireply[@]} -gt 0 ]; then");
+		//the previous setting is restored after matching
+		out.println("\t\tlocal nocasematch");
+		out.println("\t\tnocasematch=$(shopt -p nocasematch)");
+		out.println("\t\tshopt -s nocasematch");
+		out.println("\t\tfor c in \"${" + prefix + "_ireply[@]}\"; do");
+		out.println("\t\t\tif [[ \"$c\" == \"$cur\"* ]]; then");
+		out.println("\t\t\t\tCOMPREPLY+=(\"$c\")");
+		out.println("\t\t\tfi");
+		out.println("\t\tdone");
+		out.println("\t\teval \"$nocasematch\"");
+		out.println("\tfi");
+		out.println("}");
+		out.println();
+		//fall back to file name completion if no candidate matches
+		out.println("complete -o default -F " + prefix + " " + toShString(commandName));
+	}
+
+	private void writeZshEntry(PrintWriter out) {
+		out.println(prefix + "() {");
+		out.println("\tsetopt localoptions ksharrays");
+		out.println("\tlocal -a " + prefix + "_words " + prefix + "_reply " + prefix + "_ireply");
+		out.println("\t" + prefix + "_words=(\"${words[@]:1}\")");
+		//CURRENT is the 1 based index of the current word, including the command
+		out.println("\tlocal " + prefix + "_cword=$((CURRENT - 2)) ret=1");
+		out.println("\t" + fn(model) + " 0");
+		//compadd fails if no candidate matches
+		out.println("\tcompadd -- \"${" + prefix + "_reply[@]}\" && ret=0");
+		out.println("\tcompadd -M 'm:{a-zA-Z}={A-Za-z}' -- \"${" + prefix + "_ireply[@]}\" && ret=0");
+		out.println("\tif [ $ret -ne 0 ]; then");
+		out.println("\t\t_files");
+		out.println("\tfi");
+		out.println("}");
+		out.println();
+		out.println("compdef " + prefix + " " + toShString(commandName));
+	}
+
+	//fish
+
+	private void writeFishFunctions(PrintWriter out) {
+		String words = "$" + prefix + "_words";
+		String cword = "$" + prefix + "_cword";
+		for (ModelCommand cmd : commands) {
+			Collection<ModelSubCommand> subcommands = cmd.getSubCommands();
+			ModelSubCommand defaultcommand = cmd.getDefaultSubCommand();
+
+			//the word indexes are 0 based, fish lists are 1 based
+			out.println("function " + fn(cmd));
+			out.println("\tset -l i $argv[1]");
+			if (cmd == model) {
+				Set<String> helpnames = getRootHelpNames();
+				if (!helpnames.isEmpty()) {
+					out.println("\tif test $i -eq " + cword);
+					writeFishReply(out, "\t\t", helpnames);
+					out.println("\telse");
+					out.println("\t\tswitch " + words + "[(math $i + 1)]");
+					out.println("\t\t\tcase " + toFishPatterns(helpnames, false));
+					if (!subcommands.isEmpty()) {
+						out.println("\t\t\t\t" + helpFn(cmd) + " (math $i + 1)");
+					}
+					out.println("\t\t\t\treturn");
+					out.println("\t\tend");
+					out.println("\tend");
+				}
+			}
+			List<ModelParameter> posparams = cmd.getPositionalParameters();
+			int positionalindex = 0;
+			for (ModelParameter posparam : posparams) {
+				if (posparam.getPositional().value() < 0) {
+					break;
+				}
+				out.println("\tif test $i -eq " + cword);
+				writeFishValuesReply(out, "\t\t", cmd, posparam);
+				out.println("\t\treturn");
+				out.println("\tend");
+				out.println("\tset i (math $i + 1)");
+				positionalindex++;
+			}
+
+			out.println("\twhile test $i -lt " + cword);
+			out.println("\t\tswitch " + words + "[(math $i + 1)]");
+			for (String mapprefix : cmd.getMapParameters().keySet()) {
+				out.println("\t\t\tcase " + toFishPatterns(Collections.singleton(mapprefix), true));
+				out.println("\t\t\t\tset i (math $i + 1)");
+			}
+			for (ModelParameter param : cmd.getParameters()) {
+				if (param.isMapParameter() || param.getPositional() != null) {
+					continue;
+				}
+				out.println("\t\t\tcase " + toFishPatterns(param.getNames(), false));
+				out.println("\t\t\t\tset i (math $i + 1)");
+				if (param.getFlag() == null) {
+					//the parameter takes a value
+					out.println("\t\t\t\tif test $i -eq " + cword);
+					writeFishValuesReply(out, "\t\t\t\t\t", cmd, param);
+					out.println("\t\t\t\t\treturn");
+					out.println("\t\t\t\tend");
+					out.println("\t\t\t\tset i (math $i + 1)");
+				}
+			}
+			for (ModelSubCommand sc : subcommands) {
+				out.println("\t\t\tcase " + toFishPatterns(sc.getNames(), false));
+				out.println("\t\t\t\t" + fn(sc) + " (math $i + 1)");
+				out.println("\t\t\t\treturn");
+			}
+			out.println("\t\t\tcase '*'");
+			out.println("\t\t\t\tbreak");
+			out.println("\t\tend");
+			out.println("\tend");
+
+			Set<String> names = getParameterNames(cmd);
+			if (!names.isEmpty()) {
+				out.println("\tif test $i -eq " + cword);
+				writeFishReply(out, "\t\t", names);
+				out.println("\tend");
+			}
+			if (defaultcommand != null) {
+				out.println("\t" + fn(defaultcommand) + " $i");
+			} else {
+				for (int n = posparams.size(); positionalindex < n; positionalindex++) {
+					ModelParameter posparam = posparams.get(positionalindex);
+					if (positionalindex + 1 < n) {
+						out.println("\tif test $i -eq " + cword);
+						writeFishValuesReply(out, "\t\t", cmd, posparam);
+						out.println("\t\treturn");
+						out.println("\tend");
+						out.println("\tset i (math $i + 1)");
+					} else if (getValues(cmd, posparam) != null) {
+						out.println("\tif test $i -eq " + cword);
+						writeFishValuesReply(out, "\t\t", cmd, posparam);
+						out.println("\tend");
+					}
+				}
+			}
+			out.println("end");
+			out.println();
+
+			if (helpInfo && !subcommands.isEmpty()) {
+				out.println("function " + helpFn(cmd));
+				out.println("\tset -l i $argv[1]");
+				out.println("\tif test $i -eq " + cword);
+				writeFishReply(out, "\t\t", getSubCommandNames(cmd));
+				out.println("\t\treturn");
+				out.println("\tend");
+				boolean hadswitch = false;
+				for (ModelSubCommand sc : subcommands) {
+					if (sc.getSubCommands().isEmpty()) {
+						continue;
+					}
+					if (!hadswitch) {
+						hadswitch = true;
+						out.println("\tswitch " + words + "[(math $i + 1)]");
+					}
+					out.println("\t\tcase " + toFishPatterns(sc.getNames(), false));
+					out.println("\t\t\t" + helpFn(sc) + " (math $i + 1)");
+				}
+				if (hadswitch) {
+					out.println("\tend");
+				}
+				out.println("end");
+				out.println();
+			}
+		}
+	}
+
+	private void writeFishValuesReply(PrintWriter out, String indent, ModelCommand cmd, ModelParameter param) {
+		writeFishReply(out, indent, getValues(cmd, param), isIgnoreCaseValues(cmd, param));
+	}
+
+	private void writeFishReply(PrintWriter out, String indent, Collection<String> candidates) {
+		writeFishReply(out, indent, candidates, false);
+	}
+
+	private void writeFishReply(PrintWriter out, String indent, Collection<String> candidates, boolean ignorecase) {
+		if (candidates == null || candidates.isEmpty()) {
+			out.println(indent + "true");
+			return;
+		}
+		String reply = prefix + (ignorecase ? "_ireply" : "_reply");
+		StringBuilder sb = new StringBuilder();
+		sb.append(indent);
+		sb.append("set -g ");
+		sb.append(reply);
+		sb.append(" $");
+		sb.append(reply);
+		for (String c : candidates) {
+			sb.append(' ');
+			sb.append(toFishString(c));
+		}
+		out.println(sb);
+	}
+
+	private void writeFishEntry(PrintWriter out) {
+		out.println("function " + prefix);
+		out.println("\tset -l tokens (commandline -opc)");
+		out.println("\tset -e tokens[1]");
+		out.println("\tset -g " + prefix + "_words $tokens");
+		out.println("\tset -g " + prefix + "_cword (count $tokens)");
+		out.println("\tset -g " + prefix + "_reply");
+		out.println("\tset -g " + prefix + "_ireply");
+		out.println("\t" + fn(model) + " 0");
+		out.println("\tset -l cur (commandline -ct)");
+		out.println("\tset -l n (string length -- \"$cur\")");
+		out.println("\tset -l lcur (string lower -- \"$cur\")");
+		out.println("\tfor c in $" + prefix + "_reply");
+		out.println("\t\tif test -z \"$cur\"; or test (string sub -l $n -- $c) = \"$cur\"");
+		out.println("\t\t\tprintf '%s\\n' $c");
+		out.println("\t\tend");
+		out.println("\tend");
+		out.println("\tfor c in $" + prefix + "_ireply");
+		out.println("\t\tif test -z \"$cur\"; or test (string lower -- (string sub -l $n -- $c)) = \"$lcur\"");
+		out.println("\t\t\tprintf '%s\\n' $c");
+		out.println("\t\tend");
+		out.println("\tend");
+		out.println("end");
+		out.println();
+		out.println("function " + prefix + "_any");
+		out.println("\tset -l candidates (" + prefix + ")");
+		out.println("\ttest (count $candidates) -gt 0");
+		out.println("end");
+		out.println();
+		//file name completion is only turned off if a candidate matches, same as the bash -o default fallback
+		out.println("complete -c " + toFishString(commandName) + " -n " + prefix + "_any -f -a '(" + prefix + ")'");
+	}
+
+	private static String toShString(String s) {
+		return "'" + s.replace("'", "'\\''") + "'";
+	}
+
+	private static String toShPatterns(Collection<String> names, boolean prefixmatch) {
+		StringBuilder sb = new StringBuilder();
+		for (String n : new LinkedHashSet<>(names)) {
+			if (sb.length() > 0) {
+				sb.append('|');
+			}
+			//quoted pattern characters are matched literally
+			sb.append(toShString(n));
+			if (prefixmatch) {
+				sb.append('*');
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String toFishString(String s) {
+		return "'" + s.replace("\\", "\\\\").replace("'", "\\'") + "'";
+	}
+
+	private static String toFishPatterns(Collection<String> names, boolean prefixmatch) {
+		StringBuilder sb = new StringBuilder();
+		for (String n : new LinkedHashSet<>(names)) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			//fish matches wildcards in quoted case patterns as well, escape them outside of the quotes
+			sb.append(toFishString(n).replace("*", "'\\*'").replace("?", "'\\?'"));
+			if (prefixmatch) {
+				sb.append("'*'");
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String toIdentifier(String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_') {
+				sb.append(c);
+			} else {
+				sb.append('_');
+			}
+		}
+		return sb.toString();
+	}
+}
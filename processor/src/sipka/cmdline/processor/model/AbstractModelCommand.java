@@ -142,6 +142,39 @@ public abstract class AbstractModelCommand implements ModelCommand {
 				throw new IllegalArgumentException("Cannot have default command and end positional parameters.");
 			}
 		}
+		for (int i = 0, lasti = positionalParameters.size() - 1; i < lasti; i++) {
+			ModelParameter posparam = positionalParameters.get(i);
+			if (posparam.getStreamedArguments() != null) {
+				//the streamed parameter consumes all remaining arguments
+				throw new IllegalArgumentException(
+						"Streamed positional parameter must be the last positional parameter: " + posparam.getElement());
+			}
+		}
+		ModelParameter pipelinedparam = null;
+		for (ModelParameter param : parameters) {
+			if (!param.isPipelined()) {
+				continue;
+			}
+			if (pipelinedparam != null) {
+				throw new IllegalArgumentException("Multiple pipelined parameters: " + pipelinedparam.getElement()
+						+ " and " + param.getElement());
+			}
+			pipelinedparam = param;
+		}
+		if (pipelinedparam != null) {
+			//the arguments after the first pipelined value are parsed by a separate thread, which only
+			//handles the values of the pipelined parameter
+			if (!subCommands.isEmpty()) {
+				throw new IllegalArgumentException(
+						"Command with pipelined parameter cannot have subcommands: " + pipelinedparam.getElement());
+			}
+			if (!positionalParameters.isEmpty()
+					&& positionalParameters.get(positionalParameters.size() - 1).getPositional().value() < 0) {
+				throw new IllegalArgumentException(
+						"Command with pipelined parameter cannot have end positional parameters: "
+								+ pipelinedparam.getElement());
+			}
+		}
 		if (!positionalParameters.isEmpty()) {
 			//make sure required positional parameters are at the start
 			Iterator<ModelParameter> it = positionalParameters.iterator();
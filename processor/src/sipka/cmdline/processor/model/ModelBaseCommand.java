@@ -73,6 +73,10 @@ public class ModelBaseCommand extends AbstractModelCommand {
 		return annotation.main();
 	}
 
+	public boolean isAllowAbbreviations() {
+		return annotation.allowAbbreviations();
+	}
+
 	@Override
 	public ModelCommand getParentCommand() {
 		return null;
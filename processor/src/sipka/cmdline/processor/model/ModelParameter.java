@@ -27,6 +27,7 @@ import java.util.Set;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
@@ -40,6 +41,9 @@ import sipka.cmdline.api.MultiParameter;
 import sipka.cmdline.api.Parameter;
 import sipka.cmdline.api.PositionalParameter;
 import sipka.cmdline.processor.CommandLineProcessor;
+import sipka.cmdline.runtime.ArgumentSink;
+import sipka.cmdline.runtime.CompactStringList;
+import sipka.cmdline.runtime.SpillingStringCollection;
 
 public class ModelParameter {
 	private static final String DEFAULT_MAP_PARAMETER_FORMAT_KEY_NAME = "key";
@@ -48,6 +52,33 @@ public class ModelParameter {
 	private static final String DOC_TAG_HELP_META = "cmd-help-meta";
 	private static final String DOC_TAG_PARAMETER_FORMAT = "cmd-format";
 
+	/**
+	 * The way the remaining arguments are assigned to an end positional parameter that consumes all of them.
+	 */
+	public enum StreamedArguments {
+		/**
+		 * The parameter has the type {@link java.util.Iterator}.
+		 */
+		ITERATOR,
+		/**
+		 * The parameter has the type {@link java.util.stream.Stream}.
+		 */
+		STREAM,
+		/**
+		 * The parameter has the type {@link CompactStringList}, the arguments are collected eagerly.
+		 */
+		COMPACT_LIST;
+
+		/**
+		 * Checks if the parameter receives a lazy view that needs to be closed after the command is called.
+		 * 
+		 * @return <code>true</code> if the view is lazy.
+		 */
+		public boolean isLazy() {
+			return this != COMPACT_LIST;
+		}
+	}
+
 	private final TypeMirror parameterType;
 	private final Element element;
 
@@ -56,6 +87,8 @@ public class ModelParameter {
 	private ParameterLocation location;
 	private boolean required;
 	private ModelConverter converter;
+	private StreamedArguments streamedArguments;
+	private boolean pipelined;
 	private PositionalParameter positional;
 	private Flag flag;
 	private ModelMultiParameter multiParameter;
@@ -146,6 +179,21 @@ public class ModelParameter {
 			}
 			TypeMirror multielemtype = processor.getTypeMirror(multiparam::value);
 			String multimethod = multiparam.method();
+			if (parameterType.getKind() == TypeKind.DECLARED && ((TypeElement) ((DeclaredType) parameterType).asElement())
+					.getQualifiedName().contentEquals(ArgumentSink.class.getCanonicalName())) {
+				if (!multimethod.isEmpty()) {
+					throw new IllegalArgumentException(
+							"Method name cannot be specified for " + ArgumentSink.class.getSimpleName() + ": " + element);
+				}
+				this.pipelined = true;
+				multimethod = "add";
+			}
+			String stringcollectionname = getStringCollectionName(parameterType);
+			if (stringcollectionname != null && !processor.getTypes().isSameType(multielemtype,
+					processor.getJavaLangString().asType())) {
+				throw new IllegalArgumentException(stringcollectionname
+						+ " multi parameter must have String elements: " + multielemtype + " on " + element);
+			}
 			if (multimethod.isEmpty()) {
 				if (processor.getTypes().isAssignable(parameterType, processor.getErasedCollectionType())) {
 					multimethod = "add";
@@ -161,6 +209,7 @@ public class ModelParameter {
 				throw new IllegalArgumentException("Map parameter cannot be positional: " + element);
 			}
 		}
+		initStreamedArguments(processor);
 	}
 
 	public ModelParameter(CommandLineProcessor processor, ExecutableElement element, Parameter parameter,
@@ -248,11 +297,45 @@ public class ModelParameter {
 				throw new IllegalArgumentException("Map parameter cannot be positional: " + element);
 			}
 		}
+		initStreamedArguments(processor);
+	}
+
+	private void initStreamedArguments(CommandLineProcessor processor) {
+		if (this.positional == null || this.converter != null || parameterType == null
+				|| parameterType.getKind() != TypeKind.DECLARED) {
+			return;
+		}
+		Types types = processor.getTypes();
+		TypeMirror stringtype = processor.getJavaLangString().asType();
+		TypeElement paramte = (TypeElement) ((DeclaredType) parameterType).asElement();
+		String paramtypename = paramte.getQualifiedName().toString();
+		if (paramtypename.equals(Iterator.class.getCanonicalName())) {
+			this.streamedArguments = StreamedArguments.ITERATOR;
+		} else if (paramtypename.equals("java.util.stream.Stream")) {
+			this.streamedArguments = StreamedArguments.STREAM;
+		} else if (paramtypename.equals(CompactStringList.class.getCanonicalName())) {
+			this.streamedArguments = StreamedArguments.COMPACT_LIST;
+			if (this.positional.value() >= 0) {
+				throw new IllegalArgumentException(CompactStringList.class.getSimpleName()
+						+ " positional parameter must be an end positional parameter (negative value): " + element);
+			}
+			return;
+		} else {
+			return;
+		}
+		if (!types.isAssignable(types.getDeclaredType(paramte, stringtype), parameterType)) {
+			throw new IllegalArgumentException(
+					"Streamed positional parameter must have String elements: " + parameterType + " on " + element);
+		}
+		if (this.positional.value() >= 0) {
+			throw new IllegalArgumentException(
+					"Streamed positional parameter must be an end positional parameter (negative value): " + element);
+		}
 	}
 
 	public void resolve(CommandLineProcessor processor) {
 		TypeMirror targettype = this.parameterType;
-		if (this.converter == null) {
+		if (this.converter == null && this.streamedArguments == null) {
 			if (multiParameter != null) {
 				targettype = multiParameter.getElementType();
 			}
@@ -345,6 +428,25 @@ public class ModelParameter {
 		return required;
 	}
 
+	/**
+	 * Gets the type of the lazy view if this is a streamed end positional parameter.
+	 * 
+	 * @return The streamed arguments type or <code>null</code> if the parameter is not streamed.
+	 */
+	public StreamedArguments getStreamedArguments() {
+		return streamedArguments;
+	}
+
+	/**
+	 * Checks if the values of this multi parameter are added to an <code>ArgumentSink</code> by a separate parser
+	 * thread while the command is running.
+	 * 
+	 * @return <code>true</code> if the parameter is pipelined.
+	 */
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
 	public ModelConverter getConverter() {
 		return converter;
 	}
@@ -369,6 +471,23 @@ public class ModelParameter {
 		return helpMetaNames;
 	}
 
+	/**
+	 * Gets the simple name of the runtime collection type if it can only hold strings.
+	 */
+	private static String getStringCollectionName(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		Name name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName();
+		if (name.contentEquals(CompactStringList.class.getCanonicalName())) {
+			return CompactStringList.class.getSimpleName();
+		}
+		if (name.contentEquals(SpillingStringCollection.class.getCanonicalName())) {
+			return SpillingStringCollection.class.getSimpleName();
+		}
+		return null;
+	}
+
 	private static Set<String> getDocCommentHelpMetaNames(String doccomment) {
 		if (doccomment == null) {
 			return Collections.emptySet();
@@ -15,7 +15,7 @@
  */
 package sipka.cmdline.processor.model;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.util.List;
 
 import javax.lang.model.element.Element;
@@ -27,7 +27,11 @@ public class ParameterLocation {
 		this.elementPath = elementpath;
 	}
 
-	public void printAccess(PrintStream ps) {
+	public List<? extends Element> getElementPath() {
+		return elementPath;
+	}
+
+	public void printAccess(PrintWriter ps) {
 		for (Element ve : elementPath) {
 			ps.print('.');
 			ps.print(ve.getSimpleName());
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Bounded queue of multi parameter values that are parsed while the command is already running.
+ * <p>
+ * If a <code>&#64;MultiParameter</code> field has this type, the generated parser calls the command as soon as the
+ * first value of the parameter is encountered. The remaining arguments are parsed on a separate thread, and the values
+ * are added to the sink. The command iterates over the values as they become available, so the parsing of the
+ * arguments (e.g. reading large command files) and the work of the command overlap.
+ * <p>
+ * The parser blocks if the sink is full, until the command takes a value from it. The capacity of the sink limits the
+ * number of values that are parsed ahead of the command.
+ * <p>
+ * If the parsing fails, the exception is thrown by {@link #hasNext()} after the values that were parsed before the
+ * failure. The values can only be iterated once, by a single thread.
+ * 
+ * @param <T>
+ *            The type of the values.
+ * @see PipelinedParser
+ */
+public final class ArgumentSink<T> implements Iterator<T> {
+	/**
+	 * The default capacity of the sink.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private static final Object END = new Object();
+	private static final Object NULL = new Object();
+
+	private static final class Failure {
+		final Throwable cause;
+
+		Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+
+	private final BlockingQueue<Object> queue;
+	private volatile boolean closed;
+	private volatile boolean failureDelivered;
+
+	private Object next;
+
+	/**
+	 * Creates a new sink with the {@linkplain #DEFAULT_CAPACITY default capacity}.
+	 */
+	public ArgumentSink() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new sink with the given capacity.
+	 * 
+	 * @param capacity
+	 *            The maximum number of values that the parser can add before the command takes them.
+	 * @throws IllegalArgumentException
+	 *             If the capacity is less than 1.
+	 */
+	public ArgumentSink(int capacity) throws IllegalArgumentException {
+		this.queue = new ArrayBlockingQueue<>(capacity);
+	}
+
+	/**
+	 * Adds a parsed value to the sink.
+	 * <p>
+	 * The method blocks if the sink is full.
+	 * 
+	 * @param value
+	 *            The value.
+	 * @throws CancellationException
+	 *             If the sink has been closed, or the thread was interrupted while waiting.
+	 */
+	public void add(T value) throws CancellationException {
+		if (closed) {
+			throw new CancellationException("Argument sink closed.");
+		}
+		if (!put(value == null ? NULL : value)) {
+			throw new CancellationException("Interrupted while adding argument.");
+		}
+	}
+
+	/**
+	 * Signals that there are no more values.
+	 * <p>
+	 * Called by the generated parser when the parsing is done.
+	 */
+	public void finish() {
+		if (!closed) {
+			put(END);
+		}
+	}
+
+	/**
+	 * Signals that the parsing failed.
+	 * <p>
+	 * Called by the generated parser. The exception will be thrown to the consumer after the already added values.
+	 * 
+	 * @param cause
+	 *            The exception that caused the failure.
+	 */
+	public void fail(Throwable cause) {
+		if (!closed) {
+			put(new Failure(cause));
+		}
+	}
+
+	/**
+	 * Closes the sink.
+	 * <p>
+	 * The remaining values are discarded, and the parser is stopped when it adds the next value. Called by the
+	 * generated code after the command returns.
+	 */
+	public void close() {
+		closed = true;
+		next = END;
+		//free up space in the queue if the parser is waiting to add a value
+		queue.clear();
+	}
+
+	/**
+	 * Checks if the sink has thrown the parsing failure to the consumer.
+	 * 
+	 * @return <code>true</code> if the failure has been thrown by {@link #hasNext()}.
+	 */
+	boolean isFailureDelivered() {
+		return failureDelivered;
+	}
+
+	@Override
+	public boolean hasNext() {
+		Object n = this.next;
+		if (n == null) {
+			try {
+				n = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Interrupted while waiting for argument.");
+			}
+			this.next = n;
+		}
+		if (n == END) {
+			return false;
+		}
+		if (n instanceof Failure) {
+			this.next = END;
+			this.failureDelivered = true;
+			Throwable cause = ((Failure) n).cause;
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new ArgumentException("Failed to parse arguments.", cause, null);
+		}
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Object n = this.next;
+		this.next = null;
+		return n == NULL ? null : (T) n;
+	}
+
+	private boolean put(Object o) {
+		try {
+			queue.put(o);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
@@ -24,8 +24,47 @@ class ArgumentsIterator implements ParsingIterator {
 	private String next;
 
 	ArgumentsIterator(Iterator<? extends String> args) {
+		this(args, true);
+	}
+
+	/**
+	 * Creates a new iterator for the arguments.
+	 * <p>
+	 * Subclasses that need their fields to be initialized before the first argument is examined should pass
+	 * <code>false</code> and call {@link #moveToNext()} at the end of their constructor.
+	 * 
+	 * @param args
+	 *            The arguments.
+	 * @param advance
+	 *            <code>true</code> to move to the first argument.
+	 */
+	ArgumentsIterator(Iterator<? extends String> args, boolean advance) {
 		this.it = args;
-		moveToNext();
+		if (advance) {
+			moveToNext();
+		}
+	}
+
+	/**
+	 * Creates a new iterator that takes over the remaining arguments of the argument.
+	 * <p>
+	 * The argument iterator will have no more elements, and closing it doesn't affect the new iterator.
+	 */
+	ArgumentsIterator(ArgumentsIterator from) {
+		this.it = from.it;
+		this.next = from.next;
+		from.it = null;
+		from.next = null;
+	}
+
+	/**
+	 * Moves the remaining arguments and the associated resources to a new iterator.
+	 * 
+	 * @return The new iterator.
+	 * @see #ArgumentsIterator(ArgumentsIterator)
+	 */
+	ArgumentsIterator detach() {
+		return new ArgumentsIterator(this);
 	}
 
 	protected void moveToNext() {
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Utility for creating class data sharing archives for the generated command line parsers.
+ * <p>
+ * If the <code>sipka.cmdline.training.generate</code> processor option is <code>true</code>, the generated class
+ * contains a <code>public static void train()</code> method. It parses example arguments for every command,
+ * parameter, and help command, without calling the commands. Running it loads and links the classes that are used
+ * when the command line is parsed, so they can be recorded in a class data sharing archive or class list. Starting
+ * the application with the archive reduces the startup time, as the classes don't need to be loaded and verified
+ * again.
+ * <p>
+ * The {@link #main(String...)} method can be used to create the archive from the command line:
+ * 
+ * <pre>
+ * java -cp &lt;classpath&gt; sipka.cmdline.runtime.ClassDataSharing -archive app.jsa com.example.MainModelImpl
+ * java -XX:SharedArchiveFile=app.jsa -cp &lt;classpath&gt; com.example.MainModelImpl ...
+ * </pre>
+ * 
+ * The archive is created by a child JVM that runs with the same class path as the current one, because the archive
+ * can only be used with the class path it was created with. The class path must consist of JAR files, as the JVM
+ * doesn't archive classes from directories. Dynamic archives require JDK 13 or later. The <code>-classlist</code>
+ * option can be used to create a class list for static archives instead.
+ */
+public final class ClassDataSharing {
+	/**
+	 * The character that precedes each argument in the encoded training arguments.
+	 * 
+	 * @see #decodeTrainingArguments(String...)
+	 */
+	public static final char ARGUMENT_SEPARATOR = '\0';
+	/**
+	 * The character that terminates each invocation in the encoded training arguments.
+	 * 
+	 * @see #decodeTrainingArguments(String...)
+	 */
+	public static final char INVOCATION_TERMINATOR = '\n';
+
+	private static final String[] EMPTY_STRING_ARRAY = {};
+
+	private ClassDataSharing() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Decodes the training arguments of the generated <code>train()</code> method.
+	 * <p>
+	 * The chunks are concatenated, and the result contains the argument lists of the invocations after each other.
+	 * Each argument is preceded by {@link #ARGUMENT_SEPARATOR}, and each invocation is terminated by
+	 * {@link #INVOCATION_TERMINATOR}.
+	 * 
+	 * @param chunks
+	 *            The encoded data chunks.
+	 * @return The argument lists of the invocations.
+	 * @throws IllegalArgumentException
+	 *             If the data is malformed.
+	 */
+	public static List<String[]> decodeTrainingArguments(String... chunks) throws IllegalArgumentException {
+		String data = chunks.length == 1 ? chunks[0] : String.join("", chunks);
+		List<String[]> result = new ArrayList<>();
+		List<String> args = new ArrayList<>();
+		int len = data.length();
+		int i = 0;
+		while (i < len) {
+			int end = data.indexOf(INVOCATION_TERMINATOR, i);
+			if (end < 0) {
+				throw new IllegalArgumentException("Malformed training arguments at index: " + i);
+			}
+			args.clear();
+			while (i < end) {
+				if (data.charAt(i) != ARGUMENT_SEPARATOR) {
+					throw new IllegalArgumentException("Malformed training arguments at index: " + i);
+				}
+				int next = data.indexOf(ARGUMENT_SEPARATOR, i + 1);
+				if (next < 0 || next > end) {
+					next = end;
+				}
+				args.add(data.substring(i + 1, next));
+				i = next;
+			}
+			result.add(args.toArray(EMPTY_STRING_ARRAY));
+			i = end + 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Calls the <code>train()</code> method of the generated class.
+	 * 
+	 * @param generatedclass
+	 *            The generated class.
+	 * @throws IllegalArgumentException
+	 *             If the class has no training method.
+	 */
+	public static void train(Class<?> generatedclass) throws IllegalArgumentException {
+		Method method;
+		try {
+			method = generatedclass.getMethod("train");
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("No training method in " + generatedclass.getName()
+					+ ". Set the sipka.cmdline.training.generate processor option to true.", e);
+		}
+		if (!Modifier.isStatic(method.getModifiers())) {
+			throw new IllegalArgumentException("Training method is not static in " + generatedclass.getName());
+		}
+		try {
+			method.invoke(null);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("Failed to call the training method of " + generatedclass.getName(), e);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Training failed for " + generatedclass.getName(), cause);
+		}
+	}
+
+	/**
+	 * Gets the command that starts a JVM which runs the training and writes a dynamic archive when it exits.
+	 * 
+	 * @param archive
+	 *            The path of the archive to write.
+	 * @param classpath
+	 *            The class path that contains the generated class and the runtime classes. The archive can only be
+	 *            used with the same class path.
+	 * @param generatedclassname
+	 *            The name of the generated class.
+	 * @return The command.
+	 */
+	public static List<String> getArchiveCommand(Path archive, String classpath, String generatedclassname) {
+		return getTrainingCommand("-XX:ArchiveClassesAtExit=" + archive.toAbsolutePath(), classpath,
+				generatedclassname);
+	}
+
+	/**
+	 * Gets the command that starts a JVM which runs the training and writes the list of the loaded classes.
+	 * <p>
+	 * The class list can be used to create a static archive with <code>-Xshare:dump</code>.
+	 * 
+	 * @param classlist
+	 *            The path of the class list to write.
+	 * @param classpath
+	 *            The class path that contains the generated class and the runtime classes.
+	 * @param generatedclassname
+	 *            The name of the generated class.
+	 * @return The command.
+	 */
+	public static List<String> getClassListCommand(Path classlist, String classpath, String generatedclassname) {
+		return getTrainingCommand("-XX:DumpLoadedClassList=" + classlist.toAbsolutePath(), classpath,
+				generatedclassname);
+	}
+
+	/**
+	 * Runs the command with the standard I/O of the current process and waits for it to finish.
+	 * 
+	 * @param command
+	 *            The command.
+	 * @return The exit code.
+	 * @throws IOException
+	 *             If the process fails to start.
+	 * @throws InterruptedException
+	 *             If the current thread is interrupted while waiting.
+	 */
+	public static int run(List<String> command) throws IOException, InterruptedException {
+		return new ProcessBuilder(command).inheritIO().start().waitFor();
+	}
+
+	/**
+	 * Runs the training or creates an archive or class list.
+	 * <p>
+	 * Usage:
+	 * 
+	 * <pre>
+	 * [-archive &lt;file&gt; | -classlist &lt;file&gt;] &lt;generated-class-name&gt;
+	 * </pre>
+	 * 
+	 * Without options the training is run in the current JVM. Otherwise a child JVM is started with the class path of
+	 * the current one to write the archive or class list.
+	 * 
+	 * @param args
+	 *            The arguments.
+	 * @throws Exception
+	 *             If the training fails.
+	 */
+	public static void main(String... args) throws Exception {
+		Path archive = null;
+		Path classlist = null;
+		String classname = null;
+		for (int i = 0; i < args.length; i++) {
+			String a = args[i];
+			switch (a) {
+				case "-archive": {
+					archive = new File(getOptionValue(args, ++i, a)).toPath();
+					break;
+				}
+				case "-classlist": {
+					classlist = new File(getOptionValue(args, ++i, a)).toPath();
+					break;
+				}
+				default: {
+					if (classname != null) {
+						throw new IllegalArgumentException("Unrecognized argument: " + a);
+					}
+					classname = a;
+					break;
+				}
+			}
+		}
+		if (classname == null) {
+			throw new IllegalArgumentException(
+					"Usage: [-archive <file> | -classlist <file>] <generated-class-name>");
+		}
+		if (archive != null && classlist != null) {
+			throw new IllegalArgumentException("Only one of -archive and -classlist can be specified.");
+		}
+		String classpath = System.getProperty("java.class.path");
+		List<String> command;
+		if (archive != null) {
+			command = getArchiveCommand(archive, classpath, classname);
+		} else if (classlist != null) {
+			command = getClassListCommand(classlist, classpath, classname);
+		} else {
+			train(Class.forName(classname, true, Thread.currentThread().getContextClassLoader()));
+			return;
+		}
+		int exitcode = run(command);
+		if (exitcode != 0) {
+			throw new IllegalStateException("Training process failed with exit code: " + exitcode + " for "
+					+ command);
+		}
+	}
+
+	private static List<String> getTrainingCommand(String option, String classpath, String generatedclassname) {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		return new ArrayList<>(Arrays.asList(java, option, "-cp", classpath, ClassDataSharing.class.getName(),
+				generatedclassname));
+	}
+
+	private static String getOptionValue(String[] args, int index, String option) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException("Missing value for " + option);
+		}
+		return args[index];
+	}
+}
@@ -28,12 +28,46 @@ import java.util.stream.Stream;
 class CommandFileArgumentsIterator extends ArgumentsIterator {
 	private static final String PREFIX_COMMAND_FILE = "@";
 	private static final String PREFIX_COMMAND_FILE_DELETE = "@!delete!@";
+	static final int MAX_INTERN_CAPACITY = 1 << 20;
 
 	private Stream<String> fileStream;
 	private Iterator<String> fileIt;
+	/**
+	 * Direct mapped cache of the recently read command file lines, or <code>null</code> if interning is disabled.
+	 * <p>
+	 * The length is a power of two. A line replaces the previous entry in its slot, so the table never grows.
+	 */
+	private final String[] internTable;
 
 	CommandFileArgumentsIterator(Iterator<? extends String> args) {
-		super(args);
+		this(args, 0);
+	}
+
+	CommandFileArgumentsIterator(Iterator<? extends String> args, int internCapacity) {
+		super(args, false);
+		if (internCapacity <= 0) {
+			this.internTable = null;
+		} else {
+			int requested = Math.min(internCapacity, MAX_INTERN_CAPACITY);
+			int cap = Integer.highestOneBit(requested);
+			this.internTable = new String[cap < requested ? cap << 1 : cap];
+		}
+		//the first argument may be a command file, whose first line is interned
+		moveToNext();
+	}
+
+	private CommandFileArgumentsIterator(CommandFileArgumentsIterator from) {
+		super(from);
+		this.fileStream = from.fileStream;
+		this.fileIt = from.fileIt;
+		this.internTable = from.internTable;
+		from.fileStream = null;
+		from.fileIt = null;
+	}
+
+	@Override
+	ArgumentsIterator detach() {
+		return new CommandFileArgumentsIterator(this);
 	}
 
 	@Override
@@ -41,7 +75,7 @@ class CommandFileArgumentsIterator extends ArgumentsIterator {
 		Iterator<String> fileit = this.fileIt;
 		if (fileit != null) {
 			if (fileit.hasNext()) {
-				super.setNext(fileit.next());
+				super.setNext(intern(fileit.next()));
 				return;
 			}
 			Stream<String> fstream = this.fileStream;
@@ -99,16 +133,32 @@ class CommandFileArgumentsIterator extends ArgumentsIterator {
 				}
 			}
 			if (fileIt.hasNext()) {
-				return super.setNext(fileIt.next());
+				return super.setNext(intern(fileIt.next()));
 			}
 			return false;
 		}
-		if (next.startsWith("\\@")) {
+		if (next.startsWith("\\") && ParseUtil.isCommandFilePrefixed(next)) {
+			//escaped, see ParseUtil.escapeCommandFileArgument
 			return super.setNext(next.substring(1));
 		}
 		return super.setNext(next);
 	}
 
+	private String intern(String line) {
+		String[] table = this.internTable;
+		if (table == null) {
+			return line;
+		}
+		int hash = line.hashCode();
+		int idx = (hash ^ (hash >>> 16)) & (table.length - 1);
+		String prev = table[idx];
+		if (line.equals(prev)) {
+			return prev;
+		}
+		table[idx] = line;
+		return line;
+	}
+
 	@Override
 	public void close() throws IOException {
 		Throwable t = null;
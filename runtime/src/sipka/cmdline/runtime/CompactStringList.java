@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Append-only list of strings that stores its elements in UTF-8 encoded form.
+ * <p>
+ * The elements are encoded into large shared <code>byte[]</code> chunks, and only their location is stored for each
+ * element. This avoids the object and array headers of separate {@link String} instances, which makes the list
+ * suitable for multi-parameters and end positional parameters that receive a very large number of arguments. E.g. an
+ * ASCII path of 40 characters takes 52 bytes instead of about 85.
+ * <p>
+ * The {@link #get(int)} method decodes the element to a new string. Use {@link #getCharSequence(int)} to access the
+ * characters of an element without creating a string if possible.
+ * <p>
+ * Unpaired surrogate characters are encoded as <code>'?'</code>, the same way as
+ * {@link String#getBytes(java.nio.charset.Charset)} does.
+ * <p>
+ * The list doesn't support removing or replacing elements, other than {@link #clear()}. It is not thread safe.
+ */
+public final class CompactStringList extends AbstractList<String> implements RandomAccess {
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private static final byte[][] EMPTY_CHUNKS = {};
+	private static final long[] EMPTY_LOCATIONS = {};
+	private static final int[] EMPTY_LENGTHS = {};
+
+	private byte[][] chunks = EMPTY_CHUNKS;
+	private int chunkCount;
+	/**
+	 * The write offset in the last chunk.
+	 */
+	private int chunkOffset;
+
+	/**
+	 * The chunk index in the upper, and the offset in the chunk in the lower 32 bits for each element.
+	 */
+	private long[] locations = EMPTY_LOCATIONS;
+	/**
+	 * The encoded byte length of each element shifted left by one. The lowest bit is set if the element contains
+	 * non-ASCII characters.
+	 */
+	private int[] lengths = EMPTY_LENGTHS;
+	private int size;
+
+	/**
+	 * Creates a new empty list.
+	 */
+	public CompactStringList() {
+	}
+
+	/**
+	 * Appends the string to the end of the list.
+	 * 
+	 * @param e
+	 *            The string to add.
+	 * @return <code>true</code>.
+	 * @throws NullPointerException
+	 *             If the string is <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             If the encoded form of the string is longer than 1 GiB.
+	 */
+	@Override
+	public boolean add(String e) throws NullPointerException, IllegalArgumentException {
+		int charlen = e.length();
+		long encodedlen = 0;
+		boolean ascii = true;
+		for (int i = 0; i < charlen; i++) {
+			char c = e.charAt(i);
+			if (c < 0x80) {
+				++encodedlen;
+			} else if (c < 0x800) {
+				encodedlen += 2;
+				ascii = false;
+			} else if (Character.isHighSurrogate(c) && i + 1 < charlen && Character.isLowSurrogate(e.charAt(i + 1))) {
+				encodedlen += 4;
+				++i;
+				ascii = false;
+			} else if (Character.isSurrogate(c)) {
+				//replaced by '?'
+				++encodedlen;
+				ascii = false;
+			} else {
+				encodedlen += 3;
+				ascii = false;
+			}
+		}
+		if (encodedlen > (Integer.MAX_VALUE >> 1)) {
+			throw new IllegalArgumentException("String too long: " + encodedlen + " bytes");
+		}
+		int bytelen = (int) encodedlen;
+		byte[] chunk = reserve(bytelen);
+		int offset = chunkOffset;
+		if (ascii) {
+			for (int i = 0; i < charlen; i++) {
+				chunk[offset + i] = (byte) e.charAt(i);
+			}
+		} else {
+			encode(e, chunk, offset);
+		}
+		if (size == locations.length) {
+			int ncap = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+			locations = Arrays.copyOf(locations, ncap);
+			lengths = Arrays.copyOf(lengths, ncap);
+		}
+		locations[size] = ((long) (chunkCount - 1) << 32) | offset;
+		lengths[size] = (bytelen << 1) | (ascii ? 0 : 1);
+		++size;
+		chunkOffset = offset + bytelen;
+		++modCount;
+		return true;
+	}
+
+	@Override
+	public String get(int index) throws IndexOutOfBoundsException {
+		checkIndex(index);
+		long loc = locations[index];
+		int len = lengths[index];
+		byte[] chunk = chunks[(int) (loc >>> 32)];
+		return new String(chunk, (int) loc, len >>> 1,
+				(len & 1) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Gets the characters of the element at the given index.
+	 * <p>
+	 * If the element only contains ASCII characters, the returned sequence is a view of the stored bytes, and no string
+	 * is created. Otherwise the element is decoded the same way as {@link #get(int)}.
+	 * <p>
+	 * The returned sequence stays valid after the list is modified.
+	 * 
+	 * @param index
+	 *            The index of the element.
+	 * @return The characters of the element.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is out of bounds.
+	 */
+	public CharSequence getCharSequence(int index) throws IndexOutOfBoundsException {
+		checkIndex(index);
+		int len = lengths[index];
+		if ((len & 1) != 0) {
+			return get(index);
+		}
+		long loc = locations[index];
+		return new AsciiCharSequence(chunks[(int) (loc >>> 32)], (int) loc, len >>> 1);
+	}
+
+	/**
+	 * Gets the number of bytes the element at the given index takes in UTF-8 encoded form.
+	 * 
+	 * @param index
+	 *            The index of the element.
+	 * @return The encoded length.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is out of bounds.
+	 */
+	public int getEncodedLength(int index) throws IndexOutOfBoundsException {
+		checkIndex(index);
+		return lengths[index] >>> 1;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		chunks = EMPTY_CHUNKS;
+		chunkCount = 0;
+		chunkOffset = 0;
+		locations = EMPTY_LOCATIONS;
+		lengths = EMPTY_LENGTHS;
+		size = 0;
+		++modCount;
+	}
+
+	/**
+	 * Trims the internal storage of the list to its current size.
+	 * <p>
+	 * Elements added after this call are written to a new chunk.
+	 */
+	public void trimToSize() {
+		if (chunkCount > 0) {
+			byte[] last = chunks[chunkCount - 1];
+			if (chunkOffset < last.length) {
+				chunks[chunkCount - 1] = Arrays.copyOf(last, chunkOffset);
+			}
+		}
+		if (chunkCount < chunks.length) {
+			chunks = Arrays.copyOf(chunks, chunkCount);
+		}
+		if (size < locations.length) {
+			locations = Arrays.copyOf(locations, size);
+			lengths = Arrays.copyOf(lengths, size);
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size);
+		}
+	}
+
+	/**
+	 * Gets a chunk that has at least the given number of bytes free after {@link #chunkOffset}.
+	 */
+	private byte[] reserve(int bytelen) {
+		if (chunkCount > 0) {
+			byte[] last = chunks[chunkCount - 1];
+			if (last.length - chunkOffset >= bytelen) {
+				return last;
+			}
+		}
+		if (chunkCount == chunks.length) {
+			chunks = Arrays.copyOf(chunks, Math.max(INITIAL_CAPACITY, chunkCount * 2));
+		}
+		//long elements get a chunk of their own size
+		byte[] chunk = new byte[Math.max(CHUNK_SIZE, bytelen)];
+		chunks[chunkCount++] = chunk;
+		chunkOffset = 0;
+		return chunk;
+	}
+
+	private static void encode(String e, byte[] chunk, int offset) {
+		int charlen = e.length();
+		for (int i = 0; i < charlen; i++) {
+			char c = e.charAt(i);
+			if (c < 0x80) {
+				chunk[offset++] = (byte) c;
+			} else if (c < 0x800) {
+				chunk[offset++] = (byte) (0xC0 | (c >> 6));
+				chunk[offset++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < charlen && Character.isLowSurrogate(e.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, e.charAt(++i));
+				chunk[offset++] = (byte) (0xF0 | (cp >> 18));
+				chunk[offset++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				chunk[offset++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				chunk[offset++] = (byte) (0x80 | (cp & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				chunk[offset++] = '?';
+			} else {
+				chunk[offset++] = (byte) (0xE0 | (c >> 12));
+				chunk[offset++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				chunk[offset++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private static final class AsciiCharSequence implements CharSequence {
+		private final byte[] data;
+		private final int offset;
+		private final int length;
+
+		AsciiCharSequence(byte[] data, int offset, int length) {
+			this.data = data;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException("Index: " + index + " Length: " + length);
+			}
+			return (char) data[offset + index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || end > length || start > end) {
+				throw new IndexOutOfBoundsException("Range: " + start + " - " + end + " Length: " + length);
+			}
+			return new AsciiCharSequence(data, offset + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(data, offset, length, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
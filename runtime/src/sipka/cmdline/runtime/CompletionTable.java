@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prefix lookup table of the completion candidates used by the generated <code>complete</code> methods.
+ * <p>
+ * The table is a flattened trie: the candidates are stored in sorted order, so the candidates that start with a given
+ * prefix form a contiguous range of the array. The range is found using binary search, and the candidates in it are
+ * added to the result without examining any other entry.
+ * <p>
+ * The generated code creates the tables lazily, only when completion is requested. The tables are encoded as string
+ * constants and decoded using {@link #decodeTables(String...)}.
+ */
+public final class CompletionTable {
+	private static final String[] EMPTY_STRING_ARRAY = {};
+
+	/**
+	 * The character that precedes each candidate in the encoded format.
+	 * 
+	 * @see #decodeTables(String...)
+	 */
+	public static final char CANDIDATE_SEPARATOR = '\0';
+	/**
+	 * The character that terminates each table in the encoded format.
+	 * 
+	 * @see #decodeTables(String...)
+	 */
+	public static final char TABLE_TERMINATOR = '\n';
+
+	/**
+	 * The empty completion table.
+	 */
+	public static final CompletionTable EMPTY = new CompletionTable(false, EMPTY_STRING_ARRAY);
+
+	private final boolean caseInsensitive;
+	/**
+	 * The keys to search in. Same as {@link #candidates} if the table is case sensitive, the lower case candidates
+	 * otherwise.
+	 */
+	private final String[] keys;
+	private final String[] candidates;
+
+	/**
+	 * Creates a new case sensitive table.
+	 * 
+	 * @param candidates
+	 *            The completion candidates. Duplicates are removed.
+	 * @throws NullPointerException
+	 *             If any of the candidates is <code>null</code>.
+	 */
+	public CompletionTable(String... candidates) throws NullPointerException {
+		this(false, candidates);
+	}
+
+	/**
+	 * Creates a new table.
+	 * <p>
+	 * If the table is case insensitive, the candidates are matched against the prefixes in a case insensitive manner
+	 * using the {@linkplain Locale#ENGLISH english} locale. This is used for enums which are parsed case insensitively.
+	 * 
+	 * @param caseInsensitive
+	 *            <code>true</code> to match the prefixes case insensitively.
+	 * @param candidates
+	 *            The completion candidates. Duplicates are removed.
+	 * @throws NullPointerException
+	 *             If any of the candidates is <code>null</code>.
+	 */
+	public CompletionTable(boolean caseInsensitive, String... candidates) throws NullPointerException {
+		this.caseInsensitive = caseInsensitive;
+		String[] entries = candidates.clone();
+		if (caseInsensitive) {
+			Arrays.sort(entries, (l, r) -> {
+				int cmp = l.toLowerCase(Locale.ENGLISH).compareTo(r.toLowerCase(Locale.ENGLISH));
+				if (cmp != 0) {
+					return cmp;
+				}
+				return l.compareTo(r);
+			});
+		} else {
+			Arrays.sort(entries);
+		}
+		int count = 0;
+		for (String e : entries) {
+			if (count == 0 || !entries[count - 1].equals(e)) {
+				entries[count++] = e;
+			}
+		}
+		this.candidates = count == entries.length ? entries : Arrays.copyOf(entries, count);
+		if (caseInsensitive) {
+			this.keys = new String[count];
+			for (int i = 0; i < count; i++) {
+				this.keys[i] = this.candidates[i].toLowerCase(Locale.ENGLISH);
+			}
+		} else {
+			this.keys = this.candidates;
+		}
+	}
+
+	/**
+	 * Decodes the completion tables from the argument string chunks.
+	 * <p>
+	 * The chunks are concatenated, and the result contains the tables after each other. Each table starts with a
+	 * <code>'0'</code> or <code>'1'</code> character for case sensitive and case insensitive tables. Every candidate
+	 * of the table is preceded by {@link #CANDIDATE_SEPARATOR}, and the table is terminated by
+	 * {@link #TABLE_TERMINATOR}.
+	 * <p>
+	 * The data is split into chunks as string constants have a limited size in class files.
+	 * 
+	 * @param chunks
+	 *            The encoded data chunks.
+	 * @return The decoded tables.
+	 * @throws IllegalArgumentException
+	 *             If the data is malformed.
+	 */
+	public static CompletionTable[] decodeTables(String... chunks) throws IllegalArgumentException {
+		String data = chunks.length == 1 ? chunks[0] : String.join("", chunks);
+		List<CompletionTable> result = new ArrayList<>();
+		List<String> candidates = new ArrayList<>();
+		int len = data.length();
+		int i = 0;
+		while (i < len) {
+			char flag = data.charAt(i);
+			int end = data.indexOf(TABLE_TERMINATOR, i);
+			if ((flag != '0' && flag != '1') || end < 0) {
+				throw new IllegalArgumentException("Malformed completion table at index: " + i);
+			}
+			++i;
+			candidates.clear();
+			while (i < end) {
+				if (data.charAt(i) != CANDIDATE_SEPARATOR) {
+					throw new IllegalArgumentException("Malformed completion table at index: " + i);
+				}
+				int next = data.indexOf(CANDIDATE_SEPARATOR, i + 1);
+				if (next < 0 || next > end) {
+					next = end;
+				}
+				candidates.add(data.substring(i + 1, next));
+				i = next;
+			}
+			result.add(new CompletionTable(flag == '1', candidates.toArray(EMPTY_STRING_ARRAY)));
+			i = end + 1;
+		}
+		return result.toArray(new CompletionTable[result.size()]);
+	}
+
+	/**
+	 * Adds the candidates that start with the given prefix to the argument collection.
+	 * <p>
+	 * The candidates are added in sorted order.
+	 * 
+	 * @param prefix
+	 *            The prefix.
+	 * @param result
+	 *            The collection to add the candidates to.
+	 * @throws NullPointerException
+	 *             If any of the arguments are <code>null</code>.
+	 */
+	public void addCompletions(String prefix, Collection<? super String> result) throws NullPointerException {
+		String key = caseInsensitive ? prefix.toLowerCase(Locale.ENGLISH) : prefix;
+		int idx = Arrays.binarySearch(keys, key);
+		if (idx < 0) {
+			//the insertion point
+			idx = -(idx + 1);
+		} else {
+			//there may be multiple equal keys with case insensitive tables, find the first
+			while (idx > 0 && keys[idx - 1].equals(key)) {
+				--idx;
+			}
+		}
+		for (; idx < keys.length && keys[idx].startsWith(key); idx++) {
+			result.add(candidates[idx]);
+		}
+	}
+
+	/**
+	 * Checks if the table contains the given candidate.
+	 * <p>
+	 * The candidate is matched case insensitively if the table is case insensitive.
+	 * 
+	 * @param candidate
+	 *            The candidate.
+	 * @return <code>true</code> if the candidate is present.
+	 */
+	public boolean contains(String candidate) {
+		String key = caseInsensitive ? candidate.toLowerCase(Locale.ENGLISH) : candidate;
+		return Arrays.binarySearch(keys, key) >= 0;
+	}
+
+	/**
+	 * Gets the number of candidates in the table.
+	 * 
+	 * @return The candidate count.
+	 */
+	public int size() {
+		return candidates.length;
+	}
+
+	@Override
+	public String toString() {
+		return "CompletionTable" + Arrays.toString(candidates);
+	}
+}
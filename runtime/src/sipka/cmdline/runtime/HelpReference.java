@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Reader for the version 2 help reference files generated by the annotation processor.
+ * <p>
+ * The help reference is generated if the <code>sipka.cmdline.help.generate.reference</code> processor option is
+ * <code>true</code>, and the version 2 format is used if <code>sipka.cmdline.help.generate.reference.version</code> is
+ * set to <code>2</code>.
+ * <p>
+ * The reader doesn't decode the whole file. The commands are looked up using binary search in the sorted index of the
+ * file, and the contents of the commands and parameters are decoded when they are accessed. The file can be memory
+ * mapped using {@link #open(Path)}.
+ * <p>
+ * The instances are safe to be used from multiple threads.
+ */
+public final class HelpReference {
+	/**
+	 * The format version that this class reads.
+	 */
+	public static final int VERSION = 2;
+
+	private static final int HEADER_SIZE = 5 * 4;
+
+	private final ByteBuffer buffer;
+	private final int commandCount;
+	private final int indexOffset;
+	private final int stringTableOffset;
+	private final int recordsOffset;
+
+	private HelpReference(ByteBuffer buffer) {
+		this.buffer = buffer;
+		if (buffer.limit() < HEADER_SIZE) {
+			throw new IllegalArgumentException("Help reference is too short: " + buffer.limit() + " bytes");
+		}
+		int version = buffer.getInt(0);
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported help reference version: " + version);
+		}
+		this.commandCount = buffer.getInt(4);
+		this.indexOffset = buffer.getInt(8);
+		this.stringTableOffset = buffer.getInt(12);
+		this.recordsOffset = buffer.getInt(16);
+		if (commandCount < 0 || indexOffset < HEADER_SIZE || stringTableOffset < indexOffset
+				|| recordsOffset < stringTableOffset || recordsOffset > buffer.limit()
+				|| (long) indexOffset + commandCount * 4L > stringTableOffset) {
+			throw new IllegalArgumentException("Malformed help reference header.");
+		}
+	}
+
+	/**
+	 * Opens the help reference file at the given path by memory mapping it.
+	 * 
+	 * @param path
+	 *            The path to the help reference file.
+	 * @return The opened help reference.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 * @throws IllegalArgumentException
+	 *             If the file is not a version 2 help reference.
+	 */
+	public static HelpReference open(Path path) throws IOException, IllegalArgumentException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			//the mapping stays valid after the channel is closed
+			return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Creates a help reference that reads the contents of the given buffer.
+	 * <p>
+	 * The help reference starts at the position of the buffer, and ends at its limit. The buffer is not modified.
+	 * 
+	 * @param buffer
+	 *            The buffer.
+	 * @return The help reference.
+	 * @throws IllegalArgumentException
+	 *             If the buffer doesn't contain a version 2 help reference.
+	 */
+	public static HelpReference wrap(ByteBuffer buffer) throws IllegalArgumentException {
+		return new HelpReference(buffer.slice().order(ByteOrder.BIG_ENDIAN));
+	}
+
+	/**
+	 * Gets the number of commands in the help reference.
+	 * 
+	 * @return The command count.
+	 */
+	public int getCommandCount() {
+		return commandCount;
+	}
+
+	/**
+	 * Gets the command at the given index.
+	 * <p>
+	 * The commands are ordered by their paths.
+	 * 
+	 * @param index
+	 *            The index of the command.
+	 * @return The command.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is out of bounds.
+	 */
+	public CommandHelp getCommand(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= commandCount) {
+			throw new IndexOutOfBoundsException("Index: " + index + " size: " + commandCount);
+		}
+		return new CommandHelp(recordsOffset + buffer.getInt(indexOffset + index * 4));
+	}
+
+	/**
+	 * Finds the command with the given path.
+	 * <p>
+	 * The path consists of the names of the subcommands. The root command has an empty path. Only the first name of
+	 * each subcommand is used in the path.
+	 * 
+	 * @param path
+	 *            The command path.
+	 * @return The found command or <code>null</code> if there's no command with the given path.
+	 */
+	public CommandHelp findCommand(List<String> path) {
+		int low = 0;
+		int high = commandCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			CommandHelp cmd = getCommand(mid);
+			int cmp = comparePath(cmd.pathOffset, path);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return cmd;
+			}
+		}
+		return null;
+	}
+
+	private int comparePath(int pathoffset, List<String> path) {
+		int count = buffer.getInt(pathoffset);
+		int size = Math.min(count, path.size());
+		for (int i = 0; i < size; i++) {
+			int cmp = getString(buffer.getInt(pathoffset + 4 + i * 4)).compareTo(path.get(i));
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(count, path.size());
+	}
+
+	private String getString(int reference) {
+		int offset = stringTableOffset + reference;
+		int length = buffer.getInt(offset);
+		if (length < 0 || offset + 4 + length > recordsOffset) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(offset + 4);
+		dup.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private List<String> getStringList(int offset) {
+		int count = buffer.getInt(offset);
+		return new AbstractList<String>() {
+			@Override
+			public String get(int index) {
+				if (index < 0 || index >= count) {
+					throw new IndexOutOfBoundsException("Index: " + index + " size: " + count);
+				}
+				return getString(buffer.getInt(offset + 4 + index * 4));
+			}
+
+			@Override
+			public int size() {
+				return count;
+			}
+		};
+	}
+
+	/**
+	 * Help information of a command in the help reference.
+	 */
+	public final class CommandHelp {
+		private final int pathOffset;
+		private final int usageOffset;
+		private final int parameterCount;
+		private final int nameIndexCount;
+		private final int nameIndexOffset;
+		/**
+		 * The offsets of the parameters, computed when first accessed, as the parameters have variable length.
+		 */
+		private volatile int[] parameterOffsets;
+
+		CommandHelp(int offset) {
+			this.pathOffset = offset;
+			this.usageOffset = offset + 4 + buffer.getInt(offset) * 4;
+			this.parameterCount = buffer.getInt(usageOffset + 8);
+			this.nameIndexCount = buffer.getInt(usageOffset + 12);
+			this.nameIndexOffset = usageOffset + 16;
+		}
+
+		/**
+		 * Gets the path of the command.
+		 * 
+		 * @return The names of the subcommands that lead to this command.
+		 */
+		public List<String> getPath() {
+			return getStringList(pathOffset);
+		}
+
+		/**
+		 * Gets the usage string of the command.
+		 * 
+		 * @return The usage string.
+		 */
+		public String getUsage() {
+			return getString(buffer.getInt(usageOffset));
+		}
+
+		/**
+		 * Gets the documentation of the command.
+		 * 
+		 * @return The doc comment, may be empty.
+		 */
+		public String getDocComment() {
+			return getString(buffer.getInt(usageOffset + 4));
+		}
+
+		/**
+		 * Gets the parameters of the command.
+		 * <p>
+		 * The parameters are in the same order as they are displayed in the help of the command.
+		 * 
+		 * @return The parameters.
+		 */
+		public List<ParameterHelp> getParameters() {
+			int[] offsets = getParameterOffsets();
+			return new AbstractList<ParameterHelp>() {
+				@Override
+				public ParameterHelp get(int index) {
+					if (index < 0 || index >= offsets.length) {
+						throw new IndexOutOfBoundsException("Index: " + index + " size: " + offsets.length);
+					}
+					return new ParameterHelp(offsets[index]);
+				}
+
+				@Override
+				public int size() {
+					return offsets.length;
+				}
+			};
+		}
+
+		/**
+		 * Finds a parameter of the command by one of its names.
+		 * 
+		 * @param name
+		 *            The name of the parameter.
+		 * @return The found parameter or <code>null</code> if not found.
+		 */
+		public ParameterHelp findParameter(String name) {
+			int low = 0;
+			int high = nameIndexCount - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int entryoffset = nameIndexOffset + mid * 8;
+				int cmp = getString(buffer.getInt(entryoffset)).compareTo(name);
+				if (cmp < 0) {
+					low = mid + 1;
+				} else if (cmp > 0) {
+					high = mid - 1;
+				} else {
+					return new ParameterHelp(recordsOffset + buffer.getInt(entryoffset + 4));
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return "CommandHelp[" + getPath() + "]";
+		}
+
+		private int[] getParameterOffsets() {
+			int[] result = parameterOffsets;
+			if (result == null) {
+				//walk the parameters once, concurrent callers may compute the same offsets
+				result = new int[parameterCount];
+				int offset = nameIndexOffset + nameIndexCount * 8;
+				for (int i = 0; i < result.length; i++) {
+					result[i] = offset;
+					offset = new ParameterHelp(offset).getEndOffset();
+				}
+				parameterOffsets = result;
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Help information of a parameter in the help reference.
+	 */
+	public final class ParameterHelp {
+		private final int offset;
+
+		ParameterHelp(int offset) {
+			this.offset = offset;
+		}
+
+		/**
+		 * Gets the names of the parameter.
+		 * 
+		 * @return The names.
+		 */
+		public List<String> getNames() {
+			return getStringList(offset);
+		}
+
+		/**
+		 * Gets the flags of the parameter.
+		 * <p>
+		 * The flags are the following: <code>positional</code>, <code>required</code>, <code>deprecated</code>,
+		 * <code>multi-parameter</code>, <code>map-parameter</code>.
+		 * 
+		 * @return The flags.
+		 */
+		public List<String> getFlags() {
+			return getStringList(getFlagsOffset());
+		}
+
+		/**
+		 * Gets the help meta names of the parameter.
+		 * 
+		 * @return The meta names.
+		 */
+		public List<String> getMetaNames() {
+			return getStringList(getMetaNamesOffset());
+		}
+
+		/**
+		 * Gets the documentation of the parameter.
+		 * 
+		 * @return The doc comment, may be empty.
+		 */
+		public String getDocComment() {
+			return getString(buffer.getInt(getDocCommentOffset()));
+		}
+
+		/**
+		 * Gets the format of the parameter.
+		 * 
+		 * @return The format, may be empty.
+		 */
+		public String getFormat() {
+			return getString(buffer.getInt(getDocCommentOffset() + 4));
+		}
+
+		int getEndOffset() {
+			return getDocCommentOffset() + 8;
+		}
+
+		private int getFlagsOffset() {
+			return skipList(offset);
+		}
+
+		private int getMetaNamesOffset() {
+			return skipList(getFlagsOffset());
+		}
+
+		private int getDocCommentOffset() {
+			return skipList(getMetaNamesOffset());
+		}
+
+		private int skipList(int listoffset) {
+			return listoffset + 4 + buffer.getInt(listoffset) * 4;
+		}
+
+		@Override
+		public String toString() {
+			return "ParameterHelp[" + getNames() + "]";
+		}
+	}
+}
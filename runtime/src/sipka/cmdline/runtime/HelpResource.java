@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed help texts of the generated commands.
+ * <p>
+ * If the <code>sipka.cmdline.help.resource</code> processor option is <code>true</code>, the help texts are not
+ * included in the generated class as string constants, but written to a resource next to it. The generated
+ * <code>getHelpString</code> methods load the resource lazily, so it is only read when help is requested, and only the
+ * requested text is decompressed.
+ * <p>
+ * The layout of the resource is the following. All numbers are big-endian <code>int</code>s.
+ * 
+ * <pre>
+ * version (1)
+ * text count
+ * uncompressed UTF-8 byte length of each text
+ * offset of each compressed text relative to the end of the header, and the end offset of the last
+ * texts compressed with raw deflate
+ * </pre>
+ * 
+ * The instances are safe to be used from multiple threads.
+ */
+public final class HelpResource {
+	/**
+	 * The format version that this class reads and writes.
+	 */
+	public static final int VERSION = 1;
+
+	private final byte[] data;
+	private final int count;
+	private final int dataOffset;
+
+	private HelpResource(byte[] data) {
+		this.data = data;
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		if (data.length < 8) {
+			throw new IllegalArgumentException("Help resource is too short: " + data.length + " bytes");
+		}
+		int version = buffer.getInt(0);
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported help resource version: " + version);
+		}
+		this.count = buffer.getInt(4);
+		if (count < 0 || count > (data.length - 12) / 8) {
+			throw new IllegalArgumentException("Invalid help text count: " + count);
+		}
+		this.dataOffset = 8 + count * 4 + (count + 1) * 4;
+	}
+
+	/**
+	 * Loads the help resource with the given name relative to the class.
+	 * 
+	 * @param owner
+	 *            The class to load the resource for.
+	 * @param name
+	 *            The name of the resource. Relative to the package of the class.
+	 * @return The loaded help resource.
+	 * @throws IllegalStateException
+	 *             If the resource is not found.
+	 * @throws UncheckedIOException
+	 *             If the resource cannot be read.
+	 * @throws IllegalArgumentException
+	 *             If the resource is malformed.
+	 */
+	public static HelpResource load(Class<?> owner, String name)
+			throws IllegalStateException, UncheckedIOException, IllegalArgumentException {
+		try (InputStream is = owner.getResourceAsStream(name)) {
+			if (is == null) {
+				throw new IllegalStateException("Help resource not found: " + name + " for " + owner.getName());
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			for (int read; (read = is.read(buf)) > 0;) {
+				baos.write(buf, 0, read);
+			}
+			return new HelpResource(baos.toByteArray());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read help resource: " + name + " for " + owner.getName(), e);
+		}
+	}
+
+	/**
+	 * Creates a help resource that reads the argument bytes.
+	 * <p>
+	 * The array is not copied.
+	 * 
+	 * @param data
+	 *            The contents of the resource.
+	 * @return The help resource.
+	 * @throws IllegalArgumentException
+	 *             If the data is malformed.
+	 */
+	public static HelpResource wrap(byte[] data) throws IllegalArgumentException {
+		return new HelpResource(data);
+	}
+
+	/**
+	 * Writes the help texts in the format that this class reads.
+	 * 
+	 * @param os
+	 *            The output stream.
+	 * @param texts
+	 *            The help texts.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public static void write(OutputStream os, List<String> texts) throws IOException {
+		int count = texts.size();
+		int[] lengths = new int[count];
+		int[] offsets = new int[count + 1];
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			byte[] buf = new byte[8192];
+			for (int i = 0; i < count; i++) {
+				byte[] bytes = texts.get(i).getBytes(StandardCharsets.UTF_8);
+				lengths[i] = bytes.length;
+				offsets[i] = compressed.size();
+				deflater.reset();
+				deflater.setInput(bytes);
+				deflater.finish();
+				while (!deflater.finished()) {
+					int len = deflater.deflate(buf);
+					compressed.write(buf, 0, len);
+				}
+			}
+			offsets[count] = compressed.size();
+		} finally {
+			deflater.end();
+		}
+		DataOutputStream dos = new DataOutputStream(os);
+		dos.writeInt(VERSION);
+		dos.writeInt(count);
+		for (int len : lengths) {
+			dos.writeInt(len);
+		}
+		for (int off : offsets) {
+			dos.writeInt(off);
+		}
+		compressed.writeTo(dos);
+		dos.flush();
+	}
+
+	/**
+	 * Gets the number of help texts in the resource.
+	 * 
+	 * @return The count.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Decompresses the help text at the given index.
+	 * 
+	 * @param index
+	 *            The index of the help text.
+	 * @return The help text.
+	 * @throws IndexOutOfBoundsException
+	 *             If the index is out of bounds.
+	 * @throws IllegalArgumentException
+	 *             If the resource is malformed.
+	 */
+	public String getHelpString(int index) throws IndexOutOfBoundsException, IllegalArgumentException {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + " count: " + count);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		int length = buffer.getInt(8 + index * 4);
+		int offsetsstart = 8 + count * 4;
+		int start = dataOffset + buffer.getInt(offsetsstart + index * 4);
+		int end = dataOffset + buffer.getInt(offsetsstart + (index + 1) * 4);
+		if (length < 0 || start < dataOffset || end < start || end > data.length) {
+			throw new IllegalArgumentException("Invalid help text bounds at index: " + index);
+		}
+		byte[] result = new byte[length];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(data, start, end - start);
+			int off = 0;
+			while (off < length) {
+				int len = inflater.inflate(result, off, length - off);
+				if (len == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IllegalArgumentException("Truncated help text at index: " + index);
+				}
+				off += len;
+			}
+		} catch (DataFormatException e) {
+			throw new IllegalArgumentException("Malformed help text at index: " + index, e);
+		} finally {
+			inflater.end();
+		}
+		return new String(result, StandardCharsets.UTF_8);
+	}
+}
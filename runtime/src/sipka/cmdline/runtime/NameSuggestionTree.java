@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * BK-tree of the parameter and subcommand names of a command, used to suggest names for unrecognized arguments.
+ * <p>
+ * The tree is keyed by the Levenshtein distance of the names. Each child of a node has a distinct distance from it.
+ * When searching for the names within a given distance of an argument, the subtrees whose distance from the visited
+ * node is out of the range allowed by the triangle inequality are skipped. This keeps the number of distance
+ * calculations low for large commands.
+ * <p>
+ * The processor builds the trees when the parser is generated, and encodes them as string constants using
+ * {@link #encodeTree(Collection)}. The generated code decodes them lazily using {@link #decodeTrees(String...)}, only
+ * when an unrecognized argument is encountered.
+ */
+public final class NameSuggestionTree {
+	/**
+	 * The character that terminates each name in the encoded format.
+	 * 
+	 * @see #encodeTree(Collection)
+	 */
+	public static final char NAME_TERMINATOR = '\0';
+	/**
+	 * The character that terminates each tree in the encoded format.
+	 * 
+	 * @see #decodeTrees(String...)
+	 */
+	public static final char TREE_TERMINATOR = '\n';
+
+	/**
+	 * The default maximum number of suggestions.
+	 */
+	public static final int DEFAULT_MAX_SUGGESTIONS = 3;
+	/**
+	 * Arguments longer than this are not matched, to bound the cost of the distance calculations.
+	 */
+	private static final int MAX_ARGUMENT_LENGTH = 64;
+
+	private static final String[] EMPTY_STRING_ARRAY = {};
+	private static final int[] EMPTY_INT_ARRAY = {};
+
+	/**
+	 * The empty tree.
+	 */
+	public static final NameSuggestionTree EMPTY = new NameSuggestionTree(EMPTY_STRING_ARRAY, EMPTY_INT_ARRAY,
+			EMPTY_INT_ARRAY);
+
+	/**
+	 * The names of the nodes in pre-order.
+	 */
+	private final String[] names;
+	/**
+	 * The distance of each node from its parent.
+	 */
+	private final int[] distances;
+	/**
+	 * The index after the subtree of each node.
+	 */
+	private final int[] ends;
+
+	private NameSuggestionTree(String[] names, int[] distances, int[] ends) {
+		this.names = names;
+		this.distances = distances;
+		this.ends = ends;
+	}
+
+	/**
+	 * Builds a tree of the given names and encodes it.
+	 * <p>
+	 * Each node is encoded in pre-order as its distance from its parent, its child count, and its name, terminated by
+	 * {@link #NAME_TERMINATOR}. The distances and counts are encoded as single characters.
+	 * 
+	 * @param names
+	 *            The names. Duplicates are ignored.
+	 * @return The encoded tree, without the {@link #TREE_TERMINATOR}.
+	 * @throws IllegalArgumentException
+	 *             If a name contains a terminator character or is too long.
+	 */
+	public static String encodeTree(Collection<String> names) throws IllegalArgumentException {
+		Node root = null;
+		//sorted for deterministic output
+		for (String n : new TreeSet<>(names)) {
+			if (n.indexOf(NAME_TERMINATOR) >= 0 || n.indexOf(TREE_TERMINATOR) >= 0) {
+				throw new IllegalArgumentException("Name contains invalid character: " + n);
+			}
+			if (n.length() > Character.MAX_VALUE) {
+				throw new IllegalArgumentException("Name too long: " + n);
+			}
+			if (root == null) {
+				root = new Node(n, 0);
+			} else {
+				root.add(n);
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		if (root != null) {
+			root.encode(sb);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Decodes the trees from the argument string chunks.
+	 * <p>
+	 * The chunks are concatenated, and the result contains the {@linkplain #encodeTree(Collection) encoded trees}
+	 * after each other, each terminated by {@link #TREE_TERMINATOR}.
+	 * 
+	 * @param chunks
+	 *            The encoded data chunks.
+	 * @return The decoded trees.
+	 * @throws IllegalArgumentException
+	 *             If the data is malformed.
+	 */
+	public static NameSuggestionTree[] decodeTrees(String... chunks) throws IllegalArgumentException {
+		String data = chunks.length == 1 ? chunks[0] : String.join("", chunks);
+		List<NameSuggestionTree> result = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		List<int[]> nodes = new ArrayList<>();
+		int len = data.length();
+		int i = 0;
+		while (i < len) {
+			names.clear();
+			nodes.clear();
+			//the remaining child counts of the nodes on the path to the current one
+			List<int[]> path = new ArrayList<>();
+			while (true) {
+				if (i >= len) {
+					throw new IllegalArgumentException("Malformed suggestion tree at index: " + i);
+				}
+				if (data.charAt(i) == TREE_TERMINATOR) {
+					if (!path.isEmpty()) {
+						throw new IllegalArgumentException("Malformed suggestion tree at index: " + i);
+					}
+					++i;
+					break;
+				}
+				int nameend = data.indexOf(NAME_TERMINATOR, i + 2);
+				if (i + 2 > len || nameend < 0 || (path.isEmpty() && !nodes.isEmpty())) {
+					throw new IllegalArgumentException("Malformed suggestion tree at index: " + i);
+				}
+				//{ distance, remaining child count }
+				int[] node = { data.charAt(i), data.charAt(i + 1) };
+				names.add(data.substring(i + 2, nameend));
+				nodes.add(node);
+				i = nameend + 1;
+				if (!path.isEmpty()) {
+					--path.get(path.size() - 1)[1];
+				}
+				path.add(node);
+				//close the finished subtrees
+				while (!path.isEmpty() && path.get(path.size() - 1)[1] == 0) {
+					int[] done = path.remove(path.size() - 1);
+					//reuse the child count slot for the end index
+					done[1] = nodes.size();
+				}
+			}
+			int count = nodes.size();
+			if (count == 0) {
+				result.add(EMPTY);
+				continue;
+			}
+			int[] distances = new int[count];
+			int[] ends = new int[count];
+			for (int n = 0; n < count; n++) {
+				int[] node = nodes.get(n);
+				distances[n] = node[0];
+				ends[n] = node[1];
+			}
+			result.add(new NameSuggestionTree(names.toArray(EMPTY_STRING_ARRAY), distances, ends));
+		}
+		return result.toArray(new NameSuggestionTree[result.size()]);
+	}
+
+	/**
+	 * Gets the closest names to the argument using the default limits.
+	 * <p>
+	 * The allowed distance is half of the argument length, but at least 1 and at most 3.
+	 * 
+	 * @param argument
+	 *            The unrecognized argument.
+	 * @return The suggested names, closest first.
+	 * @see #suggest(String, int, int)
+	 */
+	public List<String> suggest(String argument) {
+		return suggest(argument, Math.max(1, Math.min(3, argument.length() / 2)), DEFAULT_MAX_SUGGESTIONS);
+	}
+
+	/**
+	 * Gets the closest names to the argument.
+	 * <p>
+	 * The names are ordered by their distance from the argument, and alphabetically for equal distances.
+	 * 
+	 * @param argument
+	 *            The unrecognized argument.
+	 * @param maxDistance
+	 *            The maximum Levenshtein distance of the suggested names.
+	 * @param maxCount
+	 *            The maximum number of suggestions.
+	 * @return The suggested names, closest first.
+	 */
+	public List<String> suggest(String argument, int maxDistance, int maxCount) {
+		if (names.length == 0 || maxCount <= 0 || argument.length() > MAX_ARGUMENT_LENGTH) {
+			return Collections.emptyList();
+		}
+		List<String> found = new ArrayList<>();
+		List<Integer> founddistances = new ArrayList<>();
+		//the nodes to visit, starting with the root
+		int[] stack = new int[16];
+		int stacksize = 0;
+		stack[stacksize++] = 0;
+		int[] rows = new int[(MAX_ARGUMENT_LENGTH + 1) * 2];
+		while (stacksize > 0) {
+			int node = stack[--stacksize];
+			int d = distance(argument, names[node], rows);
+			if (d <= maxDistance) {
+				found.add(names[node]);
+				founddistances.add(d);
+			}
+			//the children follow the node, each child subtree ends where the next one starts
+			for (int c = node + 1, end = ends[node]; c < end; c = ends[c]) {
+				if (Math.abs(distances[c] - d) <= maxDistance) {
+					if (stacksize == stack.length) {
+						int[] nstack = new int[stacksize * 2];
+						System.arraycopy(stack, 0, nstack, 0, stacksize);
+						stack = nstack;
+					}
+					stack[stacksize++] = c;
+				}
+			}
+		}
+		Integer[] order = new Integer[found.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (l, r) -> {
+			int cmp = Integer.compare(founddistances.get(l), founddistances.get(r));
+			if (cmp != 0) {
+				return cmp;
+			}
+			return found.get(l).compareTo(found.get(r));
+		});
+		List<String> result = new ArrayList<>(Math.min(maxCount, order.length));
+		for (int i = 0; i < order.length && i < maxCount; i++) {
+			result.add(found.get(order[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of names in the tree.
+	 * 
+	 * @return The name count.
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Computes the Levenshtein distance of the strings.
+	 * <p>
+	 * The exact distance is required even if it's greater than the searched distance, as it's used to select the
+	 * subtrees to visit.
+	 */
+	private static int distance(String a, String b, int[] rows) {
+		int alen = a.length();
+		int blen = b.length();
+		if (rows.length < (blen + 1) * 2) {
+			rows = new int[(blen + 1) * 2];
+		}
+		int prev = 0;
+		int cur = blen + 1;
+		for (int j = 0; j <= blen; j++) {
+			rows[prev + j] = j;
+		}
+		for (int i = 1; i <= alen; i++) {
+			rows[cur] = i;
+			char ac = a.charAt(i - 1);
+			for (int j = 1; j <= blen; j++) {
+				int cost = ac == b.charAt(j - 1) ? 0 : 1;
+				rows[cur + j] = Math.min(Math.min(rows[cur + j - 1], rows[prev + j]) + 1, rows[prev + j - 1] + cost);
+			}
+			int t = prev;
+			prev = cur;
+			cur = t;
+		}
+		return rows[prev + blen];
+	}
+
+	/**
+	 * Node of the tree while it's being built.
+	 */
+	private static final class Node {
+		final String name;
+		final int distance;
+		final List<Node> children = new ArrayList<>();
+
+		Node(String name, int distance) {
+			this.name = name;
+			this.distance = distance;
+		}
+
+		void add(String n) {
+			Node node = this;
+			while (true) {
+				int d = distance(n, node.name, EMPTY_INT_ARRAY);
+				Node next = null;
+				for (Node c : node.children) {
+					if (c.distance == d) {
+						next = c;
+						break;
+					}
+				}
+				if (next == null) {
+					node.children.add(new Node(n, d));
+					return;
+				}
+				node = next;
+			}
+		}
+
+		void encode(StringBuilder sb) {
+			sb.append((char) distance);
+			sb.append((char) children.size());
+			sb.append(name);
+			sb.append(NAME_TERMINATOR);
+			for (Node c : children) {
+				c.encode(sb);
+			}
+		}
+	}
+}
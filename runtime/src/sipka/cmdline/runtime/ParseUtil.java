@@ -15,10 +15,33 @@
  */
 package sipka.cmdline.runtime;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Utility functions used by the generated parsers.
+ * <p>
+ * The class holds no state, its functions can be called concurrently from multiple threads. The generated
+ * <code>parse</code> methods only use local state as well, so they are thread safe as long as the converters and the
+ * parameter setter methods of the command classes are.
+ */
 public class ParseUtil {
 	private ParseUtil() {
 		throw new UnsupportedOperationException();
@@ -182,6 +205,77 @@ public class ParseUtil {
 		return sb.toString();
 	}
 
+	/**
+	 * Escapes the argument so the command file argument iterator returns it as is.
+	 * <p>
+	 * Arguments that start with <code>"@"</code>, or with backslashes followed by <code>"@"</code> are prefixed with a
+	 * backslash. The iterator removes one backslash from such arguments, and doesn't interpret them as command file
+	 * references.
+	 * 
+	 * @param arg
+	 *            The argument.
+	 * @return The escaped argument.
+	 * @throws NullPointerException
+	 *             If the argument is <code>null</code>.
+	 * @see #createCommandFileArgumentIterator(Iterator)
+	 */
+	public static String escapeCommandFileArgument(String arg) throws NullPointerException {
+		if (isCommandFilePrefixed(arg)) {
+			return "\\" + arg;
+		}
+		return arg;
+	}
+
+	/**
+	 * Checks if the argument starts with any number of backslashes followed by <code>"@"</code>.
+	 */
+	static boolean isCommandFilePrefixed(String arg) {
+		int len = arg.length();
+		int i = 0;
+		while (i < len && arg.charAt(i) == '\\') {
+			++i;
+		}
+		return i < len && arg.charAt(i) == '@';
+	}
+
+	/**
+	 * Writes a command file with the arguments that the given writer produces.
+	 * <p>
+	 * Each argument is written on a separate line using UTF-8 encoding. The lines of command files are not interpreted,
+	 * so the arguments are written as is.
+	 * 
+	 * @param path
+	 *            The path of the command file.
+	 * @param writer
+	 *            The writer that passes the arguments to its argument.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 * @throws IllegalArgumentException
+	 *             If an argument contains a line break.
+	 */
+	public static void writeCommandFile(Path path, Consumer<? super Consumer<String>> writer)
+			throws IOException, IllegalArgumentException {
+		Objects.requireNonNull(writer, "writer");
+		try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			Consumer<String> lines = arg -> {
+				if (arg.indexOf('\n') >= 0 || arg.indexOf('\r') >= 0) {
+					throw new IllegalArgumentException("Argument contains line break: " + arg);
+				}
+				try {
+					out.write(arg);
+					out.write('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			};
+			try {
+				writer.accept(lines);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
 	private static int getFirstUnescapedEqualsIndex(String arg, int startidx) {
 		int len = arg.length();
 		while (startidx < len) {
@@ -244,11 +338,203 @@ public class ParseUtil {
 		return new CommandFileArgumentsIterator(args);
 	}
 
+	/**
+	 * Creates a new argument iterator that expands command files, and deduplicates the lines read from them.
+	 * <p>
+	 * The iterator keeps a bounded table of the recently read command file lines. If a line equals to an entry in the
+	 * table, the previously returned string instance is returned for it. This reduces the memory use of the parsed
+	 * values if the command files contain the same values many times, e.g. include directories or definitions. The
+	 * table is local to the iterator, {@link String#intern()} is not used.
+	 * <p>
+	 * The capacity is rounded up to a power of two, and limited to 2<sup>20</sup>. Repeated lines may not be
+	 * deduplicated if their slots in the table collide.
+	 * 
+	 * @param args
+	 *            The arguments.
+	 * @param internCapacity
+	 *            The number of entries in the deduplication table. 0 to disable deduplication.
+	 * @return The argument iterator.
+	 * @throws NullPointerException
+	 *             If the arguments are <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             If the capacity is negative.
+	 * @see #createCommandFileArgumentIterator(Iterator)
+	 */
+	public static ParsingIterator createCommandFileArgumentIterator(Iterator<? extends String> args,
+			int internCapacity) throws NullPointerException, IllegalArgumentException {
+		Objects.requireNonNull(args, "args");
+		if (internCapacity < 0) {
+			throw new IllegalArgumentException("Negative intern capacity: " + internCapacity);
+		}
+		return new CommandFileArgumentsIterator(args, internCapacity);
+	}
+
 	public static ParsingIterator createSimpleArgumentIterator(Iterator<? extends String> args) {
 		Objects.requireNonNull(args, "args");
 		return new ArgumentsIterator(args);
 	}
 
+	/**
+	 * Creates a lazy view of the remaining arguments in the argument iterator.
+	 * <p>
+	 * The remaining arguments and the resources associated with them are moved to the returned view. The argument
+	 * iterator will have no more elements, and closing it doesn't affect the returned view. The caller is responsible
+	 * for closing the returned view.
+	 * <p>
+	 * If the argument iterator wasn't created by this class, the remaining arguments are collected eagerly.
+	 * 
+	 * @param args
+	 *            The parsing iterator.
+	 * @return The view of the remaining arguments.
+	 * @throws NullPointerException
+	 *             If the argument is <code>null</code>.
+	 */
+	public static StreamedArguments streamRemainingArguments(ParsingIterator args) throws NullPointerException {
+		Objects.requireNonNull(args, "args");
+		if (args instanceof ArgumentsIterator) {
+			return new StreamedArguments(((ArgumentsIterator) args).detach());
+		}
+		List<String> remaining = new ArrayList<>();
+		while (args.hasNext()) {
+			remaining.add(args.next());
+		}
+		return new StreamedArguments(new ArgumentsIterator(remaining.iterator()));
+	}
+
+	/**
+	 * Collects the remaining arguments of the argument iterator into a new compact list.
+	 * 
+	 * @param args
+	 *            The parsing iterator.
+	 * @return The list of the remaining arguments.
+	 * @throws NullPointerException
+	 *             If the argument is <code>null</code>.
+	 * @see CompactStringList
+	 */
+	public static CompactStringList collectRemainingArguments(ParsingIterator args) throws NullPointerException {
+		Objects.requireNonNull(args, "args");
+		CompactStringList result = new CompactStringList();
+		while (args.hasNext()) {
+			result.add(args.next());
+		}
+		result.trimToSize();
+		return result;
+	}
+
+	/**
+	 * Resolves the name that the argument abbreviates.
+	 * <p>
+	 * The argument abbreviates a name if it's a prefix of it. The names that start with the argument are adjacent in
+	 * the sorted array, so the first one is found using binary search, and only the name after it is checked to
+	 * detect ambiguity. An exact match is never ambiguous.
+	 * <p>
+	 * Arguments that are empty or only consist of <code>'-'</code> characters are not considered to be
+	 * abbreviations.
+	 * 
+	 * @param sortednames
+	 *            The names in ascending order.
+	 * @param arg
+	 *            The argument.
+	 * @return The abbreviated name, or <code>null</code> if the argument is not a prefix of any names.
+	 * @throws UnrecognizedArgumentException
+	 *             If the argument is the prefix of multiple names.
+	 */
+	public static String resolveAbbreviation(String[] sortednames, String arg) throws UnrecognizedArgumentException {
+		int len = arg.length();
+		int i = 0;
+		while (i < len && arg.charAt(i) == '-') {
+			++i;
+		}
+		if (i == len) {
+			return null;
+		}
+		int idx = Arrays.binarySearch(sortednames, arg);
+		if (idx >= 0) {
+			return sortednames[idx];
+		}
+		idx = -(idx + 1);
+		if (idx >= sortednames.length || !sortednames[idx].startsWith(arg)) {
+			return null;
+		}
+		if (idx + 1 < sortednames.length && sortednames[idx + 1].startsWith(arg)) {
+			List<String> candidates = new ArrayList<>();
+			for (int c = idx; c < sortednames.length && c < idx + NameSuggestionTree.DEFAULT_MAX_SUGGESTIONS
+					&& sortednames[c].startsWith(arg); c++) {
+				candidates.add(sortednames[c]);
+			}
+			throw new UnrecognizedArgumentException("Ambiguous argument", arg, candidates);
+		}
+		return sortednames[idx];
+	}
+
+	/**
+	 * Parses the argument lists in parallel using the given executor.
+	 * <p>
+	 * The arguments are split into contiguous ranges which are parsed by separate tasks. The results are in the same
+	 * order as the arguments. The method returns when all tasks are done.
+	 * <p>
+	 * If the parser fails for any of the arguments, the exception of the first failing argument list is rethrown after
+	 * all tasks are done.
+	 * 
+	 * @param <A>
+	 *            The type of the argument lists.
+	 * @param <T>
+	 *            The type of the parsed results.
+	 * @param arguments
+	 *            The argument lists to parse.
+	 * @param parser
+	 *            The parser function. It is called concurrently.
+	 * @param executor
+	 *            The executor to run the parsing tasks on.
+	 * @return The unmodifiable list of results.
+	 * @throws NullPointerException
+	 *             If any of the arguments are <code>null</code>.
+	 */
+	public static <A, T> List<T> parseAll(List<? extends A> arguments, Function<? super A, ? extends T> parser,
+			Executor executor) throws NullPointerException {
+		Objects.requireNonNull(arguments, "arguments");
+		Objects.requireNonNull(parser, "parser");
+		Objects.requireNonNull(executor, "executor");
+		int size = arguments.size();
+		Object[] results = new Object[size];
+		//a few tasks per core to balance the load when the argument lists have different lengths
+		int taskcount = Math.min(size, Runtime.getRuntime().availableProcessors() * 4);
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[taskcount];
+		for (int t = 0; t < taskcount; t++) {
+			int start = (int) ((long) size * t / taskcount);
+			int end = (int) ((long) size * (t + 1) / taskcount);
+			futures[t] = CompletableFuture.runAsync(() -> {
+				for (int i = start; i < end; i++) {
+					results[i] = parser.apply(arguments.get(i));
+				}
+			}, executor);
+		}
+		for (CompletableFuture<?> f : futures) {
+			try {
+				f.join();
+			} catch (CompletionException | CancellationException e) {
+				//wait for the others, the first failure is thrown below
+			}
+		}
+		for (CompletableFuture<?> f : futures) {
+			try {
+				f.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw e;
+			}
+		}
+		@SuppressWarnings("unchecked")
+		List<T> result = (List<T>) Collections.unmodifiableList(Arrays.asList(results));
+		return result;
+	}
+
 	public static String requireNextArgument(String arg, Iterator<? extends String> it)
 			throws NullPointerException, ArgumentException {
 		Objects.requireNonNull(it, "iterator");
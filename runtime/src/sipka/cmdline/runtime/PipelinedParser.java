@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.io.Closeable;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Runs the parsing of the remaining arguments on a separate thread, while the command is called on the caller thread.
+ * <p>
+ * The generated parser creates an instance when it encounters the first value of an {@link ArgumentSink} parameter.
+ * The generated <code>callCommand()</code> method {@linkplain #start() starts} it before calling the command, and
+ * {@linkplain #close() closes} it after the command returns.
+ * <p>
+ * The parser thread adds the values to the sink. When the parsing is done, the sink is
+ * {@linkplain ArgumentSink#finish() finished}. If it fails, the exception is passed to the sink.
+ */
+public final class PipelinedParser implements Closeable {
+	private final Runnable parser;
+	private final ArgumentSink<?> sink;
+
+	private Thread thread;
+	private volatile boolean closed;
+	private volatile Throwable failure;
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param parser
+	 *            The parser of the remaining arguments.
+	 * @param sink
+	 *            The sink that the parser adds the values to.
+	 */
+	public PipelinedParser(Runnable parser, ArgumentSink<?> sink) {
+		this.parser = parser;
+		this.sink = sink;
+	}
+
+	/**
+	 * Starts the parser thread.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the parser was already started.
+	 */
+	public void start() throws IllegalStateException {
+		if (thread != null) {
+			throw new IllegalStateException("Already started.");
+		}
+		Thread t = new Thread(this::run, "Pipelined argument parser");
+		t.setDaemon(true);
+		this.thread = t;
+		t.start();
+	}
+
+	/**
+	 * Stops the parser and waits for the parser thread to exit.
+	 * <p>
+	 * The values that the command didn't take are discarded. If the parsing failed, and the exception wasn't thrown to
+	 * the command by the sink, it is rethrown by this method.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		sink.close();
+		Thread t = this.thread;
+		if (t != null) {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					t.join();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		Throwable f = this.failure;
+		if (f == null || sink.isFailureDelivered()) {
+			return;
+		}
+		if (f instanceof RuntimeException) {
+			throw (RuntimeException) f;
+		}
+		if (f instanceof Error) {
+			throw (Error) f;
+		}
+		throw new ArgumentException("Failed to parse arguments.", f, null);
+	}
+
+	private void run() {
+		try {
+			parser.run();
+		} catch (CancellationException e) {
+			if (closed) {
+				//the command returned before all values were taken
+				return;
+			}
+			fail(e);
+			return;
+		} catch (Throwable e) {
+			fail(e);
+			return;
+		}
+		sink.finish();
+	}
+
+	private void fail(Throwable e) {
+		this.failure = e;
+		sink.fail(e);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Parser that the arguments are passed to one by one, as they arrive.
+ * <p>
+ * The generated parsers pull the arguments from an iterator. A push parser is driven by the caller instead: each
+ * {@link #feed(String)} call advances the parsing by one argument, and returns when it is processed. The parser keeps
+ * its state, e.g. the current command, the index of the next positional parameter and the required parameters that
+ * were seen, in its fields between the calls, so no thread is blocked while waiting for the next argument.
+ * <p>
+ * The parsing failures are thrown by the call that passed the invalid argument, or by {@link #finish()} if they can
+ * only be detected at the end. After a failure, the parser can't be used any more.
+ * <p>
+ * Instances are not thread safe.
+ * 
+ * @param <T>
+ *            The type of the parsed command.
+ */
+public interface PushParser<T> extends Closeable {
+	/**
+	 * Passes the next argument to the parser.
+	 * 
+	 * @param argument
+	 *            The argument.
+	 * @throws NullPointerException
+	 *             If the argument is <code>null</code>.
+	 * @throws ArgumentException
+	 *             If the parsing failed.
+	 * @throws IllegalStateException
+	 *             If the parser is already finished, failed, or closed.
+	 */
+	public void feed(String argument) throws NullPointerException, ArgumentException, IllegalStateException;
+
+	/**
+	 * Finishes the parsing after the last argument.
+	 * 
+	 * @return The parsed command.
+	 * @throws ArgumentException
+	 *             If the parsing failed, e.g. a required parameter is missing.
+	 * @throws IllegalStateException
+	 *             If the parser is already finished, failed, or closed.
+	 */
+	public T finish() throws ArgumentException, IllegalStateException;
+
+	/**
+	 * Closes the parser.
+	 * <p>
+	 * If the parser wasn't finished, the {@link Closeable} values of the <code>@MultiParameter</code> fields of the
+	 * commands are closed, e.g. {@link SpillingStringCollection}.
+	 * 
+	 * @throws IOException
+	 *             If closing the values failed.
+	 */
+	@Override
+	public void close() throws IOException;
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+/**
+ * Exception thrown by {@link ScriptRunner} if a line of the script failed.
+ * <p>
+ * The cause is the exception thrown by the invocation of the line. If multiple lines failed, the exceptions of the
+ * other lines are added as suppressed exceptions.
+ */
+public class ScriptExecutionException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	private final int lineNumber;
+
+	public ScriptExecutionException(String message, Throwable cause, int lineNumber) {
+		super(message, cause);
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * Gets the number of the failed line.
+	 * 
+	 * @return The one based line number.
+	 */
+	public final int getLineNumber() {
+		return lineNumber;
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs a script of command lines in the current JVM.
+ * <p>
+ * Each line of the script is an invocation of the command. The line is split into arguments at whitespace. Arguments
+ * can be enclosed in single or double quotes to include whitespace, and the backslash escapes the next character
+ * outside of single quotes. The arguments are passed to the parser as if they were specified on the command line, so
+ * they can refer to command files as well. Empty lines and lines starting with <code>#</code> are ignored.
+ * <p>
+ * The lines are run in parallel. A line that only contains {@link #BARRIER_LINE} is a barrier: the lines after it are
+ * started only after all lines before it finished successfully. If a line fails, the lines up to the next barrier are
+ * still run, but the script is stopped at the barrier.
+ * <p>
+ * On JDK 21 and later, the lines run on virtual threads. On earlier versions a fixed thread pool is used. The number of
+ * concurrently running lines is limited by the parallelism in both cases.
+ * <p>
+ * Running the lines in the same JVM avoids the startup cost of a new process for each of them. The commands are called
+ * concurrently, so they shouldn't depend on global state, e.g. the working directory or {@link System#exit(int)}.
+ */
+public final class ScriptRunner {
+	/**
+	 * The contents of a barrier line.
+	 */
+	public static final String BARRIER_LINE = "---";
+
+	/**
+	 * Invocation of a script line.
+	 */
+	@FunctionalInterface
+	public interface Invocation {
+		/**
+		 * Parses and calls the command with the given arguments.
+		 * 
+		 * @param arguments
+		 *            The arguments of the line.
+		 * @throws Exception
+		 *             If the invocation failed.
+		 */
+		public void invoke(List<String> arguments) throws Exception;
+	}
+
+	private ScriptRunner() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Runs the script at the given path.
+	 * <p>
+	 * The script is read using UTF-8 encoding. The method returns when all started lines are finished, including when
+	 * the script fails to be read.
+	 * 
+	 * @param script
+	 *            The path of the script.
+	 * @param parallelism
+	 *            The maximum number of lines that run at the same time.
+	 * @param invocation
+	 *            The invocation to run the lines with.
+	 * @throws IOException
+	 *             If the script couldn't be read.
+	 * @throws ScriptExecutionException
+	 *             If any of the lines failed.
+	 * @throws IllegalArgumentException
+	 *             If the parallelism is less than 1.
+	 */
+	public static void run(Path script, int parallelism, Invocation invocation)
+			throws IOException, ScriptExecutionException, IllegalArgumentException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		}
+		ExecutorService executor = createExecutor(parallelism);
+		Segment segment = new Segment(parallelism);
+		try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+			int linenumber = 0;
+			for (String line; (line = reader.readLine()) != null;) {
+				++linenumber;
+				String trimmed = line.trim();
+				if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+					continue;
+				}
+				if (trimmed.equals(BARRIER_LINE)) {
+					segment.await();
+					continue;
+				}
+				List<String> arguments;
+				try {
+					arguments = tokenize(trimmed);
+				} catch (IllegalArgumentException e) {
+					segment.addFailure(new ScriptExecutionException("Invalid script line " + linenumber, e, linenumber));
+					continue;
+				}
+				segment.start(executor, invocation, arguments, linenumber);
+			}
+			segment.await();
+		} catch (Throwable e) {
+			//don't return while the started lines are still running
+			segment.awaitAfterFailure(e);
+			throw e;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Splits the line into arguments.
+	 * <p>
+	 * See the {@linkplain ScriptRunner class documentation} for the format.
+	 * 
+	 * @param line
+	 *            The line.
+	 * @return The arguments.
+	 * @throws IllegalArgumentException
+	 *             If the line has an unterminated quote or ends with a backslash.
+	 */
+	public static List<String> tokenize(String line) throws IllegalArgumentException {
+		List<String> result = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		boolean intoken = false;
+		char quote = 0;
+		int len = line.length();
+		for (int i = 0; i < len; i++) {
+			char c = line.charAt(i);
+			if (quote == '\'') {
+				if (c == '\'') {
+					quote = 0;
+				} else {
+					sb.append(c);
+				}
+				continue;
+			}
+			if (c == '\\') {
+				if (++i >= len) {
+					throw new IllegalArgumentException("Escape character at end of line.");
+				}
+				sb.append(line.charAt(i));
+				intoken = true;
+				continue;
+			}
+			if (quote == '"') {
+				if (c == '"') {
+					quote = 0;
+				} else {
+					sb.append(c);
+				}
+				continue;
+			}
+			if (c == '"' || c == '\'') {
+				quote = c;
+				intoken = true;
+				continue;
+			}
+			if (Character.isWhitespace(c)) {
+				if (intoken) {
+					result.add(sb.toString());
+					sb.setLength(0);
+					intoken = false;
+				}
+				continue;
+			}
+			sb.append(c);
+			intoken = true;
+		}
+		if (quote != 0) {
+			throw new IllegalArgumentException("Unterminated quote: " + quote);
+		}
+		if (intoken) {
+			result.add(sb.toString());
+		}
+		return result;
+	}
+
+	private static ExecutorService createExecutor(int parallelism) {
+		try {
+			//JDK 21+, the method is looked up reflectively as the runtime is compiled for earlier releases
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			//not available
+		}
+		return Executors.newFixedThreadPool(parallelism, r -> {
+			Thread t = new Thread(r, "Script runner");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * The lines between two barriers.
+	 */
+	private static final class Segment {
+		private final int parallelism;
+		private final Semaphore permits;
+		private final List<ScriptExecutionException> failures = new ArrayList<>();
+
+		Segment(int parallelism) {
+			this.parallelism = parallelism;
+			this.permits = new Semaphore(parallelism);
+		}
+
+		void start(ExecutorService executor, Invocation invocation, List<String> arguments, int linenumber)
+				throws ScriptExecutionException {
+			acquire(1);
+			try {
+				executor.execute(() -> {
+					try {
+						invocation.invoke(arguments);
+					} catch (Throwable e) {
+						addFailure(new ScriptExecutionException("Script line " + linenumber + " failed.", e,
+								linenumber));
+					} finally {
+						permits.release();
+					}
+				});
+			} catch (RuntimeException e) {
+				permits.release();
+				throw e;
+			}
+		}
+
+		synchronized void addFailure(ScriptExecutionException e) {
+			failures.add(e);
+		}
+
+		/**
+		 * Waits for the started lines to finish, and throws if any of them failed.
+		 */
+		void await() throws ScriptExecutionException {
+			acquire(parallelism);
+			permits.release(parallelism);
+			ScriptExecutionException exc = null;
+			synchronized (this) {
+				if (failures.isEmpty()) {
+					return;
+				}
+				failures.sort((l, r) -> Integer.compare(l.getLineNumber(), r.getLineNumber()));
+				for (ScriptExecutionException e : failures) {
+					if (exc == null) {
+						exc = e;
+					} else {
+						exc.addSuppressed(e);
+					}
+				}
+				//reported, not added to a later failure
+				failures.clear();
+			}
+			throw exc;
+		}
+
+		/**
+		 * Waits for the started lines to finish after the script failed, and adds their failures as suppressed
+		 * exceptions.
+		 */
+		void awaitAfterFailure(Throwable cause) {
+			permits.acquireUninterruptibly(parallelism);
+			permits.release(parallelism);
+			synchronized (this) {
+				for (ScriptExecutionException e : failures) {
+					cause.addSuppressed(e);
+				}
+			}
+		}
+
+		private void acquire(int count) throws ScriptExecutionException {
+			try {
+				permits.acquire(count);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ScriptExecutionException("Interrupted.", e, 0);
+			}
+		}
+	}
+}
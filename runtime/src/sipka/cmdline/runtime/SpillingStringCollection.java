@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Collection of strings that moves its elements to a temporary file when they exceed a memory budget.
+ * <p>
+ * The elements are kept in memory until their estimated size reaches the budget. When the budget is exceeded, all
+ * elements are written to a temporary file, and the elements added later are appended to it. Each element is stored
+ * as its UTF-8 encoded length in variable length format, followed by the encoded bytes.
+ * <p>
+ * The collection can be used as the field type of <code>@MultiParameter(String.class)</code> parameters that may
+ * receive more values than fit in the heap. The elements can only be accessed sequentially, in the order they were
+ * added. The iterators of a spilled collection read the temporary file, and close it when they reach the end. Iterators
+ * that are not iterated to the end should be closed, as they implement {@link Closeable}.
+ * <p>
+ * The collection must be closed to delete the temporary file. The generated parser closes the collections of the
+ * parameter fields if the parsing fails, otherwise the command should close it, e.g. in a <code>finally</code> block of
+ * the <code>call()</code> method. Elements cannot be removed, other than {@link #clear()}. The collection is not thread
+ * safe.
+ */
+public final class SpillingStringCollection extends AbstractCollection<String> implements Closeable {
+	/**
+	 * The default memory budget in bytes.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 16 * 1024 * 1024;
+
+	/**
+	 * The estimated memory use of a string in addition to its characters.
+	 */
+	private static final int STRING_OVERHEAD = 48;
+
+	private final long memoryBudget;
+	private final Path directory;
+
+	private List<String> memory = new ArrayList<>();
+	private long memorySize;
+	private int size;
+
+	private Path spillFile;
+	private OutputStream spillOut;
+
+	/**
+	 * Creates a new collection with the {@linkplain #DEFAULT_MEMORY_BUDGET default memory budget}.
+	 */
+	public SpillingStringCollection() {
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Creates a new collection that spills to the default temporary directory.
+	 * 
+	 * @param memoryBudget
+	 *            The estimated number of bytes the elements can take in memory.
+	 * @throws IllegalArgumentException
+	 *             If the budget is negative.
+	 */
+	public SpillingStringCollection(long memoryBudget) throws IllegalArgumentException {
+		this(memoryBudget, null);
+	}
+
+	/**
+	 * Creates a new collection that spills to the given directory.
+	 * 
+	 * @param memoryBudget
+	 *            The estimated number of bytes the elements can take in memory.
+	 * @param directory
+	 *            The directory to create the temporary file in, or <code>null</code> to use the default temporary
+	 *            directory.
+	 * @throws IllegalArgumentException
+	 *             If the budget is negative.
+	 */
+	public SpillingStringCollection(long memoryBudget, Path directory) throws IllegalArgumentException {
+		if (memoryBudget < 0) {
+			throw new IllegalArgumentException("Negative memory budget: " + memoryBudget);
+		}
+		this.memoryBudget = memoryBudget;
+		this.directory = directory;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws NullPointerException
+	 *             If the string is <code>null</code>.
+	 * @throws UncheckedIOException
+	 *             If writing the temporary file fails.
+	 */
+	@Override
+	public boolean add(String e) throws NullPointerException, UncheckedIOException {
+		try {
+			if (spillOut != null) {
+				writeEntry(spillOut, e);
+			} else {
+				long nsize = memorySize + STRING_OVERHEAD + e.length() * 2L;
+				if (nsize > memoryBudget) {
+					spill();
+					writeEntry(spillOut, e);
+				} else {
+					memory.add(e);
+					memorySize = nsize;
+				}
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		++size;
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The returned iterator implements {@link Closeable}.
+	 * 
+	 * @throws UncheckedIOException
+	 *             If opening the temporary file fails.
+	 */
+	@Override
+	public Iterator<String> iterator() throws UncheckedIOException {
+		if (spillOut == null) {
+			return new MemoryIterator(memory.iterator(), size);
+		}
+		try {
+			spillOut.flush();
+			return new FileIterator(new BufferedInputStream(Files.newInputStream(spillFile)), size);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks if the elements have been moved to the temporary file.
+	 * 
+	 * @return <code>true</code> if the collection is spilled.
+	 */
+	public boolean isSpilled() {
+		return spillOut != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The temporary file is deleted, the collection can be used again.
+	 * 
+	 * @throws UncheckedIOException
+	 *             If deleting the temporary file fails.
+	 */
+	@Override
+	public void clear() throws UncheckedIOException {
+		try {
+			close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Removes the elements and deletes the temporary file if any.
+	 * <p>
+	 * The collection can be used again after it is closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		memory = new ArrayList<>();
+		memorySize = 0;
+		size = 0;
+		OutputStream out = spillOut;
+		Path file = spillFile;
+		spillOut = null;
+		spillFile = null;
+		if (file != null) {
+			try {
+				out.close();
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	private void spill() throws IOException {
+		Path file = directory == null ? Files.createTempFile("sipka.cmdline-", ".spill")
+				: Files.createTempFile(directory, "sipka.cmdline-", ".spill");
+		OutputStream out = null;
+		try {
+			out = new BufferedOutputStream(Files.newOutputStream(file));
+			for (String s : memory) {
+				writeEntry(out, s);
+			}
+		} catch (IOException | RuntimeException e) {
+			try {
+				if (out != null) {
+					out.close();
+				}
+			} catch (IOException ce) {
+				e.addSuppressed(ce);
+			}
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException de) {
+				e.addSuppressed(de);
+			}
+			throw e;
+		}
+		this.spillFile = file;
+		this.spillOut = out;
+		this.memory = new ArrayList<>();
+		this.memorySize = 0;
+	}
+
+	private static void writeEntry(OutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		int len = bytes.length;
+		while ((len & ~0x7F) != 0) {
+			out.write((len & 0x7F) | 0x80);
+			len >>>= 7;
+		}
+		out.write(len);
+		out.write(bytes);
+	}
+
+	private static String readEntry(InputStream in) throws IOException {
+		int len = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = in.read();
+			//the fifth byte can only hold the 3 remaining bits of a non-negative length
+			if (b < 0 || (shift == 28 && b > 0x07)) {
+				throw new EOFException("Malformed spill file.");
+			}
+			len |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		byte[] bytes = new byte[len];
+		int read = 0;
+		while (read < len) {
+			int c = in.read(bytes, read, len - read);
+			if (c < 0) {
+				throw new EOFException("Malformed spill file.");
+			}
+			read += c;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static final class MemoryIterator implements Iterator<String>, Closeable {
+		private final Iterator<String> it;
+		private int remaining;
+
+		MemoryIterator(Iterator<String> it, int count) {
+			this.it = it;
+			this.remaining = count;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+
+		@Override
+		public String next() {
+			if (remaining <= 0) {
+				throw new NoSuchElementException();
+			}
+			--remaining;
+			return it.next();
+		}
+
+		@Override
+		public void close() {
+			remaining = 0;
+		}
+	}
+
+	private static final class FileIterator implements Iterator<String>, Closeable {
+		private InputStream in;
+		/**
+		 * The number of elements to read, the elements added after the iterator was created are not returned.
+		 */
+		private int remaining;
+
+		FileIterator(InputStream in, int count) throws IOException {
+			this.in = in;
+			this.remaining = count;
+			if (count == 0) {
+				close();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+
+		@Override
+		public String next() throws UncheckedIOException {
+			if (remaining <= 0) {
+				throw new NoSuchElementException();
+			}
+			try {
+				String result = readEntry(in);
+				if (--remaining == 0) {
+					close();
+				}
+				return result;
+			} catch (IOException e) {
+				try {
+					close();
+				} catch (IOException ce) {
+					e.addSuppressed(ce);
+				}
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			remaining = 0;
+			InputStream is = in;
+			if (is != null) {
+				in = null;
+				is.close();
+			}
+		}
+	}
+}
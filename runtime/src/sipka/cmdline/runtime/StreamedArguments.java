@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sipka.cmdline.runtime;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy view of the remaining command line arguments that are passed to a streamed end positional parameter.
+ * <p>
+ * The arguments are not collected during parsing, but read from the underlying {@link ParsingIterator} when the
+ * command iterates over them. This allows processing the arguments in a single pass, without materializing them
+ * first. The view is also used to hand the remaining arguments to the {@link PipelinedParser}.
+ * <p>
+ * The view owns the underlying iterator, and closes it when all arguments have been iterated, or when {@link #close()}
+ * is called. The generated <code>callCommand()</code> method closes it after the command has been called.
+ * <p>
+ * The elements can only be iterated once.
+ */
+public final class StreamedArguments implements ParsingIterator {
+	private ParsingIterator args;
+
+	StreamedArguments(ParsingIterator args) {
+		this.args = args;
+	}
+
+	@Override
+	public boolean hasNext() {
+		ParsingIterator it = this.args;
+		if (it == null) {
+			return false;
+		}
+		if (it.hasNext()) {
+			return true;
+		}
+		close();
+		return false;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return args.next();
+	}
+
+	@Override
+	public String peek() throws NoSuchElementException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return args.peek();
+	}
+
+	/**
+	 * Gets a sequential stream of the remaining arguments.
+	 * <p>
+	 * Closing the returned stream closes this view as well.
+	 * 
+	 * @return The stream of the arguments.
+	 */
+	public Stream<String> stream() {
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+
+	/**
+	 * Closes the underlying argument iterator.
+	 * <p>
+	 * No more arguments are returned after this method is called. Calling this method multiple times has no effect.
+	 * 
+	 * @throws UncheckedIOException
+	 *             If the underlying iterator failed to close.
+	 */
+	@Override
+	public void close() throws UncheckedIOException {
+		ParsingIterator it = this.args;
+		if (it == null) {
+			return;
+		}
+		this.args = null;
+		try {
+			it.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to close argument iterator.", e);
+		}
+	}
+}
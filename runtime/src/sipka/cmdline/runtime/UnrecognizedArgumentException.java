@@ -1,22 +1,70 @@
 package sipka.cmdline.runtime;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class UnrecognizedArgumentException extends ArgumentException {
 	private static final long serialVersionUID = 3188122669083575224L;
 
+	private static final String[] EMPTY_STRING_ARRAY = {};
+
+	private final String[] suggestions;
+
 	public UnrecognizedArgumentException(String message, String parameterName) {
 		super(message, parameterName);
+		this.suggestions = EMPTY_STRING_ARRAY;
+	}
+
+	/**
+	 * Creates a new exception with the names that the unrecognized argument may have been meant as.
+	 * <p>
+	 * If there are any suggestions, they are appended to the message.
+	 * 
+	 * @param message
+	 *            The exception message.
+	 * @param parameterName
+	 *            The unrecognized argument.
+	 * @param suggestions
+	 *            The suggested names, closest first.
+	 * @see NameSuggestionTree
+	 */
+	public UnrecognizedArgumentException(String message, String parameterName, List<String> suggestions) {
+		super(appendSuggestions(message, suggestions), parameterName);
+		this.suggestions = suggestions.toArray(EMPTY_STRING_ARRAY);
 	}
 
 	public UnrecognizedArgumentException(String message, Throwable cause, String parameterName) {
 		super(message, cause, parameterName);
+		this.suggestions = EMPTY_STRING_ARRAY;
 	}
 
 	public UnrecognizedArgumentException(String parameterName) {
 		super(parameterName);
+		this.suggestions = EMPTY_STRING_ARRAY;
 	}
 
 	public UnrecognizedArgumentException(Throwable cause, String parameterName) {
 		super(cause, parameterName);
+		this.suggestions = EMPTY_STRING_ARRAY;
+	}
+
+	/**
+	 * Gets the names that the unrecognized argument may have been meant as.
+	 * 
+	 * @return An unmodifiable list of the suggested names, closest first. Empty if there are none.
+	 */
+	public List<String> getSuggestions() {
+		if (suggestions.length == 0) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.asList(suggestions));
 	}
 
+	private static String appendSuggestions(String message, List<String> suggestions) {
+		if (suggestions.isEmpty()) {
+			return message;
+		}
+		return message + " (did you mean: " + String.join(", ", suggestions) + "?)";
+	}
 }
@@ -0,0 +1,77 @@
+package abbrevmodel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+import sipka.cmdline.api.SubCommand;
+
+/**
+ * Command model used to test the abbreviated names next to positional parameters and default subcommands.
+ * <p>
+ * The called commands record their parameters and the flags of the last created main command in a static field.
+ */
+@Command(allowAbbreviations = true)
+@SubCommand(name = "build", type = AbbreviationModel.Build.class, defaultCommand = true)
+@SubCommand(name = "copy", type = AbbreviationModel.Copy.class)
+public class AbbreviationModel {
+	public static final List<String> called = new ArrayList<>();
+
+	private static AbbreviationModel last;
+
+	@Parameter("-trace")
+	@Flag
+	public boolean trace;
+
+	@Parameter("-verbose")
+	@Flag
+	public boolean verbose;
+
+	@Parameter("-outputdir")
+	public String outputDir;
+
+	public AbbreviationModel() {
+		last = this;
+	}
+
+	@Override
+	public String toString() {
+		return "trace=" + trace + " verbose=" + verbose + " outputdir=" + outputDir;
+	}
+
+	public static class Build {
+		@Parameter("-output")
+		public String output;
+
+		@Parameter("-threads")
+		public int threads = 1;
+
+		public void call() {
+			called.add(last + " build output=" + output + " threads=" + threads);
+		}
+	}
+
+	public static class Copy {
+		@Parameter(required = true)
+		@PositionalParameter
+		public String from;
+
+		@Parameter("-force")
+		@Flag
+		public boolean force;
+
+		@Parameter("-format")
+		public String format;
+
+		@Parameter
+		@PositionalParameter(-1)
+		public String to;
+
+		public void call() {
+			called.add(last + " copy from=" + from + " force=" + force + " format=" + format + " to=" + to);
+		}
+	}
+}
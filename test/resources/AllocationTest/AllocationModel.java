@@ -0,0 +1,43 @@
+package allocmodel;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.Parameter;
+
+/**
+ * Command model used to measure the allocations of the generated parser.
+ */
+@Command
+public class AllocationModel {
+	public enum Mode {
+		FAST,
+		SAFE,
+		DEBUG;
+	}
+
+	@Parameter({ "-verbose", "-v" })
+	@Flag
+	public boolean verbose;
+
+	@Parameter("-quiet")
+	@Flag
+	public boolean quiet;
+
+	@Parameter("-threads")
+	public int threads;
+
+	@Parameter("-timeout")
+	public long timeout;
+
+	@Parameter("-mode")
+	public Mode mode;
+
+	@Parameter("-D")
+	public Map<String, String> defines = new TreeMap<>();
+
+	public void call() {
+	}
+}
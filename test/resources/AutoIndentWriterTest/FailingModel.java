@@ -0,0 +1,21 @@
+package failmodel;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.Parameter;
+
+/**
+ * Command model with a parameter type that the processor can't generate the parsing for.
+ */
+@Command
+public class FailingModel {
+	@Parameter("-verbose")
+	@Flag
+	public boolean verbose;
+
+	@Parameter("-file")
+	public java.io.File file;
+
+	public void call() {
+	}
+}
@@ -0,0 +1,81 @@
+package complmodel;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+import sipka.cmdline.api.SubCommand;
+
+/**
+ * Command model used to test the generated completion.
+ */
+@Command(helpCommand = { "help", "-h" })
+@SubCommand(name = "build", type = CompletionModel.Build.class)
+@SubCommand(name = { "run", "r" }, type = CompletionModel.Run.class)
+@SubCommand(name = "clean", type = CompletionModel.Clean.class, defaultCommand = true)
+public class CompletionModel {
+	public enum Mode {
+		FAST,
+		SAFE,
+		DEBUG;
+	}
+
+	public enum Color {
+		red,
+		green,
+		Blue;
+	}
+
+	@Parameter({ "-verbose", "-v" })
+	@Flag
+	public boolean verbose;
+
+	@Parameter("-threads")
+	public int threads;
+
+	@Parameter("-mode")
+	public Mode mode;
+
+	@Parameter("-D")
+	public Map<String, String> defines = new TreeMap<>();
+
+	public static class Build {
+		@Parameter("-output")
+		public String output;
+
+		@Parameter("-color")
+		public Color color;
+
+		@Parameter("-optimize")
+		@Flag
+		public boolean optimize;
+
+		public void call(CompletionModel root) {
+		}
+	}
+
+	public static class Run {
+		@Parameter(required = true)
+		@PositionalParameter
+		public String target;
+
+		@Parameter("-debug")
+		@Flag
+		public boolean debug;
+
+		public void call(CompletionModel root) {
+		}
+	}
+
+	public static class Clean {
+		@Parameter("-all")
+		@Flag
+		public boolean all;
+
+		public void call() {
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package sizemodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.MultiParameter;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+import sipka.cmdline.api.SubCommand;
+
+/**
+ * Command model used to track the sizes of the generated methods.
+ */
+@Command(helpCommand = { "help", "-h" })
+@SubCommand(name = "build", type = SizeModel.Build.class)
+@SubCommand(name = { "run", "r" }, type = SizeModel.Run.class)
+@SubCommand(name = "clean", type = SizeModel.Clean.class, defaultCommand = true)
+public class SizeModel {
+	public enum Mode {
+		FAST,
+		SAFE,
+		DEBUG;
+	}
+
+	/**
+	 * Verbose output.
+	 */
+	@Parameter({ "-verbose", "-v" })
+	@Flag
+	public boolean verbose;
+
+	@Parameter("-threads")
+	public int threads;
+
+	@Parameter("-timeout")
+	public long timeout;
+
+	@Parameter("-name")
+	public String name;
+
+	@Parameter("-mode")
+	public Mode mode;
+
+	@Parameter("-D")
+	public Map<String, String> defines = new TreeMap<>();
+
+	@Parameter("-P")
+	public Map<String, String> properties = new TreeMap<>();
+
+	public static class Build {
+		@Parameter("-optimize")
+		@Flag
+		public boolean optimize;
+
+		@Parameter("-level")
+		public Integer level;
+
+		@Parameter("-source")
+		@MultiParameter(String.class)
+		public List<String> sources = new ArrayList<>();
+
+		@Parameter("-output")
+		public String output;
+
+		@Parameter("-mode")
+		@MultiParameter(Mode.class)
+		public List<Mode> modes = new ArrayList<>();
+
+		public void call(SizeModel root) {
+		}
+	}
+
+	public static class Run {
+		@Parameter(required = true)
+		@PositionalParameter
+		public String target;
+
+		@Parameter("-arg")
+		@MultiParameter(String.class)
+		public List<String> args = new ArrayList<>();
+
+		@Parameter("-debug")
+		@Flag
+		public boolean debug;
+
+		@Parameter
+		@PositionalParameter(-1)
+		public String last;
+
+		public void call(SizeModel root) {
+		}
+	}
+
+	public static class Clean {
+		@Parameter("-all")
+		@Flag
+		public boolean all;
+
+		public void call() {
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package incmodel;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.SubCommand;
+
+/**
+ * Command model used to test the reuse of the generated sources.
+ */
+@Command
+@SubCommand(name = "build", type = IncrementalModel.Build.class)
+public class IncrementalModel {
+	/**
+	 * Verbose output.
+	 */
+	@Parameter("-verbose")
+	@Flag
+	public boolean verbose;
+
+	/**
+	 * Builds the project.
+	 */
+	public static class Build {
+		/**
+		 * The output directory.
+		 */
+		@Parameter("-output")
+		public String output;
+
+		public void call(IncrementalModel root) {
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package parseallmodel;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+import sipka.cmdline.runtime.CompactStringList;
+
+/**
+ * Command model used to test the generated parseAll methods.
+ */
+@Command
+public class ParseAllModel {
+	public enum Mode {
+		FAST,
+		SLOW;
+	}
+
+	@Parameter("-n")
+	public int n;
+
+	@Parameter("-mode")
+	public Mode mode;
+
+	@Parameter
+	@PositionalParameter(-1)
+	public CompactStringList rest;
+
+	public void call() {
+	}
+
+	@Override
+	public String toString() {
+		return n + "," + mode + "," + rest;
+	}
+}
@@ -0,0 +1,20 @@
+package parseallmodel;
+
+import java.util.Iterator;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+
+/**
+ * Command model with streamed arguments, parseAll is not generated for it.
+ */
+@Command
+public class StreamedParseAllModel {
+	@Parameter
+	@PositionalParameter(-1)
+	public Iterator<String> rest;
+
+	public void call() {
+	}
+}
@@ -0,0 +1,41 @@
+package pipemodel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.MultiParameter;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.SubCommand;
+import sipka.cmdline.runtime.ArgumentSink;
+
+/**
+ * Command model used to test the generated pipelined parsing.
+ * <p>
+ * The command records the values it takes in a static field.
+ */
+@Command
+@SubCommand(name = "pipe", type = PipelineModel.Pipe.class)
+public class PipelineModel {
+	public enum Mode {
+		FAST,
+		SAFE;
+	}
+
+	public static final List<Object> consumed = new ArrayList<>();
+
+	public static class Pipe {
+		@Parameter("-limit")
+		public int limit = Integer.MAX_VALUE;
+
+		@Parameter("-mode")
+		@MultiParameter(Mode.class)
+		public ArgumentSink<Mode> modes = new ArgumentSink<>(1);
+
+		public void call() {
+			for (int i = 0; i < limit && modes.hasNext(); i++) {
+				consumed.add(modes.next());
+			}
+		}
+	}
+}
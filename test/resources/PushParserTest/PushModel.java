@@ -0,0 +1,137 @@
+package pushmodel;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Converter;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.MultiParameter;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+import sipka.cmdline.api.SubCommand;
+import sipka.cmdline.runtime.ParseUtil;
+import sipka.cmdline.runtime.ParsingIterator;
+
+/**
+ * Command model used to test that the generated push parser accepts the same arguments as the parser.
+ * <p>
+ * The called commands record their parameters in a static field, and the last created main command is recorded to
+ * check that its collection is closed.
+ */
+@Command(helpCommand = "help")
+@SubCommand(name = "build", type = PushModel.Build.class, defaultCommand = true)
+@SubCommand(name = "copy", type = PushModel.Copy.class)
+public class PushModel {
+	public enum Mode {
+		FAST,
+		SAFE;
+	}
+
+	public static final List<String> called = new ArrayList<>();
+	public static PushModel last;
+
+	@Parameter({ "-verbose", "-v" })
+	@Flag
+	public boolean verbose;
+
+	@Parameter("-D")
+	public Map<String, String> defines = new TreeMap<>();
+
+	@Parameter("-mode")
+	public Mode mode;
+
+	@Parameter("-f")
+	@MultiParameter(String.class)
+	public Files files = new Files();
+
+	public PushModel() {
+		last = this;
+	}
+
+	@Override
+	public String toString() {
+		return "verbose=" + verbose + " defines=" + defines + " mode=" + mode + " files=" + files;
+	}
+
+	public static class Files extends ArrayList<String> implements Closeable {
+		private static final long serialVersionUID = 1L;
+
+		public boolean closed;
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	public static class Build {
+		@Parameter(value = "-output", required = true)
+		public String output;
+
+		@Parameter("-threads")
+		public int threads = 1;
+
+		@Parameter("-range")
+		@Converter(method = "parseRange")
+		public String range;
+
+		@Parameter("-level")
+		@Converter(method = "parseLevel")
+		public int level;
+
+		@Parameter("-I")
+		@MultiParameter(String.class)
+		public List<String> includes = new ArrayList<>();
+
+		public void call() {
+			called.add(last + " build output=" + output + " threads=" + threads + " range=" + range + " level="
+					+ level + " includes=" + includes);
+		}
+
+		public static String parseRange(String name, Iterator<? extends String> args) {
+			String from = ParseUtil.requireNextArgument(name, args);
+			return from + ".." + ParseUtil.requireNextArgument(name, args);
+		}
+
+		public static int parseLevel(String name, ParsingIterator args) {
+			//the value is optional
+			if (args.hasNext() && args.peek().matches("[0-9]+")) {
+				return Integer.parseInt(args.next());
+			}
+			return 1;
+		}
+	}
+
+	@SubCommand(name = "verify", type = Verify.class)
+	public static class Copy {
+		@Parameter(required = true)
+		@PositionalParameter
+		public String from;
+
+		@Parameter("-force")
+		@Flag
+		public boolean force;
+
+		@Parameter
+		@PositionalParameter(-1)
+		public String to;
+
+		public void call() {
+			called.add(last + " copy from=" + from + " force=" + force + " to=" + to);
+		}
+	}
+
+	public static class Verify {
+		@Parameter(value = "-hash", required = true)
+		public String hash;
+
+		public void call(Copy copy) {
+			called.add(last + " verify from=" + copy.from + " hash=" + hash);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package scriptmodel;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+import sipka.cmdline.api.SubCommand;
+
+/**
+ * Command model used to test the generated shell completion scripts.
+ */
+@Command(helpCommand = { "help", "-h" })
+@SubCommand(name = "build", type = ScriptModel.Build.class)
+@SubCommand(name = { "run", "r" }, type = ScriptModel.Run.class)
+@SubCommand(name = "clean", type = ScriptModel.Clean.class, defaultCommand = true)
+public class ScriptModel {
+	public enum Mode {
+		FAST,
+		SAFE;
+	}
+
+	public enum Color {
+		red,
+		Blue;
+	}
+
+	@Parameter({ "-verbose", "-v" })
+	@Flag
+	public boolean verbose;
+
+	@Parameter("-mode")
+	public Mode mode;
+
+	@Parameter("-D")
+	public Map<String, String> defines = new TreeMap<>();
+
+	public static class Build {
+		@Parameter("-output")
+		public String output;
+
+		@Parameter("-color")
+		public Color color;
+
+		public void call(ScriptModel root) {
+		}
+	}
+
+	public static class Run {
+		@Parameter(required = true)
+		@PositionalParameter
+		public Mode first;
+
+		@Parameter("-debug")
+		@Flag
+		public boolean debug;
+
+		@Parameter
+		@PositionalParameter(-2)
+		public Color color;
+
+		@Parameter
+		@PositionalParameter(-1)
+		public String last;
+
+		public void call(ScriptModel root) {
+		}
+	}
+
+	public static class Clean {
+		@Parameter("-all")
+		@Flag
+		public boolean all;
+
+		@Parameter
+		@PositionalParameter(-1)
+		public Color last;
+
+		public void call() {
+		}
+	}
+}
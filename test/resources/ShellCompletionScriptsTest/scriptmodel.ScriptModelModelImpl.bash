@@ -0,0 +1,181 @@
+# bash completion for script-model
+# Generated by sipka.cmdline for scriptmodel.ScriptModelModelImpl, do not edit.
+
+_script_model_complete_0() {
+	local i=$1 a
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		_script_model_complete_reply+=('-h' 'help')
+	else
+		case "${_script_model_complete_words[i]}" in
+		'-h'|'help')
+			_script_model_complete_help_0 $((i + 1))
+			return
+			;;
+		esac
+	fi
+	while [ "$i" -lt $_script_model_complete_cword ]; do
+		a=${_script_model_complete_words[i]}
+		case "$a" in
+		'-D'*)
+			i=$((i + 1))
+			;;
+		'-verbose'|'-v')
+			i=$((i + 1))
+			;;
+		'-mode')
+			i=$((i + 1))
+			if [ "$i" -eq $_script_model_complete_cword ]; then
+				_script_model_complete_ireply+=('FAST' 'SAFE')
+				return
+			fi
+			i=$((i + 1))
+			;;
+		'build')
+			_script_model_complete_1 $((i + 1))
+			return
+			;;
+		'run'|'r')
+			_script_model_complete_2 $((i + 1))
+			return
+			;;
+		'clean')
+			_script_model_complete_3 $((i + 1))
+			return
+			;;
+		*)
+			break
+			;;
+		esac
+	done
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		_script_model_complete_reply+=('-D' '-mode' '-v' '-verbose' 'build' 'clean' 'r' 'run')
+	fi
+	_script_model_complete_3 "$i"
+}
+
+_script_model_complete_help_0() {
+	local i=$1
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		_script_model_complete_reply+=('build' 'clean' 'r' 'run')
+		return
+	fi
+}
+
+_script_model_complete_1() {
+	local i=$1 a
+	while [ "$i" -lt $_script_model_complete_cword ]; do
+		a=${_script_model_complete_words[i]}
+		case "$a" in
+		'-output')
+			i=$((i + 1))
+			if [ "$i" -eq $_script_model_complete_cword ]; then
+				:
+				return
+			fi
+			i=$((i + 1))
+			;;
+		'-color')
+			i=$((i + 1))
+			if [ "$i" -eq $_script_model_complete_cword ]; then
+				_script_model_complete_reply+=('Blue' 'red')
+				return
+			fi
+			i=$((i + 1))
+			;;
+		*)
+			break
+			;;
+		esac
+	done
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		_script_model_complete_reply+=('-color' '-output')
+	fi
+}
+
+_script_model_complete_2() {
+	local i=$1 a
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		_script_model_complete_ireply+=('FAST' 'SAFE')
+		return
+	fi
+	i=$((i + 1))
+	while [ "$i" -lt $_script_model_complete_cword ]; do
+		a=${_script_model_complete_words[i]}
+		case "$a" in
+		'-debug')
+			i=$((i + 1))
+			;;
+		*)
+			break
+			;;
+		esac
+	done
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		_script_model_complete_reply+=('-debug')
+	fi
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		:
+		return
+	fi
+	i=$((i + 1))
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		_script_model_complete_reply+=('Blue' 'red')
+	fi
+}
+
+_script_model_complete_3() {
+	local i=$1 a
+	while [ "$i" -lt $_script_model_complete_cword ]; do
+		a=${_script_model_complete_words[i]}
+		case "$a" in
+		'-all')
+			i=$((i + 1))
+			;;
+		*)
+			break
+			;;
+		esac
+	done
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		_script_model_complete_reply+=('-all')
+	fi
+	if [ "$i" -eq $_script_model_complete_cword ]; then
+		_script_model_complete_reply+=('Blue' 'red')
+	fi
+}
+
+_script_model_complete() {
+	local -a _script_model_complete_words _script_model_complete_reply=() _script_model_complete_ireply=()
+	local _script_model_complete_cword cur c
+	if declare -F _get_comp_words_by_ref >/dev/null; then
+		local -a words
+		local cword
+		_get_comp_words_by_ref -n =: -w words -i cword
+		_script_model_complete_words=("${words[@]:1}")
+		_script_model_complete_cword=$((cword - 1))
+	else
+		_script_model_complete_words=("${COMP_WORDS[@]:1}")
+		_script_model_complete_cword=$((COMP_CWORD - 1))
+	fi
+	cur=${_script_model_complete_words[_script_model_complete_cword]}
+	_script_model_complete_0 0
+	COMPREPLY=()
+	for c in "${_script_model_complete_reply[@]}"; do
+		if [[ "$c" == "$cur"* ]]; then
+			COMPREPLY+=("$c")
+		fi
+	done
+	if [ ${#_script_model_complete_ireply[@]} -gt 0 ]; then
+		local nocasematch
+		nocasematch=$(shopt -p nocasematch)
+		shopt -s nocasematch
+		for c in "${_script_model_complete_ireply[@]}"; do
+			if [[ "$c" == "$cur"* ]]; then
+				COMPREPLY+=("$c")
+			fi
+		done
+		eval "$nocasematch"
+	fi
+}
+
+complete -o default -F _script_model_complete 'script-model'
@@ -0,0 +1,156 @@
+# fish completion for script-model
+# Generated by sipka.cmdline for scriptmodel.ScriptModelModelImpl, do not edit.
+
+function __script_model_complete_0
+	set -l i $argv[1]
+	if test $i -eq $__script_model_complete_cword
+		set -g __script_model_complete_reply $__script_model_complete_reply '-h' 'help'
+	else
+		switch $__script_model_complete_words[(math $i + 1)]
+			case '-h' 'help'
+				__script_model_complete_help_0 (math $i + 1)
+				return
+		end
+	end
+	while test $i -lt $__script_model_complete_cword
+		switch $__script_model_complete_words[(math $i + 1)]
+			case '-D''*'
+				set i (math $i + 1)
+			case '-verbose' '-v'
+				set i (math $i + 1)
+			case '-mode'
+				set i (math $i + 1)
+				if test $i -eq $__script_model_complete_cword
+					set -g __script_model_complete_ireply $__script_model_complete_ireply 'FAST' 'SAFE'
+					return
+				end
+				set i (math $i + 1)
+			case 'build'
+				__script_model_complete_1 (math $i + 1)
+				return
+			case 'run' 'r'
+				__script_model_complete_2 (math $i + 1)
+				return
+			case 'clean'
+				__script_model_complete_3 (math $i + 1)
+				return
+			case '*'
+				break
+		end
+	end
+	if test $i -eq $__script_model_complete_cword
+		set -g __script_model_complete_reply $__script_model_complete_reply '-D' '-mode' '-v' '-verbose' 'build' 'clean' 'r' 'run'
+	end
+	__script_model_complete_3 $i
+end
+
+function __script_model_complete_help_0
+	set -l i $argv[1]
+	if test $i -eq $__script_model_complete_cword
+		set -g __script_model_complete_reply $__script_model_complete_reply 'build' 'clean' 'r' 'run'
+		return
+	end
+end
+
+function __script_model_complete_1
+	set -l i $argv[1]
+	while test $i -lt $__script_model_complete_cword
+		switch $__script_model_complete_words[(math $i + 1)]
+			case '-output'
+				set i (math $i + 1)
+				if test $i -eq $__script_model_complete_cword
+					true
+					return
+				end
+				set i (math $i + 1)
+			case '-color'
+				set i (math $i + 1)
+				if test $i -eq $__script_model_complete_cword
+					set -g __script_model_complete_reply $__script_model_complete_reply 'Blue' 'red'
+					return
+				end
+				set i (math $i + 1)
+			case '*'
+				break
+		end
+	end
+	if test $i -eq $__script_model_complete_cword
+		set -g __script_model_complete_reply $__script_model_complete_reply '-color' '-output'
+	end
+end
+
+function __script_model_complete_2
+	set -l i $argv[1]
+	if test $i -eq $__script_model_complete_cword
+		set -g __script_model_complete_ireply $__script_model_complete_ireply 'FAST' 'SAFE'
+		return
+	end
+	set i (math $i + 1)
+	while test $i -lt $__script_model_complete_cword
+		switch $__script_model_complete_words[(math $i + 1)]
+			case '-debug'
+				set i (math $i + 1)
+			case '*'
+				break
+		end
+	end
+	if test $i -eq $__script_model_complete_cword
+		set -g __script_model_complete_reply $__script_model_complete_reply '-debug'
+	end
+	if test $i -eq $__script_model_complete_cword
+		true
+		return
+	end
+	set i (math $i + 1)
+	if test $i -eq $__script_model_complete_cword
+		set -g __script_model_complete_reply $__script_model_complete_reply 'Blue' 'red'
+	end
+end
+
+function __script_model_complete_3
+	set -l i $argv[1]
+	while test $i -lt $__script_model_complete_cword
+		switch $__script_model_complete_words[(math $i + 1)]
+			case '-all'
+				set i (math $i + 1)
+			case '*'
+				break
+		end
+	end
+	if test $i -eq $__script_model_complete_cword
+		set -g __script_model_complete_reply $__script_model_complete_reply '-all'
+	end
+	if test $i -eq $__script_model_complete_cword
+		set -g __script_model_complete_reply $__script_model_complete_reply 'Blue' 'red'
+	end
+end
+
+function __script_model_complete
+	set -l tokens (commandline -opc)
+	set -e tokens[1]
+	set -g __script_model_complete_words $tokens
+	set -g __script_model_complete_cword (count $tokens)
+	set -g __script_model_complete_reply
+	set -g __script_model_complete_ireply
+	__script_model_complete_0 0
+	set -l cur (commandline -ct)
+	set -l n (string length -- "$cur")
+	set -l lcur (string lower -- "$cur")
+	for c in $__script_model_complete_reply
+		if test -z "$cur"; or test (string sub -l $n -- $c) = "$cur"
+			printf '%s\n' $c
+		end
+	end
+	for c in $__script_model_complete_ireply
+		if test -z "$cur"; or test (string lower -- (string sub -l $n -- $c)) = "$lcur"
+			printf '%s\n' $c
+		end
+	end
+end
+
+function __script_model_complete_any
+	set -l candidates (__script_model_complete)
+	test (count $candidates) -gt 0
+end
+
+complete -c 'script-model' -n __script_model_complete_any -f -a '(__script_model_complete)'
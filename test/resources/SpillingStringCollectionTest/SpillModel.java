@@ -0,0 +1,46 @@
+package spillmodel;
+
+import java.nio.file.Path;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.MultiParameter;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.SubCommand;
+import sipka.cmdline.runtime.SpillingStringCollection;
+
+/**
+ * Command model used to test that the spilling collections are closed when the parsing fails.
+ * <p>
+ * The collections spill to the directory in the static field, and the last created commands are recorded.
+ */
+@Command
+@SubCommand(name = "run", type = SpillModel.Run.class)
+public class SpillModel {
+	public static Path directory;
+	public static SpillModel last;
+	public static Run lastRun;
+
+	@Parameter("-f")
+	@MultiParameter(String.class)
+	public SpillingStringCollection files = new SpillingStringCollection(0, directory);
+
+	public SpillModel() {
+		last = this;
+	}
+
+	public static class Run {
+		@Parameter("-n")
+		public int count;
+
+		@Parameter("-g")
+		@MultiParameter(String.class)
+		public SpillingStringCollection files = new SpillingStringCollection(0, directory);
+
+		public Run() {
+			lastRun = this;
+		}
+
+		public void call() {
+		}
+	}
+}
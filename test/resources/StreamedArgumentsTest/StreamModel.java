@@ -0,0 +1,58 @@
+package streammodel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+import sipka.cmdline.api.SubCommand;
+
+/**
+ * Command model used to test the streamed end positional parameters.
+ * <p>
+ * The commands record the arguments they receive in static fields.
+ */
+@Command
+@SubCommand(name = "each", type = StreamModel.Each.class)
+@SubCommand(name = "lines", type = StreamModel.Lines.class)
+public class StreamModel {
+	public static final List<String> consumed = new ArrayList<>();
+	public static Iterator<String> lastItems;
+
+	public static class Each {
+		@Parameter("-limit")
+		public int limit;
+
+		@Parameter
+		@PositionalParameter(-1)
+		public Iterator<String> items;
+
+		public void call() {
+			lastItems = items;
+			if (limit < 0) {
+				throw new IllegalStateException("Negative limit: " + limit);
+			}
+			for (int i = 0; i < limit && items.hasNext(); i++) {
+				consumed.add(items.next());
+			}
+		}
+	}
+
+	public static class Lines {
+		@Parameter(value = "-name", required = true)
+		public String name;
+
+		@Parameter
+		@PositionalParameter(-1)
+		public Stream<String> lines;
+
+		public void call() {
+			consumed.add(name);
+			consumed.addAll(lines.collect(Collectors.toList()));
+		}
+	}
+}
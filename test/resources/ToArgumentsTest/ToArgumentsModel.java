@@ -0,0 +1,96 @@
+package toargsmodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.MultiParameter;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+import sipka.cmdline.api.SubCommand;
+
+/**
+ * Command model used to test converting the parsed commands back to arguments.
+ */
+@Command(helpCommand = "help")
+@SubCommand(name = "build", type = ToArgumentsModel.Build.class)
+@SubCommand(name = "run", type = ToArgumentsModel.Run.class)
+public class ToArgumentsModel {
+	public enum Mode {
+		FAST,
+		SAFE;
+	}
+
+	@Parameter("-verbose")
+	@Flag
+	public boolean verbose;
+
+	@Parameter("-name")
+	public String name;
+
+	@Parameter("-D")
+	public Map<String, String> defines = new TreeMap<>();
+
+	@Override
+	public String toString() {
+		return "verbose=" + verbose + " name=" + name + " D=" + defines;
+	}
+
+	public void call() {
+	}
+
+	@SubCommand(name = "target", type = ToArgumentsModel.Target.class)
+	public static class Build {
+		@Parameter("-output")
+		public String output;
+
+		@Parameter("-mode")
+		public Mode mode;
+
+		@Parameter("-I")
+		@MultiParameter(String.class)
+		public List<String> includes = new ArrayList<>();
+
+		@Override
+		public String toString() {
+			return "output=" + output + " mode=" + mode + " I=" + includes;
+		}
+
+		public void call() {
+		}
+	}
+
+	public static class Target {
+		@Parameter(required = true)
+		@PositionalParameter
+		public String first;
+
+		@Parameter
+		@PositionalParameter(-1)
+		public String last;
+
+		@Override
+		public String toString() {
+			return "first=" + first + " last=" + last;
+		}
+
+		public void call() {
+		}
+	}
+
+	public static class Run {
+		@Parameter("-threads")
+		public int threads = 1;
+
+		@Override
+		public String toString() {
+			return "threads=" + threads;
+		}
+
+		public void call() {
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package validationmodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.api.Flag;
+import sipka.cmdline.api.MultiParameter;
+import sipka.cmdline.api.Parameter;
+import sipka.cmdline.api.PositionalParameter;
+import sipka.cmdline.api.SubCommand;
+import sipka.cmdline.runtime.ArgumentSink;
+
+/**
+ * Command model used to test that the generated <code>validate</code> method accepts the same arguments as the
+ * parser.
+ */
+@Command(helpCommand = "help", allowAbbreviations = true)
+@SubCommand(name = "build", type = ValidationModel.Build.class, defaultCommand = true)
+@SubCommand(name = { "run", "r" }, type = ValidationModel.Run.class)
+@SubCommand(name = "pipe", type = ValidationModel.Pipe.class)
+public class ValidationModel {
+	public enum Mode {
+		FAST,
+		SAFE;
+	}
+
+	@Parameter({ "-verbose", "-v" })
+	@Flag
+	public boolean verbose;
+
+	@Parameter("-D")
+	public Map<String, String> defines = new TreeMap<>();
+
+	public void call() {
+	}
+
+	public static class Build {
+		@Parameter(value = "-output", required = true)
+		public String output;
+
+		@Parameter("-mode")
+		public Mode mode;
+
+		@Parameter("-optimize")
+		@Flag
+		public boolean optimize;
+
+		@Parameter("-I")
+		@MultiParameter(String.class)
+		public List<String> includes = new ArrayList<>();
+
+		@Parameter
+		@PositionalParameter(-1)
+		public String target;
+
+		public void call() {
+		}
+	}
+
+	public static class Run {
+		@Parameter(required = true)
+		@PositionalParameter
+		public String first;
+
+		@Parameter("-threads")
+		public int threads = 1;
+
+		@Parameter("-ratio")
+		public Double ratio;
+
+		@Parameter("-separator")
+		public char separator = ',';
+
+		@Parameter("-cache")
+		public boolean cache;
+
+		@Parameter
+		@PositionalParameter(-1)
+		public Long count;
+
+		public void call() {
+		}
+	}
+
+	public static class Pipe {
+		@Parameter("-limit")
+		public int limit = Integer.MAX_VALUE;
+
+		@Parameter("-mode")
+		@MultiParameter(Mode.class)
+		public ArgumentSink<Mode> modes = new ArgumentSink<>(1);
+
+		public void call() {
+			for (int i = 0; i < limit && modes.hasNext(); i++) {
+				modes.next();
+			}
+		}
+	}
+}
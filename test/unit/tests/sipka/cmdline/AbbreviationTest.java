@@ -0,0 +1,124 @@
+package tests.sipka.cmdline;
+
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.runtime.ParseUtil;
+import sipka.cmdline.runtime.UnrecognizedArgumentException;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class AbbreviationTest extends SakerTestCase {
+	private static final Path MODEL_SOURCE = Paths.get("test/resources/AbbreviationTest/AbbreviationModel.java");
+
+	private Class<?> model;
+	private Class<?> modelImpl;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		String[] names = { "-threads", "-v", "-verbose", "b", "build", "paths", "pipe", "run" };
+		assertEquals(ParseUtil.resolveAbbreviation(names, "-verb"), "-verbose");
+		assertEquals(ParseUtil.resolveAbbreviation(names, "-ve"), "-verbose");
+		assertEquals(ParseUtil.resolveAbbreviation(names, "-t"), "-threads");
+		assertEquals(ParseUtil.resolveAbbreviation(names, "bu"), "build");
+		assertEquals(ParseUtil.resolveAbbreviation(names, "r"), "run");
+		assertEquals(ParseUtil.resolveAbbreviation(names, "pa"), "paths");
+		//exact matches are not ambiguous
+		assertEquals(ParseUtil.resolveAbbreviation(names, "-v"), "-v");
+		assertEquals(ParseUtil.resolveAbbreviation(names, "b"), "b");
+
+		assertEquals(ParseUtil.resolveAbbreviation(names, "-verbosex"), null);
+		assertEquals(ParseUtil.resolveAbbreviation(names, "x"), null);
+		assertEquals(ParseUtil.resolveAbbreviation(names, "-x"), null);
+		assertEquals(ParseUtil.resolveAbbreviation(names, "zzz"), null);
+		assertEquals(ParseUtil.resolveAbbreviation(names, "-"), null);
+		assertEquals(ParseUtil.resolveAbbreviation(names, "--"), null);
+		assertEquals(ParseUtil.resolveAbbreviation(names, ""), null);
+		assertEquals(ParseUtil.resolveAbbreviation(new String[0], "a"), null);
+
+		UnrecognizedArgumentException e = assertException(UnrecognizedArgumentException.class,
+				() -> ParseUtil.resolveAbbreviation(names, "p"));
+		assertEquals(e.getParameterName(), "p");
+		assertEquals(e.getSuggestions(), listOf("paths", "pipe"));
+		e = assertException(UnrecognizedArgumentException.class,
+				() -> ParseUtil.resolveAbbreviation(new String[] { "-a1", "-a2", "-a3", "-a4" }, "-a"));
+		assertEquals(e.getSuggestions(), listOf("-a1", "-a2", "-a3"));
+
+		testGeneratedModel();
+	}
+
+	private void testGeneratedModel() throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir, Collections.emptyList(),
+					new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir)) {
+				model = Class.forName("abbrevmodel.AbbreviationModel", false, cl);
+				modelImpl = Class.forName("abbrevmodel.AbbreviationModelModelImpl", false, cl);
+				runGeneratedTests();
+			}
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private void runGeneratedTests() throws Throwable {
+		assertEquals(call("-verb", "-tr", "bu", "-output", "o", "-th", "2"),
+				"trace=true verbose=true outputdir=null build output=o threads=2");
+
+		//default subcommand
+		assertEquals(call("b", "-output", "o"), "trace=false verbose=false outputdir=null build output=o threads=1");
+		assertEquals(call("bu"), "trace=false verbose=false outputdir=null build output=null threads=1");
+		//a name of the default subcommand, resolved by it
+		assertEquals(call("-v", "-th", "2"), "trace=false verbose=true outputdir=null build output=null threads=2");
+		//the exact name of the default subcommand is not a prefix of the main command name
+		assertEquals(call("-outputd", "d", "-output", "o"),
+				"trace=false verbose=false outputdir=d build output=o threads=1");
+		//prefixes of the names of both commands are ambiguous
+		UnrecognizedArgumentException e = assertException(UnrecognizedArgumentException.class, () -> call("-t"));
+		assertEquals(e.getParameterName(), "-t");
+		assertEquals(e.getSuggestions(), listOf("-threads", "-trace"));
+		e = assertException(UnrecognizedArgumentException.class, () -> call("-out", "o"));
+		assertEquals(e.getSuggestions(), listOf("-output", "-outputdir"));
+		e = assertException(UnrecognizedArgumentException.class, () -> call("-output", "o", "-x"));
+		assertEquals(e.getParameterName(), "-x");
+
+		//positional parameters
+		assertEquals(call("co", "a", "b"),
+				"trace=false verbose=false outputdir=null copy from=a force=false format=null to=b");
+		assertEquals(call("copy", "a", "-force", "-format", "f", "b"),
+				"trace=false verbose=false outputdir=null copy from=a force=true format=f to=b");
+		//the arguments are not resolved while a positional parameter can take them
+		assertEquals(call("copy", "-fo", "b"),
+				"trace=false verbose=false outputdir=null copy from=-fo force=false format=null to=b");
+		assertEquals(call("copy", "a", "-forc"),
+				"trace=false verbose=false outputdir=null copy from=a force=false format=null to=-forc");
+		assertEquals(call("copy", "a", "-f"),
+				"trace=false verbose=false outputdir=null copy from=a force=false format=null to=-f");
+		e = assertException(UnrecognizedArgumentException.class, () -> call("copy", "a", "-forc", "b"));
+		assertEquals(e.getParameterName(), "b");
+	}
+
+	private String call(String... args) throws Throwable {
+		Object parsed = GeneratedModelCompiler.invokeStatic(modelImpl, "parse", new Class<?>[] { Iterator.class },
+				listOf(args).iterator());
+		GeneratedModelCompiler.invoke(parsed, "callCommand", new Class<?>[0]);
+		@SuppressWarnings("unchecked")
+		List<String> called = (List<String>) model.getField("called").get(null);
+		List<String> result = new ArrayList<>(called);
+		called.clear();
+		assertEquals(result.size(), 1, result.toString());
+		return result.get(0);
+	}
+}
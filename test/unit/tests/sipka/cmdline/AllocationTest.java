@@ -0,0 +1,180 @@
+package tests.sipka.cmdline;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+/**
+ * Checks that parsing with the generated code stays within an allocation budget per argument.
+ * <p>
+ * The allocations are measured with the per-thread allocation counter of the JVM. The fixed costs of a parse call (the
+ * result object, the argument iterator, opening a command file) are measured by parsing no arguments, and subtracted
+ * from the results. The fixed costs are checked against a separate budget per call.
+ * <p>
+ * The measured allocations are printed if the <code>sipka.cmdline.test.allocation.print</code> system property is set
+ * to <code>true</code>.
+ */
+@SakerTest
+public class AllocationTest extends SakerTestCase {
+	private static final Path RESOURCES = Paths.get("test/resources/AllocationTest");
+	private static final Path MODEL_SOURCE = RESOURCES.resolve("AllocationModel.java");
+
+	/**
+	 * The number of arguments in a measured parse call.
+	 */
+	private static final int ARGUMENT_COUNT = 1200;
+	private static final int WARMUP_ITERATIONS = 1000;
+	private static final int MEASURE_ROUNDS = 5;
+	private static final int MEASURE_ITERATIONS = 100;
+
+	private static final boolean PRINT_ALLOCATIONS = Boolean.getBoolean("sipka.cmdline.test.allocation.print");
+
+	private static volatile Object sink;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		java.lang.management.ThreadMXBean mxbean = ManagementFactory.getThreadMXBean();
+		if (!(mxbean instanceof com.sun.management.ThreadMXBean)) {
+			System.err.println("Thread allocation measurement is not available, skipping test.");
+			return;
+		}
+		com.sun.management.ThreadMXBean threadmx = (com.sun.management.ThreadMXBean) mxbean;
+		if (!threadmx.isThreadAllocatedMemorySupported()) {
+			System.err.println("Thread allocation measurement is not supported, skipping test.");
+			return;
+		}
+		if (!threadmx.isThreadAllocatedMemoryEnabled()) {
+			threadmx.setThreadAllocatedMemoryEnabled(true);
+		}
+
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir, Collections.emptyList(), diagnostics));
+			try (URLClassLoader cl = new URLClassLoader(new URL[] { tempdir.resolve("classes").toUri().toURL() },
+					AllocationTest.class.getClassLoader())) {
+				Class<?> modelimpl = Class.forName("allocmodel.AllocationModelModelImpl", false, cl);
+				MethodHandle parse = MethodHandles.publicLookup()
+						.findStatic(modelimpl, "parse", MethodType.methodType(modelimpl, Iterator.class))
+						.asType(MethodType.methodType(Object.class, Iterator.class));
+				AllocationMeter meter = new AllocationMeter(threadmx, parse);
+
+				String[] empty = {};
+				long baseline = meter.measure(empty);
+				//the result object and the argument iterator
+				checkCallBudget("empty", baseline, 256);
+
+				String[] flags = repeat("-verbose", "-quiet", "-v");
+				String[] numbers = repeat("-threads", "8", "-timeout", "30000");
+				String[] enums = repeat("-mode", "fast", "-mode", "SAFE");
+				String[] maps = new String[ARGUMENT_COUNT];
+				for (int i = 0; i < maps.length; i++) {
+					maps[i] = "-Dkey" + i + "=value" + i;
+				}
+				String[] mixed = repeat("-v", "-threads", "8", "-mode", "debug", "-Dkey=value", "-timeout", "30000");
+
+				//flags and numbers only update fields, no allocations are necessary
+				checkBudget("flags", meter.measure(flags) - baseline, flags.length, 4);
+				checkBudget("numbers", meter.measure(numbers) - baseline, numbers.length, 4);
+				//the upper case name of the enum value
+				checkBudget("enums", meter.measure(enums) - baseline, enums.length, 32);
+				//the key and value strings and the map entry
+				checkBudget("maps", meter.measure(maps) - baseline, maps.length, 192);
+
+				Path emptyfile = tempdir.resolve("empty.txt");
+				Path commandfile = tempdir.resolve("args.txt");
+				Files.write(emptyfile, Collections.emptyList(), StandardCharsets.UTF_8);
+				Files.write(commandfile, Arrays.asList(mixed), StandardCharsets.UTF_8);
+				String[] commandfileargs = { "@" + commandfile };
+				long filebaseline = meter.measure(new String[] { "@" + emptyfile });
+				//the reader and its buffers
+				checkCallBudget("empty command file", filebaseline, 32 * 1024);
+				long direct = meter.measure(mixed) - baseline;
+				//the lines read from the file in addition to the direct parsing
+				checkBudget("command file", meter.measure(commandfileargs) - filebaseline - direct, mixed.length, 96);
+			}
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private static void checkCallBudget(String scenario, long allocated, long budget) {
+		if (PRINT_ALLOCATIONS) {
+			System.out.println("Allocated bytes per call for " + scenario + ": " + allocated);
+		}
+		if (allocated > budget) {
+			throw new AssertionError("Allocation budget exceeded for " + scenario + ": " + allocated
+					+ " bytes per call, budget: " + budget);
+		}
+	}
+
+	private static void checkBudget(String scenario, long allocated, int argcount, long budgetperarg) {
+		long perarg = Math.max(0, allocated) / argcount;
+		if (PRINT_ALLOCATIONS) {
+			System.out.println("Allocated bytes per argument for " + scenario + ": " + perarg);
+		}
+		if (perarg > budgetperarg) {
+			throw new AssertionError("Allocation budget exceeded for " + scenario + ": " + perarg
+					+ " bytes per argument, budget: " + budgetperarg);
+		}
+	}
+
+	private static String[] repeat(String... group) {
+		List<String> result = new ArrayList<>(ARGUMENT_COUNT);
+		while (result.size() + group.length <= ARGUMENT_COUNT) {
+			result.addAll(Arrays.asList(group));
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static final class AllocationMeter {
+		private final com.sun.management.ThreadMXBean threadMx;
+		private final MethodHandle parse;
+		private final long threadId = Thread.currentThread().getId();
+
+		public AllocationMeter(com.sun.management.ThreadMXBean threadMx, MethodHandle parse) {
+			this.threadMx = threadMx;
+			this.parse = parse;
+		}
+
+		/**
+		 * Gets the minimum of the average bytes allocated by parsing the arguments over the measurement rounds.
+		 */
+		public long measure(String[] args) throws Throwable {
+			List<String> arglist = Arrays.asList(args);
+			for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+				sink = (Object) parse.invokeExact((Iterator<?>) arglist.iterator());
+			}
+			long result = Long.MAX_VALUE;
+			for (int r = 0; r < MEASURE_ROUNDS; r++) {
+				long start = threadMx.getThreadAllocatedBytes(threadId);
+				for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+					sink = (Object) parse.invokeExact((Iterator<?>) arglist.iterator());
+				}
+				long allocated = threadMx.getThreadAllocatedBytes(threadId) - start;
+				result = Math.min(result, allocated / MEASURE_ITERATIONS);
+			}
+			sink = null;
+			return result;
+		}
+	}
+}
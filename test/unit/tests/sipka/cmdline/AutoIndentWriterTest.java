@@ -0,0 +1,122 @@
+package tests.sipka.cmdline;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.AutoIndentWriter;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class AutoIndentWriterTest extends SakerTestCase {
+	private static final Path FAILING_MODEL_SOURCE = Paths.get("test/resources/AutoIndentWriterTest/FailingModel.java");
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		assertIndented("class A {\nint x;\n}\n", "class A {\n\tint x;\n}\n");
+		//empty lines are not indented
+		assertIndented("class A {\n\nint x;\n}\n", "class A {\n\n\tint x;\n}\n");
+		assertIndented("{\n{\n}\n{ }\n}\n", "{\n\t{\n\t}\n\t{ }\n}\n");
+
+		//braces in string literals
+		assertIndented("{\nString s = \"{\";\nint x;\n}\n", "{\n\tString s = \"{\";\n\tint x;\n}\n");
+		assertIndented("{\nString s = \"}}\";\nint x;\n}\n", "{\n\tString s = \"}}\";\n\tint x;\n}\n");
+		assertIndented("{\nString s = \"\\\"{\";\nint x;\n}\n", "{\n\tString s = \"\\\"{\";\n\tint x;\n}\n");
+		assertIndented("{\nString s = \"\\\\\" + '{';\nint x;\n}\n",
+				"{\n\tString s = \"\\\\\" + '{';\n\tint x;\n}\n");
+
+		//braces in char literals
+		assertIndented("{\nchar c = '{';\nint x;\n}\n", "{\n\tchar c = '{';\n\tint x;\n}\n");
+		assertIndented("{\nchar c = '}';\nint x;\n}\n", "{\n\tchar c = '}';\n\tint x;\n}\n");
+		assertIndented("{\nchar c = '\\'';\nchar d = '{';\nint x;\n}\n",
+				"{\n\tchar c = '\\'';\n\tchar d = '{';\n\tint x;\n}\n");
+		assertIndented("{\nchar c = '\"';\nchar d = '{';\nint x;\n}\n",
+				"{\n\tchar c = '\"';\n\tchar d = '{';\n\tint x;\n}\n");
+
+		//braces in comments
+		assertIndented("{\n// {\nint x;\n}\n", "{\n\t// {\n\tint x;\n}\n");
+		assertIndented("{\nint x; // }\nint y;\n}\n", "{\n\tint x; // }\n\tint y;\n}\n");
+		assertIndented("{\n/* { */\nint x;\n}\n", "{\n\t/* { */\n\tint x;\n}\n");
+		assertIndented("{\n/*\n{\n\"\n*/\nint x;\n}\n", "{\n\t/*\n\t{\n\t\"\n\t*/\n\tint x;\n}\n");
+		assertIndented("{\n/*/ { */\nint x;\n}\n", "{\n\t/*/ { */\n\tint x;\n}\n");
+		assertIndented("{\n/**/{\nint x;\n}\n}\n", "{\n\t/**/{\n\t\tint x;\n\t}\n}\n");
+		//a quote in a comment doesn't start a literal
+		assertIndented("{\n// \"\n{\nint x;\n}\n}\n", "{\n\t// \"\n\t{\n\t\tint x;\n\t}\n}\n");
+
+		//unterminated literals end at the line end
+		assertIndented("{\nString s = \"{\nint x;\n}\n", "{\n\tString s = \"{\n\tint x;\n}\n");
+
+		//CRLF line endings
+		assertIndented("{\r\nint x;\r\n}\r\n", "{\r\n\tint x;\r\n}\r\n");
+
+		StringWriter sw = new StringWriter();
+		try (AutoIndentWriter writer = new AutoIndentWriter(sw)) {
+			writer.setIndentation("  ");
+			writer.write("{\n{\nint x;\n}\n}\n");
+			writer.flush();
+			assertEquals(sw.toString(), "{\n  {\n    int x;\n  }\n}\n");
+			assertEquals(writer.getCharCount(), (long) sw.toString().length());
+		}
+
+		checkPartialSourceRemoved();
+	}
+
+	/**
+	 * Checks that the output is the same regardless of how the input is split between the write calls.
+	 */
+	private static void assertIndented(String input, String expected) throws IOException {
+		assertEquals(indentBulk(input), expected);
+		assertEquals(indentCharByChar(input), expected);
+		for (int split = 1; split < input.length(); split++) {
+			StringWriter sw = new StringWriter();
+			try (AutoIndentWriter writer = new AutoIndentWriter(sw)) {
+				writer.write(input.toCharArray(), 0, split);
+				writer.write(input, split, input.length() - split);
+				writer.flush();
+				assertEquals(writer.getCharCount(), (long) sw.toString().length());
+			}
+			assertEquals(sw.toString(), expected);
+		}
+	}
+
+	private static String indentBulk(String input) throws IOException {
+		StringWriter sw = new StringWriter();
+		try (AutoIndentWriter writer = new AutoIndentWriter(sw)) {
+			writer.write(input);
+		}
+		return sw.toString();
+	}
+
+	private static String indentCharByChar(String input) throws IOException {
+		StringWriter sw = new StringWriter();
+		try (AutoIndentWriter writer = new AutoIndentWriter(sw)) {
+			for (int i = 0; i < input.length(); i++) {
+				writer.write(input.charAt(i));
+			}
+		}
+		return sw.toString();
+	}
+
+	/**
+	 * The generated source is streamed to the output, and removed if the generation fails.
+	 */
+	private static void checkPartialSourceRemoved() throws Exception {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+			assertException(RuntimeException.class, () -> GeneratedModelCompiler.compile(FAILING_MODEL_SOURCE,
+					tempdir, Collections.emptyList(), diagnostics));
+			assertFalse(Files.exists(tempdir.resolve("gen/failmodel/FailingModelModelImpl.java")));
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+}
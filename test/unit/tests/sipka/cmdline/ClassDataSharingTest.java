@@ -0,0 +1,26 @@
+package tests.sipka.cmdline;
+
+import java.util.List;
+import java.util.Map;
+
+import sipka.cmdline.runtime.ClassDataSharing;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class ClassDataSharingTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		List<String[]> invocations = ClassDataSharing.decodeTrainingArguments("\n\0run\0-mo", "de\0FAST\n\0\n");
+		assertEquals(invocations.size(), 3);
+		assertEquals(invocations.get(0).length, 0);
+		assertEquals(listOf(invocations.get(1)), listOf("run", "-mode", "FAST"));
+		assertEquals(listOf(invocations.get(2)), listOf(""));
+		assertEquals(ClassDataSharing.decodeTrainingArguments().size(), 0);
+
+		assertException(IllegalArgumentException.class, () -> ClassDataSharing.decodeTrainingArguments("run\n"));
+		assertException(IllegalArgumentException.class, () -> ClassDataSharing.decodeTrainingArguments("\0run"));
+		assertException(IllegalArgumentException.class, () -> ClassDataSharing.train(Object.class));
+	}
+}
@@ -1,6 +1,8 @@
 package tests.sipka.cmdline;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -51,6 +53,56 @@ public class CommandFileTest extends SakerTestCase {
 						"@test/resources/CommandFileTest/empty.txt", "b", "@test/resources/CommandFileTest/dual.txt"),
 				listOf("a", "one", "two", "a", "b", "one", "two"));
 
+		assertEquals(ParseUtil.escapeCommandFileArgument("a@b"), "a@b");
+		assertEquals(ParseUtil.escapeCommandFileArgument("@a"), "\\@a");
+		assertEquals(ParseUtil.escapeCommandFileArgument("\\@a"), "\\\\@a");
+		assertEquals(ParseUtil.escapeCommandFileArgument("\\a"), "\\a");
+		assertEquals(ParseUtil.escapeCommandFileArgument("\\\\@a"), "\\\\\\@a");
+		for (String arg : listOf("@a", "\\@a", "\\\\@a", "\\", "\\a", "a@b", "@!delete!@a", "")) {
+			assertEquals(argsToList(ParseUtil.escapeCommandFileArgument(arg)), listOf(arg));
+		}
+
+		Path written = Files.createTempFile("sipka.cmdline.test-", ".txt");
+		try {
+			ParseUtil.writeCommandFile(written, c -> {
+				c.accept("one");
+				c.accept("");
+				c.accept("@two");
+			});
+			//the written lines are not escaped
+			assertEquals(argsToList("@" + written), listOf("one", "", "@two"));
+			assertException(IllegalArgumentException.class,
+					() -> ParseUtil.writeCommandFile(written, c -> c.accept("a\nb")));
+		} finally {
+			Files.deleteIfExists(written);
+		}
+
+		Path repeated = Files.createTempFile("sipka.cmdline.test-", ".txt");
+		try {
+			ParseUtil.writeCommandFile(repeated, c -> {
+				for (int i = 0; i < 4; i++) {
+					c.accept("-I");
+					c.accept("/usr/include/" + (i % 2));
+				}
+			});
+			List<String> plain = argsToList("@" + repeated);
+			assertFalse(plain.get(1) == plain.get(5));
+
+			List<String> interned = new ArrayList<>();
+			try (ParsingIterator it = ParseUtil.createCommandFileArgumentIterator(listOf("@" + repeated).iterator(),
+					16)) {
+				it.forEachRemaining(interned::add);
+			}
+			assertEquals(interned, plain);
+			assertTrue(interned.get(1) == interned.get(5));
+			assertTrue(interned.get(3) == interned.get(7));
+			assertTrue(interned.get(0) == interned.get(6));
+			assertFalse(interned.get(1) == interned.get(3));
+		} finally {
+			Files.deleteIfExists(repeated);
+		}
+		assertException(IllegalArgumentException.class,
+				() -> ParseUtil.createCommandFileArgumentIterator(Collections.emptyIterator(), -1));
 	}
 
 	private static List<String> argsToList(String... args) throws IOException {
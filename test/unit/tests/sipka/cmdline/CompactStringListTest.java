@@ -0,0 +1,75 @@
+package tests.sipka.cmdline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import sipka.cmdline.runtime.CompactStringList;
+import sipka.cmdline.runtime.ParseUtil;
+import sipka.cmdline.runtime.ParsingIterator;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class CompactStringListTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		CompactStringList list = new CompactStringList();
+		assertEquals(list.size(), 0);
+		assertException(IndexOutOfBoundsException.class, () -> list.get(0));
+		assertException(NullPointerException.class, () -> list.add(null));
+
+		List<String> expected = listOf("", "abc", "\u00e1rv\u00edzt\u0171r\u0151", "\u20ac",
+				"\ud83d\ude00x", "a\ud800b", "-Dkey=value");
+		list.addAll(expected);
+		assertEquals(list.size(), expected.size());
+		for (int i = 0; i < expected.size(); i++) {
+			String e = expected.get(i);
+			if (e.equals("a\ud800b")) {
+				//unpaired surrogates are replaced
+				e = "a?b";
+			}
+			assertEquals(list.get(i), e);
+			assertEquals(list.getCharSequence(i).toString(), e);
+			assertEquals(list.getEncodedLength(i), e.getBytes("UTF-8").length);
+		}
+		CharSequence seq = list.getCharSequence(1);
+		assertEquals(seq.length(), 3);
+		assertEquals(seq.charAt(1), 'b');
+		assertEquals(seq.subSequence(1, 3).toString(), "bc");
+		assertException(IndexOutOfBoundsException.class, () -> seq.charAt(3));
+
+		assertException(UnsupportedOperationException.class, () -> list.remove(0));
+		assertException(UnsupportedOperationException.class, () -> list.set(0, "x"));
+
+		//elements that span multiple chunks
+		List<String> large = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append((char) ('a' + i % 26));
+			if (i % 1000 == 0) {
+				large.add(sb.toString());
+			}
+			large.add("/path/to/file" + i);
+		}
+		list.clear();
+		assertEquals(list.size(), 0);
+		list.addAll(large);
+		list.trimToSize();
+		list.add("after");
+		large.add("after");
+		assertEquals(list, large);
+		assertEquals(list.hashCode(), large.hashCode());
+
+		try (ParsingIterator it = ParseUtil.createSimpleArgumentIterator(listOf("a", "b").iterator())) {
+			it.next();
+			assertEquals(ParseUtil.collectRemainingArguments(it), listOf("b"));
+			assertFalse(it.hasNext());
+		}
+		assertEquals(ParseUtil.collectRemainingArguments(
+				ParseUtil.createSimpleArgumentIterator(Collections.<String> emptyIterator())), listOf());
+	}
+
+}
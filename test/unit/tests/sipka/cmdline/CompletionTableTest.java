@@ -0,0 +1,55 @@
+package tests.sipka.cmdline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import sipka.cmdline.runtime.CompletionTable;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class CompletionTableTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		CompletionTable table = new CompletionTable("-verbose", "-v", "build", "-threads", "b", "-v", "run");
+		assertEquals(table.size(), 6);
+		assertEquals(complete(table, ""), listOf("-threads", "-v", "-verbose", "b", "build", "run"));
+		assertEquals(complete(table, "-"), listOf("-threads", "-v", "-verbose"));
+		assertEquals(complete(table, "-v"), listOf("-v", "-verbose"));
+		assertEquals(complete(table, "-ve"), listOf("-verbose"));
+		assertEquals(complete(table, "-verbose"), listOf("-verbose"));
+		assertEquals(complete(table, "-verbosex"), listOf());
+		assertEquals(complete(table, "b"), listOf("b", "build"));
+		assertEquals(complete(table, "r"), listOf("run"));
+		assertEquals(complete(table, "z"), listOf());
+		assertEquals(complete(table, "B"), listOf());
+		assertTrue(table.contains("b"));
+		assertFalse(table.contains("bu"));
+
+		CompletionTable enumtable = new CompletionTable(true, "SLOW", "FAST", "FASTER");
+		assertEquals(complete(enumtable, ""), listOf("FAST", "FASTER", "SLOW"));
+		assertEquals(complete(enumtable, "f"), listOf("FAST", "FASTER"));
+		assertEquals(complete(enumtable, "Fast"), listOf("FAST", "FASTER"));
+		assertEquals(complete(enumtable, "fastE"), listOf("FASTER"));
+		assertTrue(enumtable.contains("slow"));
+
+		assertEquals(complete(CompletionTable.EMPTY, ""), listOf());
+
+		CompletionTable[] decoded = CompletionTable.decodeTables("0\0-v\0-ver", "bose\n1\n1\0SLOW\0FAST\n");
+		assertEquals(decoded.length, 3);
+		assertEquals(complete(decoded[0], "-v"), listOf("-v", "-verbose"));
+		assertEquals(decoded[1].size(), 0);
+		assertEquals(complete(decoded[2], "s"), listOf("SLOW"));
+		assertEquals(CompletionTable.decodeTables().length, 0);
+		assertException(IllegalArgumentException.class, () -> CompletionTable.decodeTables("x\0a\n"));
+		assertException(IllegalArgumentException.class, () -> CompletionTable.decodeTables("0\0a"));
+	}
+
+	private static List<String> complete(CompletionTable table, String prefix) {
+		List<String> result = new ArrayList<>();
+		table.addCompletions(prefix, result);
+		return result;
+	}
+}
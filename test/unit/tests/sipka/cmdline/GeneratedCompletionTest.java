@@ -0,0 +1,104 @@
+package tests.sipka.cmdline;
+
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+/**
+ * Tests the <code>complete</code> method generated for a model with subcommands, enums, and a help command.
+ */
+@SakerTest
+public class GeneratedCompletionTest extends SakerTestCase {
+	private static final Path MODEL_SOURCE = Paths.get("test/resources/GeneratedCompletionTest/CompletionModel.java");
+
+	private static final List<String> ROOT_CANDIDATES = listOf("-D", "-all", "-mode", "-threads", "-v", "-verbose",
+			"build", "clean", "r", "run");
+
+	private Class<?> modelImpl;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir,
+					Collections.singletonList("-A" + CommandLineProcessor.OPTION_GENERATE_COMPLETION + "=true"),
+					new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir)) {
+				modelImpl = Class.forName("complmodel.CompletionModelModelImpl", false, cl);
+				runCompletionTests();
+			}
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private void runCompletionTests() throws Throwable {
+		//the help command is only offered as the first word
+		assertEquals(complete(""), listOf("-D", "-all", "-h", "-mode", "-threads", "-v", "-verbose", "build", "clean",
+				"help", "r", "run"));
+		assertEquals(complete("-"), listOf("-D", "-all", "-h", "-mode", "-threads", "-v", "-verbose"));
+		assertEquals(complete("-v", ""), ROOT_CANDIDATES);
+		assertEquals(complete("-v", "-v"), listOf("-v", "-verbose"));
+
+		//parameter values
+		assertEquals(complete("-threads", ""), listOf());
+		assertEquals(complete("-threads", "1", ""), ROOT_CANDIDATES);
+		assertEquals(complete("-Dkey=value", ""), ROOT_CANDIDATES);
+
+		//upper case enums are matched case insensitively
+		assertEquals(complete("-mode", ""), listOf("DEBUG", "FAST", "SAFE"));
+		assertEquals(complete("-mode", "f"), listOf("FAST"));
+		assertEquals(complete("-mode", "S"), listOf("SAFE"));
+		assertEquals(complete("-mode", "x"), listOf());
+		//other enums are parsed and completed case sensitively
+		assertEquals(complete("build", "-color", ""), listOf("Blue", "green", "red"));
+		assertEquals(complete("build", "-color", "g"), listOf("green"));
+		assertEquals(complete("build", "-color", "b"), listOf());
+
+		//subcommands
+		assertEquals(complete("b"), listOf("build"));
+		assertEquals(complete("r"), listOf("r", "run"));
+		assertEquals(complete("-v", "c"), listOf("clean"));
+		assertEquals(complete("build", "-"), listOf("-color", "-optimize", "-output"));
+		assertEquals(complete("build", "-output", "out", "-o"), listOf("-optimize", "-output"));
+		assertEquals(complete("run", "-"), listOf());
+		assertEquals(complete("r", "target", "-"), listOf("-debug"));
+		//the default subcommand
+		assertEquals(complete("-all", ""), listOf("-all"));
+		assertEquals(complete("-v", "-all", ""), listOf("-all"));
+
+		//the help command completes the subcommand names
+		assertEquals(complete("help", ""), listOf("build", "clean", "r", "run"));
+		assertEquals(complete("help", "b"), listOf("build"));
+		assertEquals(complete("-h", "r"), listOf("r", "run"));
+		assertEquals(complete("help", "build", ""), listOf());
+
+		//the cursor may be before the last word, or after it
+		assertEquals(completeAt(0, "-m", "FAST"), listOf("-mode"));
+		assertEquals(completeAt(1, "-mode", "F", "-v"), listOf("FAST"));
+		assertEquals(completeAt(2, "build", "-optimize"), listOf("-color", "-optimize", "-output"));
+		assertException(IndexOutOfBoundsException.class, () -> completeAt(3, "a", "b"));
+		assertException(IndexOutOfBoundsException.class, () -> completeAt(-1, "a"));
+	}
+
+	private List<String> complete(String... words) throws Throwable {
+		return completeAt(words.length - 1, words);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> completeAt(int cursor, String... words) throws Throwable {
+		return (List<String>) GeneratedModelCompiler.invokeStatic(modelImpl, "complete",
+				new Class<?>[] { String[].class, int.class }, words, cursor);
+	}
+}
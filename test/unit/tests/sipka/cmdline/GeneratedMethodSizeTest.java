@@ -0,0 +1,139 @@
+package tests.sipka.cmdline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import sipka.cmdline.processor.MethodSizeEstimator;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+/**
+ * Compares the estimated sizes of the methods generated for a fixed model to the recorded ones.
+ * <p>
+ * If the generated code changes, update <code>sizes.txt</code> by running the test with the
+ * <code>sipka.cmdline.test.golden.update</code> system property set to <code>true</code>, and review the difference.
+ */
+@SakerTest
+public class GeneratedMethodSizeTest extends SakerTestCase {
+	private static final Path RESOURCES = Paths.get("test/resources/GeneratedMethodSizeTest");
+	private static final Path GOLDEN_FILE = RESOURCES.resolve("sizes.txt");
+	private static final Path MODEL_SOURCE = RESOURCES.resolve("SizeModel.java");
+	/**
+	 * Turns on the generation of all optional methods.
+	 */
+	private static final List<String> FEATURE_OPTIONS = Arrays.asList(
+			"-A" + CommandLineProcessor.OPTION_GENERATE_VALIDATION + "=true",
+			"-A" + CommandLineProcessor.OPTION_GENERATE_COMPLETION + "=true",
+			"-A" + CommandLineProcessor.OPTION_GENERATE_PARSE_ALL + "=true",
+			"-A" + CommandLineProcessor.OPTION_GENERATE_SCRIPT_RUNNER + "=true",
+			"-A" + CommandLineProcessor.OPTION_GENERATE_PUSH_PARSER + "=true",
+			"-A" + CommandLineProcessor.OPTION_GENERATE_TO_ARGUMENTS + "=true");
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir.resolve("default"), FEATURE_OPTIONS,
+					diagnostics));
+			String source = new String(
+					Files.readAllBytes(tempdir.resolve("default/gen/sizemodel/SizeModelModelImpl.java")),
+					StandardCharsets.UTF_8);
+			List<MethodSizeEstimator.MethodSize> sizes = MethodSizeEstimator.estimate(source);
+			for (MethodSizeEstimator.MethodSize ms : sizes) {
+				if (ms.getEstimatedSize() > MethodSizeEstimator.HUGE_METHOD_LIMIT) {
+					throw new AssertionError("Method too large: " + ms);
+				}
+			}
+			assertFalse(containsMessage(getDiagnosticMessages(diagnostics, Diagnostic.Kind.WARNING),
+					CommandLineProcessor.OPTION_DIAGNOSTICS_METHOD_SIZE_LIMIT));
+			checkGolden(formatSizes(sizes));
+
+			//the limits are reported with the configured kind
+			diagnostics = new DiagnosticCollector<>();
+			List<String> limitoptions = new ArrayList<>(FEATURE_OPTIONS);
+			limitoptions.add("-A" + CommandLineProcessor.OPTION_DIAGNOSTICS_METHOD_SIZE_LIMIT + "=1");
+			limitoptions.add("-A" + CommandLineProcessor.OPTION_DIAGNOSTICS_PREFIX_CHECK_LIMIT + "=1");
+			limitoptions.add("-A" + CommandLineProcessor.OPTION_DIAGNOSTICS_KIND + "=error");
+			assertFalse(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir.resolve("limits"), limitoptions,
+					diagnostics));
+			List<String> errors = getDiagnosticMessages(diagnostics, Diagnostic.Kind.ERROR);
+			int abovelimit = 0;
+			for (MethodSizeEstimator.MethodSize ms : sizes) {
+				if (ms.getEstimatedSize() > 1) {
+					++abovelimit;
+				}
+			}
+			assertEquals(countMessages(errors, CommandLineProcessor.OPTION_DIAGNOSTICS_METHOD_SIZE_LIMIT), abovelimit);
+			//the map prefixes of the root command in parse, validate, and complete
+			assertEquals(countMessages(errors, "checks 2 prefixes"), 3);
+			assertFalse(containsMessage(errors, CommandLineProcessor.OPTION_DIAGNOSTICS_CASE_LABEL_LIMIT));
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private static void checkGolden(String actual) throws IOException {
+		if (Boolean.getBoolean("sipka.cmdline.test.golden.update")) {
+			Files.write(GOLDEN_FILE, actual.getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		String expected = new String(Files.readAllBytes(GOLDEN_FILE), StandardCharsets.UTF_8).replace("\r\n",
+				"\n");
+		if (!expected.equals(actual)) {
+			throw new AssertionError("Generated method sizes differ from " + GOLDEN_FILE + ", actual:\n" + actual);
+		}
+	}
+
+	private static String formatSizes(List<MethodSizeEstimator.MethodSize> sizes) {
+		StringBuilder sb = new StringBuilder();
+		for (MethodSizeEstimator.MethodSize ms : sizes) {
+			sb.append(ms.getName());
+			sb.append(' ');
+			sb.append(ms.getEstimatedSize());
+			sb.append(' ');
+			sb.append(ms.getCaseLabelCount());
+			sb.append(' ');
+			sb.append(ms.getPrefixCheckCount());
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static List<String> getDiagnosticMessages(DiagnosticCollector<JavaFileObject> diagnostics,
+			Diagnostic.Kind kind) {
+		List<String> result = new ArrayList<>();
+		for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+			if (d.getKind() == kind) {
+				result.add(d.getMessage(null));
+			}
+		}
+		return result;
+	}
+
+	private static boolean containsMessage(List<String> messages, String part) {
+		return countMessages(messages, part) > 0;
+	}
+
+	private static int countMessages(List<String> messages, String part) {
+		int result = 0;
+		for (String m : messages) {
+			if (m.contains(part)) {
+				++result;
+			}
+		}
+		return result;
+	}
+}
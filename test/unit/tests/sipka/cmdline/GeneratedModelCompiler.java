@@ -0,0 +1,144 @@
+package tests.sipka.cmdline;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import sipka.cmdline.api.Command;
+import sipka.cmdline.processor.CommandLineProcessor;
+import sipka.cmdline.runtime.ParseUtil;
+
+/**
+ * Compiles command models from the test resources with the annotation processor, for tests that examine the generated
+ * code.
+ */
+final class GeneratedModelCompiler {
+	private GeneratedModelCompiler() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Compiles the source file into <code>classes</code>, and writes the generated sources into <code>gen</code> under
+	 * the output directory. The resources written to the <code>HELP_REFERENCE_OUTPUT</code> location are placed in
+	 * <code>resources</code>.
+	 * <p>
+	 * Incremental generation is turned off unless the options specify it.
+	 */
+	public static boolean compile(Path source, Path outdir, List<String> options,
+			DiagnosticCollector<JavaFileObject> diagnostics) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new AssertionError("No system Java compiler available. Run the tests on a JDK.");
+		}
+		Path classdir = outdir.resolve("classes");
+		Path gendir = outdir.resolve("gen");
+		Path resourcedir = outdir.resolve("resources");
+		Files.createDirectories(classdir);
+		Files.createDirectories(gendir);
+		Files.createDirectories(resourcedir);
+		List<String> args = new ArrayList<>();
+		args.add("-classpath");
+		args.add(getClassPathEntry(Command.class) + File.pathSeparator + getClassPathEntry(ParseUtil.class));
+		args.add("-d");
+		args.add(classdir.toString());
+		args.add("-s");
+		args.add(gendir.toString());
+		boolean incrementalset = false;
+		for (String opt : options) {
+			if (opt.startsWith("-A" + CommandLineProcessor.OPTION_INCREMENTAL + "=")) {
+				incrementalset = true;
+			}
+		}
+		if (!incrementalset) {
+			args.add("-A" + CommandLineProcessor.OPTION_INCREMENTAL + "=false");
+		}
+		args.addAll(options);
+		try (StandardJavaFileManager filemanager = compiler.getStandardFileManager(diagnostics, null, null)) {
+			filemanager.setLocation(StandardLocation.locationFor("HELP_REFERENCE_OUTPUT"),
+					Collections.singletonList(resourcedir.toFile()));
+			JavaCompiler.CompilationTask task = compiler.getTask(null, filemanager, diagnostics, args, null,
+					filemanager.getJavaFileObjects(source.toFile()));
+			task.setProcessors(Collections.singletonList(new CommandLineProcessor()));
+			return task.call();
+		}
+	}
+
+	/**
+	 * Creates a class loader for the classes compiled into the output directory.
+	 * <p>
+	 * The runtime classes are loaded by the parent class loader.
+	 */
+	public static URLClassLoader createClassLoader(Path outdir) throws IOException {
+		return new URLClassLoader(new URL[] { outdir.resolve("classes").toUri().toURL() },
+				GeneratedModelCompiler.class.getClassLoader());
+	}
+
+	/**
+	 * Invokes a public static method of the generated class, and rethrows the exceptions thrown by it.
+	 */
+	public static Object invokeStatic(Class<?> c, String name, Class<?>[] parametertypes, Object... args)
+			throws Throwable {
+		Method method = c.getMethod(name, parametertypes);
+		try {
+			return method.invoke(null, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Invokes a public method of a generated object, and rethrows the exceptions thrown by it.
+	 */
+	public static Object invoke(Object obj, String name, Class<?>[] parametertypes, Object... args)
+			throws Throwable {
+		Method method = obj.getClass().getMethod(name, parametertypes);
+		try {
+			return method.invoke(obj, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	public static void deleteRecursively(Path dir) throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+				Files.delete(d);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private static String getClassPathEntry(Class<?> c) {
+		try {
+			return Paths.get(c.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+		} catch (Exception e) {
+			throw new IllegalStateException("Failed to determine class path of: " + c, e);
+		}
+	}
+}
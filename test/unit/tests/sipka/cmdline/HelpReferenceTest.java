@@ -0,0 +1,86 @@
+package tests.sipka.cmdline;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+
+import sipka.cmdline.runtime.HelpReference;
+import sipka.cmdline.runtime.HelpReference.CommandHelp;
+import sipka.cmdline.runtime.HelpReference.ParameterHelp;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class HelpReferenceTest extends SakerTestCase {
+	//generated by the processor for a command with 2 subcommands
+	private static final Path REFERENCE_PATH = Paths.get("test/resources/HelpReferenceTest/reference.bin");
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		testReference(HelpReference.open(REFERENCE_PATH));
+
+		byte[] bytes = Files.readAllBytes(REFERENCE_PATH);
+		ByteBuffer buf = ByteBuffer.allocate(bytes.length + 3);
+		buf.position(3);
+		buf.put(bytes);
+		buf.position(3);
+		testReference(HelpReference.wrap(buf));
+
+		assertException(IllegalArgumentException.class, () -> HelpReference.wrap(ByteBuffer.allocate(4)));
+		assertException(IllegalArgumentException.class,
+				() -> HelpReference.wrap(ByteBuffer.allocate(32).putInt(0, 1)));
+	}
+
+	private static void testReference(HelpReference ref) {
+		assertEquals(ref.getCommandCount(), 3);
+		assertEquals(ref.getCommand(0).getPath(), listOf());
+		assertEquals(ref.getCommand(1).getPath(), listOf("sub0"));
+		assertEquals(ref.getCommand(2).getPath(), listOf("sub1"));
+		assertException(IndexOutOfBoundsException.class, () -> ref.getCommand(3));
+
+		CommandHelp root = ref.findCommand(Collections.emptyList());
+		assertEquals(root.getUsage(), "[parameters] [@command-file] [subcommand] ...");
+		assertEquals(root.getDocComment().trim(), "Synthetic command HelpRefCommand on level 0.");
+
+		CommandHelp sub1 = ref.findCommand(listOf("sub1"));
+		assertEquals(sub1.getPath(), listOf("sub1"));
+		assertEquals(sub1.getUsage(), "sub1 positional0? [parameters] [@command-file]");
+		assertEquals(sub1.getParameters().size(), 7);
+
+		ParameterHelp positional = sub1.getParameters().get(0);
+		assertEquals(positional.getNames(), listOf("positional0"));
+		assertEquals(positional.getFlags(), listOf("positional"));
+		assertEquals(positional.getFormat(), "<string>");
+
+		ParameterHelp intparam = sub1.findParameter("-l1p1");
+		assertEquals(intparam.getNames(), listOf("-l1p1"));
+		assertEquals(intparam.getDocComment().trim(), "Parameter 1 of level 1.");
+		assertEquals(intparam.getFormat(), "<int>");
+		assertEquals(sub1.getParameters().get(2).getNames(), intparam.getNames());
+
+		for (int i = 0; i < ref.getCommandCount(); i++) {
+			CommandHelp cmd = ref.getCommand(i);
+			for (ParameterHelp p : cmd.getParameters()) {
+				for (String name : p.getNames()) {
+					ParameterHelp found = cmd.findParameter(name);
+					if (found != null) {
+						assertEquals(found.getNames(), p.getNames());
+					}
+				}
+			}
+			assertException(IndexOutOfBoundsException.class, () -> cmd.getParameters().get(-1));
+			assertException(IndexOutOfBoundsException.class,
+					() -> cmd.getParameters().get(cmd.getParameters().size()));
+		}
+
+		assertEquals(sub1.findParameter("-L1M0:").getFlags(), listOf("map-parameter"));
+		assertEquals(sub1.findParameter("@!delete!@command-file").getMetaNames(), listOf());
+		assertNull(sub1.findParameter("-l0p1"));
+
+		assertNull(ref.findCommand(listOf("sub2")));
+		assertNull(ref.findCommand(listOf("sub0", "sub0")));
+	}
+}
@@ -0,0 +1,40 @@
+package tests.sipka.cmdline;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+import sipka.cmdline.runtime.HelpResource;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class HelpResourceTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		StringBuilder longtext = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			longtext.append("    -param").append(i).append(" <string>\n");
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HelpResource.write(baos,
+				listOf("Usage:\n    first\n", "", "\u00e1rv\u00edzt\u0171r\u0151\n", longtext.toString()));
+		byte[] bytes = baos.toByteArray();
+		assertTrue(bytes.length < longtext.length() / 4);
+
+		HelpResource resource = HelpResource.wrap(bytes);
+		assertEquals(resource.getCount(), 4);
+		assertEquals(resource.getHelpString(0), "Usage:\n    first\n");
+		assertEquals(resource.getHelpString(1), "");
+		assertEquals(resource.getHelpString(2), "\u00e1rv\u00edzt\u0171r\u0151\n");
+		assertEquals(resource.getHelpString(3), longtext.toString());
+		assertException(IndexOutOfBoundsException.class, () -> resource.getHelpString(4));
+		assertException(IndexOutOfBoundsException.class, () -> resource.getHelpString(-1));
+
+		bytes[3] = 99;
+		assertException(IllegalArgumentException.class, () -> HelpResource.wrap(bytes));
+		assertException(IllegalArgumentException.class, () -> HelpResource.wrap(new byte[3]));
+		assertException(IllegalStateException.class,
+				() -> HelpResource.load(HelpResourceTest.class, "nonexistent.help"));
+	}
+}
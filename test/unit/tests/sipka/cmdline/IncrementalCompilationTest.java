@@ -0,0 +1,112 @@
+package tests.sipka.cmdline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+/**
+ * Compiles a model repeatedly into the same output directory, and checks when the previously generated source is
+ * reused.
+ */
+@SakerTest
+public class IncrementalCompilationTest extends SakerTestCase {
+	private static final Path MODEL_SOURCE = Paths.get("test/resources/IncrementalCompilationTest/IncrementalModel.java");
+	private static final String REUSED_NOTE = "reused previously generated source";
+	private static final String FINGERPRINT_PREFIX = "// sipka.cmdline fingerprint: ";
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			Path source = tempdir.resolve("src/incmodel/IncrementalModel.java");
+			Files.createDirectories(source.getParent());
+			Files.copy(MODEL_SOURCE, source);
+			Path outdir = tempdir.resolve("out");
+			Path generated = outdir.resolve("gen/incmodel/IncrementalModelModelImpl.java");
+			List<String> options = Arrays.asList("-A" + CommandLineProcessor.OPTION_INCREMENTAL + "=true",
+					"-A" + CommandLineProcessor.OPTION_REPORT_STATISTICS + "=true");
+
+			DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+			assertTrue(GeneratedModelCompiler.compile(source, outdir, options, diagnostics));
+			assertFalse(hasNote(diagnostics, REUSED_NOTE));
+			String firstsource = readString(generated);
+			String fingerprint = getLastLine(firstsource);
+			assertTrue(fingerprint.startsWith(FINGERPRINT_PREFIX));
+
+			//unchanged model, the source is reused
+			diagnostics = new DiagnosticCollector<>();
+			assertTrue(GeneratedModelCompiler.compile(source, outdir, options, diagnostics));
+			assertTrue(hasNote(diagnostics, REUSED_NOTE));
+			assertEquals(readString(generated), firstsource);
+
+			//the doc comment of a subcommand parameter is part of the help, the source is generated again
+			String modelsource = readString(source);
+			Files.write(source, modelsource.replace("The output directory.", "The directory to write the output to.")
+					.getBytes(StandardCharsets.UTF_8));
+			diagnostics = new DiagnosticCollector<>();
+			assertTrue(GeneratedModelCompiler.compile(source, outdir, options, diagnostics));
+			assertFalse(hasNote(diagnostics, REUSED_NOTE));
+			String changedsource = readString(generated);
+			assertTrue(changedsource.contains("The directory to write the output to."));
+			assertFalse(getLastLine(changedsource).equals(fingerprint));
+
+			//sources generated with errors don't have a fingerprint, so the errors are reported again
+			List<String> erroroptions = new ArrayList<>(options);
+			erroroptions.add("-A" + CommandLineProcessor.OPTION_HELP_LINE_LENGTH_ERROR_LIMIT + "=10");
+			diagnostics = new DiagnosticCollector<>();
+			assertFalse(GeneratedModelCompiler.compile(source, outdir, erroroptions, diagnostics));
+			int errorcount = countErrors(diagnostics);
+			assertTrue(errorcount > 0);
+			assertFalse(getLastLine(readString(generated)).startsWith(FINGERPRINT_PREFIX));
+
+			diagnostics = new DiagnosticCollector<>();
+			assertFalse(GeneratedModelCompiler.compile(source, outdir, erroroptions, diagnostics));
+			assertEquals(countErrors(diagnostics), errorcount);
+			assertFalse(hasNote(diagnostics, REUSED_NOTE));
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private static String readString(Path path) throws IOException {
+		return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+	}
+
+	private static String getLastLine(String contents) {
+		String trimmed = contents.replaceAll("[\\r\\n]+$", "");
+		return trimmed.substring(Math.max(trimmed.lastIndexOf('\n'), trimmed.lastIndexOf('\r')) + 1);
+	}
+
+	private static boolean hasNote(DiagnosticCollector<JavaFileObject> diagnostics, String part) {
+		for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+			if (d.getKind() == Diagnostic.Kind.NOTE && d.getMessage(null).contains(part)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int countErrors(DiagnosticCollector<JavaFileObject> diagnostics) {
+		int result = 0;
+		for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+			if (d.getKind() == Diagnostic.Kind.ERROR) {
+				++result;
+			}
+		}
+		return result;
+	}
+}
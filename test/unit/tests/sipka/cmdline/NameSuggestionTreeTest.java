@@ -0,0 +1,112 @@
+package tests.sipka.cmdline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import sipka.cmdline.runtime.NameSuggestionTree;
+import sipka.cmdline.runtime.UnrecognizedArgumentException;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class NameSuggestionTreeTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		List<String> names = listOf("-verbose", "-v", "-threads", "-D", "build", "b", "run", "cat", "paths", "-v");
+		NameSuggestionTree tree = decode(names);
+		assertEquals(tree.size(), 9);
+		assertEquals(tree.suggest("-verbsoe"), listOf("-verbose"));
+		assertEquals(tree.suggest("bulid"), listOf("build"));
+		assertEquals(tree.suggest("pahts"), listOf("paths"));
+		assertEquals(tree.suggest("-thread"), listOf("-threads"));
+		assertEquals(tree.suggest("zzzzzzzz"), listOf());
+		//closest first, then alphabetically
+		assertEquals(tree.suggest("-x", 1, 10), listOf("-D", "-v"));
+		assertEquals(tree.suggest("ru", 2, 10), listOf("run", "-D", "-v", "b"));
+		assertEquals(tree.suggest("ru", 2, 2), listOf("run", "-D"));
+		assertEquals(tree.suggest("run", 3, 0), listOf());
+
+		assertEquals(NameSuggestionTree.EMPTY.suggest("a"), listOf());
+		NameSuggestionTree[] decoded = NameSuggestionTree.decodeTrees(
+				NameSuggestionTree.encodeTree(listOf("-a", "-b")) + "\n" + NameSuggestionTree.encodeTree(listOf()),
+				"\n");
+		assertEquals(decoded.length, 2);
+		assertEquals(decoded[0].suggest("-c"), listOf("-a", "-b"));
+		assertEquals(decoded[1].size(), 0);
+		assertEquals(NameSuggestionTree.decodeTrees().length, 0);
+		assertException(IllegalArgumentException.class, () -> NameSuggestionTree.decodeTrees("\0\1a\0\n"));
+		assertException(IllegalArgumentException.class, () -> NameSuggestionTree.decodeTrees("\0\0a"));
+		assertException(IllegalArgumentException.class, () -> NameSuggestionTree.encodeTree(listOf("a\nb")));
+
+		assertSameAsLinearSearch();
+
+		UnrecognizedArgumentException e = new UnrecognizedArgumentException("Unrecognized argument", "bulid",
+				tree.suggest("bulid"));
+		assertEquals(e.getSuggestions(), listOf("build"));
+		assertEquals(e.getParameterName(), "bulid");
+		assertTrue(e.getMessage().contains("did you mean: build?"));
+		assertEquals(new UnrecognizedArgumentException("Unrecognized argument", "x").getSuggestions(), listOf());
+	}
+
+	private static void assertSameAsLinearSearch() {
+		Random random = new Random(12345);
+		TreeSet<String> names = new TreeSet<>();
+		while (names.size() < 500) {
+			names.add(randomWord(random));
+		}
+		NameSuggestionTree tree = decode(names);
+		for (int i = 0; i < 500; i++) {
+			String arg = randomWord(random);
+			for (int maxdist = 0; maxdist <= 3; maxdist++) {
+				List<String> expected = new ArrayList<>();
+				for (int d = 0; d <= maxdist; d++) {
+					for (String n : names) {
+						if (levenshtein(arg, n) == d) {
+							expected.add(n);
+						}
+					}
+				}
+				assertEquals(tree.suggest(arg, maxdist, Integer.MAX_VALUE), expected);
+			}
+		}
+	}
+
+	private static NameSuggestionTree decode(Iterable<String> names) {
+		List<String> list = new ArrayList<>();
+		names.forEach(list::add);
+		NameSuggestionTree[] trees = NameSuggestionTree.decodeTrees(NameSuggestionTree.encodeTree(list) + "\n");
+		assertEquals(trees.length, 1);
+		return trees[0];
+	}
+
+	private static String randomWord(Random random) {
+		int len = 1 + random.nextInt(7);
+		StringBuilder sb = new StringBuilder();
+		if (random.nextBoolean()) {
+			sb.append('-');
+		}
+		for (int i = 0; i < len; i++) {
+			sb.append((char) ('a' + random.nextInt(5)));
+		}
+		return sb.toString();
+	}
+
+	private static int levenshtein(String a, String b) {
+		int[][] d = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++) {
+			for (int j = 0; j <= b.length(); j++) {
+				if (i == 0 || j == 0) {
+					d[i][j] = i + j;
+				} else {
+					d[i][j] = Math.min(Math.min(d[i - 1][j], d[i][j - 1]) + 1,
+							d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+				}
+			}
+		}
+		return d[a.length()][b.length()];
+	}
+}
@@ -0,0 +1,130 @@
+package tests.sipka.cmdline;
+
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import sipka.cmdline.runtime.InvalidArgumentFormatException;
+import sipka.cmdline.runtime.InvalidArgumentValueException;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class ParseAllTest extends SakerTestCase {
+	private static final Path RESOURCES = Paths.get("test/resources/ParseAllTest");
+	private static final List<String> PARSE_ALL_OPTIONS = Collections
+			.singletonList("-A" + CommandLineProcessor.OPTION_GENERATE_PARSE_ALL + "=true");
+
+	private Class<?> modelImpl;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(RESOURCES.resolve("ParseAllModel.java"), tempdir.resolve("model"),
+					PARSE_ALL_OPTIONS, new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir.resolve("model"))) {
+				modelImpl = Class.forName("parseallmodel.ParseAllModelModelImpl", false, cl);
+				testParseAll();
+			}
+			testStreamedModel(tempdir);
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private void testParseAll() throws Throwable {
+		List<List<String>> arguments = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			arguments.add(Arrays.asList("-n", Integer.toString(i), "-mode", i % 2 == 0 ? "fast" : "SLOW",
+					"@test/resources/CommandFileTest/dual.txt"));
+		}
+		List<String> expected = new ArrayList<>();
+		for (List<String> args : arguments) {
+			expected.add(GeneratedModelCompiler
+					.invokeStatic(modelImpl, "parse", new Class<?>[] { Iterator.class }, args.iterator()).toString());
+		}
+		assertEquals(expected.get(3), "3,SLOW,[one, two]");
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int i = 0; i < 5; i++) {
+				assertEquals(parseAll(arguments, executor), expected);
+			}
+			//the common pool
+			assertEquals(toStrings((List<?>) GeneratedModelCompiler.invokeStatic(modelImpl, "parseAll",
+					new Class<?>[] { List.class }, arguments)), expected);
+			//single threaded executor
+			assertEquals(parseAll(arguments, Runnable::run), expected);
+
+			assertEquals(parseAll(Collections.<List<String>> emptyList(), executor), listOf());
+			assertEquals(parseAll(listOf(listOf("a")), executor), listOf("0,null,[a]"));
+
+			List<?> results = (List<?>) GeneratedModelCompiler.invokeStatic(modelImpl, "parseAll",
+					new Class<?>[] { List.class, Executor.class }, arguments, executor);
+			assertException(UnsupportedOperationException.class, () -> results.remove(0));
+
+			//the failure of the first failing argument list is thrown
+			List<List<String>> failing = new ArrayList<>(arguments);
+			failing.set(9000, Arrays.asList("-mode", "x"));
+			failing.set(5000, Arrays.asList("-n", "x"));
+			assertException(InvalidArgumentFormatException.class, () -> parseAll(failing, executor));
+			failing.set(1000, Arrays.asList("-mode", "x"));
+			assertException(InvalidArgumentValueException.class, () -> parseAll(failing, executor));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void testStreamedModel(Path tempdir) throws Throwable {
+		Path source = RESOURCES.resolve("StreamedParseAllModel.java");
+		//not generated by default
+		assertTrue(GeneratedModelCompiler.compile(source, tempdir.resolve("streamed"), Collections.emptyList(),
+				new DiagnosticCollector<JavaFileObject>()));
+		try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir.resolve("streamed"))) {
+			Class<?> c = Class.forName("parseallmodel.StreamedParseAllModelModelImpl", false, cl);
+			assertException(NoSuchMethodException.class, () -> c.getMethod("parseAll", List.class));
+		}
+
+		//the results would hold open streamed arguments
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		assertFalse(GeneratedModelCompiler.compile(source, tempdir.resolve("streamedparseall"), PARSE_ALL_OPTIONS,
+				diagnostics));
+		boolean found = false;
+		for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+			if (d.getKind() == Diagnostic.Kind.ERROR
+					&& d.getMessage(null).contains(CommandLineProcessor.OPTION_GENERATE_PARSE_ALL)) {
+				found = true;
+			}
+		}
+		assertTrue(found);
+	}
+
+	private List<String> parseAll(List<? extends List<String>> arguments, Executor executor) throws Throwable {
+		return toStrings((List<?>) GeneratedModelCompiler.invokeStatic(modelImpl, "parseAll",
+				new Class<?>[] { List.class, Executor.class }, arguments, executor));
+	}
+
+	private static List<String> toStrings(List<?> results) {
+		List<String> strings = new ArrayList<>();
+		for (Object o : results) {
+			strings.add(o.toString());
+		}
+		return strings;
+	}
+}
@@ -0,0 +1,166 @@
+package tests.sipka.cmdline;
+
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.runtime.ArgumentException;
+import sipka.cmdline.runtime.ArgumentSink;
+import sipka.cmdline.runtime.PipelinedParser;
+import sipka.cmdline.runtime.UnrecognizedArgumentException;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class PipelinedParserTest extends SakerTestCase {
+	private static final Path MODEL_SOURCE = Paths.get("test/resources/PipelinedParserTest/PipelineModel.java");
+
+	private Class<?> modelImpl;
+	private Class<?> model;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		{
+			ArgumentSink<String> sink = new ArgumentSink<>();
+			sink.finish();
+			assertFalse(sink.hasNext());
+		}
+		{
+			//the parser is blocked by the small capacity until the values are taken
+			ArgumentSink<Integer> sink = new ArgumentSink<>(2);
+			List<Integer> expected = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				expected.add(i);
+			}
+			try (PipelinedParser pipeline = new PipelinedParser(() -> {
+				for (Integer i : expected) {
+					sink.add(i);
+				}
+			}, sink)) {
+				pipeline.start();
+				assertEquals(toList(sink), expected);
+			}
+		}
+		{
+			ArgumentSink<String> sink = new ArgumentSink<>();
+			try (PipelinedParser pipeline = new PipelinedParser(() -> {
+				sink.add("first");
+				throw new UnrecognizedArgumentException("Unrecognized argument", "-x");
+			}, sink)) {
+				pipeline.start();
+				assertEquals(sink.next(), "first");
+				assertException(UnrecognizedArgumentException.class, sink::hasNext);
+				assertFalse(sink.hasNext());
+			}
+		}
+		{
+			//the failure is rethrown on close if the command didn't take the values
+			ArgumentSink<String> sink = new ArgumentSink<>();
+			PipelinedParser pipeline = new PipelinedParser(() -> {
+				throw new UnrecognizedArgumentException("Unrecognized argument", "-x");
+			}, sink);
+			pipeline.start();
+			assertException(UnrecognizedArgumentException.class, pipeline::close);
+		}
+		{
+			//the command returns early, the blocked parser is stopped
+			ArgumentSink<Integer> sink = new ArgumentSink<>(1);
+			try (PipelinedParser pipeline = new PipelinedParser(() -> {
+				for (int i = 0; i < 1000; i++) {
+					sink.add(i);
+				}
+			}, sink)) {
+				pipeline.start();
+				assertEquals(sink.next(), 0);
+			}
+			assertFalse(sink.hasNext());
+		}
+
+		testGeneratedModel();
+	}
+
+	private void testGeneratedModel() throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir, Collections.emptyList(),
+					new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir)) {
+				model = Class.forName("pipemodel.PipelineModel", false, cl);
+				modelImpl = Class.forName("pipemodel.PipelineModelModelImpl", false, cl);
+				runGeneratedTests(tempdir);
+			}
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private void runGeneratedTests(Path tempdir) throws Throwable {
+		call("pipe", "-mode", "FAST", "-mode", "safe", "-mode", "FAST");
+		assertEquals(getConsumed(), listOf("FAST", "SAFE", "FAST"));
+
+		//no pipelined values, the sink is finished by the parser
+		call("pipe", "-limit", "5");
+		assertEquals(getConsumed(), listOf());
+
+		//the command returns early, the blocked parser is stopped and the remaining arguments are closed
+		Path deletefile = tempdir.resolve("delete.txt");
+		Files.write(deletefile, listOf("-mode", "SAFE"), StandardCharsets.UTF_8);
+		List<String> args = listOf("pipe", "-limit", "1");
+		for (int i = 0; i < 100; i++) {
+			args.add("-mode");
+			args.add("FAST");
+		}
+		args.add("@!delete!@" + deletefile);
+		call(args.toArray(new String[args.size()]));
+		assertEquals(getConsumed(), listOf("FAST"));
+		assertFalse(Files.exists(deletefile));
+
+		//the parser failures are thrown to the command when it takes the next value
+		assertException(UnrecognizedArgumentException.class, () -> call("pipe", "-mode", "FAST", "-x"));
+		assertEquals(getConsumed(), listOf("FAST"));
+		assertException(ArgumentException.class, () -> call("pipe", "-mode", "SAFE", "-mode", "nope"));
+		assertEquals(getConsumed(), listOf("SAFE"));
+		//the parameters before the first value are parsed on the caller thread
+		assertException(UnrecognizedArgumentException.class, () -> parse("pipe", "-x", "-mode", "FAST"));
+		assertEquals(getConsumed(), listOf());
+	}
+
+	private Object parse(String... args) throws Throwable {
+		return GeneratedModelCompiler.invokeStatic(modelImpl, "parse", new Class<?>[] { Iterator.class },
+				listOf(args).iterator());
+	}
+
+	private void call(String... args) throws Throwable {
+		Object parsed = parse(args);
+		GeneratedModelCompiler.invoke(parsed, "callCommand", new Class<?>[0]);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> getConsumed() throws Exception {
+		List<Object> consumed = (List<Object>) model.getField("consumed").get(null);
+		List<String> result = new ArrayList<>();
+		for (Object o : consumed) {
+			result.add(o.toString());
+		}
+		consumed.clear();
+		return result;
+	}
+
+	private static <T> List<T> toList(ArgumentSink<T> sink) {
+		List<T> result = new ArrayList<>();
+		while (sink.hasNext()) {
+			result.add(sink.next());
+		}
+		return result;
+	}
+}
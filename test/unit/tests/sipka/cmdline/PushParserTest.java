@@ -0,0 +1,269 @@
+package tests.sipka.cmdline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import sipka.cmdline.runtime.ArgumentException;
+import sipka.cmdline.runtime.InvalidArgumentFormatException;
+import sipka.cmdline.runtime.MissingArgumentException;
+import sipka.cmdline.runtime.PushParser;
+import sipka.cmdline.runtime.UnrecognizedArgumentException;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class PushParserTest extends SakerTestCase {
+	private static final Path RESOURCES = Paths.get("test/resources/PushParserTest");
+	private static final List<String> PUSH_PARSER_OPTIONS = Collections
+			.singletonList("-A" + CommandLineProcessor.OPTION_GENERATE_PUSH_PARSER + "=true");
+
+	private Class<?> model;
+	private Class<?> modelImpl;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(RESOURCES.resolve("PushModel.java"), tempdir.resolve("model"),
+					PUSH_PARSER_OPTIONS, new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir.resolve("model"))) {
+				model = Class.forName("pushmodel.PushModel", false, cl);
+				modelImpl = Class.forName("pushmodel.PushModelModelImpl", false, cl);
+				testSameAsParse(tempdir);
+				testFeedErrors();
+				testClose();
+			}
+
+			assertTrue(GeneratedModelCompiler.compile(Paths.get("test/resources/AbbreviationTest/AbbreviationModel.java"),
+					tempdir.resolve("abbreviations"), PUSH_PARSER_OPTIONS, new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir.resolve("abbreviations"))) {
+				model = Class.forName("abbrevmodel.AbbreviationModel", false, cl);
+				modelImpl = Class.forName("abbrevmodel.AbbreviationModelModelImpl", false, cl);
+				testAbbreviations();
+			}
+
+			testStreamedModel(tempdir);
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private void testSameAsParse(Path tempdir) throws Throwable {
+		Path commandfile = tempdir.resolve("args.txt");
+		Files.write(commandfile, listOf("-output", "o", "-range", "1"));
+
+		assertSameAsParse();
+		assertSameAsParse("-output", "o");
+		assertSameAsParse("-v", "-Dk=v", "-Da=b", "-mode", "safe", "-f", "x", "-output", "o", "-threads", "4",
+				"-range", "1", "5", "-level", "-I", "a", "-I", "b");
+		assertSameAsParse("build", "-output", "o");
+		assertSameAsParse("-output", "o", "-level", "3");
+		assertSameAsParse("-level", "-output", "o");
+		assertSameAsParse("-output", "o", "-level");
+		assertSameAsParse("-output", "o", "-level", "99999999999");
+		assertSameAsParse("-output");
+		assertSameAsParse("-output", "o", "-range", "1");
+		assertSameAsParse("-output", "o", "-range", "1", "-output");
+		assertSameAsParse("-mode", "bad");
+		assertSameAsParse("-threads", "x");
+		assertSameAsParse("-Dk");
+		assertSameAsParse("-output", "o", "unknown");
+		assertSameAsParse("-output", "o", "-outpt");
+		assertSameAsParse("@" + commandfile, "2");
+		assertSameAsParse("@" + commandfile);
+
+		assertSameAsParse("copy");
+		assertSameAsParse("copy", "a");
+		assertSameAsParse("copy", "a", "b");
+		assertSameAsParse("copy", "a", "-force", "b");
+		assertSameAsParse("copy", "-force", "b");
+		assertSameAsParse("copy", "a", "b", "c");
+		assertSameAsParse("copy", "a", "b", "-force");
+		assertSameAsParse("copy", "a", "verify", "-hash", "h");
+		assertSameAsParse("copy", "a", "verify");
+		assertSameAsParse("copy", "verify", "-hash", "h");
+		assertSameAsParse("-v", "copy", "a", "-force", "verify", "-hash", "h", "x");
+
+		assertSameAsParse("help");
+		assertSameAsParse("help", "copy");
+		assertSameAsParse("help", "copy", "verify", "-x");
+		assertSameAsParse("-v", "help");
+	}
+
+	private void testFeedErrors() throws Throwable {
+		//the errors are reported by the argument that caused them
+		try (PushParser<?> parser = pushParser()) {
+			parser.feed("-threads");
+			assertException(InvalidArgumentFormatException.class, () -> parser.feed("x"));
+			assertException(IllegalStateException.class, () -> parser.feed("-output"));
+			assertException(IllegalStateException.class, () -> parser.finish());
+		}
+		try (PushParser<?> parser = pushParser()) {
+			parser.feed("-output");
+			parser.feed("o");
+			UnrecognizedArgumentException e = assertException(UnrecognizedArgumentException.class,
+					() -> parser.feed("-outpt"));
+			assertEquals(e.getSuggestions(), listOf("-output"));
+		}
+		try (PushParser<?> parser = pushParser()) {
+			parser.feed("copy");
+			parser.feed("a");
+			parser.feed("b");
+			assertException(UnrecognizedArgumentException.class, () -> parser.feed("c"));
+		}
+
+		//the converter is waiting for the second value
+		try (PushParser<?> parser = pushParser()) {
+			parser.feed("-output");
+			parser.feed("o");
+			parser.feed("-range");
+			parser.feed("1");
+			assertException(MissingArgumentException.class, () -> parser.finish());
+		}
+		//required parameters are checked when finished
+		try (PushParser<?> parser = pushParser()) {
+			parser.feed("copy");
+			assertException(MissingArgumentException.class, () -> parser.finish());
+		}
+
+		try (PushParser<?> parser = pushParser()) {
+			assertException(NullPointerException.class, () -> parser.feed(null));
+			parser.feed("-output");
+			parser.feed("o");
+			parser.finish();
+			assertException(IllegalStateException.class, () -> parser.finish());
+		}
+	}
+
+	private void testClose() throws Throwable {
+		PushParser<?> parser = pushParser();
+		parser.feed("-f");
+		parser.feed("a");
+		assertFalse(isFilesClosed());
+		parser.close();
+		assertTrue(isFilesClosed());
+		assertException(IllegalStateException.class, () -> parser.feed("-output"));
+		assertException(IllegalStateException.class, () -> parser.finish());
+		parser.close();
+
+		//closed when the parsing fails
+		try (PushParser<?> failing = pushParser()) {
+			failing.feed("-f");
+			failing.feed("a");
+			assertException(UnrecognizedArgumentException.class, () -> failing.feed("-x"));
+			assertTrue(isFilesClosed());
+		}
+
+		//the command closes them after a successful parse
+		try (PushParser<?> finished = pushParser()) {
+			finished.feed("-f");
+			finished.feed("a");
+			finished.feed("-output");
+			finished.feed("o");
+			finished.finish();
+		}
+		assertFalse(isFilesClosed());
+	}
+
+	private void testAbbreviations() throws Throwable {
+		assertSameAsParse("-verb", "-tr", "bu", "-output", "o", "-th", "2");
+		assertSameAsParse("b", "-output", "o");
+		assertSameAsParse("bu");
+		assertSameAsParse("-v", "-th", "2");
+		assertSameAsParse("-outputd", "d", "-output", "o");
+		assertSameAsParse("-t");
+		assertSameAsParse("-out", "o");
+		assertSameAsParse("-output", "o", "-x");
+		assertSameAsParse("co", "a", "b");
+		assertSameAsParse("copy", "a", "-force", "-format", "f", "b");
+		assertSameAsParse("copy", "-fo", "b");
+		assertSameAsParse("copy", "a", "-forc");
+		assertSameAsParse("copy", "a", "-f");
+		assertSameAsParse("copy", "a", "-forc", "b");
+	}
+
+	private static void testStreamedModel(Path tempdir) throws Throwable {
+		//the remaining arguments can't be handed to the command before they are received
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		assertFalse(GeneratedModelCompiler.compile(Paths.get("test/resources/ParseAllTest/StreamedParseAllModel.java"),
+				tempdir.resolve("streamed"), PUSH_PARSER_OPTIONS, diagnostics));
+		boolean found = false;
+		for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+			if (d.getKind() == Diagnostic.Kind.ERROR
+					&& d.getMessage(null).contains(CommandLineProcessor.OPTION_GENERATE_PUSH_PARSER)) {
+				found = true;
+			}
+		}
+		assertTrue(found);
+	}
+
+	private void assertSameAsParse(String... args) throws Throwable {
+		String expected;
+		try {
+			expected = call(GeneratedModelCompiler.invokeStatic(modelImpl, "parse", new Class<?>[] { Iterator.class },
+					listOf(args).iterator()));
+		} catch (ArgumentException e) {
+			expected = describe(e);
+		}
+		String actual;
+		try (PushParser<?> parser = pushParser()) {
+			for (String a : args) {
+				parser.feed(a);
+			}
+			actual = call(parser.finish());
+		} catch (ArgumentException e) {
+			actual = describe(e);
+		}
+		assertEquals(actual, expected, listOf(args).toString());
+	}
+
+	private PushParser<?> pushParser() throws Throwable {
+		return (PushParser<?>) GeneratedModelCompiler.invokeStatic(modelImpl, "pushParser", new Class<?>[0]);
+	}
+
+	private boolean isFilesClosed() throws Exception {
+		Object command = model.getField("last").get(null);
+		Object files = command.getClass().getField("files").get(command);
+		return files.getClass().getField("closed").getBoolean(files);
+	}
+
+	@SuppressWarnings("unchecked")
+	private String call(Object command) throws Throwable {
+		List<String> called = (List<String>) model.getField("called").get(null);
+		called.clear();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PrintStream prevout = System.out;
+		System.setOut(new PrintStream(out, true, "UTF-8"));
+		try {
+			GeneratedModelCompiler.invoke(command, "callCommand", new Class<?>[0]);
+		} finally {
+			System.setOut(prevout);
+		}
+		return called + new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static String describe(ArgumentException e) {
+		String result = e.getClass().getName() + ": " + e.getMessage() + " " + e.getParameterName();
+		if (e instanceof UnrecognizedArgumentException) {
+			result += " " + ((UnrecognizedArgumentException) e).getSuggestions();
+		}
+		if (e.getCause() != null) {
+			result += " " + e.getCause().getClass().getName();
+		}
+		return result;
+	}
+}
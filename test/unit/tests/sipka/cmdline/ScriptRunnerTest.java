@@ -0,0 +1,94 @@
+package tests.sipka.cmdline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import sipka.cmdline.runtime.ScriptExecutionException;
+import sipka.cmdline.runtime.ScriptRunner;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class ScriptRunnerTest extends SakerTestCase {
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		assertEquals(ScriptRunner.tokenize(""), listOf());
+		assertEquals(ScriptRunner.tokenize("  a  b\tc "), listOf("a", "b", "c"));
+		assertEquals(ScriptRunner.tokenize("\"a b\" 'c d' e\\ f"), listOf("a b", "c d", "e f"));
+		assertEquals(ScriptRunner.tokenize("\"\" ''"), listOf("", ""));
+		assertEquals(ScriptRunner.tokenize("x\"y z\"w"), listOf("xy zw"));
+		assertEquals(ScriptRunner.tokenize("'a\\b' \"a\\\"b\""), listOf("a\\b", "a\"b"));
+		assertEquals(ScriptRunner.tokenize("-D@x=y @file.txt"), listOf("-D@x=y", "@file.txt"));
+		assertException(IllegalArgumentException.class, () -> ScriptRunner.tokenize("\"a"));
+		assertException(IllegalArgumentException.class, () -> ScriptRunner.tokenize("a\\"));
+
+		Path script = Files.createTempFile("sipka.cmdline.test-", ".txt");
+		try {
+			List<String> events = Collections.synchronizedList(new ArrayList<>());
+			ScriptRunner.Invocation recorder = args -> {
+				events.add(String.join(" ", args));
+			};
+
+			write(script, "# comment", "a 1", "", "a 2", "a 3", "---", "b 1", "b 2", " --- ", "c 1");
+			ScriptRunner.run(script, 4, recorder);
+			assertEquals(events.size(), 6);
+			//the barriers order the lines
+			assertEquals(new ArrayList<>(events.subList(0, 3)).stream().sorted().toArray(),
+					new String[] { "a 1", "a 2", "a 3" });
+			assertEquals(new ArrayList<>(events.subList(3, 5)).stream().sorted().toArray(),
+					new String[] { "b 1", "b 2" });
+			assertEquals(events.get(5), "c 1");
+
+			events.clear();
+			write(script, "ok", "fail 2", "fail 3", "ok", "---", "never");
+			ScriptExecutionException exc = assertException(ScriptExecutionException.class,
+					() -> ScriptRunner.run(script, 2, args -> {
+						events.add(args.get(0));
+						if (args.get(0).equals("fail")) {
+							throw new IllegalStateException(args.get(1));
+						}
+					}));
+			assertEquals(exc.getLineNumber(), 2);
+			assertEquals(exc.getCause().getMessage(), "2");
+			assertEquals(exc.getSuppressed().length, 1);
+			assertFalse(events.contains("never"));
+			assertEquals(events.size(), 4);
+
+			write(script, "a", "\"unterminated");
+			exc = assertException(ScriptExecutionException.class, () -> ScriptRunner.run(script, 1, recorder));
+			assertEquals(exc.getLineNumber(), 2);
+
+			assertException(IllegalArgumentException.class, () -> ScriptRunner.run(script, 0, recorder));
+
+			//the started lines are finished before the read failure is thrown
+			events.clear();
+			StringBuilder sb = new StringBuilder("slow\n");
+			while (sb.length() < 64 * 1024) {
+				sb.append("# padding so the malformed input is decoded after the first line started\n");
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+			out.write(0xFF);
+			Files.write(script, out.toByteArray());
+			assertException(IOException.class, () -> ScriptRunner.run(script, 2, args -> {
+				Thread.sleep(200);
+				events.add(args.get(0));
+			}));
+			assertEquals(events, listOf("slow"));
+		} finally {
+			Files.deleteIfExists(script);
+		}
+	}
+
+	private static void write(Path script, String... lines) throws Exception {
+		Files.write(script, listOf(lines), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,58 @@
+package tests.sipka.cmdline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+/**
+ * Compares the shell completion scripts generated for a fixed model to the recorded ones.
+ * <p>
+ * If the scripts change, update the recorded files by running the test with the
+ * <code>sipka.cmdline.test.golden.update</code> system property set to <code>true</code>, and review the difference.
+ */
+@SakerTest
+public class ShellCompletionScriptsTest extends SakerTestCase {
+	private static final Path RESOURCES = Paths.get("test/resources/ShellCompletionScriptsTest");
+	private static final Path MODEL_SOURCE = RESOURCES.resolve("ScriptModel.java");
+	private static final String SCRIPT_NAME = "scriptmodel.ScriptModelModelImpl";
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir,
+					Arrays.asList("-A" + CommandLineProcessor.OPTION_GENERATE_COMPLETION_SCRIPTS + "=bash,zsh,fish",
+							"-A" + CommandLineProcessor.OPTION_COMPLETION_SCRIPTS_COMMAND + "=script-model"),
+					new DiagnosticCollector<JavaFileObject>()));
+			for (String shell : Arrays.asList("bash", "zsh", "fish")) {
+				Path script = tempdir.resolve("resources").resolve(SCRIPT_NAME + "." + shell);
+				checkGolden(RESOURCES.resolve(SCRIPT_NAME + "." + shell),
+						new String(Files.readAllBytes(script), StandardCharsets.UTF_8).replace("\r\n", "\n"));
+			}
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private static void checkGolden(Path goldenfile, String actual) throws IOException {
+		if (Boolean.getBoolean("sipka.cmdline.test.golden.update")) {
+			Files.write(goldenfile, actual.getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		String expected = new String(Files.readAllBytes(goldenfile), StandardCharsets.UTF_8).replace("\r\n", "\n");
+		if (!expected.equals(actual)) {
+			throw new AssertionError("Generated completion script differs from " + goldenfile + ", actual:\n" + actual);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package tests.sipka.cmdline;
+
+import java.io.EOFException;
+import java.io.UncheckedIOException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.runtime.InvalidArgumentFormatException;
+import sipka.cmdline.runtime.SpillingStringCollection;
+import sipka.cmdline.runtime.UnrecognizedArgumentException;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class SpillingStringCollectionTest extends SakerTestCase {
+	private static final Path MODEL_SOURCE = Paths.get("test/resources/SpillingStringCollectionTest/SpillModel.java");
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		assertException(IllegalArgumentException.class, () -> new SpillingStringCollection(-1));
+
+		Path dir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			List<String> expected = new ArrayList<>();
+			expected.add("");
+			expected.add("\u00e1rv\u00edzt\u0171r\u0151 \ud83d\ude00");
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 300; i++) {
+				sb.append('x');
+			}
+			//longer than a single byte length prefix
+			expected.add(sb.toString());
+			for (int i = 0; i < 1000; i++) {
+				expected.add("/path/to/file" + i);
+			}
+
+			try (SpillingStringCollection coll = new SpillingStringCollection(1024, dir)) {
+				coll.add("first");
+				assertFalse(coll.isSpilled());
+				assertEquals(toList(coll), listOf("first"));
+				assertEquals(fileCount(dir), 0L);
+
+				coll.clear();
+				coll.addAll(expected);
+				assertTrue(coll.isSpilled());
+				assertEquals(coll.size(), expected.size());
+				assertEquals(fileCount(dir), 1L);
+				assertEquals(toList(coll), expected);
+
+				//the iterator only returns the elements that were present when it was created
+				Iterator<String> it = coll.iterator();
+				coll.add("after");
+				List<String> iterated = new ArrayList<>();
+				it.forEachRemaining(iterated::add);
+				assertEquals(iterated, expected);
+				expected.add("after");
+				assertEquals(toList(coll), expected);
+
+				((AutoCloseable) coll.iterator()).close();
+			}
+			assertEquals(fileCount(dir), 0L);
+
+			try (SpillingStringCollection coll = new SpillingStringCollection(0, dir)) {
+				assertFalse(coll.iterator().hasNext());
+				coll.add("a");
+				assertTrue(coll.isSpilled());
+				assertEquals(toList(coll), listOf("a"));
+				coll.clear();
+				assertFalse(coll.isSpilled());
+				assertEquals(coll.size(), 0);
+				assertEquals(fileCount(dir), 0L);
+			}
+
+			try (SpillingStringCollection coll = new SpillingStringCollection(0, dir)) {
+				coll.add("a");
+				((AutoCloseable) coll.iterator()).close();
+				//a length prefix that overflows into the sign bit
+				try (Stream<Path> files = Files.list(dir)) {
+					Files.write(files.findFirst().get(),
+							new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F });
+				}
+				UncheckedIOException e = assertException(UncheckedIOException.class, () -> coll.iterator().next());
+				assertEquals(e.getCause().getClass(), EOFException.class);
+			}
+			assertEquals(fileCount(dir), 0L);
+
+			testGeneratedModel(dir);
+		} finally {
+			Files.deleteIfExists(dir);
+		}
+	}
+
+	private void testGeneratedModel(Path dir) throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir, Collections.emptyList(),
+					new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir)) {
+				Class<?> model = Class.forName("spillmodel.SpillModel", false, cl);
+				Class<?> modelimpl = Class.forName("spillmodel.SpillModelModelImpl", false, cl);
+				model.getField("directory").set(null, dir);
+
+				//the collections are closed when the parsing fails after they spilled
+				assertException(UnrecognizedArgumentException.class, () -> parse(modelimpl, "-f", "a", "-x"));
+				assertFalse(getFiles(model, "last").isSpilled());
+				assertEquals(fileCount(dir), 0L);
+				assertException(InvalidArgumentFormatException.class,
+						() -> parse(modelimpl, "-f", "a", "run", "-g", "b", "-n", "x"));
+				assertFalse(getFiles(model, "last").isSpilled());
+				assertFalse(getFiles(model, "lastRun").isSpilled());
+				assertEquals(fileCount(dir), 0L);
+
+				//the command closes them after a successful parse
+				parse(modelimpl, "-f", "a", "run", "-g", "b");
+				assertEquals(fileCount(dir), 2L);
+				getFiles(model, "last").close();
+				getFiles(model, "lastRun").close();
+				assertEquals(fileCount(dir), 0L);
+			}
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private static Object parse(Class<?> modelimpl, String... args) throws Throwable {
+		return GeneratedModelCompiler.invokeStatic(modelimpl, "parse", new Class<?>[] { Iterator.class },
+				listOf(args).iterator());
+	}
+
+	private static SpillingStringCollection getFiles(Class<?> model, String commandfield) throws Exception {
+		Object command = model.getField(commandfield).get(null);
+		return (SpillingStringCollection) command.getClass().getField("files").get(command);
+	}
+
+	private static List<String> toList(Iterable<String> coll) {
+		List<String> result = new ArrayList<>();
+		coll.forEach(result::add);
+		return result;
+	}
+
+	private static long fileCount(Path dir) throws Exception {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.count();
+		}
+	}
+}
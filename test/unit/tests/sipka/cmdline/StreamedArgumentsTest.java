@@ -0,0 +1,156 @@
+package tests.sipka.cmdline;
+
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.runtime.MissingArgumentException;
+import sipka.cmdline.runtime.ParseUtil;
+import sipka.cmdline.runtime.ParsingIterator;
+import sipka.cmdline.runtime.StreamedArguments;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+@SakerTest
+public class StreamedArgumentsTest extends SakerTestCase {
+	private static final Path MODEL_SOURCE = Paths.get("test/resources/StreamedArgumentsTest/StreamModel.java");
+
+	private Class<?> modelImpl;
+	private Class<?> model;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		StreamedArguments streamed;
+		try (ParsingIterator args = ParseUtil.createCommandFileArgumentIterator(
+				listOf("a", "@test/resources/CommandFileTest/dual.txt", "b").iterator())) {
+			assertEquals(args.next(), "a");
+			assertEquals(args.next(), "one");
+			streamed = ParseUtil.streamRemainingArguments(args);
+			assertFalse(args.hasNext());
+		}
+		//the remaining arguments are moved to the streamed view, closing the original doesn't affect it
+		try (StreamedArguments s = streamed) {
+			assertEquals(toList(s), listOf("two", "b"));
+			assertFalse(s.hasNext());
+		}
+
+		try (ParsingIterator args = ParseUtil.createSimpleArgumentIterator(listOf("x", "y", "z").iterator())) {
+			args.next();
+			streamed = ParseUtil.streamRemainingArguments(args);
+			assertEquals(streamed.stream().collect(Collectors.toList()), listOf("y", "z"));
+		}
+
+		try (ParsingIterator args = ParseUtil.createSimpleArgumentIterator(listOf("x", "y").iterator())) {
+			streamed = ParseUtil.streamRemainingArguments(args);
+			assertEquals(streamed.next(), "x");
+			streamed.close();
+			assertFalse(streamed.hasNext());
+			//multiple close calls are fine
+			streamed.close();
+		}
+
+		try (ParsingIterator args = ParseUtil.createSimpleArgumentIterator(Collections.<String> emptyIterator())) {
+			streamed = ParseUtil.streamRemainingArguments(args);
+			assertFalse(streamed.hasNext());
+		}
+
+		testGeneratedModel();
+	}
+
+	private void testGeneratedModel() throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir, Collections.emptyList(),
+					new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir)) {
+				model = Class.forName("streammodel.StreamModel", false, cl);
+				modelImpl = Class.forName("streammodel.StreamModelModelImpl", false, cl);
+				runGeneratedTests(tempdir);
+			}
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private void runGeneratedTests(Path tempdir) throws Throwable {
+		//the command reads the arguments lazily, the rest is closed by callCommand
+		Path cmdfile = writeCommandFile(tempdir, "each.txt", "c", "d");
+		Path deletefile = writeCommandFile(tempdir, "delete.txt", "e");
+		call("each", "-limit", "2", "a", "@" + cmdfile, "b", "@!delete!@" + deletefile);
+		assertEquals(getConsumed(), listOf("a", "c"));
+		assertFalse(getLastItems().hasNext());
+		//the command file that wasn't reached is deleted when the arguments are closed
+		assertFalse(Files.exists(deletefile));
+
+		//the arguments are closed if the command fails
+		deletefile = writeCommandFile(tempdir, "delete.txt", "e");
+		Object parsed = parse("each", "-limit", "-1", "a", "@!delete!@" + deletefile);
+		assertException(IllegalStateException.class, () -> callCommand(parsed));
+		assertFalse(getLastItems().hasNext());
+		assertFalse(Files.exists(deletefile));
+
+		//stream parameter
+		call("lines", "-name", "n", "a", "@" + cmdfile, "b");
+		assertEquals(getConsumed(), listOf("n", "a", "c", "d", "b"));
+
+		//the required parameter is checked after the arguments are detached, the failed parse closes them
+		Path faildeletefile = writeCommandFile(tempdir, "delete.txt", "e");
+		assertException(MissingArgumentException.class, () -> parse("lines", "a", "@!delete!@" + faildeletefile));
+		assertFalse(Files.exists(faildeletefile));
+
+		//nothing remaining
+		call("each", "-limit", "5");
+		assertEquals(getConsumed(), listOf());
+		assertFalse(getLastItems().hasNext());
+	}
+
+	private static Path writeCommandFile(Path dir, String name, String... lines) throws Exception {
+		Path result = dir.resolve(name);
+		Files.write(result, listOf(lines), StandardCharsets.UTF_8);
+		return result;
+	}
+
+	private Object parse(String... args) throws Throwable {
+		return GeneratedModelCompiler.invokeStatic(modelImpl, "parse", new Class<?>[] { Iterator.class },
+				listOf(args).iterator());
+	}
+
+	private void call(String... args) throws Throwable {
+		callCommand(parse(args));
+	}
+
+	private static void callCommand(Object parsed) throws Throwable {
+		GeneratedModelCompiler.invoke(parsed, "callCommand", new Class<?>[0]);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> getConsumed() throws Exception {
+		List<String> consumed = (List<String>) model.getField("consumed").get(null);
+		List<String> result = new ArrayList<>(consumed);
+		consumed.clear();
+		return result;
+	}
+
+	private Iterator<?> getLastItems() throws Exception {
+		return (Iterator<?>) model.getField("lastItems").get(null);
+	}
+
+	private static List<String> toList(StreamedArguments streamed) {
+		List<String> result = new ArrayList<>();
+		while (streamed.hasNext()) {
+			result.add(streamed.next());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,99 @@
+package tests.sipka.cmdline;
+
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+/**
+ * Tests that the arguments written by the generated <code>toArguments</code> method are parsed to the same command.
+ */
+@SakerTest
+public class ToArgumentsTest extends SakerTestCase {
+	private static final Path MODEL_SOURCE = Paths.get("test/resources/ToArgumentsTest/ToArgumentsModel.java");
+
+	private Class<?> modelImpl;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir,
+					Collections.singletonList("-A" + CommandLineProcessor.OPTION_GENERATE_TO_ARGUMENTS + "=true"),
+					new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir)) {
+				modelImpl = Class.forName("toargsmodel.ToArgumentsModelModelImpl", false, cl);
+				runRoundTripTests(tempdir);
+			}
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private void runRoundTripTests(Path tempdir) throws Throwable {
+		assertEquals(roundTrip("-verbose"), listOf("-verbose"));
+		assertEquals(roundTrip("-name", "n", "-Dk=v", "-Da=b"), listOf("-name", "n", "-Da=b", "-Dk=v"));
+		assertEquals(roundTrip("run"), listOf("run", "-threads", "1"));
+		assertEquals(roundTrip("-verbose", "build", "-mode", "safe", "-I", "a", "-I", "b"),
+				listOf("-verbose", "build", "-mode", "SAFE", "-I", "a", "-I", "b"));
+		assertEquals(roundTrip("build", "target", "f", "l"), listOf("build", "target", "f", "l"));
+		assertEquals(roundTrip("build", "-output", "o", "target", "f"), listOf("build", "-output", "o", "target", "f"));
+
+		//arguments that look like command file references are escaped, the escaped input is reproduced
+		assertEquals(roundTrip("-name", "\\@a", "build", "target", "\\\\@b", "\\\\\\@c"),
+				listOf("-name", "\\@a", "build", "target", "\\\\@b", "\\\\\\@c"));
+		assertEquals(parse("-name", "\\\\@a").toString(), "verbose=false name=\\@a D={}");
+		assertEquals(parse(toArguments(parse("-name", "\\\\@a"))).toString(), "verbose=false name=\\@a D={}");
+		assertEquals(parse(toArguments(parse("-name", "\\@a"))).toString(), "verbose=false name=@a D={}");
+
+		//the command file lines are not escaped
+		Path cmdfile = tempdir.resolve("args.txt");
+		Object parsed = parse("-name", "\\@a", "build", "-I", "\\\\@i", "target", "f");
+		GeneratedModelCompiler.invoke(parsed, "toCommandFile", new Class<?>[] { Path.class }, cmdfile);
+		assertEquals(Files.readAllLines(cmdfile), listOf("-name", "@a", "build", "-I", "\\@i", "target", "f"));
+		assertEquals(toArguments(parse("@" + cmdfile)), toArguments(parsed));
+
+		assertException(IllegalStateException.class, () -> toArguments(parse("help")));
+	}
+
+	/**
+	 * Parses the arguments, converts them back, and checks that parsing the result gives the same arguments.
+	 */
+	private List<String> roundTrip(String... args) throws Throwable {
+		Object parsed = parse(args);
+		List<String> result = toArguments(parsed);
+		Object reparsed = parse(result.toArray(new String[result.size()]));
+		assertEquals(reparsed.toString(), parsed.toString());
+		assertEquals(toArguments(reparsed), result);
+		return result;
+	}
+
+	private Object parse(List<String> args) throws Throwable {
+		return parse(args.toArray(new String[args.size()]));
+	}
+
+	private Object parse(String... args) throws Throwable {
+		return GeneratedModelCompiler.invokeStatic(modelImpl, "parse", new Class<?>[] { Iterator.class },
+				listOf(args).iterator());
+	}
+
+	private static List<String> toArguments(Object parsed) throws Throwable {
+		List<String> result = new ArrayList<>();
+		Consumer<String> consumer = result::add;
+		GeneratedModelCompiler.invoke(parsed, "toArguments", new Class<?>[] { Consumer.class }, consumer);
+		return result;
+	}
+}
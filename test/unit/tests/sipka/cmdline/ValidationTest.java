@@ -0,0 +1,164 @@
+package tests.sipka.cmdline;
+
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import sipka.cmdline.processor.CommandLineProcessor;
+import sipka.cmdline.runtime.ArgumentException;
+import sipka.cmdline.runtime.InvalidArgumentFormatException;
+import testing.saker.SakerTest;
+import testing.saker.SakerTestCase;
+
+/**
+ * Tests that the generated <code>validate</code> method accepts the same arguments as the parser.
+ */
+@SakerTest
+public class ValidationTest extends SakerTestCase {
+	private static final Path MODEL_SOURCE = Paths.get("test/resources/ValidationTest/ValidationModel.java");
+
+	private Class<?> modelImpl;
+
+	@Override
+	public void runTest(Map<String, String> parameters) throws Throwable {
+		Path tempdir = Files.createTempDirectory("sipka.cmdline.test-");
+		try {
+			assertTrue(GeneratedModelCompiler.compile(MODEL_SOURCE, tempdir,
+					Collections.singletonList("-A" + CommandLineProcessor.OPTION_GENERATE_VALIDATION + "=true"),
+					new DiagnosticCollector<JavaFileObject>()));
+			try (URLClassLoader cl = GeneratedModelCompiler.createClassLoader(tempdir)) {
+				modelImpl = Class.forName("validationmodel.ValidationModelModelImpl", false, cl);
+				runValidationTests();
+			}
+		} finally {
+			GeneratedModelCompiler.deleteRecursively(tempdir);
+		}
+	}
+
+	private void runValidationTests() throws Throwable {
+		//names
+		assertAccepted(true, "-output", "o");
+		assertAccepted(true, "-verbose", "-Dk=v", "-Dx=", "-output", "o");
+		assertAccepted(true, "-v", "run", "f");
+		assertAccepted(false, "-x", "-output", "o");
+		assertAccepted(false, "run", "f", "-x");
+		assertAccepted(false, "pipe", "-x");
+
+		//arity
+		assertAccepted(false, "-output");
+		assertAccepted(false, "run", "f", "-threads");
+		//the first argument is the positional parameter
+		assertAccepted(true, "run", "-threads");
+		assertAccepted(false, "-output", "o", "-mode");
+		assertAccepted(true, "-output", "o", "-I", "a", "-I", "b", "target");
+		assertAccepted(false, "-output", "o", "target", "extra");
+		assertAccepted(false, "run", "f", "g");
+
+		//required parameters
+		assertAccepted(false);
+		assertAccepted(false, "build");
+		assertAccepted(false, "-mode", "FAST");
+		assertAccepted(false, "run");
+		assertAccepted(true, "run", "f", "-threads", "2");
+
+		//enums
+		assertAccepted(true, "-output", "o", "-mode", "FAST");
+		assertAccepted(true, "-output", "o", "-mode", "safe");
+		assertAccepted(false, "-output", "o", "-mode", "SLOW");
+
+		//subcommands
+		assertAccepted(true, "run", "f");
+		assertAccepted(true, "r", "f");
+		assertAccepted(true, "pipe");
+		assertAccepted(false, "run", "f", "build");
+		//the help command accepts any arguments, it is only parsed to avoid printing
+		assertTrue(validate("help", "anything", "-x"));
+		parse("help", "anything", "-x");
+
+		//default subcommand
+		assertAccepted(true, "build", "-output", "o");
+		assertAccepted(true, "-v", "build", "-output", "o", "target");
+		assertAccepted(true, "-output", "o", "target");
+		assertAccepted(false, "build", "-v", "-output", "o");
+
+		//abbreviations
+		assertAccepted(true, "-verb", "-output", "o");
+		assertAccepted(true, "bu", "-output", "o");
+		assertAccepted(true, "ru", "f", "-threads", "2");
+		assertAccepted(true, "pi", "-lim", "1", "-mo", "FAST", "-mo", "SAFE");
+		//not resolved while the positional parameter of the default subcommand is open
+		assertAccepted(true, "-output", "o", "-opt");
+		assertAccepted(false, "-out", "o");
+		assertAccepted(false, "ru", "f", "-th", "2");
+		//ambiguous abbreviations, including the names of the default subcommand
+		assertAccepted(false, "-o", "o");
+
+		//pipelined tail
+		assertAccepted(true, "pipe", "-mode", "FAST", "-mode", "safe");
+		assertAccepted(true, "pipe", "-limit", "1", "-mode", "FAST");
+		assertAccepted(false, "pipe", "-mode", "FAST", "-mode");
+		assertAccepted(false, "pipe", "-mode", "FAST", "-mode", "SLOW");
+		assertAccepted(false, "pipe", "-mode", "FAST", "-x");
+		//only the pipelined parameter may follow the first pipelined value
+		assertAccepted(false, "pipe", "-mode", "FAST", "-limit", "1");
+
+		//built-in value formats
+		assertAccepted(true, "run", "f", "-threads", "-3", "-ratio", "0.5", "-separator", ";", "-cache", "TRUE", "42");
+		assertAccepted(false, "run", "f", "-threads", "x");
+		assertAccepted(false, "run", "f", "-threads", "3000000000");
+		assertAccepted(false, "run", "f", "-ratio", "half");
+		assertAccepted(false, "run", "f", "-separator", ";;");
+		assertAccepted(false, "run", "f", "-cache", "yes");
+		assertAccepted(false, "run", "f", "x");
+		assertAccepted(false, "pipe", "-limit", "x");
+		assertInvalidFormat("run", "f", "-threads", "x");
+		assertInvalidFormat("run", "f", "x");
+
+		//map formats
+		assertAccepted(true, "-D", "-D=v", "-Dk", "-Dk=", "-Da\\=b=c=d", "-D\"k\"=\"v\"", "-output", "o");
+	}
+
+	/**
+	 * Checks that both the validation and the parsing with the command call accept or reject the arguments.
+	 */
+	private void assertAccepted(boolean expected, String... args) throws Throwable {
+		assertEquals(validate(args), expected, listOf(args).toString());
+		boolean parsed;
+		try {
+			call(args);
+			parsed = true;
+		} catch (ArgumentException e) {
+			parsed = false;
+		}
+		assertEquals(parsed, expected, listOf(args).toString());
+	}
+
+	/**
+	 * Checks that the arguments are rejected by the validation, and the parser rejects them with a format exception.
+	 */
+	private void assertInvalidFormat(String... args) throws Throwable {
+		assertFalse(validate(args), listOf(args).toString());
+		assertException(InvalidArgumentFormatException.class, () -> call(args));
+	}
+
+	private boolean validate(String... args) throws Throwable {
+		return (Boolean) GeneratedModelCompiler.invokeStatic(modelImpl, "validate", new Class<?>[] { Iterator.class },
+				listOf(args).iterator());
+	}
+
+	private Object parse(String... args) throws Throwable {
+		return GeneratedModelCompiler.invokeStatic(modelImpl, "parse", new Class<?>[] { Iterator.class },
+				listOf(args).iterator());
+	}
+
+	private void call(String... args) throws Throwable {
+		GeneratedModelCompiler.invoke(parse(args), "callCommand", new Class<?>[0]);
+	}
+}